@@ -2,8 +2,11 @@ package com.iot.alerts.service;
 
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.iot.alerts.config.RabbitMQConfig;
 import com.iot.alerts.engine.RuleEngine;
+import com.iot.contracts.domain.AlertData;
 import com.iot.contracts.domain.DeviceData;
+import com.iot.contracts.registry.DeviceRegistryClient;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.amqp.rabbit.core.RabbitAdmin;
 import org.springframework.beans.factory.annotation.Value;
@@ -13,12 +16,17 @@ import org.springframework.stereotype.Service;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import reactor.core.scheduler.Schedulers;
+import reactor.rabbitmq.AcknowledgableDelivery;
 import reactor.rabbitmq.ConsumeOptions;
 import reactor.rabbitmq.Receiver;
 import reactor.util.retry.Retry;
 
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.stream.Collectors;
 
 @Service
 @Slf4j
@@ -29,6 +37,7 @@ public class AmqpConsumer {
     private final AlertPersistence alertPersistence;
     private final ObjectMapper objectMapper;
     private final RabbitAdmin rabbitAdmin;
+    private final DeviceRegistryClient registryClient;
 
     @Value("${app.rabbitmq.alerts.queue.name}")
     private String queueName;
@@ -42,50 +51,39 @@ public class AmqpConsumer {
     @Value("${app.rabbitmq.alerts.batching.concurrency}")
     private int concurrency;
 
+    @Value("${app.rabbitmq.partitions.enabled}")
+    private boolean partitionsEnabled;
+
+    @Value("${app.rabbitmq.partitions.count}")
+    private int partitionCount;
+
+    @Value("${app.rabbitmq.partitions.drain-fanout}")
+    private boolean drainFanout;
+
     public AmqpConsumer(Receiver receiver, 
                         RuleEngine ruleEngine, 
                         AlertPersistence alertPersistence,
                         ObjectMapper objectMapper,
-                        RabbitAdmin rabbitAdmin) {
+                        RabbitAdmin rabbitAdmin,
+                        DeviceRegistryClient registryClient) {
         this.receiver = receiver;
         this.ruleEngine = ruleEngine;
         this.alertPersistence = alertPersistence;
         this.objectMapper = objectMapper;
         this.rabbitAdmin = rabbitAdmin;
+        this.registryClient = registryClient;
     }
 
     @EventListener(ApplicationReadyEvent.class)
     public void start() {
         rabbitAdmin.initialize();
-        log.info("Starting Reactive RabbitMQ Consumer for queue: {}", queueName);
+        log.info("Starting Reactive RabbitMQ Consumer for queue: {}, partitions: {}",
+                queueName, partitionsEnabled ? partitionCount : "disabled");
         
         // QoS (prefetch count) is the key to reactive backpressure in RabbitMQ
         ConsumeOptions options = new ConsumeOptions().qos(batchSize * 2);
         
-        receiver.consumeManualAck(queueName, options)
-                .flatMap(delivery -> {
-                    List<DeviceData> devices = deserialize(delivery.getBody());
-                    
-                    return Flux.fromIterable(devices)
-                            // Process rules for each device in parallel
-                            .flatMap(deviceData -> Mono.fromCallable(() -> ruleEngine.processDevice(deviceData))
-                                    .subscribeOn(Schedulers.boundedElastic()), concurrency)
-                            .flatMap(Flux::fromIterable)
-                            // Batch alerts for DB persistence
-                            .bufferTimeout(batchSize, Duration.ofMillis(timeoutMs))
-                            .flatMap(alerts -> {
-                                if (!alerts.isEmpty()) {
-                                    return alertPersistence.saveBatch(alerts);
-                                }
-                                return Mono.empty();
-                            })
-                            .then(Mono.fromRunnable(delivery::ack))
-                            .onErrorResume(e -> {
-                                log.error("Error processing delivery: {}", e.getMessage());
-                                delivery.nack(false); // Reject without requeue for corrupted data
-                                return Mono.empty();
-                            });
-                }, concurrency)
+        consume(options)
                 .retryWhen(Retry.backoff(Long.MAX_VALUE, Duration.ofSeconds(2))
                         .maxBackoff(Duration.ofSeconds(30)))
                 .subscribe(
@@ -94,6 +92,70 @@ public class AmqpConsumer {
                 );
     }
 
+    /**
+     * Without partitions deliveries of the single queue are processed {@code concurrency} at a time. With partitions
+     * every partition queue gets its own consumer whose deliveries are processed one after another, so alerts of a
+     * device are evaluated in publish order; partitions run in parallel. With {@code drain-fanout} the fanout queue
+     * is consumed alongside, unordered, until the controller publishes to the partitions only.
+     */
+    private Flux<Void> consume(ConsumeOptions options) {
+        if (!partitionsEnabled) {
+            return consumeFanout(options);
+        }
+        Flux<Void> partitions = Flux.range(0, partitionCount)
+                .map(partition -> RabbitMQConfig.partitionQueueName(queueName, partition))
+                .flatMap(partitionQueue -> receiver.consumeManualAck(partitionQueue, options)
+                        .concatMap(this::process), partitionCount);
+        return drainFanout ? Flux.merge(partitions, consumeFanout(options)) : partitions;
+    }
+
+    private Flux<Void> consumeFanout(ConsumeOptions options) {
+        return receiver.consumeManualAck(queueName, options)
+                .flatMap(this::process, concurrency);
+    }
+
+    private Mono<Void> process(AcknowledgableDelivery delivery) {
+        // status-only events get name, manufacturer and type back before rules on those fields are evaluated
+        return registryClient.enrich(deserialize(delivery.getBody()))
+                .flatMapMany(devices -> Flux.fromIterable(byDevice(devices)))
+                // Devices are evaluated in parallel, the readings of one device in delivery order
+                .flatMap(readings -> Mono.fromCallable(() -> evaluate(readings))
+                        .subscribeOn(Schedulers.boundedElastic()), concurrency)
+                .flatMap(Flux::fromIterable)
+                // Batch alerts for DB persistence
+                .bufferTimeout(batchSize, Duration.ofMillis(timeoutMs))
+                .flatMap(alerts -> {
+                    if (!alerts.isEmpty()) {
+                        return alertPersistence.saveBatch(alerts);
+                    }
+                    return Mono.empty();
+                })
+                .then(Mono.fromRunnable(delivery::ack))
+                .onErrorResume(e -> {
+                    log.error("Error processing delivery: {}", e.getMessage());
+                    delivery.nack(false); // Reject without requeue for corrupted data
+                    return Mono.empty();
+                })
+                .then();
+    }
+
+    /**
+     * A PACKED delivery may hold several readings of one device; duration rules must see them in order.
+     */
+    private static Collection<List<DeviceData>> byDevice(List<DeviceData> devices) {
+        return devices.stream()
+                .collect(Collectors.groupingBy(DeviceData::id, LinkedHashMap::new, Collectors.toList()))
+                .values();
+    }
+
+    private List<AlertData> evaluate(List<DeviceData> readings) {
+        List<AlertData> alerts = new ArrayList<>();
+        for (DeviceData reading : readings) {
+            alerts.addAll(ruleEngine.processDevice(reading));
+        }
+        return alerts;
+    }
+
     private List<DeviceData> deserialize(byte[] body) {
         try {
             if (body == null || body.length == 0) return List.of();
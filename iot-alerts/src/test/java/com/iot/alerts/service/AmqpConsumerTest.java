@@ -1,27 +1,45 @@
 package com.iot.alerts.service;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.iot.alerts.domain.RuleEntity;
+import com.iot.alerts.engine.DeviceStateTracker;
 import com.iot.alerts.engine.RuleEngine;
+import com.iot.alerts.model.RuleType;
+import com.iot.alerts.model.Severity;
+import com.iot.alerts.repository.RuleRepository;
+import com.iot.contracts.domain.AlertData;
 import com.iot.contracts.domain.DeviceData;
+import com.iot.contracts.domain.DeviceMetadata;
 import com.iot.contracts.domain.components.Location;
 import com.iot.contracts.domain.components.Status;
 import com.iot.contracts.domain.components.Type;
+import com.iot.contracts.registry.DeviceRegistryClient;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.amqp.rabbit.core.RabbitAdmin;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.WebClient;
 import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 import reactor.rabbitmq.AcknowledgableDelivery;
 import reactor.rabbitmq.Receiver;
 
+import java.time.Duration;
 import java.time.Instant;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.*;
 
@@ -43,16 +61,29 @@ public class AmqpConsumerTest {
     @Mock
     private RabbitAdmin rabbitAdmin;
 
+    @Mock
+    private DeviceRegistryClient registryClient;
+
+    @Mock
+    private RuleRepository ruleRepository;
+
     private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
     private AmqpConsumer consumer;
 
     @BeforeEach
     void setUp() {
-        consumer = new AmqpConsumer(receiver, ruleEngine, alertPersistence, objectMapper, rabbitAdmin);
+        lenient().when(registryClient.enrich(any())).thenAnswer(invocation -> Mono.just(invocation.getArgument(0)));
+        consumer = consumer(ruleEngine, registryClient);
+    }
+
+    private AmqpConsumer consumer(RuleEngine ruleEngine, DeviceRegistryClient registryClient) {
+        AmqpConsumer consumer = new AmqpConsumer(receiver, ruleEngine, alertPersistence, objectMapper, rabbitAdmin,
+                registryClient);
         ReflectionTestUtils.setField(consumer, "queueName", "alerts.test.queue");
         ReflectionTestUtils.setField(consumer, "batchSize", 10);
         ReflectionTestUtils.setField(consumer, "timeoutMs", 100);
         ReflectionTestUtils.setField(consumer, "concurrency", 1);
+        return consumer;
     }
 
     @Test
@@ -80,4 +111,126 @@ public class AmqpConsumerTest {
         verify(ruleEngine, timeout(2000)).processDevice(any(DeviceData.class));
         verify(delivery, timeout(2000)).ack();
     }
+
+    @Test
+    @DisplayName("Should consume every partition queue when partitions are enabled")
+    void start_shouldConsumeEveryPartitionQueue() throws Exception {
+        ReflectionTestUtils.setField(consumer, "partitionsEnabled", true);
+        ReflectionTestUtils.setField(consumer, "partitionCount", 2);
+        DeviceData deviceData = DeviceData.builder()
+                .id(124L)
+                .name("Partitioned Device")
+                .manufacturer("Acme")
+                .type(Type.SENSOR_TEMPERATURE)
+                .location(new Location(1, 2, 0))
+                .status(new Status(true, 90, 80, Instant.now()))
+                .build();
+
+        when(delivery.getBody()).thenReturn(objectMapper.writeValueAsBytes(deviceData));
+        when(receiver.consumeManualAck(eq("alerts.test.queue.0"), any())).thenReturn(Flux.just(delivery));
+        when(receiver.consumeManualAck(eq("alerts.test.queue.1"), any())).thenReturn(Flux.just(delivery));
+        when(ruleEngine.processDevice(any(DeviceData.class))).thenReturn(List.of());
+
+        consumer.start();
+
+        verify(ruleEngine, timeout(2000).times(2)).processDevice(any(DeviceData.class));
+        verify(delivery, timeout(2000).times(2)).ack();
+        verify(receiver, never()).consumeManualAck(eq("alerts.test.queue"), any());
+    }
+
+    @Test
+    @DisplayName("Should evaluate a device name rule on a status-only event enriched from the registry")
+    void start_shouldEnrichStatusOnlyEventsBeforeRules() throws Exception {
+        when(ruleRepository.findAllByEnabledTrue()).thenReturn(Flux.just(new RuleEntity("camera-7", "Camera 7",
+                RuleType.INSTANT, Severity.WARNING, "DEVICE_NAME", "EQ", null, null, "Camera 7", 1, 0, true,
+                Instant.now(), Instant.now())));
+        RuleManagementService ruleManagementService = new RuleManagementService(ruleRepository);
+        ruleManagementService.refreshRuntimeRules().block();
+        String metadata = objectMapper.writeValueAsString(List.of(
+                new DeviceMetadata(7L, 2, "Camera 7", "Acme", Type.CAMERA, List.of())));
+        WebClient.Builder registry = WebClient.builder().exchangeFunction(request -> Mono.just(
+                ClientResponse.create(HttpStatus.OK)
+                        .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                        .body(metadata)
+                        .build()));
+        consumer = consumer(new RuleEngine(ruleManagementService, new DeviceStateTracker()),
+                new DeviceRegistryClient(registry, "http://controller", "/api/ingest/devices/metadata",
+                        Duration.ofSeconds(1), 100, "rules see the events without name, manufacturer and type"));
+        DeviceData statusOnly = DeviceData.builder()
+                .id(7L)
+                .name("Camera 7")
+                .manufacturer("Acme")
+                .type(Type.CAMERA)
+                .location(new Location(1, 2, 0))
+                .status(new Status(true, 90, 80, Instant.now()))
+                .build()
+                .slim(2);
+
+        when(delivery.getBody()).thenReturn(objectMapper.writeValueAsBytes(List.of(statusOnly)));
+        when(receiver.consumeManualAck(eq("alerts.test.queue"), any())).thenReturn(Flux.just(delivery));
+        when(alertPersistence.saveBatch(any())).thenReturn(Mono.empty());
+
+        consumer.start();
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<AlertData>> alerts = ArgumentCaptor.forClass(List.class);
+        verify(alertPersistence, timeout(2000)).saveBatch(alerts.capture());
+        assertThat(alerts.getValue()).extracting(AlertData::ruleId).containsExactly("camera-7");
+        verify(delivery, timeout(2000)).ack();
+    }
+
+    @Test
+    @DisplayName("Should evaluate readings of one device in delivery order while devices run in parallel")
+    void start_shouldKeepReadingOrderPerDevice() throws Exception {
+        ReflectionTestUtils.setField(consumer, "concurrency", 4);
+        List<Integer> device1Batteries = new CopyOnWriteArrayList<>();
+        when(ruleEngine.processDevice(any(DeviceData.class))).thenAnswer(invocation -> {
+            DeviceData reading = invocation.getArgument(0);
+            if (reading.id() == 1L) {
+                if (reading.status().batteryLevel() == 10) {
+                    // the first reading is the slowest; later ones must still wait for it
+                    Thread.sleep(100);
+                }
+                device1Batteries.add(reading.status().batteryLevel());
+            }
+            return List.of();
+        });
+        when(delivery.getBody()).thenReturn(objectMapper.writeValueAsBytes(List.of(
+                reading(1L, 10), reading(2L, 50), reading(1L, 20), reading(1L, 30))));
+        when(receiver.consumeManualAck(eq("alerts.test.queue"), any())).thenReturn(Flux.just(delivery));
+
+        consumer.start();
+
+        verify(delivery, timeout(2000)).ack();
+        verify(ruleEngine, times(4)).processDevice(any(DeviceData.class));
+        assertThat(device1Batteries).containsExactly(10, 20, 30);
+    }
+
+    @Test
+    @DisplayName("Should also drain the fanout queue during a cut-over to partitions")
+    void start_shouldDrainFanoutQueueWhenAsked() throws Exception {
+        ReflectionTestUtils.setField(consumer, "partitionsEnabled", true);
+        ReflectionTestUtils.setField(consumer, "partitionCount", 1);
+        ReflectionTestUtils.setField(consumer, "drainFanout", true);
+        when(delivery.getBody()).thenReturn(objectMapper.writeValueAsBytes(reading(9L, 40)));
+        when(receiver.consumeManualAck(eq("alerts.test.queue.0"), any())).thenReturn(Flux.just(delivery));
+        when(receiver.consumeManualAck(eq("alerts.test.queue"), any())).thenReturn(Flux.just(delivery));
+        when(ruleEngine.processDevice(any(DeviceData.class))).thenReturn(List.of());
+
+        consumer.start();
+
+        verify(ruleEngine, timeout(2000).times(2)).processDevice(any(DeviceData.class));
+        verify(delivery, timeout(2000).times(2)).ack();
+    }
+
+    private static DeviceData reading(long id, int batteryLevel) {
+        return DeviceData.builder()
+                .id(id)
+                .name("Device " + id)
+                .manufacturer("Acme")
+                .type(Type.SENSOR_TEMPERATURE)
+                .location(new Location(1, 2, 0))
+                .status(new Status(true, batteryLevel, 80, Instant.now()))
+                .build();
+    }
 }
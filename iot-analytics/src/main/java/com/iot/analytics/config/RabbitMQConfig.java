@@ -17,6 +17,9 @@ import reactor.rabbitmq.ReceiverOptions;
 import reactor.rabbitmq.Sender;
 import reactor.rabbitmq.SenderOptions;
 
+import java.util.ArrayList;
+import java.util.List;
+
 @Configuration
 public class RabbitMQConfig {
 
@@ -29,6 +32,18 @@ public class RabbitMQConfig {
     @Value("${app.rabbitmq.analytics.queue.ttl}")
     private int analyticsQueueTtl;
 
+    @Value("${app.rabbitmq.exchange.partitioned}")
+    private String partitionedExchangeName;
+
+    @Value("${app.rabbitmq.partitions.enabled}")
+    private boolean partitionsEnabled;
+
+    @Value("${app.rabbitmq.partitions.count}")
+    private int partitionCount;
+
+    @Value("${app.rabbitmq.partitions.drain-fanout}")
+    private boolean drainFanout;
+
     // ==================== Infrastructure (Auto-created by Spring AMQP) ====================
 
     @Bean
@@ -37,15 +52,45 @@ public class RabbitMQConfig {
     }
 
     @Bean
-    public Queue analyticsQueue() {
-        return QueueBuilder.durable(analyticsQueueName)
-                .ttl(analyticsQueueTtl)
-                .build();
+    public DirectExchange partitionedDataExchange() {
+        return new DirectExchange(partitionedExchangeName);
     }
 
+    /**
+     * Either the single analytics queue bound to the fanout exchange, or with {@code app.rabbitmq.partitions.enabled}
+     * one queue per partition, bound to the partitioned exchange with the partition number as routing key.
+     * Partition queues allow a single active consumer, so with several instances each queue is still drained
+     * in order by one of them while the others stand by.
+     * <p>
+     * With {@code app.rabbitmq.partitions.drain-fanout} the fanout queue is kept as well, so events a controller
+     * still publishes to the fanout exchange during the cut-over are not lost.
+     */
     @Bean
-    public Binding analyticsBinding(Queue analyticsQueue, FanoutExchange dataExchange) {
-        return BindingBuilder.bind(analyticsQueue).to(dataExchange);
+    public Declarables analyticsQueues(FanoutExchange dataExchange, DirectExchange partitionedDataExchange) {
+        List<Declarable> declarables = new ArrayList<>();
+        if (!partitionsEnabled || drainFanout) {
+            Queue queue = QueueBuilder.durable(analyticsQueueName)
+                    .ttl(analyticsQueueTtl)
+                    .build();
+            declarables.add(queue);
+            declarables.add(BindingBuilder.bind(queue).to(dataExchange));
+        }
+        if (!partitionsEnabled) {
+            return new Declarables(declarables);
+        }
+        for (int partition = 0; partition < partitionCount; partition++) {
+            Queue queue = QueueBuilder.durable(partitionQueueName(analyticsQueueName, partition))
+                    .ttl(analyticsQueueTtl)
+                    .singleActiveConsumer()
+                    .build();
+            declarables.add(queue);
+            declarables.add(BindingBuilder.bind(queue).to(partitionedDataExchange).with(String.valueOf(partition)));
+        }
+        return new Declarables(declarables);
+    }
+
+    public static String partitionQueueName(String queueName, int partition) {
+        return queueName + "." + partition;
     }
 
     @Bean
@@ -0,0 +1,23 @@
+package com.iot.analytics.config;
+
+import com.iot.contracts.registry.DeviceRegistryClient;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import java.time.Duration;
+
+@Configuration
+public class RegistryConfig {
+
+    @Bean
+    public DeviceRegistryClient deviceRegistryClient(WebClient.Builder webClientBuilder,
+                                                     @Value("${controller.url}") String controllerUrl,
+                                                     @Value("${app.registry.metadata-path}") String metadataPath,
+                                                     @Value("${app.registry.timeout}") Duration timeout,
+                                                     @Value("${app.registry.cache.max-size}") int cacheMaxSize) {
+        return new DeviceRegistryClient(webClientBuilder, controllerUrl, metadataPath, timeout, cacheMaxSize,
+                "live analytics counts the events without type and manufacturer");
+    }
+}
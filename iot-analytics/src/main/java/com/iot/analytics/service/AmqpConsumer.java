@@ -2,7 +2,9 @@ package com.iot.analytics.service;
 
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.iot.analytics.config.RabbitMQConfig;
 import com.iot.contracts.domain.DeviceData;
+import com.iot.contracts.registry.DeviceRegistryClient;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.amqp.rabbit.core.RabbitAdmin;
 import org.springframework.boot.context.event.ApplicationReadyEvent;
@@ -11,6 +13,7 @@ import org.springframework.stereotype.Service;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import reactor.core.scheduler.Schedulers;
+import reactor.rabbitmq.AcknowledgableDelivery;
 import reactor.rabbitmq.Receiver;
 import reactor.util.retry.Retry;
 
@@ -25,34 +28,47 @@ public class AmqpConsumer {
     private final AnalyticsService analyticsService;
     private final AnalyticsPersistence analyticsPersistence;
     private final LiveAnalyticsService liveAnalyticsService;
+    private final DeviceRegistryClient registryClient;
     private final ObjectMapper objectMapper;
     private final RabbitAdmin rabbitAdmin;
 
     private final String queueName;
     private final int concurrency;
+    private final boolean partitionsEnabled;
+    private final int partitionCount;
+    private final boolean drainFanout;
 
     public AmqpConsumer(Receiver receiver,
                         AnalyticsService analyticsService,
                         AnalyticsPersistence analyticsPersistence,
                         LiveAnalyticsService liveAnalyticsService,
+                        DeviceRegistryClient registryClient,
                         ObjectMapper objectMapper,
                         RabbitAdmin rabbitAdmin,
                         @org.springframework.beans.factory.annotation.Value("${app.rabbitmq.analytics.queue.name}") String queueName,
-                        @org.springframework.beans.factory.annotation.Value("${app.rabbitmq.analytics.concurrency}") int concurrency) {
+                        @org.springframework.beans.factory.annotation.Value("${app.rabbitmq.analytics.concurrency}") int concurrency,
+                        @org.springframework.beans.factory.annotation.Value("${app.rabbitmq.partitions.enabled}") boolean partitionsEnabled,
+                        @org.springframework.beans.factory.annotation.Value("${app.rabbitmq.partitions.count}") int partitionCount,
+                        @org.springframework.beans.factory.annotation.Value("${app.rabbitmq.partitions.drain-fanout}") boolean drainFanout) {
         this.receiver = receiver;
         this.analyticsService = analyticsService;
         this.analyticsPersistence = analyticsPersistence;
         this.liveAnalyticsService = liveAnalyticsService;
+        this.registryClient = registryClient;
         this.objectMapper = objectMapper;
         this.rabbitAdmin = rabbitAdmin;
         this.queueName = queueName;
         this.concurrency = concurrency;
+        this.partitionsEnabled = partitionsEnabled;
+        this.partitionCount = partitionCount;
+        this.drainFanout = drainFanout;
     }
 
     @EventListener(ApplicationReadyEvent.class)
     public void start() {
         rabbitAdmin.initialize();
-        log.info("Starting Reactive RabbitMQ Consumer for Analytics queue: {}", queueName);
+        log.info("Starting Reactive RabbitMQ Consumer for Analytics queue: {}, partitions: {}",
+                queueName, partitionsEnabled ? partitionCount : "disabled");
 
         analyticsService.getWindowDurationFlux()
                 .distinctUntilChanged()
@@ -62,18 +78,7 @@ public class AmqpConsumer {
 
                     int prefetch = Math.max(32, concurrency * 16);
 
-                    Flux<DeviceData> deviceStream = receiver.consumeManualAck(queueName, new reactor.rabbitmq.ConsumeOptions().qos(prefetch))
-                            .flatMap(delivery -> {
-                                List<DeviceData> devices = deserialize(delivery.getBody());
-                                liveAnalyticsService.ingestDevices(devices);
-                                return Mono.fromRunnable(delivery::ack)
-                                        .thenMany(Flux.fromIterable(devices))
-                                        .onErrorResume(e -> {
-                                            log.error("Error processing delivery: {}", e.getMessage());
-                                            delivery.nack(false);
-                                            return Mono.empty();
-                                        });
-                            }, concurrency);
+                    Flux<DeviceData> deviceStream = consume(new reactor.rabbitmq.ConsumeOptions().qos(prefetch));
 
                     return deviceStream
                             .bufferTimeout(Integer.MAX_VALUE, Duration.ofSeconds(windowSeconds))
@@ -98,6 +103,42 @@ public class AmqpConsumer {
                 );
     }
 
+    /**
+     * Without partitions deliveries of the single queue are handled {@code concurrency} at a time. With partitions
+     * every partition queue gets its own consumer that handles its deliveries in order; partitions run in parallel.
+     * With {@code drain-fanout} the fanout queue is consumed alongside until the controller publishes to the
+     * partitions only.
+     */
+    private Flux<DeviceData> consume(reactor.rabbitmq.ConsumeOptions options) {
+        if (!partitionsEnabled) {
+            return consumeFanout(options);
+        }
+        Flux<DeviceData> partitions = Flux.range(0, partitionCount)
+                .map(partition -> RabbitMQConfig.partitionQueueName(queueName, partition))
+                .flatMap(partitionQueue -> receiver.consumeManualAck(partitionQueue, options)
+                        .concatMap(this::process), partitionCount);
+        return drainFanout ? Flux.merge(partitions, consumeFanout(options)) : partitions;
+    }
+
+    private Flux<DeviceData> consumeFanout(reactor.rabbitmq.ConsumeOptions options) {
+        return receiver.consumeManualAck(queueName, options)
+                .flatMap(this::process, concurrency);
+    }
+
+    private Flux<DeviceData> process(AcknowledgableDelivery delivery) {
+        return registryClient.enrich(deserialize(delivery.getBody()))
+                .flatMapMany(devices -> {
+                    liveAnalyticsService.ingestDevices(devices);
+                    return Mono.fromRunnable(delivery::ack)
+                            .thenMany(Flux.fromIterable(devices));
+                })
+                .onErrorResume(e -> {
+                    log.error("Error processing delivery: {}", e.getMessage());
+                    delivery.nack(false);
+                    return Mono.empty();
+                });
+    }
+
     private List<DeviceData> deserialize(byte[] body) {
         try {
             if (body == null || body.length == 0) return List.of();
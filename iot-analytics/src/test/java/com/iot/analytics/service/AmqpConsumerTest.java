@@ -5,6 +5,7 @@ import com.iot.contracts.domain.DeviceData;
 import com.iot.contracts.domain.components.Location;
 import com.iot.contracts.domain.components.Status;
 import com.iot.contracts.domain.components.Type;
+import com.iot.contracts.registry.DeviceRegistryClient;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
@@ -35,6 +36,9 @@ public class AmqpConsumerTest {
     @Mock
     private LiveAnalyticsService liveAnalyticsService;
 
+    @Mock
+    private DeviceRegistryClient registryClient;
+
     @Mock
     private Receiver receiver;
 
@@ -50,8 +54,9 @@ public class AmqpConsumerTest {
     @BeforeEach
     void setUp() {
         when(analyticsService.getWindowDurationFlux()).thenReturn(Flux.just(1));
+        lenient().when(registryClient.enrich(any())).thenAnswer(invocation -> Mono.just(invocation.getArgument(0)));
 
-        amqpConsumer = new AmqpConsumer(receiver, analyticsService, analyticsPersistence, liveAnalyticsService, objectMapper, rabbitAdmin, "analytics.test.queue", 1);
+        amqpConsumer = new AmqpConsumer(receiver, analyticsService, analyticsPersistence, liveAnalyticsService, registryClient, objectMapper, rabbitAdmin, "analytics.test.queue", 1, false, 2, false);
     }
 
     @Test
@@ -82,4 +87,53 @@ public class AmqpConsumerTest {
         verify(analyticsService, timeout(2000)).calculateStats(any());
         verify(delivery, timeout(2000)).ack();
     }
+
+    @Test
+    @DisplayName("Should consume every partition queue when partitions are enabled")
+    public void start_shouldConsumeEveryPartitionQueue() throws Exception {
+        amqpConsumer = new AmqpConsumer(receiver, analyticsService, analyticsPersistence, liveAnalyticsService, registryClient, objectMapper, rabbitAdmin, "analytics.test.queue", 1, true, 2, false);
+        DeviceData deviceData = DeviceData.builder()
+                .id(7L)
+                .name("Partitioned Device")
+                .manufacturer("Manufacturer")
+                .type(Type.SENSOR_TEMPERATURE)
+                .location(new Location(1, 2, 0))
+                .status(new Status(true, 80, 70, Instant.now()))
+                .build();
+
+        when(delivery.getBody()).thenReturn(objectMapper.writeValueAsBytes(deviceData));
+        when(receiver.consumeManualAck(eq("analytics.test.queue.0"), any())).thenReturn(Flux.just(delivery));
+        when(receiver.consumeManualAck(eq("analytics.test.queue.1"), any())).thenReturn(Flux.just(delivery));
+        when(analyticsService.calculateStats(any())).thenReturn(Mono.just(mock(com.iot.contracts.domain.AnalyticsData.class)));
+        when(analyticsPersistence.save(any())).thenReturn(Mono.empty());
+
+        amqpConsumer.start();
+
+        verify(delivery, timeout(2000).times(2)).ack();
+        verify(receiver, never()).consumeManualAck(eq("analytics.test.queue"), any());
+    }
+
+    @Test
+    @DisplayName("Should also drain the fanout queue during a cut-over to partitions")
+    public void start_shouldDrainFanoutQueueWhenAsked() throws Exception {
+        amqpConsumer = new AmqpConsumer(receiver, analyticsService, analyticsPersistence, liveAnalyticsService, registryClient, objectMapper, rabbitAdmin, "analytics.test.queue", 1, true, 1, true);
+        DeviceData deviceData = DeviceData.builder()
+                .id(8L)
+                .name("Migrating Device")
+                .manufacturer("Manufacturer")
+                .type(Type.SENSOR_TEMPERATURE)
+                .location(new Location(1, 2, 0))
+                .status(new Status(true, 80, 70, Instant.now()))
+                .build();
+
+        when(delivery.getBody()).thenReturn(objectMapper.writeValueAsBytes(deviceData));
+        when(receiver.consumeManualAck(eq("analytics.test.queue.0"), any())).thenReturn(Flux.just(delivery));
+        when(receiver.consumeManualAck(eq("analytics.test.queue"), any())).thenReturn(Flux.just(delivery));
+        when(analyticsService.calculateStats(any())).thenReturn(Mono.just(mock(com.iot.contracts.domain.AnalyticsData.class)));
+        when(analyticsPersistence.save(any())).thenReturn(Mono.empty());
+
+        amqpConsumer.start();
+
+        verify(delivery, timeout(2000).times(2)).ack();
+    }
 }
@@ -0,0 +1,138 @@
+package com.iot.analytics.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.iot.contracts.domain.DeviceData;
+import com.iot.contracts.domain.DeviceMetadata;
+import com.iot.contracts.domain.components.Location;
+import com.iot.contracts.domain.components.Status;
+import com.iot.contracts.domain.components.Type;
+import com.iot.contracts.registry.DeviceRegistryClient;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class DeviceRegistryClientTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+    private final List<ClientRequest> requests = new CopyOnWriteArrayList<>();
+
+    @Test
+    @DisplayName("Should enrich status-only events and fetch metadata only for new versions")
+    void enrich_shouldFetchOnlyUnknownVersions() throws Exception {
+        String body = objectMapper.writeValueAsString(List.of(
+                new DeviceMetadata(1L, 3, "Device 1", "Acme", Type.CAMERA, List.of("zoom"))));
+        DeviceRegistryClient client = client(Mono.just(ClientResponse.create(HttpStatus.OK)
+                .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                .body(body)
+                .build()));
+
+        StepVerifier.create(client.enrich(List.of(device(1L).slim(3))))
+                .assertNext(devices -> {
+                    assertThat(devices.getFirst().name()).isEqualTo("Device 1");
+                    assertThat(devices.getFirst().type()).isEqualTo(Type.CAMERA);
+                    assertThat(devices.getFirst().capabilities()).containsExactly("zoom");
+                })
+                .verifyComplete();
+        StepVerifier.create(client.enrich(List.of(device(1L).slim(3), device(2L))))
+                .assertNext(devices -> assertThat(devices).extracting(DeviceData::name)
+                        .containsExactly("Device 1", "Full 2"))
+                .verifyComplete();
+
+        assertThat(requests).hasSize(1);
+        assertThat(requests.getFirst().url().toString()).endsWith("/api/ingest/devices/metadata?ids=1");
+    }
+
+    @Test
+    @DisplayName("Should keep at most max-size devices cached and fetch evicted ones again")
+    void enrich_shouldBoundCache() throws Exception {
+        DeviceRegistryClient client = client(Mono.fromCallable(() -> {
+            String ids = requests.getLast().url().getQuery();
+            long id = Long.parseLong(ids.substring(ids.indexOf('=') + 1));
+            return ClientResponse.create(HttpStatus.OK)
+                    .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                    .body(objectMapper.writeValueAsString(List.of(
+                            new DeviceMetadata(id, 1, "Device " + id, "Acme", Type.CAMERA, List.of()))))
+                    .build();
+        }), 1);
+
+        for (long id : new long[]{1L, 1L, 2L, 1L}) {
+            StepVerifier.create(client.enrich(List.of(device(id).slim(1))))
+                    .assertNext(devices -> assertThat(devices.getFirst().name()).isEqualTo("Device " + id))
+                    .verifyComplete();
+        }
+
+        assertThat(requests).extracting(request -> request.url().getQuery())
+                .containsExactly("ids=1", "ids=2", "ids=1");
+    }
+
+    @Test
+    @DisplayName("Should leave an event of an older metadata version unenriched")
+    void enrich_shouldNotApplyNewerVersion() throws Exception {
+        String body = objectMapper.writeValueAsString(List.of(
+                new DeviceMetadata(1L, 4, "Renamed 1", "Acme", Type.CAMERA, List.of())));
+        DeviceRegistryClient client = client(Mono.just(ClientResponse.create(HttpStatus.OK)
+                .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                .body(body)
+                .build()));
+
+        StepVerifier.create(client.enrich(List.of(device(1L).slim(4), device(1L).slim(3))))
+                .assertNext(devices -> {
+                    assertThat(devices).extracting(DeviceData::name).containsExactly("Renamed 1", null);
+                    assertThat(devices).extracting(DeviceData::metaVersion).containsExactly(4L, 3L);
+                })
+                .verifyComplete();
+
+        assertThat(requests).hasSize(1);
+    }
+
+    @Test
+    @DisplayName("Should pass events through unenriched when the registry is unavailable")
+    void enrich_shouldPassThroughOnFailure() {
+        DeviceRegistryClient client = client(Mono.error(new IllegalStateException("connection refused")));
+
+        StepVerifier.create(client.enrich(List.of(device(1L).slim(1))))
+                .assertNext(devices -> {
+                    assertThat(devices.getFirst().name()).isNull();
+                    assertThat(devices.getFirst().status()).isNotNull();
+                })
+                .verifyComplete();
+    }
+
+    private DeviceRegistryClient client(Mono<ClientResponse> response) {
+        return client(response, 100);
+    }
+
+    private DeviceRegistryClient client(Mono<ClientResponse> response, int cacheMaxSize) {
+        WebClient.Builder builder = WebClient.builder().exchangeFunction(request -> {
+            requests.add(request);
+            return response;
+        });
+        return new DeviceRegistryClient(builder, "http://controller", "/api/ingest/devices/metadata",
+                Duration.ofSeconds(1), cacheMaxSize, "events pass through unenriched");
+    }
+
+    private static DeviceData device(long id) {
+        return DeviceData.builder()
+                .id(id)
+                .name("Full " + id)
+                .manufacturer("Omni")
+                .type(Type.SENSOR_TEMPERATURE)
+                .location(new Location(1, 2, 0))
+                .status(new Status(true, 80, 70, Instant.now()))
+                .build();
+    }
+}
@@ -1,5 +1,6 @@
 package com.iot.contracts.domain;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import com.iot.contracts.domain.components.Location;
 import com.iot.contracts.domain.components.Status;
 import com.iot.contracts.domain.components.Type;
@@ -14,8 +15,15 @@ import lombok.extern.jackson.Jacksonized;
 import java.util.List;
 import java.util.Collections;
 
+/**
+ * A device reading. Producers send it in full. With the controller's device registry enabled, the data exchange
+ * carries status-only events instead: {@code metaVersion} is set and the static fields ({@code name},
+ * {@code manufacturer}, {@code type}, {@code capabilities}) are left out; consumers that need them look up
+ * {@link DeviceMetadata} of that version.
+ */
 @Builder(toBuilder = true)
 @Jacksonized
+@JsonInclude(JsonInclude.Include.NON_EMPTY)
 public record DeviceData(
         long id,
         @NotBlank String name,
@@ -23,7 +31,8 @@ public record DeviceData(
         @NotNull Type type,
         List<String> capabilities,
         @Valid @NotNull Location location,
-        @Valid @NotNull Status status) {
+        @Valid @NotNull Status status,
+        Long metaVersion) {
 
     public DeviceData {
         if (capabilities == null) {
@@ -33,6 +42,26 @@ public record DeviceData(
         }
     }
 
+    public DeviceData(long id, String name, String manufacturer, Type type, List<String> capabilities,
+                      Location location, Status status) {
+        this(id, name, manufacturer, type, capabilities, location, status, null);
+    }
+
+    /**
+     * Status-only event of this reading: static fields left out, {@code metaVersion} set.
+     */
+    public DeviceData slim(long metaVersion) {
+        return new DeviceData(id, null, null, null, null, location, status, metaVersion);
+    }
+
+    /**
+     * This reading with the static fields of {@code metadata} filled in.
+     */
+    public DeviceData enrich(DeviceMetadata metadata) {
+        return new DeviceData(id, metadata.name(), metadata.manufacturer(), metadata.type(),
+                metadata.capabilities(), location, status, metadata.version());
+    }
+
     @Override
     public String toString() {
         return String.format(
@@ -0,0 +1,38 @@
+package com.iot.contracts.domain;
+
+import com.iot.contracts.domain.components.Type;
+
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Static fields of a device as kept by the controller's device registry. {@code version} starts at 1 and grows
+ * whenever any of the fields change; status-only events carry it as {@link DeviceData#metaVersion()}.
+ */
+public record DeviceMetadata(
+        long deviceId,
+        long version,
+        String name,
+        String manufacturer,
+        Type type,
+        List<String> capabilities) {
+
+    public DeviceMetadata {
+        capabilities = capabilities == null ? List.of() : List.copyOf(capabilities);
+    }
+
+    public static DeviceMetadata of(DeviceData device, long version) {
+        return new DeviceMetadata(device.id(), version, device.name(), device.manufacturer(), device.type(),
+                device.capabilities());
+    }
+
+    /**
+     * Whether {@code device} carries exactly these static fields.
+     */
+    public boolean describes(DeviceData device) {
+        return Objects.equals(name, device.name())
+                && Objects.equals(manufacturer, device.manufacturer())
+                && type == device.type()
+                && Objects.equals(capabilities, device.capabilities());
+    }
+}
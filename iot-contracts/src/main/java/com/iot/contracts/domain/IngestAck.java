@@ -0,0 +1,11 @@
+package com.iot.contracts.domain;
+
+/**
+ * Acknowledgement sent back on the controller's RSocket ingest channel ({@link #ROUTE}), one per stored batch,
+ * in the order the devices were sent. {@code acknowledged} is the running total of devices the controller has
+ * finished with on this channel, so everything the producer sent up to that count is either stored or rejected.
+ */
+public record IngestAck(long acknowledged, long accepted, long rejected) {
+
+    public static final String ROUTE = "ingest.stream";
+}
@@ -0,0 +1,38 @@
+package com.iot.contracts.registry;
+
+import com.iot.contracts.domain.DeviceMetadata;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded LRU cache of the newest known {@link DeviceMetadata} per device id, shared by the controller's registry
+ * and the consumers' {@link DeviceRegistryClient}. Metadata only changes through a new version, so entries need
+ * no expiry: an older version never replaces a newer one, and an evicted device is simply looked up again.
+ */
+public class DeviceMetadataCache {
+
+    private final Map<Long, DeviceMetadata> entries;
+
+    public DeviceMetadataCache(int maxSize) {
+        this.entries = new LinkedHashMap<>(Math.min(maxSize, 1024), 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, DeviceMetadata> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    public synchronized DeviceMetadata get(long deviceId) {
+        return entries.get(deviceId);
+    }
+
+    public synchronized void put(DeviceMetadata metadata) {
+        entries.merge(metadata.deviceId(), metadata,
+                (current, candidate) -> candidate.version() >= current.version() ? candidate : current);
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+}
@@ -0,0 +1,84 @@
+package com.iot.contracts.registry;
+
+import com.iot.contracts.domain.DeviceData;
+import com.iot.contracts.domain.DeviceMetadata;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Fills in the static fields of status-only events from the controller's device registry.
+ * <p>
+ * Metadata is cached by device id, up to {@code cacheMaxSize} devices, and fetched again only when an event
+ * carries a newer {@code metaVersion} or the device was evicted, so in the steady state no request is made at
+ * all. An event is only enriched with the exact version it points at: the registry serves just the newest one,
+ * so a late event of an older version stays unenriched rather than getting fields it never had. Full events pass
+ * through untouched. If the registry cannot be reached the events are returned as they are; {@code fallback}
+ * describes what the consuming service does with them and is logged with the failure.
+ * <p>
+ * Not a Spring bean by itself: each consumer declares it with its own {@code app.registry.*} settings.
+ */
+@Slf4j
+public class DeviceRegistryClient {
+
+    private final WebClient webClient;
+    private final String metadataPath;
+    private final Duration timeout;
+    private final String fallback;
+
+    private final DeviceMetadataCache cache;
+
+    public DeviceRegistryClient(WebClient.Builder webClientBuilder, String controllerUrl, String metadataPath,
+                                Duration timeout, int cacheMaxSize, String fallback) {
+        this.webClient = webClientBuilder.baseUrl(controllerUrl).build();
+        this.metadataPath = metadataPath;
+        this.timeout = timeout;
+        this.fallback = fallback;
+        this.cache = new DeviceMetadataCache(cacheMaxSize);
+    }
+
+    public Mono<List<DeviceData>> enrich(List<DeviceData> devices) {
+        List<Long> missing = devices.stream()
+                .filter(device -> device.metaVersion() != null && !isCached(device))
+                .map(DeviceData::id)
+                .distinct()
+                .toList();
+        if (missing.isEmpty()) {
+            return Mono.just(enrichFromCache(devices));
+        }
+        return webClient.get()
+                .uri(uri -> uri.path(metadataPath).queryParam("ids", missing).build())
+                .retrieve()
+                .bodyToFlux(DeviceMetadata.class)
+                .timeout(timeout)
+                .doOnNext(cache::put)
+                .then(Mono.fromSupplier(() -> enrichFromCache(devices)))
+                .onErrorResume(e -> {
+                    log.warn("Device registry lookup of {} device(s) failed, {}: {}",
+                            missing.size(), fallback, e.getMessage());
+                    return Mono.just(enrichFromCache(devices));
+                });
+    }
+
+    private boolean isCached(DeviceData device) {
+        DeviceMetadata metadata = cache.get(device.id());
+        return metadata != null && metadata.version() >= device.metaVersion();
+    }
+
+    private List<DeviceData> enrichFromCache(List<DeviceData> devices) {
+        return devices.stream()
+                .map(device -> {
+                    if (device.metaVersion() == null || device.name() != null) {
+                        return device;
+                    }
+                    DeviceMetadata metadata = cache.get(device.id());
+                    return metadata != null && metadata.version() == device.metaVersion()
+                            ? device.enrich(metadata)
+                            : device;
+                })
+                .toList();
+    }
+}
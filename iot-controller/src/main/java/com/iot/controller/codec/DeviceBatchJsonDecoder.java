@@ -0,0 +1,81 @@
+package com.iot.controller.codec;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.exc.InvalidDefinitionException;
+import com.iot.contracts.domain.DeviceData;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.codec.CodecException;
+import org.springframework.core.codec.DecodingException;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.codec.json.Jackson2JsonDecoder;
+import org.springframework.util.MimeType;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The application's JSON decoder. A {@code List<DeviceData>} body is decoded into a {@link RawJsonDeviceBatch}
+ * that also keeps the byte range of every array element, so accepted devices can be published without encoding
+ * them again. Every other type, and streaming (NDJSON) bodies, are decoded by {@link Jackson2JsonDecoder} unchanged.
+ */
+public class DeviceBatchJsonDecoder extends Jackson2JsonDecoder {
+
+    private static final ResolvableType DEVICE_LIST = ResolvableType.forClassWithGenerics(List.class, DeviceData.class);
+
+    private final ObjectReader deviceReader;
+
+    public DeviceBatchJsonDecoder(ObjectMapper objectMapper, MimeType... mimeTypes) {
+        super(objectMapper, mimeTypes);
+        this.deviceReader = objectMapper.readerFor(DeviceData.class);
+    }
+
+    @Override
+    public Object decode(DataBuffer dataBuffer, ResolvableType targetType,
+                         MimeType mimeType, Map<String, Object> hints) throws DecodingException {
+        if (!DEVICE_LIST.isAssignableFrom(targetType)) {
+            return super.decode(dataBuffer, targetType, mimeType, hints);
+        }
+        try {
+            byte[] body = new byte[dataBuffer.readableByteCount()];
+            dataBuffer.read(body);
+            return readBatch(body);
+        } catch (InvalidDefinitionException e) {
+            throw new CodecException("Type definition error: " + e.getType(), e);
+        } catch (JsonProcessingException e) {
+            throw new DecodingException("JSON decoding error: " + e.getOriginalMessage(), e);
+        } catch (IOException e) {
+            throw new DecodingException("I/O error while parsing input stream", e);
+        } finally {
+            DataBufferUtils.release(dataBuffer);
+        }
+    }
+
+    RawJsonDeviceBatch readBatch(byte[] body) throws IOException {
+        try (JsonParser parser = getObjectMapper().createParser(body)) {
+            JsonToken token = parser.nextToken();
+            if (token != JsonToken.START_ARRAY) {
+                throw new DecodingException("JSON decoding error: expected an array of devices");
+            }
+            List<DeviceData> devices = new ArrayList<>();
+            List<byte[]> json = new ArrayList<>();
+            while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+                if (token == null) {
+                    throw new DecodingException("JSON decoding error: unexpected end of array");
+                }
+                int start = (int) parser.currentTokenLocation().getByteOffset();
+                devices.add(deviceReader.readValue(parser));
+                int end = (int) parser.currentLocation().getByteOffset();
+                json.add(token == JsonToken.START_OBJECT ? Arrays.copyOfRange(body, start, end) : null);
+            }
+            return new RawJsonDeviceBatch(devices, json);
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package com.iot.controller.codec;
+
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.WireFormat;
+import com.iot.contracts.domain.DeviceData;
+import com.iot.contracts.domain.components.Location;
+import com.iot.contracts.domain.components.Status;
+import com.iot.contracts.domain.components.Type;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.codec.AbstractDataBufferDecoder;
+import org.springframework.core.codec.DecodingException;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.util.MimeType;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Decodes an {@code iot.DeviceBatch} message ({@code proto/device_data.proto} in iot-contracts) straight into
+ * {@code List<DeviceData>}, reading the wire format with {@link CodedInputStream} instead of going through
+ * generated message classes. Unknown fields are skipped, so the schema can grow without breaking the controller.
+ * Missing sub-messages decode to {@code null} and are reported by {@code DeviceValidator} like missing JSON fields.
+ */
+public class DeviceBatchProtobufDecoder extends AbstractDataBufferDecoder<List<DeviceData>> {
+
+    public static final MimeType PROTOBUF = new MimeType("application", "x-protobuf");
+
+    private static final ResolvableType DEVICE_LIST = ResolvableType.forClassWithGenerics(List.class, DeviceData.class);
+
+    // index = DeviceType number in the schema
+    private static final Type[] TYPES = {
+            null,
+            Type.SENSOR_TEMPERATURE,
+            Type.SENSOR_HUMIDITY,
+            Type.ACTUATOR_LIGHT,
+            Type.ACTUATOR_LOCK,
+            Type.CAMERA,
+            Type.SMART_PLUG,
+            Type.GATEWAY
+    };
+
+    public DeviceBatchProtobufDecoder(int maxInMemorySize) {
+        super(PROTOBUF, new MimeType("application", "protobuf"));
+        setMaxInMemorySize(maxInMemorySize);
+    }
+
+    @Override
+    public boolean canDecode(ResolvableType elementType, MimeType mimeType) {
+        return DEVICE_LIST.isAssignableFrom(elementType) && super.canDecode(elementType, mimeType);
+    }
+
+    @Override
+    public List<DeviceData> decode(DataBuffer dataBuffer, ResolvableType targetType,
+                                   MimeType mimeType, Map<String, Object> hints) {
+        try (InputStream body = dataBuffer.asInputStream()) {
+            return readBatch(CodedInputStream.newInstance(body));
+        } catch (IOException e) {
+            throw new DecodingException("Malformed protobuf DeviceBatch: " + e.getMessage(), e);
+        } finally {
+            DataBufferUtils.release(dataBuffer);
+        }
+    }
+
+    static List<DeviceData> readBatch(CodedInputStream input) throws IOException {
+        List<DeviceData> devices = new ArrayList<>();
+        int tag;
+        while ((tag = input.readTag()) != 0) {
+            if (WireFormat.getTagFieldNumber(tag) == 1) {
+                devices.add(readMessage(input, DeviceBatchProtobufDecoder::readDevice));
+            } else {
+                input.skipField(tag);
+            }
+        }
+        return devices;
+    }
+
+    /**
+     * Decodes a single {@code iot.DeviceData} message, e.g. one frame of the binary telemetry listener.
+     * A direct buffer is read in place, without copying it to the heap first.
+     */
+    public static DeviceData readDevice(ByteBuffer message) throws IOException {
+        return readDevice(CodedInputStream.newInstance(message));
+    }
+
+    private static DeviceData readDevice(CodedInputStream input) throws IOException {
+        DeviceData.DeviceDataBuilder device = DeviceData.builder();
+        List<String> capabilities = new ArrayList<>();
+        int tag;
+        while ((tag = input.readTag()) != 0) {
+            switch (WireFormat.getTagFieldNumber(tag)) {
+                case 1 -> device.id(input.readInt64());
+                case 2 -> device.name(input.readStringRequireUtf8());
+                case 3 -> device.manufacturer(input.readStringRequireUtf8());
+                case 4 -> device.type(toType(input.readEnum()));
+                case 5 -> capabilities.add(input.readStringRequireUtf8());
+                case 6 -> device.location(readMessage(input, DeviceBatchProtobufDecoder::readLocation));
+                case 7 -> device.status(readMessage(input, DeviceBatchProtobufDecoder::readStatus));
+                default -> input.skipField(tag);
+            }
+        }
+        return device.capabilities(capabilities).build();
+    }
+
+    private static Location readLocation(CodedInputStream input) throws IOException {
+        int x = 0;
+        int y = 0;
+        int z = 0;
+        int tag;
+        while ((tag = input.readTag()) != 0) {
+            switch (WireFormat.getTagFieldNumber(tag)) {
+                case 1 -> x = input.readSInt32();
+                case 2 -> y = input.readSInt32();
+                case 3 -> z = input.readSInt32();
+                default -> input.skipField(tag);
+            }
+        }
+        return new Location(x, y, z);
+    }
+
+    private static Status readStatus(CodedInputStream input) throws IOException {
+        boolean online = false;
+        int batteryLevel = 0;
+        int signalStrength = 0;
+        Instant lastHeartbeat = null;
+        int tag;
+        while ((tag = input.readTag()) != 0) {
+            switch (WireFormat.getTagFieldNumber(tag)) {
+                case 1 -> online = input.readBool();
+                case 2 -> batteryLevel = input.readInt32();
+                case 3 -> signalStrength = input.readInt32();
+                case 4 -> lastHeartbeat = readMessage(input, DeviceBatchProtobufDecoder::readTimestamp);
+                default -> input.skipField(tag);
+            }
+        }
+        return new Status(online, batteryLevel, signalStrength, lastHeartbeat);
+    }
+
+    /**
+     * {@code google.protobuf.Timestamp}: seconds and nanos since the epoch.
+     */
+    private static Instant readTimestamp(CodedInputStream input) throws IOException {
+        long seconds = 0;
+        int nanos = 0;
+        int tag;
+        while ((tag = input.readTag()) != 0) {
+            switch (WireFormat.getTagFieldNumber(tag)) {
+                case 1 -> seconds = input.readInt64();
+                case 2 -> nanos = input.readInt32();
+                default -> input.skipField(tag);
+            }
+        }
+        return Instant.ofEpochSecond(seconds, nanos);
+    }
+
+    private static <T> T readMessage(CodedInputStream input, MessageReader<T> reader) throws IOException {
+        int limit = input.pushLimit(input.readRawVarint32());
+        T message = reader.read(input);
+        input.checkLastTagWas(0);
+        input.popLimit(limit);
+        return message;
+    }
+
+    private static Type toType(int number) {
+        return number > 0 && number < TYPES.length ? TYPES[number] : null;
+    }
+
+    @FunctionalInterface
+    private interface MessageReader<T> {
+        T read(CodedInputStream input) throws IOException;
+    }
+}
@@ -0,0 +1,67 @@
+package com.iot.controller.codec;
+
+import com.iot.contracts.domain.DeviceData;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * Devices decoded from a JSON array together with the exact bytes of each array element.
+ * {@code DevicePublisher} forwards those bytes instead of serializing the devices again.
+ * The list is read-only; any derived list (a filtered subset, a stream chunk) is a plain list and
+ * is serialized as usual, except for lists built with {@link #concat}.
+ */
+public final class RawJsonDeviceBatch extends AbstractList<DeviceData> implements RandomAccess {
+
+    private final List<DeviceData> devices;
+    private final List<byte[]> json;
+
+    RawJsonDeviceBatch(List<DeviceData> devices, List<byte[]> json) {
+        this.devices = devices;
+        this.json = json;
+    }
+
+    /**
+     * Concatenates batches, keeping the raw JSON of those that have it. Devices of the other batches have no raw
+     * JSON ({@code null}) and are serialized by the publisher. Without any raw batch the result is a plain list.
+     */
+    public static List<DeviceData> concat(List<List<DeviceData>> batches) {
+        int size = 0;
+        boolean raw = false;
+        for (List<DeviceData> batch : batches) {
+            size += batch.size();
+            raw |= batch instanceof RawJsonDeviceBatch;
+        }
+        List<DeviceData> devices = new ArrayList<>(size);
+        List<byte[]> json = raw ? new ArrayList<>(size) : null;
+        for (List<DeviceData> batch : batches) {
+            devices.addAll(batch);
+            if (json != null) {
+                json.addAll(batch instanceof RawJsonDeviceBatch rawBatch
+                        ? rawBatch.json
+                        : Collections.nCopies(batch.size(), null));
+            }
+        }
+        return raw ? new RawJsonDeviceBatch(devices, json) : devices;
+    }
+
+    @Override
+    public DeviceData get(int index) {
+        return devices.get(index);
+    }
+
+    @Override
+    public int size() {
+        return devices.size();
+    }
+
+    /**
+     * JSON object of each device, in list order, as received.
+     */
+    public List<byte[]> json() {
+        return json;
+    }
+}
@@ -0,0 +1,66 @@
+package com.iot.controller.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.iot.controller.codec.DeviceBatchJsonDecoder;
+import com.iot.controller.codec.DeviceBatchProtobufDecoder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerCodecConfigurer;
+import org.springframework.http.codec.cbor.Jackson2CborDecoder;
+import org.springframework.http.codec.json.Jackson2SmileDecoder;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.util.MimeType;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.reactive.config.WebFluxConfigurer;
+
+/**
+ * Binary request bodies for {@code /api/ingest}, negotiated by {@code Content-Type}:
+ * {@code application/cbor}, {@code application/x-jackson-smile} and {@code application/x-protobuf}.
+ * The Jackson formats reuse the application's ObjectMapper configuration, so they bind exactly like JSON.
+ * Only decoders are added: responses are small and stay JSON regardless of the request format.
+ * <p>
+ * With {@code app.rabbitmq.publish.raw-passthrough} JSON batches are decoded by {@link DeviceBatchJsonDecoder},
+ * which keeps the raw bytes of every device for the publisher.
+ */
+@Configuration
+public class CodecConfig implements WebFluxConfigurer {
+
+    private static final MimeType SMILE = new MimeType("application", "x-jackson-smile");
+
+    private final Jackson2ObjectMapperBuilder objectMapperBuilder;
+    private final ObjectMapper objectMapper;
+    private final int maxInMemorySize;
+    private final boolean rawPassthrough;
+
+    public CodecConfig(Jackson2ObjectMapperBuilder objectMapperBuilder,
+                       ObjectMapper objectMapper,
+                       @Value("${spring.codec.max-in-memory-size}") DataSize maxInMemorySize,
+                       @Value("${app.rabbitmq.publish.raw-passthrough}") boolean rawPassthrough) {
+        this.objectMapperBuilder = objectMapperBuilder;
+        this.objectMapper = objectMapper;
+        this.maxInMemorySize = (int) maxInMemorySize.toBytes();
+        this.rawPassthrough = rawPassthrough;
+    }
+
+    @Override
+    public void configureHttpMessageCodecs(ServerCodecConfigurer configurer) {
+        if (rawPassthrough) {
+            configurer.defaultCodecs().jackson2JsonDecoder(new DeviceBatchJsonDecoder(objectMapper));
+        }
+
+        ObjectMapper cborMapper = objectMapperBuilder.createXmlMapper(false).factory(new CBORFactory()).build();
+        ObjectMapper smileMapper = objectMapperBuilder.createXmlMapper(false).factory(new SmileFactory()).build();
+
+        // Smile is registered by default with a plain mapper; CBOR and protobuf are not
+        // the single-argument constructors fall back to the JSON media types, so pass them explicitly
+        configurer.defaultCodecs().jackson2SmileDecoder(new Jackson2SmileDecoder(smileMapper, SMILE));
+
+        Jackson2CborDecoder cborDecoder = new Jackson2CborDecoder(cborMapper, MediaType.APPLICATION_CBOR);
+        cborDecoder.setMaxInMemorySize(maxInMemorySize);
+        configurer.customCodecs().register(cborDecoder);
+        configurer.customCodecs().register(new DeviceBatchProtobufDecoder(maxInMemorySize));
+    }
+}
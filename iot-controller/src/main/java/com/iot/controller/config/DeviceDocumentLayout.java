@@ -0,0 +1,73 @@
+package com.iot.controller.config;
+
+import com.iot.controller.domain.DeviceEntity;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.mapping.event.AbstractMongoEventListener;
+import org.springframework.data.mongodb.core.mapping.event.AfterLoadEvent;
+import org.springframework.data.mongodb.core.mapping.event.BeforeSaveEvent;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Stored shape of {@link DeviceEntity} documents.
+ * <p>
+ * Only a time-series collection needs the static fields grouped into the {@code meta} subdocument, its metaField.
+ * Otherwise they are stored top-level ({@code deviceId}, {@code name}, ...) as before time-series support, so
+ * existing {@code devices} documents, their queries and indexes keep working. Loaded documents of either shape
+ * are read into {@link DeviceEntity#meta()}.
+ */
+@Component
+public class DeviceDocumentLayout extends AbstractMongoEventListener<DeviceEntity> {
+
+    static final String META = "meta";
+    private static final List<String> META_FIELDS =
+            List.of("deviceId", "name", "manufacturer", "type", "capabilities", "metaVersion");
+
+    private final boolean grouped;
+
+    public DeviceDocumentLayout(@Value("${app.mongodb.timeseries.enabled}") boolean timeSeriesEnabled) {
+        this.grouped = timeSeriesEnabled;
+    }
+
+    @Override
+    public void onBeforeSave(BeforeSaveEvent<DeviceEntity> event) {
+        if (event.getDocument() != null) {
+            toStored(event.getDocument());
+        }
+    }
+
+    @Override
+    public void onAfterLoad(AfterLoadEvent<DeviceEntity> event) {
+        if (event.getDocument() != null) {
+            toMapped(event.getDocument());
+        }
+    }
+
+    /**
+     * Rewrites a converted {@link DeviceEntity} document in place into the stored shape; used by writes that
+     * bypass the template's save events, such as the bulk insert.
+     */
+    public Document toStored(Document document) {
+        if (!grouped && document.get(META) instanceof Document meta) {
+            document.remove(META);
+            document.putAll(meta);
+        }
+        return document;
+    }
+
+    static Document toMapped(Document document) {
+        if (document.containsKey(META) || !document.containsKey("deviceId")) {
+            return document;
+        }
+        Document meta = new Document();
+        for (String field : META_FIELDS) {
+            if (document.containsKey(field)) {
+                meta.put(field, document.remove(field));
+            }
+        }
+        document.put(META, meta);
+        return document;
+    }
+}
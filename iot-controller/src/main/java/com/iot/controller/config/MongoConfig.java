@@ -1,9 +1,89 @@
 package com.iot.controller.config;
 
+import com.iot.controller.domain.DeviceEntity;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.ReactiveMongoDatabaseFactory;
+import org.springframework.data.mongodb.ReactiveMongoTransactionManager;
+import org.springframework.data.mongodb.core.CollectionOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.timeseries.Granularity;
 import org.springframework.data.mongodb.repository.config.EnableReactiveMongoRepositories;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
 
 @Configuration
 @EnableReactiveMongoRepositories(basePackages = "com.iot.controller.repository")
+@Slf4j
 public class MongoConfig {
+
+    /**
+     * Multi-document transactions for the outbox write; MongoDB only supports them on a replica set.
+     */
+    @Bean
+    @ConditionalOnProperty(name = "app.ingest.outbox.transactional", havingValue = "true")
+    public ReactiveMongoTransactionManager transactionManager(ReactiveMongoDatabaseFactory databaseFactory) {
+        return new ReactiveMongoTransactionManager(databaseFactory);
+    }
+
+    /**
+     * Creates the device history collection as a time-series collection before the application takes traffic.
+     * Mongo would otherwise create a plain collection on the first insert, and an existing collection cannot be
+     * converted in place, so an existing non time-series collection is left untouched with a warning.
+     */
+    @Bean
+    @ConditionalOnProperty(name = "app.mongodb.timeseries.enabled", havingValue = "true")
+    public InitializingBean deviceTimeSeriesBootstrap(
+            ReactiveMongoTemplate template,
+            @Value("${app.mongodb.timeseries.granularity}") Granularity granularity,
+            @Value("${app.mongodb.timeseries.expire-after}") Duration expireAfter,
+            @Value("${app.mongodb.timeseries.bootstrap-timeout}") Duration bootstrapTimeout) {
+        return () -> createDeviceTimeSeries(template, granularity, expireAfter).block(bootstrapTimeout);
+    }
+
+    static Mono<Void> createDeviceTimeSeries(ReactiveMongoTemplate template, Granularity granularity, Duration expireAfter) {
+        String collectionName = template.getCollectionName(DeviceEntity.class);
+        CollectionOptions options = CollectionOptions.timeSeries("timestamp", timeSeries -> timeSeries
+                .metaField("meta")
+                .granularity(granularity)
+                .expireAfter(expireAfter));
+
+        Mono<Document> existing = template.getMongoDatabase()
+                .flatMap(database -> Flux.from(database.listCollections()
+                                .filter(new Document("name", collectionName)))
+                        .next());
+
+        return existing
+                .doOnNext(info -> {
+                    if ("timeseries".equals(info.getString("type"))) {
+                        log.info("Time-series collection '{}' already exists", collectionName);
+                    } else {
+                        log.warn("Collection '{}' exists as a regular collection; time-series storage is not applied. "
+                                + "Rename or drop it to let the controller recreate it as time-series.", collectionName);
+                    }
+                })
+                .hasElement()
+                .flatMap(exists -> exists
+                        ? Mono.empty()
+                        : template.createCollection(collectionName, options)
+                                .doOnSuccess(created -> log.info(
+                                        "Created time-series collection '{}': granularity={}, expireAfter={}",
+                                        collectionName, granularity, expireAfter))
+                                .then())
+                .then(template.indexOps(collectionName)
+                        .createIndex(new Index()
+                                .on("meta.deviceId", Sort.Direction.ASC)
+                                .on("timestamp", Sort.Direction.DESC)
+                                .named("device_timestamp")))
+                .then();
+    }
 }
@@ -1,7 +1,10 @@
 package com.iot.controller.config;
 
+import com.iot.controller.service.RabbitSenderPool;
 import com.rabbitmq.client.Connection;
 import com.rabbitmq.client.ConnectionFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.amqp.core.DirectExchange;
 import org.springframework.amqp.core.FanoutExchange;
 import org.springframework.amqp.support.converter.Jackson2JsonMessageConverter;
 import org.springframework.amqp.support.converter.MessageConverter;
@@ -10,16 +13,25 @@ import org.springframework.boot.autoconfigure.amqp.RabbitProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import reactor.core.publisher.Mono;
+import reactor.rabbitmq.ChannelPool;
+import reactor.rabbitmq.ChannelPoolFactory;
+import reactor.rabbitmq.ChannelPoolOptions;
 import reactor.rabbitmq.RabbitFlux;
 import reactor.rabbitmq.Sender;
 import reactor.rabbitmq.SenderOptions;
 
+import java.util.ArrayList;
+import java.util.List;
+
 @Configuration
 public class RabbitMQConfig {
 
     @Value("${app.rabbitmq.exchange.data}")
     private String dataExchangeName;
 
+    @Value("${app.rabbitmq.exchange.partitioned}")
+    private String partitionedExchangeName;
+
     // ==================== Infrastructure (Auto-created by Spring AMQP) ====================
 
     @Bean
@@ -27,6 +39,11 @@ public class RabbitMQConfig {
         return new FanoutExchange(dataExchangeName);
     }
 
+    @Bean
+    public DirectExchange partitionedDataExchange() {
+        return new DirectExchange(partitionedExchangeName);
+    }
+
     @Bean
     public MessageConverter jsonMessageConverter() {
         return new Jackson2JsonMessageConverter();
@@ -45,10 +62,19 @@ public class RabbitMQConfig {
     }
 
     @Bean
-    public Sender sender(ConnectionFactory connectionFactory) {
-        Mono<Connection> connectionMono = Mono.fromCallable(() -> connectionFactory.newConnection("controller-sender")).cache();
-        SenderOptions senderOptions = new SenderOptions()
-                .connectionMono(connectionMono);
-        return RabbitFlux.createSender(senderOptions);
+    public RabbitSenderPool senderPool(ConnectionFactory connectionFactory,
+                                       MeterRegistry meterRegistry,
+                                       @Value("${app.rabbitmq.sender.connections}") int connections,
+                                       @Value("${app.rabbitmq.sender.channels-per-connection}") int channelsPerConnection) {
+        List<Sender> senders = new ArrayList<>(connections);
+        List<ChannelPool> channelPools = new ArrayList<>(connections);
+        for (int i = 0; i < connections; i++) {
+            String connectionName = "controller-sender-" + i;
+            Mono<Connection> connectionMono = Mono.fromCallable(() -> connectionFactory.newConnection(connectionName)).cache();
+            senders.add(RabbitFlux.createSender(new SenderOptions().connectionMono(connectionMono)));
+            channelPools.add(ChannelPoolFactory.createChannelPool(connectionMono,
+                    new ChannelPoolOptions().maxCacheSize(channelsPerConnection)));
+        }
+        return new RabbitSenderPool(senders, channelPools, meterRegistry);
     }
 }
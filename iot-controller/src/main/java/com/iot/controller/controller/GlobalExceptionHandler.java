@@ -1,7 +1,11 @@
 package com.iot.controller.controller;
 
+import com.iot.controller.service.IngestionOverloadedException;
+import com.iot.controller.validation.DeviceValidationException;
+import com.iot.controller.validation.DeviceViolation;
 import jakarta.validation.ConstraintViolation;
 import jakarta.validation.ConstraintViolationException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ExceptionHandler;
@@ -22,6 +26,34 @@ public class GlobalExceptionHandler {
                 .body(Map.of("error", ex.getMessage())));
     }
 
+    @ExceptionHandler(IngestionOverloadedException.class)
+    public Mono<ResponseEntity<Map<String, String>>> handleOverloaded(IngestionOverloadedException ex) {
+        long retryAfterSeconds = Math.max(1, (ex.getRetryAfter().toMillis() + 999) / 1000);
+        return Mono.just(ResponseEntity
+                .status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds))
+                .body(Map.of("error", ex.getMessage())));
+    }
+
+    @ExceptionHandler(DeviceValidationException.class)
+    public Mono<ResponseEntity<Map<String, Object>>> handleDeviceValidation(DeviceValidationException ex) {
+        Map<String, String> details = ex.getViolations().stream()
+                .collect(Collectors.toMap(
+                        DeviceViolation::field,
+                        DeviceViolation::message,
+                        (existing, replacement) -> existing
+                ));
+
+        Map<String, Object> body = new HashMap<>();
+        body.put("error", "Validation failed");
+        body.put("details", details);
+        body.put("errors", ex.getViolations());
+
+        return Mono.just(ResponseEntity
+                .status(HttpStatus.BAD_REQUEST)
+                .body(body));
+    }
+
     @ExceptionHandler(ConstraintViolationException.class)
     public Mono<ResponseEntity<Map<String, Object>>> handleConstraintViolation(ConstraintViolationException ex) {
         Map<String, String> details = ex.getConstraintViolations().stream()
@@ -1,14 +1,25 @@
 package com.iot.controller.controller;
 
+import com.iot.controller.domain.DeviceLatestEntity;
+import com.iot.controller.service.AdaptiveConcurrencyLimiter;
+import com.iot.controller.service.DeviceRegistry;
+import com.iot.controller.service.DeviceSpatialIndex;
+import com.iot.controller.service.IngestReport;
 import com.iot.controller.service.IngestionService;
+import com.iot.controller.service.LatestStateService;
+import com.iot.controller.service.SpatialMatch;
 import com.iot.contracts.domain.DeviceData;
+import com.iot.contracts.domain.DeviceMetadata;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 import java.util.List;
@@ -19,12 +30,102 @@ import java.util.List;
 @RequiredArgsConstructor
 public class IngestionController {
 
+    public static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+
+    private static final int MAX_LOOKUP_IDS = 1000;
+    private static final int MAX_REGION_RESULTS = 10000;
+    private static final int MAX_NEAREST = 1000;
+    // bounds of Location.x / Location.y
+    private static final int MAX_COORDINATE = 10000;
+
     private final IngestionService ingestionService;
+    private final LatestStateService latestStateService;
+    private final AdaptiveConcurrencyLimiter limiter;
+    private final DeviceRegistry registry;
+    private final DeviceSpatialIndex spatialIndex;
 
     @PostMapping
     @ResponseStatus(HttpStatus.ACCEPTED)
-    public Mono<Void> ingestBatch(@RequestBody List<DeviceData> deviceDataList) {
+    public Mono<IngestReport> ingestBatch(@RequestHeader(name = IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey,
+                                  @RequestBody List<DeviceData> deviceDataList) {
         log.info("Received ingestion batch: size={}", deviceDataList.size());
-        return ingestionService.ingestBatch(deviceDataList);
+        return limiter.execute(() -> ingestionService.ingestBatch(idempotencyKey, deviceDataList), true);
+    }
+
+    @PostMapping(consumes = MediaType.APPLICATION_NDJSON_VALUE)
+    @ResponseStatus(HttpStatus.ACCEPTED)
+    public Mono<IngestReport> ingestStream(@RequestBody Flux<DeviceData> deviceDataStream) {
+        log.info("Received ingestion stream");
+        return limiter.execute(() -> ingestionService.ingestStream(deviceDataStream), false);
+    }
+
+    @GetMapping("/devices/{id}/latest")
+    public Mono<ResponseEntity<DeviceLatestEntity>> getLatest(@PathVariable("id") long id) {
+        return latestStateService.find(id)
+                .map(ResponseEntity::ok)
+                .defaultIfEmpty(ResponseEntity.notFound().build());
+    }
+
+    @GetMapping("/devices/latest")
+    public Flux<DeviceLatestEntity> getLatestBatch(@RequestParam("ids") List<Long> ids) {
+        if (ids.size() > MAX_LOOKUP_IDS) {
+            throw new IllegalArgumentException("At most " + MAX_LOOKUP_IDS + " ids per request");
+        }
+        return latestStateService.findAll(ids);
+    }
+
+    @GetMapping("/devices/{id}/metadata")
+    public Mono<ResponseEntity<DeviceMetadata>> getMetadata(@PathVariable("id") long id) {
+        return registry.find(id)
+                .map(ResponseEntity::ok)
+                .defaultIfEmpty(ResponseEntity.notFound().build());
+    }
+
+    @GetMapping("/devices/metadata")
+    public Flux<DeviceMetadata> getMetadataBatch(@RequestParam("ids") List<Long> ids) {
+        if (ids.size() > MAX_LOOKUP_IDS) {
+            throw new IllegalArgumentException("At most " + MAX_LOOKUP_IDS + " ids per request");
+        }
+        return registry.findAll(ids);
+    }
+
+    @GetMapping("/devices/spatial/region")
+    public Flux<SpatialMatch> getRegion(@RequestParam("z") int z,
+                                        @RequestParam("minX") int minX,
+                                        @RequestParam("minY") int minY,
+                                        @RequestParam("maxX") int maxX,
+                                        @RequestParam("maxY") int maxY,
+                                        @RequestParam(name = "limit", defaultValue = "1000") int limit) {
+        if (minX > maxX || minY > maxY) {
+            throw new IllegalArgumentException("minX/minY must not be greater than maxX/maxY");
+        }
+        if (limit < 1 || limit > MAX_REGION_RESULTS) {
+            throw new IllegalArgumentException("limit must be between 1 and " + MAX_REGION_RESULTS);
+        }
+        return Flux.defer(() -> Flux.fromIterable(spatialIndex.region(z,
+                clampCoordinate(minX), clampCoordinate(minY), clampCoordinate(maxX), clampCoordinate(maxY), limit)));
+    }
+
+    @GetMapping("/devices/spatial/nearest")
+    public Flux<SpatialMatch> getNearest(@RequestParam("z") int z,
+                                         @RequestParam("x") int x,
+                                         @RequestParam("y") int y,
+                                         @RequestParam(name = "k", defaultValue = "10") int k,
+                                         @RequestParam(name = "maxDistance", required = false) Double maxDistance) {
+        if (Math.abs(x) > MAX_COORDINATE || Math.abs(y) > MAX_COORDINATE) {
+            throw new IllegalArgumentException("x and y must be between -" + MAX_COORDINATE + " and " + MAX_COORDINATE);
+        }
+        if (k < 1 || k > MAX_NEAREST) {
+            throw new IllegalArgumentException("k must be between 1 and " + MAX_NEAREST);
+        }
+        if (maxDistance != null && maxDistance < 0) {
+            throw new IllegalArgumentException("maxDistance must not be negative");
+        }
+        double distanceLimit = maxDistance != null ? maxDistance : Double.POSITIVE_INFINITY;
+        return Flux.defer(() -> Flux.fromIterable(spatialIndex.nearest(z, x, y, k, distanceLimit)));
+    }
+
+    private static int clampCoordinate(int coordinate) {
+        return Math.clamp(coordinate, -MAX_COORDINATE, MAX_COORDINATE);
     }
 }
@@ -0,0 +1,173 @@
+package com.iot.controller.controller;
+
+import com.iot.controller.service.IngestReport;
+import com.iot.controller.service.IngestionOverloadedException;
+import com.iot.controller.service.IngestionService;
+import com.iot.controller.validation.DeviceValidationException;
+import com.iot.contracts.domain.DeviceData;
+import com.iot.contracts.domain.IngestAck;
+
+import com.mongodb.MongoNodeIsRecoveringException;
+import com.mongodb.MongoNotPrimaryException;
+import com.mongodb.MongoSocketException;
+import com.mongodb.MongoTimeoutException;
+import com.rabbitmq.client.ShutdownSignalException;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import lombok.extern.slf4j.Slf4j;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.messaging.handler.annotation.MessageMapping;
+import org.springframework.stereotype.Controller;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * RSocket request-channel ingestion: the producer streams {@link DeviceData} and gets an {@link IngestAck} back
+ * for every stored batch.
+ * <p>
+ * Demand on the channel follows the storage rate. Up to {@code app.ingest.rsocket.max-in-flight-batches}
+ * batches of {@code batch-size} are stored at once, and devices are requested only a few batches ahead of them
+ * (the fair {@code bufferTimeout} prefetches four). More are requested only as batches finish, so a producer that
+ * outpaces Mongo/RabbitMQ simply stops getting REQUEST_N frames.
+ * A batch that fails transiently downstream (Mongo/RabbitMQ connectivity, load shedding by the limiter or the
+ * journal) is retried with backoff, up to {@code retry.max-attempts}, and still holds the channel's demand
+ * meanwhile, so the producer waits for it instead of retrying on its own. A batch that still fails, or fails
+ * for any other reason, is acknowledged with all its devices rejected. Neither rejected nor failed batches
+ * end the channel.
+ */
+@Controller
+@Slf4j
+public class IngestionRSocketController {
+
+    private final IngestionService ingestionService;
+
+    private final int batchSize;
+    private final Duration batchTimeout;
+    private final int maxInFlightBatches;
+    private final Duration retryMinBackoff;
+    private final Duration retryMaxBackoff;
+    private final long retryMaxAttempts;
+
+    private final AtomicInteger channels = new AtomicInteger();
+    private final Counter devicesReceived;
+    private final Counter retries;
+    private final Counter failedDevices;
+
+    public IngestionRSocketController(IngestionService ingestionService,
+                                      MeterRegistry meterRegistry,
+                                      @Value("${app.ingest.rsocket.batch-size}") int batchSize,
+                                      @Value("${app.ingest.rsocket.batch-timeout}") Duration batchTimeout,
+                                      @Value("${app.ingest.rsocket.max-in-flight-batches}") int maxInFlightBatches,
+                                      @Value("${app.ingest.rsocket.retry.min-backoff}") Duration retryMinBackoff,
+                                      @Value("${app.ingest.rsocket.retry.max-backoff}") Duration retryMaxBackoff,
+                                      @Value("${app.ingest.rsocket.retry.max-attempts}") long retryMaxAttempts) {
+        this.ingestionService = ingestionService;
+        this.batchSize = batchSize;
+        this.batchTimeout = batchTimeout;
+        this.maxInFlightBatches = maxInFlightBatches;
+        this.retryMinBackoff = retryMinBackoff;
+        this.retryMaxBackoff = retryMaxBackoff;
+        this.retryMaxAttempts = retryMaxAttempts;
+
+        Gauge.builder("iot.ingest.rsocket.channels", channels, AtomicInteger::get)
+                .description("Open RSocket ingest channels")
+                .register(meterRegistry);
+        this.devicesReceived = Counter.builder("iot.ingest.rsocket.devices")
+                .description("Devices received over RSocket ingest channels")
+                .register(meterRegistry);
+        this.retries = Counter.builder("iot.ingest.rsocket.retries")
+                .description("Retries of RSocket batches that failed downstream")
+                .register(meterRegistry);
+        this.failedDevices = Counter.builder("iot.ingest.rsocket.failed")
+                .description("Devices of RSocket batches acknowledged as rejected after failing downstream")
+                .register(meterRegistry);
+    }
+
+    @MessageMapping(IngestAck.ROUTE)
+    public Flux<IngestAck> ingest(Flux<DeviceData> devices) {
+        return Flux.defer(() -> {
+                    channels.incrementAndGet();
+                    AtomicLong acknowledged = new AtomicLong();
+                    return devices
+                            .doOnNext(device -> devicesReceived.increment())
+                            .bufferTimeout(batchSize, batchTimeout, true)
+                            .flatMapSequential(this::store, maxInFlightBatches, 1)
+                            .map(stored -> new IngestAck(acknowledged.addAndGet(stored.devices()),
+                                    stored.report().accepted(), stored.report().rejected()));
+                })
+                .doOnSubscribe(subscription -> log.info("RSocket ingest channel opened"))
+                .doOnError(error -> log.warn("RSocket ingest channel failed: {}", error.getMessage()))
+                .doFinally(signal -> {
+                    channels.decrementAndGet();
+                    log.info("RSocket ingest channel closed: {}", signal);
+                });
+    }
+
+    private Mono<Stored> store(List<DeviceData> batch) {
+        return Mono.defer(() -> ingestionService.ingestBatch(batch))
+                .onErrorResume(DeviceValidationException.class,
+                        error -> Mono.just(new IngestReport(0, batch.size(), error.getViolations())))
+                .retryWhen(Retry.backoff(retryMaxAttempts, retryMinBackoff)
+                        .maxBackoff(retryMaxBackoff)
+                        .filter(IngestionRSocketController::isTransient)
+                        .doBeforeRetry(signal -> {
+                            retries.increment();
+                            log.warn("RSocket batch of {} device(s) failed, retrying: {}",
+                                    batch.size(), signal.failure().getMessage());
+                        })
+                        .onRetryExhaustedThrow((spec, signal) -> signal.failure()))
+                .onErrorResume(error -> {
+                    failedDevices.increment(batch.size());
+                    log.error("RSocket batch of {} device(s) failed, acknowledging it as rejected: {}",
+                            batch.size(), error.toString());
+                    return Mono.just(new IngestReport(0, batch.size(), List.of()));
+                })
+                .map(report -> new Stored(batch.size(), report));
+    }
+
+    /**
+     * Whether a failure is worth retrying as is: lost Mongo/RabbitMQ connectivity, timeouts and load shedding.
+     * Anything else (a rejected bulk write, a bug, an unserializable device, a failed journal fsync) would fail the
+     * same way again, so other {@code IOException}s are deliberately not matched.
+     */
+    static boolean isTransient(Throwable error) {
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (cause instanceof IngestionOverloadedException
+                    || cause instanceof MongoSocketException
+                    || cause instanceof MongoTimeoutException
+                    || cause instanceof MongoNotPrimaryException
+                    || cause instanceof MongoNodeIsRecoveringException
+                    || cause instanceof TransientDataAccessException
+                    || cause instanceof DataAccessResourceFailureException
+                    || cause instanceof ShutdownSignalException
+                    || cause instanceof TimeoutException
+                    || cause instanceof SocketException
+                    || cause instanceof SocketTimeoutException) {
+                return true;
+            }
+            if (cause.getCause() == cause) {
+                break;
+            }
+        }
+        return false;
+    }
+
+    private record Stored(int devices, IngestReport report) {
+    }
+}
@@ -0,0 +1,17 @@
+package com.iot.controller.domain;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+
+/**
+ * Per compaction tier: everything older than {@code compactedUntil} has been rolled up, so source documents
+ * before it can be deleted.
+ */
+@Document(collection = "${app.mongodb.collection.compaction-checkpoint}")
+public record CompactionCheckpointEntity(
+                @Id String id,
+                Instant compactedUntil,
+                Instant updatedAt) {
+}
@@ -2,24 +2,23 @@ package com.iot.controller.domain;
 
 import com.iot.contracts.domain.components.Location;
 import com.iot.contracts.domain.components.Status;
-import com.iot.contracts.domain.components.Type;
 
 import org.springframework.data.annotation.Id;
 import org.springframework.data.mongodb.core.mapping.Document;
 
+import jakarta.validation.Valid;
 import jakarta.validation.constraints.NotNull;
 
 import java.time.Instant;
-import java.util.List;
 
+/**
+ * One ingested reading. The static fields are grouped into {@link DeviceMeta}; whether they are also stored as a
+ * {@code meta} subdocument depends on the collection, see {@code DeviceDocumentLayout}.
+ */
 @Document(collection = "${app.mongodb.collection.devices}")
 public record DeviceEntity(
                 @Id String id,
-                @NotNull Long deviceId,
-                String name,
-                String manufacturer,
-                Type type,
-                List<String> capabilities,
+                @Valid @NotNull DeviceMeta meta,
                 Location location,
                 Status status,
                 Instant timestamp) {
@@ -0,0 +1,26 @@
+package com.iot.controller.domain;
+
+import com.iot.contracts.domain.components.Location;
+import com.iot.contracts.domain.components.Status;
+import com.iot.contracts.domain.components.Type;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Most recent reading per device, keyed by device id and overwritten on every ingest.
+ */
+@Document(collection = "${app.mongodb.collection.device-latest}")
+public record DeviceLatestEntity(
+                @Id Long deviceId,
+                String name,
+                String manufacturer,
+                Type type,
+                List<String> capabilities,
+                Location location,
+                Status status,
+                Instant updatedAt) {
+}
@@ -0,0 +1,30 @@
+package com.iot.controller.domain;
+
+import com.iot.contracts.domain.components.Type;
+
+import jakarta.validation.constraints.NotNull;
+
+import java.util.List;
+
+/**
+ * Static per-device fields of a telemetry document, grouped so they can serve as the time-series metaField;
+ * in a regular collection they are stored top-level.
+ * With the device registry enabled only {@code deviceId} and {@code metaVersion} are stored; the static fields
+ * of that version are kept once in {@code device_registry}.
+ */
+public record DeviceMeta(
+                @NotNull Long deviceId,
+                String name,
+                String manufacturer,
+                Type type,
+                List<String> capabilities,
+                Long metaVersion) {
+
+    public DeviceMeta(Long deviceId, String name, String manufacturer, Type type, List<String> capabilities) {
+        this(deviceId, name, manufacturer, type, capabilities, null);
+    }
+
+    public static DeviceMeta versioned(Long deviceId, long metaVersion) {
+        return new DeviceMeta(deviceId, null, null, null, null, metaVersion);
+    }
+}
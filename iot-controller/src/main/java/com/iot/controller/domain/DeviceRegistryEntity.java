@@ -0,0 +1,28 @@
+package com.iot.controller.domain;
+
+import com.iot.contracts.domain.DeviceMetadata;
+import com.iot.contracts.domain.components.Type;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Static fields of one device, stored once instead of in every reading; {@code version} grows on every change.
+ */
+@Document(collection = "${app.mongodb.collection.device-registry}")
+public record DeviceRegistryEntity(
+                @Id Long deviceId,
+                long version,
+                String name,
+                String manufacturer,
+                Type type,
+                List<String> capabilities,
+                Instant updatedAt) {
+
+    public DeviceMetadata toMetadata() {
+        return new DeviceMetadata(deviceId, version, name, manufacturer, type, capabilities);
+    }
+}
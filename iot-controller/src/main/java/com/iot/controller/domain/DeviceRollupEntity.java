@@ -0,0 +1,32 @@
+package com.iot.controller.domain;
+
+import com.iot.contracts.domain.components.Location;
+
+import org.springframework.data.annotation.Id;
+
+import java.time.Instant;
+
+/**
+ * Summary of one device's readings within one time bucket starting at {@code bucket}. The same shape is stored
+ * per minute in {@code app.mongodb.collection.history-minute} and per hour in {@code history-hour}; the id is
+ * derived from device and bucket, so rewriting a bucket replaces it.
+ */
+public record DeviceRollupEntity(
+                @Id String id,
+                long deviceId,
+                Instant bucket,
+                long samples,
+                int batteryMin,
+                int batteryMax,
+                double batteryAvg,
+                int signalMin,
+                int signalMax,
+                double signalAvg,
+                double onlineRatio,
+                Location lastLocation,
+                Instant lastTimestamp) {
+
+    public static String id(long deviceId, Instant bucket) {
+        return deviceId + ":" + bucket.getEpochSecond();
+    }
+}
@@ -0,0 +1,14 @@
+package com.iot.controller.domain;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+
+@Document(collection = "${app.mongodb.collection.outbox-checkpoint}")
+public record OutboxCheckpointEntity(
+                @Id String id,
+                String lastRelayedId,
+                long relayedEntries,
+                Instant updatedAt) {
+}
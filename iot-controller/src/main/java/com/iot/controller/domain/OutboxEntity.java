@@ -0,0 +1,16 @@
+package com.iot.controller.domain;
+
+import com.iot.contracts.domain.DeviceData;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+import java.util.List;
+
+@Document(collection = "${app.mongodb.collection.outbox}")
+public record OutboxEntity(
+                @Id String id,
+                List<DeviceData> devices,
+                Instant createdAt) {
+}
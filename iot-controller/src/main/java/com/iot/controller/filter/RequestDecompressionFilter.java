@@ -0,0 +1,209 @@
+package com.iot.controller.filter;
+
+import com.iot.controller.filter.StreamingInflater.Format;
+import com.iot.controller.filter.StreamingInflater.InflateLimitException;
+import com.iot.controller.filter.StreamingInflater.MalformedInputException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpRequestDecorator;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Decompresses {@code Content-Encoding: gzip} and {@code deflate} request bodies on {@code /api/ingest/**}.
+ * <p>
+ * The body is inflated chunk by chunk as it arrives and handed to the regular codecs, so JSON, NDJSON and the
+ * binary formats work unchanged and the compressed body is never buffered as a whole. A body that inflates beyond
+ * {@code app.ingest.compression.max-inflated-size}, or by more than {@code max-ratio} once past
+ * {@code ratio-check-after}, is rejected with 413 before the next chunk is produced.
+ */
+@Component
+@Slf4j
+public class RequestDecompressionFilter implements WebFilter {
+
+    private static final String PATH_PREFIX = "/api/ingest";
+
+    private final boolean enabled;
+    private final long maxInflatedBytes;
+    private final double maxRatio;
+    private final long ratioCheckAfterBytes;
+
+    private final Map<Format, Counter> compressedBytes;
+    private final Map<Format, Counter> inflatedBytes;
+    private final Map<Format, DistributionSummary> ratio;
+    private final Counter rejectedLimit;
+    private final Counter rejectedMalformed;
+    private final Counter rejectedUnsupported;
+
+    public RequestDecompressionFilter(MeterRegistry meterRegistry,
+                                      @Value("${app.ingest.compression.enabled}") boolean enabled,
+                                      @Value("${app.ingest.compression.max-inflated-size}") DataSize maxInflatedSize,
+                                      @Value("${app.ingest.compression.max-ratio}") double maxRatio,
+                                      @Value("${app.ingest.compression.ratio-check-after}") DataSize ratioCheckAfter) {
+        this.enabled = enabled;
+        this.maxInflatedBytes = maxInflatedSize.toBytes();
+        this.maxRatio = maxRatio;
+        this.ratioCheckAfterBytes = ratioCheckAfter.toBytes();
+
+        Map<Format, Counter> compressed = new EnumMap<>(Format.class);
+        Map<Format, Counter> inflated = new EnumMap<>(Format.class);
+        Map<Format, DistributionSummary> ratios = new EnumMap<>(Format.class);
+        for (Format format : Format.values()) {
+            String encoding = format.name().toLowerCase(Locale.ROOT);
+            compressed.put(format, Counter.builder("iot.ingest.request.compressed.bytes")
+                    .description("Compressed request body bytes received on the wire")
+                    .baseUnit("bytes")
+                    .tag("encoding", encoding)
+                    .register(meterRegistry));
+            inflated.put(format, Counter.builder("iot.ingest.request.inflated.bytes")
+                    .description("Request body bytes after decompression")
+                    .baseUnit("bytes")
+                    .tag("encoding", encoding)
+                    .register(meterRegistry));
+            ratios.put(format, DistributionSummary.builder("iot.ingest.request.compression.ratio")
+                    .description("Inflated/compressed size of completed request bodies")
+                    .tag("encoding", encoding)
+                    .register(meterRegistry));
+        }
+        this.compressedBytes = compressed;
+        this.inflatedBytes = inflated;
+        this.ratio = ratios;
+        this.rejectedLimit = rejectedCounter(meterRegistry, "limit");
+        this.rejectedMalformed = rejectedCounter(meterRegistry, "malformed");
+        this.rejectedUnsupported = rejectedCounter(meterRegistry, "unsupported");
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        ServerHttpRequest request = exchange.getRequest();
+        String contentEncoding = request.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING);
+        if (!enabled || contentEncoding == null || !request.getPath().value().startsWith(PATH_PREFIX)) {
+            return chain.filter(exchange);
+        }
+
+        Format format;
+        switch (contentEncoding.trim().toLowerCase(Locale.ROOT)) {
+            case "", "identity" -> {
+                return chain.filter(exchange);
+            }
+            case "gzip", "x-gzip" -> format = Format.GZIP;
+            case "deflate" -> format = Format.DEFLATE;
+            default -> {
+                rejectedUnsupported.increment();
+                return Mono.error(new ResponseStatusException(HttpStatus.UNSUPPORTED_MEDIA_TYPE,
+                        "Unsupported Content-Encoding: " + contentEncoding));
+            }
+        }
+
+        ServerHttpRequest decompressed = new DecompressingRequest(request, format,
+                exchange.getResponse().bufferFactory());
+        return chain.filter(exchange.mutate().request(decompressed).build());
+    }
+
+    private static Counter rejectedCounter(MeterRegistry meterRegistry, String reason) {
+        return Counter.builder("iot.ingest.request.decompression.rejected")
+                .description("Compressed request bodies rejected while decompressing")
+                .tag("reason", reason)
+                .register(meterRegistry);
+    }
+
+    private Flux<DataBuffer> inflate(Flux<DataBuffer> body, Format format, DataBufferFactory bufferFactory) {
+        return Flux.using(
+                () -> new StreamingInflater(format, maxInflatedBytes, maxRatio, ratioCheckAfterBytes),
+                inflater -> body
+                        .concatMapIterable(buffer -> {
+                            try {
+                                return inflate(inflater, buffer);
+                            } finally {
+                                DataBufferUtils.release(buffer);
+                            }
+                        })
+                        .map(bufferFactory::wrap)
+                        .concatWith(Mono.fromRunnable(() -> complete(inflater, format)))
+                        .onErrorMap(InflateLimitException.class, e -> {
+                            rejectedLimit.increment();
+                            log.warn("Rejected {} request body: {}", format.name().toLowerCase(Locale.ROOT),
+                                    e.getMessage());
+                            return new ResponseStatusException(HttpStatus.PAYLOAD_TOO_LARGE, e.getMessage());
+                        })
+                        .onErrorMap(MalformedInputException.class, e -> {
+                            rejectedMalformed.increment();
+                            return new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+                        })
+                        .doFinally(signal -> record(inflater, format)),
+                StreamingInflater::close);
+    }
+
+    private static List<byte[]> inflate(StreamingInflater inflater, DataBuffer buffer) {
+        List<byte[]> output = new ArrayList<>();
+        try (DataBuffer.ByteBufferIterator slices = buffer.readableByteBuffers()) {
+            while (slices.hasNext()) {
+                ByteBuffer slice = slices.next();
+                output.addAll(inflater.inflate(slice));
+            }
+        }
+        return output;
+    }
+
+    private void complete(StreamingInflater inflater, Format format) {
+        inflater.finish();
+        if (inflater.compressedBytes() > 0) {
+            ratio.get(format).record((double) inflater.inflatedBytes() / inflater.compressedBytes());
+        }
+    }
+
+    private void record(StreamingInflater inflater, Format format) {
+        compressedBytes.get(format).increment(inflater.compressedBytes());
+        inflatedBytes.get(format).increment(inflater.inflatedBytes());
+    }
+
+    private class DecompressingRequest extends ServerHttpRequestDecorator {
+
+        private final Format format;
+        private final DataBufferFactory bufferFactory;
+        private final HttpHeaders headers;
+
+        DecompressingRequest(ServerHttpRequest delegate, Format format, DataBufferFactory bufferFactory) {
+            super(delegate);
+            this.format = format;
+            this.bufferFactory = bufferFactory;
+            HttpHeaders copy = new HttpHeaders();
+            copy.putAll(delegate.getHeaders());
+            copy.remove(HttpHeaders.CONTENT_ENCODING);
+            copy.remove(HttpHeaders.CONTENT_LENGTH);
+            this.headers = HttpHeaders.readOnlyHttpHeaders(copy);
+        }
+
+        @Override
+        public HttpHeaders getHeaders() {
+            return headers;
+        }
+
+        @Override
+        public Flux<DataBuffer> getBody() {
+            return inflate(super.getBody(), format, bufferFactory);
+        }
+    }
+}
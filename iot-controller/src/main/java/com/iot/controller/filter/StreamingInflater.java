@@ -0,0 +1,264 @@
+package com.iot.controller.filter;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Incremental gzip / deflate decoder for one request body. Input arrives in arbitrary slices and every slice is
+ * inflated into fixed-size output chunks right away, so memory use is bounded by one slice plus its output.
+ * <p>
+ * Limits are checked after every output chunk, before the next one is produced: the inflated size must stay
+ * within {@code maxInflatedBytes}, and once more than {@code ratioGraceBytes} have been inflated the
+ * inflated/compressed ratio must stay within {@code maxRatio}. A violation throws {@link InflateLimitException}.
+ * <p>
+ * {@code deflate} accepts both the zlib format required by RFC 9110 and raw deflate, which some clients send.
+ */
+final class StreamingInflater implements AutoCloseable {
+
+    enum Format {
+        GZIP,
+        DEFLATE
+    }
+
+    static class InflateLimitException extends RuntimeException {
+        InflateLimitException(String message) {
+            super(message);
+        }
+    }
+
+    static class MalformedInputException extends RuntimeException {
+        MalformedInputException(String message) {
+            super(message);
+        }
+    }
+
+    private static final int OUTPUT_CHUNK_SIZE = 16 * 1024;
+    private static final int MAX_GZIP_HEADER_BYTES = 64 * 1024;
+    private static final int GZIP_TRAILER_BYTES = 8;
+
+    private static final int FHCRC = 2;
+    private static final int FEXTRA = 4;
+    private static final int FNAME = 8;
+    private static final int FCOMMENT = 16;
+
+    private final Format format;
+    private final long maxInflatedBytes;
+    private final double maxRatio;
+    private final long ratioGraceBytes;
+
+    private Inflater inflater;
+    private final CRC32 crc = new CRC32();
+    private ByteArrayOutputStream header;
+    private final byte[] trailer = new byte[GZIP_TRAILER_BYTES];
+    private int trailerBytes;
+
+    private long compressedBytes;
+    private long inflatedBytes;
+
+    StreamingInflater(Format format, long maxInflatedBytes, double maxRatio, long ratioGraceBytes) {
+        this.format = format;
+        this.maxInflatedBytes = maxInflatedBytes;
+        this.maxRatio = maxRatio;
+        this.ratioGraceBytes = ratioGraceBytes;
+        if (format == Format.GZIP) {
+            this.header = new ByteArrayOutputStream();
+        }
+    }
+
+    /**
+     * Consumes the whole slice and returns what it inflated to, possibly nothing.
+     */
+    List<byte[]> inflate(ByteBuffer input) {
+        List<byte[]> output = new ArrayList<>();
+        compressedBytes += input.remaining();
+        ByteBuffer data = inflater == null ? start(input) : input;
+        if (data != null) {
+            inflateInto(data, output);
+        }
+        return output;
+    }
+
+    /**
+     * Verifies that the body ended at the end of the compressed stream.
+     */
+    void finish() {
+        if (inflater == null || !inflater.finished()) {
+            throw new MalformedInputException("Truncated " + format.name().toLowerCase() + " body");
+        }
+        if (format == Format.GZIP) {
+            if (trailerBytes < GZIP_TRAILER_BYTES) {
+                throw new MalformedInputException("Truncated gzip trailer");
+            }
+            if (readIntLE(trailer, 0) != (int) crc.getValue() || readIntLE(trailer, 4) != (int) inflatedBytes) {
+                throw new MalformedInputException("Gzip checksum mismatch");
+            }
+        }
+    }
+
+    long compressedBytes() {
+        return compressedBytes;
+    }
+
+    long inflatedBytes() {
+        return inflatedBytes;
+    }
+
+    @Override
+    public void close() {
+        if (inflater != null) {
+            inflater.end();
+        }
+    }
+
+    /**
+     * Creates the inflater once the stream header is known and returns the compressed data that follows it,
+     * or {@code null} while the header is still incomplete.
+     */
+    private ByteBuffer start(ByteBuffer input) {
+        if (format == Format.DEFLATE) {
+            if (!input.hasRemaining()) {
+                return null;
+            }
+            inflater = new Inflater(!isZlibHeader(input));
+            return input;
+        }
+
+        while (input.hasRemaining()) {
+            header.write(input.get());
+        }
+        byte[] bytes = header.toByteArray();
+        int length = gzipHeaderLength(bytes);
+        if (length < 0) {
+            if (bytes.length > MAX_GZIP_HEADER_BYTES) {
+                throw new MalformedInputException("Gzip header too large");
+            }
+            return null;
+        }
+        header = null;
+        inflater = new Inflater(true);
+        return ByteBuffer.wrap(bytes, length, bytes.length - length);
+    }
+
+    private void inflateInto(ByteBuffer input, List<byte[]> output) {
+        if (inflater.finished()) {
+            collectTrailer(input);
+            return;
+        }
+        inflater.setInput(input);
+        byte[] chunk = new byte[OUTPUT_CHUNK_SIZE];
+        try {
+            while (!inflater.finished()) {
+                int inflated = inflater.inflate(chunk);
+                if (inflated == 0) {
+                    if (inflater.needsDictionary()) {
+                        throw new MalformedInputException("Deflate streams with a preset dictionary are not supported");
+                    }
+                    if (inflater.needsInput()) {
+                        break;
+                    }
+                    continue;
+                }
+                inflatedBytes += inflated;
+                checkLimits();
+                if (format == Format.GZIP) {
+                    crc.update(chunk, 0, inflated);
+                }
+                byte[] copy = new byte[inflated];
+                System.arraycopy(chunk, 0, copy, 0, inflated);
+                output.add(copy);
+            }
+        } catch (DataFormatException e) {
+            throw new MalformedInputException("Malformed " + format.name().toLowerCase() + " body: " + e.getMessage());
+        }
+        if (inflater.finished()) {
+            collectTrailer(input);
+        }
+    }
+
+    private void checkLimits() {
+        if (inflatedBytes > maxInflatedBytes) {
+            throw new InflateLimitException("Decompressed body exceeds " + maxInflatedBytes + " bytes");
+        }
+        if (inflatedBytes > ratioGraceBytes && inflatedBytes > maxRatio * compressedBytes) {
+            throw new InflateLimitException("Decompression ratio exceeds " + maxRatio);
+        }
+    }
+
+    private void collectTrailer(ByteBuffer input) {
+        if (format != Format.GZIP) {
+            if (input.hasRemaining()) {
+                throw new MalformedInputException("Unexpected data after the end of the deflate stream");
+            }
+            return;
+        }
+        while (input.hasRemaining()) {
+            if (trailerBytes == GZIP_TRAILER_BYTES) {
+                throw new MalformedInputException("Concatenated gzip members are not supported");
+            }
+            trailer[trailerBytes++] = input.get();
+        }
+    }
+
+    /**
+     * RFC 1950: compression method 8 and a header checksum divisible by 31.
+     */
+    private static boolean isZlibHeader(ByteBuffer input) {
+        if (input.remaining() < 2) {
+            return (input.get(input.position()) & 0x0f) == 8;
+        }
+        int cmf = input.get(input.position()) & 0xff;
+        int flg = input.get(input.position() + 1) & 0xff;
+        return (cmf & 0x0f) == 8 && ((cmf << 8) | flg) % 31 == 0;
+    }
+
+    /**
+     * RFC 1952 member header length, or -1 if {@code bytes} does not hold the complete header yet.
+     */
+    private static int gzipHeaderLength(byte[] bytes) {
+        if (bytes.length < 10) {
+            return -1;
+        }
+        if ((bytes[0] & 0xff) != 0x1f || (bytes[1] & 0xff) != 0x8b || bytes[2] != 8) {
+            throw new MalformedInputException("Not a gzip body");
+        }
+        int flags = bytes[3] & 0xff;
+        int position = 10;
+        if ((flags & FEXTRA) != 0) {
+            if (bytes.length < position + 2) {
+                return -1;
+            }
+            position += 2 + ((bytes[position] & 0xff) | (bytes[position + 1] & 0xff) << 8);
+        }
+        if ((flags & FNAME) != 0) {
+            position = skipZeroTerminated(bytes, position);
+        }
+        if ((flags & FCOMMENT) != 0 && position >= 0) {
+            position = skipZeroTerminated(bytes, position);
+        }
+        if ((flags & FHCRC) != 0 && position >= 0) {
+            position += 2;
+        }
+        return position >= 0 && position <= bytes.length ? position : -1;
+    }
+
+    private static int skipZeroTerminated(byte[] bytes, int position) {
+        for (int i = position; i < bytes.length; i++) {
+            if (bytes[i] == 0) {
+                return i + 1;
+            }
+        }
+        return -1;
+    }
+
+    private static int readIntLE(byte[] bytes, int offset) {
+        return (bytes[offset] & 0xff)
+                | (bytes[offset + 1] & 0xff) << 8
+                | (bytes[offset + 2] & 0xff) << 16
+                | (bytes[offset + 3] & 0xff) << 24;
+    }
+}
@@ -0,0 +1,604 @@
+package com.iot.controller.journal;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.iot.contracts.domain.DeviceData;
+import com.iot.controller.codec.RawJsonDeviceBatch;
+import com.iot.controller.service.IngestionOverloadedException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only, memory-mapped journal of accepted device batches, written when {@code app.ingest.journal.enabled}.
+ * <p>
+ * Records go to segment files of {@code segment-size} in {@code directory}, each as
+ * {@code [int length][int crc32][JSON array of devices]}; a zero length ends the written part of a segment.
+ * {@link #append} completes once its records are on disk. Appends are forced to disk in groups: the first append after
+ * a sync schedules the next one {@code sync-interval} later, and every append written until then completes with it.
+ * If that sync fails, its appends fail and their records are marked discarded (negative length), so they are never
+ * replayed. Segment files are created and pre-allocated ahead of time on the {@code ingest-journal-io} worker;
+ * an append only waits for that when no spare segment is ready. Neither file creation nor fsync runs under the
+ * journal lock or on the caller's thread.
+ * <p>
+ * {@link #read} returns synced records after a position; {@link #markReplayed} durably stores the position up to which
+ * records have been replayed and deletes the segments before it. On startup the journal resumes from that checkpoint,
+ * and a record torn by a crash ends the journal. Once the unreplayed segments reach {@code max-size} appends are shed
+ * with {@link IngestionOverloadedException}.
+ */
+@Component
+@Slf4j
+public class IngestJournal {
+
+    private static final int HEADER_BYTES = 8;
+    private static final String SEGMENT_SUFFIX = ".journal";
+    private static final String CHECKPOINT_FILE = "checkpoint";
+    private static final Duration FULL_RETRY_AFTER = Duration.ofSeconds(5);
+
+    private final boolean enabled;
+    private final Path directory;
+    private final int segmentSize;
+    private final int maxRecordBytes;
+    private final long maxSegments;
+    private final long syncIntervalNanos;
+    private final ObjectWriter deviceWriter;
+    private final Scheduler syncScheduler;
+    private final Scheduler ioScheduler;
+    private final Object syncLock = new Object();
+
+    private final TreeMap<Long, Segment> segments = new TreeMap<>();
+    private final ArrayDeque<Segment> spares = new ArrayDeque<>();
+    private Segment current;
+    private boolean preallocating;
+    private boolean closed;
+    private JournalPosition replayed = JournalPosition.START;
+    private List<MonoSink<Void>> unsynced = new ArrayList<>();
+    private boolean syncScheduled;
+
+    private final Counter appendedBytes;
+    private final Timer syncTimer;
+    private final DistributionSummary syncAppends;
+
+    public IngestJournal(ObjectMapper objectMapper,
+                         MeterRegistry meterRegistry,
+                         @Value("${app.ingest.journal.enabled}") boolean enabled,
+                         @Value("${app.ingest.journal.directory}") Path directory,
+                         @Value("${app.ingest.journal.segment-size}") DataSize segmentSize,
+                         @Value("${app.ingest.journal.max-size}") DataSize maxSize,
+                         @Value("${app.ingest.journal.sync-interval}") Duration syncInterval) {
+        this.enabled = enabled;
+        this.directory = directory;
+        this.segmentSize = Math.toIntExact(segmentSize.toBytes());
+        this.maxRecordBytes = this.segmentSize / 4;
+        this.maxSegments = Math.max(2, maxSize.toBytes() / this.segmentSize);
+        this.syncIntervalNanos = syncInterval.toNanos();
+        this.deviceWriter = objectMapper.writerFor(DeviceData.class);
+        this.syncScheduler = Schedulers.newSingle("ingest-journal-sync");
+        // one thread, so segments are created one at a time and in id order
+        this.ioScheduler = Schedulers.newBoundedElastic(1, Integer.MAX_VALUE, "ingest-journal-io");
+
+        this.appendedBytes = Counter.builder("iot.ingest.journal.appended.bytes")
+                .description("Bytes appended to the ingest journal")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        this.syncTimer = Timer.builder("iot.ingest.journal.sync")
+                .description("Time to force one group of journal appends to disk")
+                .register(meterRegistry);
+        this.syncAppends = DistributionSummary.builder("iot.ingest.journal.sync.appends")
+                .description("Appends made durable by one journal sync")
+                .register(meterRegistry);
+        Gauge.builder("iot.ingest.journal.backlog", this, IngestJournal::backlogBytes)
+                .description("Journal bytes not yet replayed to Mongo and RabbitMQ")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+
+        if (enabled) {
+            try {
+                recover();
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to open ingest journal in " + directory, e);
+            }
+        }
+    }
+
+    /**
+     * Appends the devices and completes once they are synced to disk.
+     */
+    public Mono<Void> append(List<DeviceData> devices) {
+        return Mono.defer(() -> appendRecords(encode(devices))).publishOn(Schedulers.parallel());
+    }
+
+    /**
+     * Writes the records if enough spare segments are ready for them, otherwise creates the missing ones on the
+     * io worker and tries again. Nothing is written unless all the records fit.
+     */
+    private Mono<Void> appendRecords(List<Record> records) {
+        return Mono.create(sink -> {
+            int missing = tryWrite(records, sink);
+            if (missing > 0) {
+                Mono.fromRunnable(() -> preallocate(missing))
+                        .subscribeOn(ioScheduler)
+                        .then(Mono.defer(() -> appendRecords(records)))
+                        .subscribe(null, sink::error, sink::success);
+            }
+        });
+    }
+
+    /**
+     * @return how many more spare segments the records need; zero once they are written
+     */
+    private synchronized int tryWrite(List<Record> records, MonoSink<Void> sink) {
+        int missing = segmentsNeeded(records) - spares.size();
+        if (missing > 0) {
+            return missing;
+        }
+        for (Record record : records) {
+            write(record);
+        }
+        unsynced.add(sink);
+        if (!syncScheduled) {
+            syncScheduled = true;
+            syncScheduler.schedule(this::sync, syncIntervalNanos, TimeUnit.NANOSECONDS);
+        }
+        if (spares.isEmpty() && !preallocating && !closed) {
+            // keep a segment ready for the next roll
+            preallocating = true;
+            Mono.fromRunnable(() -> preallocate(1))
+                    .subscribeOn(ioScheduler)
+                    .doFinally(signal -> {
+                        synchronized (this) {
+                            preallocating = false;
+                        }
+                    })
+                    .subscribe(null, error -> log.warn("Failed to pre-allocate a journal segment: {}",
+                            error.getMessage()));
+        }
+        return 0;
+    }
+
+    /**
+     * Reads up to {@code maxRecords} synced records that follow {@code from}, oldest first.
+     */
+    public List<Entry> read(JournalPosition from, int maxRecords) {
+        List<Segment> readable;
+        List<Integer> syncedOffsets = new ArrayList<>();
+        synchronized (this) {
+            readable = new ArrayList<>(segments.tailMap(from.segment(), true).values());
+            readable.forEach(segment -> syncedOffsets.add(segment.synced));
+        }
+        List<Entry> entries = new ArrayList<>();
+        for (int i = 0; i < readable.size() && entries.size() < maxRecords; i++) {
+            Segment segment = readable.get(i);
+            int offset = segment.id == from.segment() ? from.offset() : 0;
+            while (offset < syncedOffsets.get(i) && entries.size() < maxRecords) {
+                int length = segment.buffer.getInt(offset);
+                if (length < 0) {
+                    // discarded after a failed sync
+                    offset += HEADER_BYTES - length;
+                    continue;
+                }
+                byte[] payload = new byte[length];
+                segment.buffer.get(offset + HEADER_BYTES, payload);
+                offset += HEADER_BYTES + length;
+                entries.add(new Entry(payload, new JournalPosition(segment.id, offset)));
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * Position up to which records were replayed before the last restart or {@link #markReplayed} call.
+     */
+    public synchronized JournalPosition replayedPosition() {
+        return replayed;
+    }
+
+    /**
+     * Durably records that everything up to {@code position} is replayed and deletes the segments before it.
+     */
+    public void markReplayed(JournalPosition position) {
+        try {
+            writeCheckpoint(position);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write journal checkpoint", e);
+        }
+        List<Segment> replayedSegments = new ArrayList<>();
+        synchronized (this) {
+            replayed = position;
+            while (!segments.isEmpty() && segments.firstKey() < position.segment()) {
+                replayedSegments.add(segments.pollFirstEntry().getValue());
+            }
+        }
+        for (Segment segment : replayedSegments) {
+            segment.delete();
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @PreDestroy
+    public void close() {
+        sync();
+        syncScheduler.dispose();
+        ioScheduler.dispose();
+        synchronized (this) {
+            closed = true;
+            for (Segment segment : segments.values()) {
+                segment.close();
+            }
+            segments.clear();
+            spares.forEach(Segment::delete);
+            spares.clear();
+            current = null;
+        }
+    }
+
+    private void recover() throws IOException {
+        Files.createDirectories(directory);
+        Path checkpoint = directory.resolve(CHECKPOINT_FILE);
+        if (Files.exists(checkpoint)) {
+            replayed = readCheckpoint(checkpoint);
+        }
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*" + SEGMENT_SUFFIX)) {
+            stream.forEach(files::add);
+        }
+        for (Path file : files) {
+            String name = file.getFileName().toString();
+            long id = Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length()));
+            if (id < replayed.segment()) {
+                Files.delete(file);
+            } else {
+                segments.put(id, Segment.open(id, file, segmentSize));
+            }
+        }
+        for (Segment segment : segments.values()) {
+            segment.synced = segment.written = scan(segment);
+        }
+        current = segments.isEmpty() ? null : segments.lastEntry().getValue();
+        log.info("Opened ingest journal in {}: segments={}, replayed up to {}, backlog={} bytes",
+                directory, segments.size(), replayed, backlogBytes());
+    }
+
+    /**
+     * Finds the end of the valid records of a segment. A torn record there is cut off
+     * so that the next append overwrites it.
+     */
+    private static int scan(Segment segment) {
+        ByteBuffer buffer = segment.buffer;
+        int offset = 0;
+        while (offset + HEADER_BYTES <= buffer.capacity()) {
+            int length = Math.abs(buffer.getInt(offset));
+            if (length == 0) {
+                return offset;
+            }
+            if (length < 0 || offset + HEADER_BYTES + length > buffer.capacity()
+                    || crc(buffer.slice(offset + HEADER_BYTES, length)) != buffer.getInt(offset + 4)) {
+                log.warn("Dropping torn journal record in segment {} at offset {}", segment.id, offset);
+                buffer.putLong(offset, 0L);
+                return offset;
+            }
+            offset += HEADER_BYTES + length;
+        }
+        return offset;
+    }
+
+    /**
+     * Counts the segments the records roll over to, checking up front that they fit in the journal.
+     */
+    private int segmentsNeeded(List<Record> records) {
+        int needed = 0;
+        long written = current != null ? current.written : 0;
+        long capacity = current != null ? current.capacity() : 0;
+        for (Record record : records) {
+            int length = HEADER_BYTES + record.payload().length;
+            if (length > segmentSize) {
+                throw new IllegalArgumentException("Journal record of " + length + " bytes exceeds the segment size");
+            }
+            if (written + length > capacity) {
+                needed++;
+                written = 0;
+                capacity = segmentSize;
+            }
+            written += length;
+        }
+        if (segments.size() + needed > maxSegments) {
+            throw new IngestionOverloadedException(FULL_RETRY_AFTER);
+        }
+        return needed;
+    }
+
+    private void write(Record record) {
+        int length = HEADER_BYTES + record.payload().length;
+        if (current == null || current.written + length > current.capacity()) {
+            roll();
+        }
+        MappedByteBuffer buffer = current.buffer;
+        int offset = current.written;
+        buffer.put(offset + HEADER_BYTES, record.payload());
+        buffer.putInt(offset + 4, record.crc());
+        buffer.putInt(offset, record.payload().length);
+        current.written += length;
+        appendedBytes.increment(length);
+    }
+
+    /**
+     * Moves on to the next spare segment; {@link #segmentsNeeded} made sure there is one.
+     */
+    private void roll() {
+        current = spares.removeFirst();
+        segments.put(current.id, current);
+    }
+
+    /**
+     * Creates spare segments until {@code count} are ready. Runs on the io worker, off the journal lock.
+     */
+    private void preallocate(int count) {
+        while (true) {
+            long id;
+            synchronized (this) {
+                if (spares.size() >= count) {
+                    return;
+                }
+                id = !spares.isEmpty() ? spares.getLast().id + 1
+                        : current != null ? current.id + 1
+                        : replayed.segment() + 1;
+            }
+            Segment segment;
+            try {
+                segment = Segment.open(id, directory.resolve(String.format("%020d%s", id, SEGMENT_SUFFIX)),
+                        segmentSize);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to create journal segment " + id, e);
+            }
+            syncDirectory();
+            synchronized (this) {
+                if (closed) {
+                    segment.delete();
+                    return;
+                }
+                spares.addLast(segment);
+            }
+        }
+    }
+
+    /**
+     * Forces everything written so far to disk and completes the appends it covers.
+     * Runs on the sync thread, and once more on {@link #close}.
+     */
+    private void sync() {
+        synchronized (syncLock) {
+            List<MonoSink<Void>> covered;
+            List<SyncRange> ranges = new ArrayList<>();
+            synchronized (this) {
+                syncScheduled = false;
+                covered = unsynced;
+                unsynced = new ArrayList<>();
+                for (Segment segment : segments.values()) {
+                    if (segment.written > segment.synced) {
+                        ranges.add(new SyncRange(segment, segment.synced, segment.written));
+                    }
+                }
+            }
+            if (covered.isEmpty() && ranges.isEmpty()) {
+                return;
+            }
+            Timer.Sample sample = Timer.start();
+            try {
+                ranges.forEach(range -> force(range.segment().buffer, range.from(), range.to() - range.from()));
+            } catch (RuntimeException e) {
+                log.error("Failed to sync ingest journal, discarding {} append(s): {}", covered.size(), e.getMessage());
+                // the appends fail, so their records must not be replayed; the next sync writes the marks out
+                synchronized (this) {
+                    ranges.forEach(IngestJournal::discard);
+                }
+                covered.forEach(sink -> sink.error(e));
+                return;
+            }
+            sample.stop(syncTimer);
+            syncAppends.record(covered.size());
+            synchronized (this) {
+                ranges.forEach(range -> range.segment().synced = range.to());
+            }
+            covered.forEach(MonoSink::success);
+        }
+    }
+
+    /**
+     * Forces one written range to disk; package-private so tests can make it fail.
+     */
+    void force(MappedByteBuffer buffer, int offset, int length) {
+        buffer.force(offset, length);
+    }
+
+    /**
+     * Negates the length of every record in the range, which {@link #read} skips and recovery keeps skipping.
+     */
+    private static void discard(SyncRange range) {
+        ByteBuffer buffer = range.segment().buffer;
+        int offset = range.from();
+        while (offset < range.to()) {
+            int length = buffer.getInt(offset);
+            if (length > 0) {
+                buffer.putInt(offset, -length);
+            }
+            offset += HEADER_BYTES + Math.abs(length);
+        }
+    }
+
+    private synchronized long backlogBytes() {
+        long bytes = 0;
+        for (Segment segment : segments.tailMap(replayed.segment(), true).values()) {
+            bytes += segment.written - (segment.id == replayed.segment() ? replayed.offset() : 0);
+        }
+        return bytes;
+    }
+
+    /**
+     * Packs the devices into JSON array records of at most a quarter segment, keeping the received
+     * JSON of a {@link RawJsonDeviceBatch}.
+     */
+    private List<Record> encode(List<DeviceData> devices) {
+        List<Record> records = new ArrayList<>();
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(Math.min(maxRecordBytes, 64 * 1024));
+        for (int i = 0; i < devices.size(); i++) {
+            byte[] json = json(devices, i);
+            if (buffer.size() > 0 && buffer.size() + json.length + 2 > maxRecordBytes) {
+                records.add(Record.of(buffer));
+            }
+            buffer.write(buffer.size() == 0 ? '[' : ',');
+            buffer.writeBytes(json);
+        }
+        if (buffer.size() > 0) {
+            records.add(Record.of(buffer));
+        }
+        return records;
+    }
+
+    private byte[] json(List<DeviceData> devices, int index) {
+        if (devices instanceof RawJsonDeviceBatch raw && raw.json().get(index) != null) {
+            return raw.json().get(index);
+        }
+        try {
+            return deviceWriter.writeValueAsBytes(devices.get(index));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to serialize device for the journal", e);
+        }
+    }
+
+    private void writeCheckpoint(JournalPosition position) throws IOException {
+        ByteBuffer content = ByteBuffer.allocate(16);
+        content.putLong(position.segment()).putInt(position.offset());
+        content.putInt(crc(content.slice(0, 12))).flip();
+        Path temp = directory.resolve(CHECKPOINT_FILE + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            channel.write(content);
+            channel.force(true);
+        }
+        Files.move(temp, directory.resolve(CHECKPOINT_FILE),
+                StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        syncDirectory();
+    }
+
+    private static JournalPosition readCheckpoint(Path file) throws IOException {
+        ByteBuffer content = ByteBuffer.wrap(Files.readAllBytes(file));
+        if (content.capacity() != 16 || crc(content.slice(0, 12)) != content.getInt(12)) {
+            throw new IOException("Corrupt journal checkpoint " + file);
+        }
+        return new JournalPosition(content.getLong(0), content.getInt(8));
+    }
+
+    /**
+     * Makes created, renamed and deleted files durable; not every platform can open a directory, which is ignored.
+     */
+    private void syncDirectory() {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            log.debug("Could not sync journal directory: {}", e.getMessage());
+        }
+    }
+
+    private static int crc(ByteBuffer content) {
+        CRC32 crc = new CRC32();
+        crc.update(content);
+        return (int) crc.getValue();
+    }
+
+    /**
+     * One journal record and the position right after it.
+     */
+    public record Entry(byte[] payload, JournalPosition end) {
+    }
+
+    private record SyncRange(Segment segment, int from, int to) {
+    }
+
+    private record Record(byte[] payload, int crc) {
+
+        static Record of(ByteArrayOutputStream buffer) {
+            buffer.write(']');
+            byte[] payload = buffer.toByteArray();
+            buffer.reset();
+            return new Record(payload, IngestJournal.crc(ByteBuffer.wrap(payload)));
+        }
+    }
+
+    private static final class Segment {
+
+        private final long id;
+        private final Path path;
+        private final FileChannel channel;
+        private final MappedByteBuffer buffer;
+        private int written;
+        private int synced;
+
+        private Segment(long id, Path path, FileChannel channel, MappedByteBuffer buffer) {
+            this.id = id;
+            this.path = path;
+            this.channel = channel;
+            this.buffer = buffer;
+        }
+
+        static Segment open(long id, Path path, int size) throws IOException {
+            FileChannel channel = FileChannel.open(path,
+                    StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            long mapped = Math.max(size, channel.size());
+            return new Segment(id, path, channel, channel.map(FileChannel.MapMode.READ_WRITE, 0, mapped));
+        }
+
+        int capacity() {
+            return buffer.capacity();
+        }
+
+        void close() {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                log.warn("Failed to close journal segment {}: {}", path, e.getMessage());
+            }
+        }
+
+        void delete() {
+            close();
+            try {
+                Files.deleteIfExists(path);
+            } catch (IOException e) {
+                log.warn("Failed to delete replayed journal segment {}: {}", path, e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package com.iot.controller.journal;
+
+/**
+ * Point in the {@link IngestJournal}: a byte offset within a segment, right after a record.
+ */
+public record JournalPosition(long segment, int offset) implements Comparable<JournalPosition> {
+
+    public static final JournalPosition START = new JournalPosition(0, 0);
+
+    @Override
+    public int compareTo(JournalPosition other) {
+        int bySegment = Long.compare(segment, other.segment);
+        return bySegment != 0 ? bySegment : Integer.compare(offset, other.offset);
+    }
+}
@@ -0,0 +1,274 @@
+package com.iot.controller.listener;
+
+import com.iot.contracts.domain.DeviceData;
+import com.iot.controller.codec.DeviceBatchProtobufDecoder;
+import com.iot.controller.service.IngestionService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.socket.DatagramPacket;
+import io.netty.handler.codec.LengthFieldBasedFrameDecoder;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.reactivestreams.Publisher;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.netty.Connection;
+import reactor.netty.DisposableServer;
+import reactor.netty.NettyInbound;
+import reactor.netty.NettyOutbound;
+import reactor.netty.tcp.TcpServer;
+import reactor.netty.udp.UdpInbound;
+import reactor.netty.udp.UdpOutbound;
+import reactor.netty.udp.UdpServer;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Binary telemetry over plain TCP and UDP for devices that cannot afford an HTTP request per report.
+ * <p>
+ * A frame is a 4-byte big-endian length followed by one protobuf {@code iot.DeviceData} message
+ * ({@code proto/device_data.proto} in iot-contracts). A TCP connection carries a stream of frames; a UDP datagram
+ * carries one or more whole frames. Frames are decoded straight from the Netty buffer, and the devices are grouped
+ * into batches of {@code app.ingest.listener.batch-size}, or whatever arrived within {@code batch-timeout}.
+ * Each batch goes through {@link IngestionService#ingestBatch}, like a POST /api/ingest body.
+ * <p>
+ * Each TCP connection has at most one batch being ingested. Until that batch completes, no more data is read from
+ * the socket, so a device that sends faster than it can be stored is slowed down by TCP flow control. UDP cannot
+ * push back, so datagrams that arrive while the buffer is full are dropped and counted. Malformed frames are
+ * skipped. A TCP frame over {@code max-frame-size} closes the connection. Nothing is sent back to the device;
+ * rejected and failed batches are only logged and counted.
+ * <p>
+ * Besides the per-transport counters, every closed TCP connection records its frame count and lifetime, and is
+ * logged with its remote address. The meters are not tagged per connection, which would grow without bound.
+ */
+@Component
+@Slf4j
+public class BinaryTelemetryListener {
+
+    private static final int LENGTH_BYTES = 4;
+
+    private final IngestionService ingestionService;
+    private final MeterRegistry meterRegistry;
+
+    private final boolean tcpEnabled;
+    private final int tcpPort;
+    private final boolean udpEnabled;
+    private final int udpPort;
+    private final int maxFrameSize;
+    private final int batchSize;
+    private final Duration batchTimeout;
+
+    private final AtomicInteger connections = new AtomicInteger();
+    private final Transport tcp;
+    private final Transport udp;
+    private final Counter udpDropped;
+    private final DistributionSummary framesPerConnection;
+    private final Timer connectionDuration;
+
+    private DisposableServer tcpServer;
+    private Connection udpServer;
+
+    public BinaryTelemetryListener(IngestionService ingestionService,
+                                   MeterRegistry meterRegistry,
+                                   @Value("${app.ingest.listener.tcp.enabled}") boolean tcpEnabled,
+                                   @Value("${app.ingest.listener.tcp.port}") int tcpPort,
+                                   @Value("${app.ingest.listener.udp.enabled}") boolean udpEnabled,
+                                   @Value("${app.ingest.listener.udp.port}") int udpPort,
+                                   @Value("${app.ingest.listener.max-frame-size}") DataSize maxFrameSize,
+                                   @Value("${app.ingest.listener.batch-size}") int batchSize,
+                                   @Value("${app.ingest.listener.batch-timeout}") Duration batchTimeout) {
+        this.ingestionService = ingestionService;
+        this.meterRegistry = meterRegistry;
+        this.tcpEnabled = tcpEnabled;
+        this.tcpPort = tcpPort;
+        this.udpEnabled = udpEnabled;
+        this.udpPort = udpPort;
+        this.maxFrameSize = Math.toIntExact(maxFrameSize.toBytes());
+        this.batchSize = batchSize;
+        this.batchTimeout = batchTimeout;
+
+        this.tcp = transport("tcp");
+        this.udp = transport("udp");
+        Gauge.builder("iot.ingest.listener.connections", connections, AtomicInteger::get)
+                .description("Open TCP telemetry connections")
+                .register(meterRegistry);
+        this.udpDropped = Counter.builder("iot.ingest.listener.udp.dropped")
+                .description("UDP telemetry devices dropped because ingestion was behind")
+                .register(meterRegistry);
+        this.framesPerConnection = DistributionSummary.builder("iot.ingest.listener.connection.frames")
+                .description("Telemetry frames received over one TCP connection, recorded when it closes")
+                .register(meterRegistry);
+        this.connectionDuration = Timer.builder("iot.ingest.listener.connection.duration")
+                .description("How long TCP telemetry connections stayed open")
+                .register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (tcpEnabled) {
+            tcpServer = TcpServer.create()
+                    .port(tcpPort)
+                    .doOnConnection(connection -> connection.addHandlerLast(
+                            new LengthFieldBasedFrameDecoder(maxFrameSize + LENGTH_BYTES, 0, LENGTH_BYTES, 0, LENGTH_BYTES)))
+                    .handle(this::handleTcp)
+                    .bindNow();
+            log.info("Binary telemetry TCP listener on port {}", tcpServer.port());
+        }
+        if (udpEnabled) {
+            udpServer = UdpServer.create()
+                    .host("0.0.0.0")
+                    .port(udpPort)
+                    .handle(this::handleUdp)
+                    .bindNow();
+            log.info("Binary telemetry UDP listener on {}", udpServer.address());
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (tcpServer != null) {
+            tcpServer.disposeNow();
+        }
+        if (udpServer != null) {
+            udpServer.disposeNow();
+        }
+    }
+
+    int tcpPort() {
+        return tcpServer.port();
+    }
+
+    int udpPort() {
+        return ((InetSocketAddress) udpServer.address()).getPort();
+    }
+
+    private Publisher<Void> handleTcp(NettyInbound inbound, NettyOutbound outbound) {
+        AtomicLong frames = new AtomicLong();
+        Timer.Sample opened = Timer.start();
+        SocketAddress[] remote = new SocketAddress[1];
+        inbound.withConnection(connection -> remote[0] = connection.channel().remoteAddress());
+        return Mono.defer(() -> {
+                    connections.incrementAndGet();
+                    Flux<DeviceData> devices = inbound.receive()
+                            .handle((frame, sink) -> {
+                                frames.incrementAndGet();
+                                DeviceData device = decode(frame, tcp);
+                                if (device != null) {
+                                    sink.next(device);
+                                }
+                            });
+                    return ingest(devices, tcp);
+                })
+                .doOnError(error -> log.warn("Telemetry TCP connection from {} closed: {}", remote[0], error.getMessage()))
+                .onErrorResume(error -> Mono.empty())
+                .doFinally(signal -> {
+                    framesPerConnection.record(frames.get());
+                    long nanos = opened.stop(connectionDuration);
+                    log.debug("Telemetry TCP connection from {} closed after {} ms, frames={}",
+                            remote[0], nanos / 1_000_000, frames.get());
+                    connections.decrementAndGet();
+                });
+    }
+
+    private Publisher<Void> handleUdp(UdpInbound inbound, UdpOutbound outbound) {
+        Flux<DeviceData> devices = inbound.receiveObject()
+                .ofType(DatagramPacket.class)
+                .concatMapIterable(packet -> decodeDatagram(packet.content(), udp))
+                .onBackpressureDrop(device -> udpDropped.increment());
+        return ingest(devices, udp);
+    }
+
+    /**
+     * Ingests one batch at a time; demand, and with it socket reads, is only signalled once the previous batch
+     * is done.
+     */
+    private Mono<Void> ingest(Flux<DeviceData> devices, Transport transport) {
+        return devices
+                .bufferTimeout(batchSize, batchTimeout, true)
+                .concatMap(batch -> ingestionService.ingestBatch(batch)
+                        .doOnSuccess(report -> transport.accepted().increment())
+                        .then()
+                        .onErrorResume(error -> {
+                            transport.failed().increment();
+                            log.warn("Failed to ingest {} batch of {} device(s): {}",
+                                    transport.name(), batch.size(), error.getMessage());
+                            return Mono.empty();
+                        }), 0)
+                .then();
+    }
+
+    private List<DeviceData> decodeDatagram(ByteBuf content, Transport transport) {
+        List<DeviceData> devices = new ArrayList<>();
+        while (content.readableBytes() >= LENGTH_BYTES) {
+            int length = content.readInt();
+            if (length < 0 || length > content.readableBytes()) {
+                transport.malformed().increment();
+                break;
+            }
+            DeviceData device = decode(content.readSlice(length), transport);
+            if (device != null) {
+                devices.add(device);
+            }
+        }
+        return devices;
+    }
+
+    private DeviceData decode(ByteBuf frame, Transport transport) {
+        transport.frames().increment();
+        transport.bytes().increment(frame.readableBytes() + LENGTH_BYTES);
+        try {
+            return DeviceBatchProtobufDecoder.readDevice(frame.nioBuffer());
+        } catch (IOException | RuntimeException e) {
+            transport.malformed().increment();
+            log.debug("Skipping malformed {} telemetry frame: {}", transport.name(), e.getMessage());
+            return null;
+        }
+    }
+
+    private Transport transport(String name) {
+        return new Transport(name,
+                Counter.builder("iot.ingest.listener.frames")
+                        .description("Telemetry frames received over the binary listener")
+                        .tag("transport", name)
+                        .register(meterRegistry),
+                Counter.builder("iot.ingest.listener.bytes")
+                        .description("Telemetry bytes received over the binary listener, length prefixes included")
+                        .baseUnit("bytes")
+                        .tag("transport", name)
+                        .register(meterRegistry),
+                Counter.builder("iot.ingest.listener.malformed")
+                        .description("Telemetry frames that could not be decoded")
+                        .tag("transport", name)
+                        .register(meterRegistry),
+                batchCounter(name, "accepted"),
+                batchCounter(name, "failed"));
+    }
+
+    private Counter batchCounter(String transport, String result) {
+        return Counter.builder("iot.ingest.listener.batches")
+                .description("Batches handed from the binary listener to ingestion")
+                .tag("transport", transport)
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    private record Transport(String name, Counter frames, Counter bytes, Counter malformed,
+                             Counter accepted, Counter failed) {
+    }
+}
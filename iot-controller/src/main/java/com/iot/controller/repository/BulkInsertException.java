@@ -0,0 +1,20 @@
+package com.iot.controller.repository;
+
+/**
+ * Thrown when documents of a bulk insert were rejected, so a write is never reported as stored while
+ * part of it is missing from history.
+ */
+public class BulkInsertException extends RuntimeException {
+
+    private final BulkInsertResult result;
+
+    public BulkInsertException(BulkInsertResult result) {
+        super("Bulk insert rejected " + result.failed() + " of " + (result.inserted() + result.failed())
+                + " document(s): " + result.errors());
+        this.result = result;
+    }
+
+    public BulkInsertResult getResult() {
+        return result;
+    }
+}
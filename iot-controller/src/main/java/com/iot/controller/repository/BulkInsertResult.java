@@ -0,0 +1,32 @@
+package com.iot.controller.repository;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Outcome of an unordered bulk insert. Documents rejected by Mongo are counted per sub-batch instead of failing
+ * the whole insert; any other error (outage, timeout) fails it.
+ */
+public record BulkInsertResult(
+        long inserted,
+        long failed,
+        List<String> errors) {
+
+    private static final int MAX_REPORTED_ERRORS = 10;
+
+    public static BulkInsertResult empty() {
+        return new BulkInsertResult(0, 0, List.of());
+    }
+
+    public boolean hasFailures() {
+        return failed > 0;
+    }
+
+    public BulkInsertResult merge(BulkInsertResult other) {
+        List<String> mergedErrors = new ArrayList<>(errors);
+        other.errors.stream()
+                .limit(Math.max(0, MAX_REPORTED_ERRORS - mergedErrors.size()))
+                .forEach(mergedErrors::add);
+        return new BulkInsertResult(inserted + other.inserted, failed + other.failed, List.copyOf(mergedErrors));
+    }
+}
@@ -0,0 +1,15 @@
+package com.iot.controller.repository;
+
+import com.iot.controller.domain.DeviceEntity;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+public interface DeviceBulkOperations {
+
+    /**
+     * Inserts devices with unordered {@code insertMany} calls of {@code app.mongodb.bulk.batch-size} documents.
+     * Never errors on write failures; they are counted in the returned result instead.
+     */
+    Mono<BulkInsertResult> insertUnordered(List<DeviceEntity> entities);
+}
@@ -0,0 +1,115 @@
+package com.iot.controller.repository;
+
+import com.iot.controller.config.DeviceDocumentLayout;
+import com.iot.controller.domain.DeviceEntity;
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.WriteConcern;
+import com.mongodb.client.model.InsertManyOptions;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+@Slf4j
+public class DeviceBulkOperationsImpl implements DeviceBulkOperations {
+
+    private static final InsertManyOptions UNORDERED = new InsertManyOptions().ordered(false);
+
+    private final ReactiveMongoTemplate template;
+    private final DeviceDocumentLayout layout;
+    private final MeterRegistry meterRegistry;
+    private final int batchSize;
+    private final int concurrency;
+    private final WriteConcern writeConcern;
+
+    private final Counter insertedCounter;
+    private final Counter failedCounter;
+
+    public DeviceBulkOperationsImpl(ReactiveMongoTemplate template,
+                                    DeviceDocumentLayout layout,
+                                    MeterRegistry meterRegistry,
+                                    @Value("${app.mongodb.bulk.batch-size}") int batchSize,
+                                    @Value("${app.mongodb.bulk.concurrency}") int concurrency,
+                                    @Value("${app.mongodb.bulk.write-concern}") String writeConcern) {
+        this.template = template;
+        this.layout = layout;
+        this.meterRegistry = meterRegistry;
+        this.batchSize = batchSize;
+        this.concurrency = concurrency;
+        this.writeConcern = WriteConcern.valueOf(writeConcern);
+        if (this.writeConcern == null) {
+            throw new IllegalArgumentException("Unknown write concern: " + writeConcern);
+        }
+        this.insertedCounter = Counter.builder("iot.ingest.mongo.inserted")
+                .description("Device documents inserted through the bulk write path")
+                .register(meterRegistry);
+        this.failedCounter = Counter.builder("iot.ingest.mongo.insert.failed")
+                .description("Device documents rejected by the bulk write path")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public Mono<BulkInsertResult> insertUnordered(List<DeviceEntity> entities) {
+        if (entities.isEmpty()) {
+            return Mono.just(BulkInsertResult.empty());
+        }
+        String collectionName = template.getCollectionName(DeviceEntity.class);
+        return Flux.fromIterable(entities)
+                .buffer(batchSize)
+                .flatMapSequential(chunk -> insertChunk(collectionName, chunk), concurrency)
+                .reduce(BulkInsertResult.empty(), BulkInsertResult::merge);
+    }
+
+    private Mono<BulkInsertResult> insertChunk(String collectionName, List<DeviceEntity> chunk) {
+        List<Document> documents = chunk.stream().map(this::toDocument).toList();
+        return Mono.defer(() -> {
+            Timer.Sample sample = Timer.start(meterRegistry);
+            return template.getCollection(collectionName)
+                    .flatMap(collection -> Mono.from(collection.withWriteConcern(writeConcern)
+                            .insertMany(documents, UNORDERED)))
+                    .map(result -> new BulkInsertResult(documents.size(), 0, List.of()))
+                    .onErrorResume(MongoBulkWriteException.class, e -> Mono.just(new BulkInsertResult(
+                            e.getWriteResult().getInsertedCount(),
+                            e.getWriteErrors().size(),
+                            List.of(e.getWriteErrors().size() + " write error(s), first: "
+                                    + e.getWriteErrors().getFirst().getMessage()))))
+                    .doOnError(e -> {
+                        // not a per-document rejection: nothing is known to be stored, so the insert fails
+                        sample.stop(meterRegistry.timer("iot.ingest.mongo.bulk.insert", "outcome", "error"));
+                        failedCounter.increment(documents.size());
+                        log.warn("Bulk insert sub-batch of {} document(s) failed: {}", documents.size(), e.getMessage());
+                    })
+                    .doOnNext(result -> {
+                        sample.stop(meterRegistry.timer("iot.ingest.mongo.bulk.insert",
+                                "outcome", outcome(result)));
+                        insertedCounter.increment(result.inserted());
+                        failedCounter.increment(result.failed());
+                        if (result.hasFailures()) {
+                            log.warn("Bulk insert sub-batch partially failed: inserted={}, failed={}, errors={}",
+                                    result.inserted(), result.failed(), result.errors());
+                        }
+                    });
+        });
+    }
+
+    private Document toDocument(DeviceEntity entity) {
+        Document document = new Document();
+        template.getConverter().write(entity, document);
+        // insertMany bypasses the template's save events, so the stored shape is applied here
+        return layout.toStored(document);
+    }
+
+    private static String outcome(BulkInsertResult result) {
+        if (!result.hasFailures()) {
+            return "success";
+        }
+        return result.inserted() > 0 ? "partial" : "failure";
+    }
+}
@@ -5,5 +5,5 @@ import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
 import org.springframework.stereotype.Repository;
 
 @Repository
-public interface DeviceDataRepository extends ReactiveMongoRepository<DeviceEntity, String> {
+public interface DeviceDataRepository extends ReactiveMongoRepository<DeviceEntity, String>, DeviceBulkOperations {
 }
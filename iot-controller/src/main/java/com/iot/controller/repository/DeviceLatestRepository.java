@@ -0,0 +1,9 @@
+package com.iot.controller.repository;
+
+import com.iot.controller.domain.DeviceLatestEntity;
+import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface DeviceLatestRepository extends ReactiveMongoRepository<DeviceLatestEntity, Long> {
+}
@@ -0,0 +1,9 @@
+package com.iot.controller.repository;
+
+import com.iot.controller.domain.DeviceRegistryEntity;
+import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface DeviceRegistryRepository extends ReactiveMongoRepository<DeviceRegistryEntity, Long> {
+}
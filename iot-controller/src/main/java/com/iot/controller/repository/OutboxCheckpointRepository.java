@@ -0,0 +1,9 @@
+package com.iot.controller.repository;
+
+import com.iot.controller.domain.OutboxCheckpointEntity;
+import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface OutboxCheckpointRepository extends ReactiveMongoRepository<OutboxCheckpointEntity, String> {
+}
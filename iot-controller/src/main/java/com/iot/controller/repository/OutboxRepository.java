@@ -0,0 +1,13 @@
+package com.iot.controller.repository;
+
+import com.iot.controller.domain.OutboxEntity;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+
+@Repository
+public interface OutboxRepository extends ReactiveMongoRepository<OutboxEntity, String> {
+
+    Flux<OutboxEntity> findAllByOrderByIdAsc(Pageable pageable);
+}
@@ -0,0 +1,131 @@
+package com.iot.controller.service;
+
+import com.iot.controller.validation.DeviceValidationException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.validation.ConstraintViolationException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+
+import java.time.Duration;
+import java.util.function.Supplier;
+
+/**
+ * AIMD concurrency limit in front of {@link IngestionService}.
+ * <p>
+ * A request is admitted only while fewer than {@code limit} requests are in flight; otherwise it fails fast with
+ * {@link IngestionOverloadedException}. Every measured request feeds its latency back: a request slower than
+ * {@code app.ingest.limiter.latency-threshold}, or one that failed on the server side, multiplies the limit by
+ * {@code backoff-ratio}; a fast request while at least half of the limit is in use adds one.
+ * The limit therefore follows what Mongo and the broker currently sustain instead of queueing until timeouts.
+ */
+@Component
+@Slf4j
+public class AdaptiveConcurrencyLimiter {
+
+    private final boolean enabled;
+    private final int minLimit;
+    private final int maxLimit;
+    private final long latencyThresholdNanos;
+    private final double backoffRatio;
+    private final Duration retryAfter;
+
+    private double limit;
+    private int inFlight;
+
+    private final Counter rejected;
+
+    public AdaptiveConcurrencyLimiter(MeterRegistry meterRegistry,
+                                      @Value("${app.ingest.limiter.enabled}") boolean enabled,
+                                      @Value("${app.ingest.limiter.initial-limit}") int initialLimit,
+                                      @Value("${app.ingest.limiter.min-limit}") int minLimit,
+                                      @Value("${app.ingest.limiter.max-limit}") int maxLimit,
+                                      @Value("${app.ingest.limiter.latency-threshold}") Duration latencyThreshold,
+                                      @Value("${app.ingest.limiter.backoff-ratio}") double backoffRatio,
+                                      @Value("${app.ingest.limiter.retry-after}") Duration retryAfter) {
+        this.enabled = enabled;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.latencyThresholdNanos = latencyThreshold.toNanos();
+        this.backoffRatio = backoffRatio;
+        this.retryAfter = retryAfter;
+        this.limit = Math.clamp(initialLimit, minLimit, maxLimit);
+
+        this.rejected = Counter.builder("iot.ingest.limiter.rejected")
+                .description("Ingest requests rejected with 429 by the concurrency limiter")
+                .register(meterRegistry);
+        Gauge.builder("iot.ingest.limiter.limit", this, AdaptiveConcurrencyLimiter::getLimit)
+                .description("Current adaptive concurrency limit")
+                .register(meterRegistry);
+        Gauge.builder("iot.ingest.limiter.in-flight", this, AdaptiveConcurrencyLimiter::getInFlight)
+                .description("Ingest requests currently admitted by the limiter")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Runs {@code call} if a slot is free.
+     *
+     * @param measured whether the latency of the call adjusts the limit; long-lived calls such as NDJSON
+     *                 streams occupy a slot but would only skew the latency signal
+     */
+    public <T> Mono<T> execute(Supplier<Mono<T>> call, boolean measured) {
+        if (!enabled) {
+            return Mono.defer(call);
+        }
+        return Mono.defer(() -> {
+            if (!tryAcquire()) {
+                rejected.increment();
+                return Mono.error(new IngestionOverloadedException(retryAfter));
+            }
+            long start = System.nanoTime();
+            boolean[] serverError = new boolean[1];
+            return call.get()
+                    .doOnError(error -> serverError[0] = !isClientError(error))
+                    .doFinally(signal -> release(measured && signal != SignalType.CANCEL,
+                            System.nanoTime() - start, serverError[0]));
+        });
+    }
+
+    synchronized boolean tryAcquire() {
+        if (inFlight >= (int) limit) {
+            return false;
+        }
+        inFlight++;
+        return true;
+    }
+
+    synchronized void release(boolean sample, long latencyNanos, boolean dropped) {
+        if (sample) {
+            if (dropped || latencyNanos > latencyThresholdNanos) {
+                double reduced = Math.max(minLimit, limit * backoffRatio);
+                if ((int) reduced < (int) limit) {
+                    log.debug("Ingest concurrency limit decreased to {}", (int) reduced);
+                }
+                limit = reduced;
+            } else if (inFlight * 2 >= limit) {
+                limit = Math.min(maxLimit, limit + 1);
+            }
+        }
+        inFlight--;
+    }
+
+    synchronized int getLimit() {
+        return (int) limit;
+    }
+
+    synchronized int getInFlight() {
+        return inFlight;
+    }
+
+    private static boolean isClientError(Throwable error) {
+        return error instanceof DeviceValidationException
+                || error instanceof ConstraintViolationException
+                || error instanceof IllegalArgumentException
+                || error instanceof ResponseStatusException status && status.getStatusCode().is4xxClientError();
+    }
+}
@@ -0,0 +1,159 @@
+package com.iot.controller.service;
+
+import com.iot.contracts.domain.DeviceData;
+import com.iot.contracts.domain.components.Location;
+import com.iot.contracts.domain.components.Status;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Report-by-exception: keeps readings that change nothing worth reporting away from Mongo and the broker.
+ * <p>
+ * A reading is compared with the last forwarded reading of the same device and is suppressed while its battery
+ * level, signal strength and x/y position all stay within their deadbands ({@code app.ingest.deadband.*}) and
+ * the online flag, floor and static fields are unchanged. Since the comparison is against the last forwarded
+ * reading, slow drift still gets reported once it adds up to more than the deadband. A device is forwarded at
+ * least once per {@code keepalive} regardless, so consumers can tell a quiet device from a silent one.
+ * <p>
+ * Only a compact snapshot per device is kept, in a bounded LRU map local to the instance. Like
+ * {@link IngestionDeduplicator}, nothing is recorded until {@link #accept(List)} is called once the forwarded
+ * readings are stored, so a failed write does not suppress the retry.
+ */
+@Component
+public class DeadbandFilter {
+
+    private final boolean enabled;
+    private final int batteryDeadband;
+    private final int signalDeadband;
+    private final int locationDeadband;
+    private final long keepaliveNanos;
+
+    private final Map<Long, Reported> lastReported;
+
+    private final Counter forwarded;
+    private final Counter suppressed;
+    private final Counter keepalives;
+
+    public DeadbandFilter(MeterRegistry meterRegistry,
+                          @Value("${app.ingest.deadband.enabled}") boolean enabled,
+                          @Value("${app.ingest.deadband.battery}") int batteryDeadband,
+                          @Value("${app.ingest.deadband.signal}") int signalDeadband,
+                          @Value("${app.ingest.deadband.location}") int locationDeadband,
+                          @Value("${app.ingest.deadband.keepalive}") Duration keepalive,
+                          @Value("${app.ingest.deadband.max-devices}") int maxDevices) {
+        this.enabled = enabled;
+        this.batteryDeadband = batteryDeadband;
+        this.signalDeadband = signalDeadband;
+        this.locationDeadband = locationDeadband;
+        this.keepaliveNanos = keepalive.toNanos();
+        this.lastReported = new LinkedHashMap<>(Math.min(maxDevices, 1024), 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Reported> eldest) {
+                return size() > maxDevices;
+            }
+        };
+        this.forwarded = readingCounter(meterRegistry, "forwarded");
+        this.suppressed = readingCounter(meterRegistry, "suppressed");
+        this.keepalives = Counter.builder("iot.ingest.deadband.keepalives")
+                .description("Readings forwarded only because the device's keepalive was due")
+                .register(meterRegistry);
+        Gauge.builder("iot.ingest.deadband.devices", this, DeadbandFilter::deviceCount)
+                .description("Devices whose last forwarded reading is tracked by the deadband filter")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Returns the readings that have to be forwarded, in their original order.
+     */
+    public List<DeviceData> filter(List<DeviceData> deviceData) {
+        if (!enabled) {
+            return deviceData;
+        }
+        long now = System.nanoTime();
+        List<DeviceData> reported = new ArrayList<>(deviceData.size());
+        Map<Long, Reported> inBatch = new HashMap<>();
+        synchronized (lastReported) {
+            for (DeviceData device : deviceData) {
+                Reported previous = inBatch.getOrDefault(device.id(), lastReported.get(device.id()));
+                Reported current = Reported.of(device, now);
+                if (previous != null && !exceedsDeadband(current, previous)) {
+                    if (now - previous.reportedAt() < keepaliveNanos) {
+                        continue;
+                    }
+                    keepalives.increment();
+                }
+                inBatch.put(device.id(), current);
+                reported.add(device);
+            }
+        }
+        forwarded.increment(reported.size());
+        if (reported.size() == deviceData.size()) {
+            // keep the caller's list, e.g. a RawJsonDeviceBatch the publisher can forward as is
+            return deviceData;
+        }
+        suppressed.increment(deviceData.size() - reported.size());
+        return reported;
+    }
+
+    public void accept(List<DeviceData> deviceData) {
+        if (!enabled) {
+            return;
+        }
+        long now = System.nanoTime();
+        synchronized (lastReported) {
+            for (DeviceData device : deviceData) {
+                lastReported.put(device.id(), Reported.of(device, now));
+            }
+        }
+    }
+
+    private boolean exceedsDeadband(Reported current, Reported previous) {
+        return current.online() != previous.online()
+                || current.z() != previous.z()
+                || current.staticFields() != previous.staticFields()
+                || Math.abs(current.battery() - previous.battery()) > batteryDeadband
+                || Math.abs(current.signal() - previous.signal()) > signalDeadband
+                || Math.max(Math.abs(current.x() - previous.x()), Math.abs(current.y() - previous.y())) > locationDeadband;
+    }
+
+    private int deviceCount() {
+        synchronized (lastReported) {
+            return lastReported.size();
+        }
+    }
+
+    private static Counter readingCounter(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("iot.ingest.deadband.readings")
+                .description("Readings checked by the deadband filter")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    /**
+     * What the filter remembers of a forwarded reading; static fields are kept as a hash only.
+     */
+    private record Reported(boolean online, int battery, int signal, int x, int y, int z, int staticFields,
+                            long reportedAt) {
+
+        static Reported of(DeviceData device, long now) {
+            Status status = device.status();
+            Location location = device.location();
+            return new Reported(status.isOnline(), status.batteryLevel(), status.signalStrength(),
+                    location.x(), location.y(), location.z(),
+                    Objects.hash(device.name(), device.manufacturer(), device.type(), device.capabilities(),
+                            device.metaVersion()),
+                    now);
+        }
+    }
+}
@@ -0,0 +1,296 @@
+package com.iot.controller.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.iot.contracts.domain.DeviceData;
+import com.iot.controller.codec.RawJsonDeviceBatch;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.rabbitmq.CorrelableOutboundMessage;
+import reactor.rabbitmq.OutboundMessage;
+import reactor.rabbitmq.OutboundMessageResult;
+import reactor.rabbitmq.SendOptions;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Publishes ingested devices to the data exchange.
+ * <p>
+ * {@link PublishMode#PER_DEVICE} sends one JSON object per device.
+ * {@link PublishMode#PACKED} sends each {@code app.rabbitmq.chunk-size} window as JSON arrays,
+ * split so that no message body exceeds {@code app.rabbitmq.publish.max-message-bytes}.
+ * Consumers accept both shapes.
+ * <p>
+ * A {@link RawJsonDeviceBatch} is published from the JSON it was decoded from, without serializing the devices
+ * again; any other list is serialized with a {@code DeviceData} writer prepared once from the application's
+ * ObjectMapper.
+ * <p>
+ * Messages go out through {@link RabbitSenderPool}, so concurrent publishes use separate connections. The chunks
+ * of one publish are sent one after another, keeping the batch's order per device.
+ * <p>
+ * With {@code app.rabbitmq.partitions.enabled} devices go to the direct exchange {@code app.rabbitmq.exchange.partitioned}
+ * instead of the fanout one, with the device's partition ({@code id mod app.rabbitmq.partitions.count}) as routing key.
+ * Consumers bind one queue per partition, so all messages of a device land in the same queue, in publish order.
+ * A packed message only holds devices of one partition.
+ * <p>
+ * With {@code app.rabbitmq.publish.confirms.enabled} messages are sent on a confirm channel with at most
+ * {@code max-in-flight} unconfirmed messages; nacked messages are resent up to {@code max-retries} times
+ * before the publish fails, so a completed publish means the broker has taken every message.
+ */
+@Component
+@Slf4j
+public class DevicePublisher {
+
+    public enum PublishMode {
+        PER_DEVICE,
+        PACKED
+    }
+
+    private final RabbitSenderPool senderPool;
+    private final ObjectWriter deviceWriter;
+
+    private final String exchangeName;
+    private final String[] partitionKeys;
+    private final int publishChunkSize;
+    private final PublishMode publishMode;
+    private final int maxMessageBytes;
+    private final boolean confirmsEnabled;
+    private final int confirmMaxRetries;
+    private final SendOptions confirmSendOptions;
+
+    private final Counter messagesCounter;
+    private final Counter devicesCounter;
+    private final Counter rawDevicesCounter;
+    private final DistributionSummary messageBytes;
+    private final Timer chunkLatency;
+    private final Timer confirmLatency;
+    private final Counter confirmAcks;
+    private final Counter confirmNacks;
+
+    public DevicePublisher(RabbitSenderPool senderPool,
+                           ObjectMapper objectMapper,
+                           MeterRegistry meterRegistry,
+                           @Value("${app.rabbitmq.exchange.data}") String dataExchangeName,
+                           @Value("${app.rabbitmq.exchange.partitioned}") String partitionedExchangeName,
+                           @Value("${app.rabbitmq.partitions.enabled}") boolean partitionsEnabled,
+                           @Value("${app.rabbitmq.partitions.count}") int partitionCount,
+                           @Value("${app.rabbitmq.chunk-size}") int publishChunkSize,
+                           @Value("${app.rabbitmq.publish.mode}") PublishMode publishMode,
+                           @Value("${app.rabbitmq.publish.max-message-bytes}") int maxMessageBytes,
+                           @Value("${app.rabbitmq.publish.confirms.enabled}") boolean confirmsEnabled,
+                           @Value("${app.rabbitmq.publish.confirms.max-in-flight}") int confirmMaxInFlight,
+                           @Value("${app.rabbitmq.publish.confirms.max-retries}") int confirmMaxRetries) {
+        this.senderPool = senderPool;
+        this.deviceWriter = objectMapper.writerFor(DeviceData.class);
+        this.exchangeName = partitionsEnabled ? partitionedExchangeName : dataExchangeName;
+        this.partitionKeys = partitionsEnabled ? partitionKeys(partitionCount) : new String[]{""};
+        this.publishChunkSize = publishChunkSize;
+        this.publishMode = publishMode;
+        this.maxMessageBytes = maxMessageBytes;
+        this.confirmsEnabled = confirmsEnabled;
+        this.confirmMaxRetries = confirmMaxRetries;
+        this.confirmSendOptions = new SendOptions().maxInFlight(confirmMaxInFlight);
+
+        String mode = publishMode.name();
+        this.messagesCounter = Counter.builder("iot.ingest.publish.messages")
+                .description("AMQP messages published to the data exchange")
+                .tag("mode", mode)
+                .register(meterRegistry);
+        this.devicesCounter = Counter.builder("iot.ingest.publish.devices")
+                .description("Devices published to the data exchange")
+                .tag("mode", mode)
+                .register(meterRegistry);
+        this.rawDevicesCounter = Counter.builder("iot.ingest.publish.raw.devices")
+                .description("Devices published from the received JSON without re-serialization")
+                .register(meterRegistry);
+        this.messageBytes = DistributionSummary.builder("iot.ingest.publish.message.bytes")
+                .description("Body size of published AMQP messages")
+                .baseUnit("bytes")
+                .tag("mode", mode)
+                .register(meterRegistry);
+        this.chunkLatency = Timer.builder("iot.ingest.publish.chunk")
+                .description("Time to send one chunk of messages, or one confirmed publish attempt")
+                .tag("mode", mode)
+                .register(meterRegistry);
+        this.confirmLatency = Timer.builder("iot.ingest.publish.confirm.latency")
+                .description("Time from handing a message to the broker until its publisher confirm")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.confirmAcks = Counter.builder("iot.ingest.publish.confirms")
+                .tag("result", "ack")
+                .register(meterRegistry);
+        this.confirmNacks = Counter.builder("iot.ingest.publish.confirms")
+                .tag("result", "nack")
+                .register(meterRegistry);
+    }
+
+    public Mono<Void> publish(List<DeviceData> deviceData) {
+        if (deviceData.isEmpty()) {
+            return Mono.empty();
+        }
+        devicesCounter.increment(deviceData.size());
+        Flux<Body> bodies = encode(deviceData);
+        if (confirmsEnabled) {
+            return publishConfirmed(bodies, 0);
+        }
+        return bodies
+                .map(this::toMessage)
+                .window(publishChunkSize)
+                // one chunk at a time: chunks sent at once would go over different connections and could
+                // reach the exchange out of order for the same device
+                .concatMap(chunk -> timed(senderPool.send(chunk)))
+                .then();
+    }
+
+    private Mono<Void> publishConfirmed(Flux<Body> bodies, int attempt) {
+        return timed(senderPool.sendWithTypedPublishConfirms(bodies.map(this::toConfirmableMessage), confirmSendOptions)
+                        .filter(result -> !recordConfirm(result))
+                        .map(result -> new Body(result.getOutboundMessage().getRoutingKey(),
+                                result.getOutboundMessage().getBody()))
+                        .collectList())
+                .flatMap(nacked -> {
+                    if (nacked.isEmpty()) {
+                        return Mono.empty();
+                    }
+                    if (attempt >= confirmMaxRetries) {
+                        return Mono.error(new IllegalStateException(
+                                "Broker did not confirm " + nacked.size() + " message(s) after " + (attempt + 1) + " attempt(s)"));
+                    }
+                    log.warn("Republishing {} nacked message(s), attempt {}", nacked.size(), attempt + 1);
+                    return publishConfirmed(Flux.fromIterable(nacked), attempt + 1);
+                });
+    }
+
+    /**
+     * Records {@code iot.ingest.publish.chunk} for one chunk, or one confirmed publish attempt.
+     */
+    private <T> Mono<T> timed(Mono<T> send) {
+        return Mono.defer(() -> {
+            Timer.Sample sample = Timer.start();
+            return send.doFinally(signal -> sample.stop(chunkLatency));
+        });
+    }
+
+    private boolean recordConfirm(OutboundMessageResult<CorrelableOutboundMessage<Long>> result) {
+        long sentAt = result.getOutboundMessage().getCorrelationMetadata();
+        confirmLatency.record(System.nanoTime() - sentAt, TimeUnit.NANOSECONDS);
+        if (result.isAck()) {
+            confirmAcks.increment();
+            return true;
+        }
+        confirmNacks.increment();
+        return false;
+    }
+
+    private Flux<Body> encode(List<DeviceData> deviceData) {
+        Flux<Body> devices = deviceData instanceof RawJsonDeviceBatch raw
+                ? Flux.range(0, raw.size()).map(index -> new Body(routingKey(raw.get(index)), rawJson(raw, index)))
+                : Flux.fromIterable(deviceData).map(device -> new Body(routingKey(device), serialize(device)));
+        return switch (publishMode) {
+            case PER_DEVICE -> devices;
+            case PACKED -> devices
+                    .buffer(publishChunkSize)
+                    .concatMapIterable(this::pack);
+        };
+    }
+
+    private String routingKey(DeviceData device) {
+        if (partitionKeys.length == 1) {
+            return partitionKeys[0];
+        }
+        return partitionKeys[Math.floorMod(Long.hashCode(device.id()), partitionKeys.length)];
+    }
+
+    private byte[] rawJson(RawJsonDeviceBatch batch, int index) {
+        byte[] json = batch.json().get(index);
+        if (json == null) {
+            return serialize(batch.get(index));
+        }
+        rawDevicesCounter.increment();
+        return json;
+    }
+
+    /**
+     * Packs a chunk into one or more JSON array bodies per routing key, starting a new array whenever
+     * the next element would push the current one over the size cap.
+     * A single device larger than the cap is still sent on its own.
+     */
+    private List<Body> pack(List<Body> chunk) {
+        List<Body> bodies = new ArrayList<>();
+        Map<String, ByteArrayOutputStream> buffers = new LinkedHashMap<>();
+        for (Body device : chunk) {
+            ByteArrayOutputStream buffer = buffers.computeIfAbsent(device.routingKey(),
+                    key -> new ByteArrayOutputStream(Math.min(maxMessageBytes, 64 * 1024)));
+            if (buffer.size() > 0 && buffer.size() + device.json().length + 1 > maxMessageBytes) {
+                bodies.add(new Body(device.routingKey(), closeArray(buffer)));
+            }
+            buffer.write(buffer.size() == 0 ? '[' : ',');
+            buffer.writeBytes(device.json());
+        }
+        buffers.forEach((routingKey, buffer) -> {
+            if (buffer.size() > 0) {
+                bodies.add(new Body(routingKey, closeArray(buffer)));
+            }
+        });
+        return bodies;
+    }
+
+    private static byte[] closeArray(ByteArrayOutputStream buffer) {
+        buffer.write(']');
+        byte[] body = buffer.toByteArray();
+        buffer.reset();
+        return body;
+    }
+
+    private static String[] partitionKeys(int partitionCount) {
+        if (partitionCount < 1) {
+            throw new IllegalArgumentException("app.rabbitmq.partitions.count must be positive: " + partitionCount);
+        }
+        String[] keys = new String[partitionCount];
+        for (int i = 0; i < partitionCount; i++) {
+            keys[i] = String.valueOf(i);
+        }
+        return keys;
+    }
+
+    private OutboundMessage toMessage(Body body) {
+        recordMessage(body.json());
+        return new OutboundMessage(exchangeName, body.routingKey(), body.json());
+    }
+
+    private CorrelableOutboundMessage<Long> toConfirmableMessage(Body body) {
+        recordMessage(body.json());
+        return new CorrelableOutboundMessage<>(exchangeName, body.routingKey(), body.json(), System.nanoTime());
+    }
+
+    private void recordMessage(byte[] body) {
+        messagesCounter.increment();
+        messageBytes.record(body.length);
+    }
+
+    private byte[] serialize(DeviceData device) {
+        try {
+            return deviceWriter.writeValueAsBytes(device);
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to serialize message", e);
+        }
+    }
+
+    /**
+     * One message body and the routing key it is published with.
+     */
+    private record Body(String routingKey, byte[] json) {
+    }
+}
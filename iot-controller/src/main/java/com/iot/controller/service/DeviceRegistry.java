@@ -0,0 +1,196 @@
+package com.iot.controller.service;
+
+import com.iot.contracts.domain.DeviceData;
+import com.iot.contracts.domain.DeviceMetadata;
+import com.iot.contracts.registry.DeviceMetadataCache;
+import com.iot.controller.domain.DeviceRegistryEntity;
+import com.iot.controller.repository.DeviceRegistryRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Keeps the static fields of every device once, in {@code device_registry}, so readings can be stored and
+ * published as status-only events that point at a metadata version.
+ * <p>
+ * Known metadata is held in a bounded cache; a device that is not cached is read from Mongo. New devices and
+ * devices whose static fields differ from the stored ones get a new version with an atomic upsert-and-increment,
+ * so concurrent controller instances never hand out the same version for different metadata.
+ */
+@Service
+@Slf4j
+public class DeviceRegistry {
+
+    private static final int CHANGE_CONCURRENCY = 16;
+
+    private final ReactiveMongoTemplate template;
+    private final DeviceRegistryRepository repository;
+    private final DeviceMetadataCache cache;
+
+    private final Counter cacheHits;
+    private final Counter cacheMisses;
+    private final Counter changes;
+
+    public DeviceRegistry(ReactiveMongoTemplate template,
+                          DeviceRegistryRepository repository,
+                          MeterRegistry meterRegistry,
+                          @Value("${app.ingest.registry.cache.max-size}") int cacheMaxSize) {
+        this.template = template;
+        this.repository = repository;
+        this.cache = new DeviceMetadataCache(cacheMaxSize);
+        this.cacheHits = Counter.builder("iot.ingest.registry.lookups")
+                .tag("result", "hit")
+                .register(meterRegistry);
+        this.cacheMisses = Counter.builder("iot.ingest.registry.lookups")
+                .tag("result", "miss")
+                .register(meterRegistry);
+        this.changes = Counter.builder("iot.ingest.registry.changes")
+                .description("Devices registered for the first time or with changed static fields")
+                .register(meterRegistry);
+        Gauge.builder("iot.ingest.registry.cache.size", cache, DeviceMetadataCache::size)
+                .description("Devices held in the metadata cache")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Registers the static fields of every device and returns the readings as status-only events, in order.
+     * When one batch holds several readings of a device with different static fields, each reading gets the
+     * version that describes it, and the last one ends up registered.
+     */
+    public Mono<List<DeviceData>> register(List<DeviceData> deviceData) {
+        return Mono.defer(() -> {
+            Map<Long, List<Integer>> readings = new LinkedHashMap<>();
+            for (int i = 0; i < deviceData.size(); i++) {
+                readings.computeIfAbsent(deviceData.get(i).id(), deviceId -> new ArrayList<>(1)).add(i);
+            }
+            DeviceMetadata[] versions = new DeviceMetadata[deviceData.size()];
+            Map<Long, List<Integer>> misses = new LinkedHashMap<>();
+            readings.forEach((deviceId, indexes) -> {
+                DeviceMetadata cached = cache.get(deviceId);
+                if (cached != null && describesAll(cached, deviceData, indexes)) {
+                    indexes.forEach(index -> versions[index] = cached);
+                } else {
+                    misses.put(deviceId, indexes);
+                }
+            });
+            cacheHits.increment(readings.size() - misses.size());
+            cacheMisses.increment(misses.size());
+            if (misses.isEmpty()) {
+                return Mono.just(slim(deviceData, versions));
+            }
+            return repository.findAllById(misses.keySet())
+                    .collectMap(DeviceRegistryEntity::deviceId, DeviceRegistryEntity::toMetadata)
+                    .flatMapMany(stored -> Flux.fromIterable(misses.entrySet())
+                            .flatMap(miss -> version(deviceData, miss.getValue(), stored.get(miss.getKey()), versions),
+                                    CHANGE_CONCURRENCY))
+                    .doOnNext(cache::put)
+                    .then(Mono.fromSupplier(() -> slim(deviceData, versions)));
+        });
+    }
+
+    public Mono<DeviceMetadata> find(long deviceId) {
+        DeviceMetadata cached = cache.get(deviceId);
+        if (cached != null) {
+            cacheHits.increment();
+            return Mono.just(cached);
+        }
+        cacheMisses.increment();
+        return repository.findById(deviceId)
+                .map(DeviceRegistryEntity::toMetadata)
+                .doOnNext(cache::put);
+    }
+
+    public Flux<DeviceMetadata> findAll(Collection<Long> deviceIds) {
+        List<DeviceMetadata> hits = new ArrayList<>();
+        List<Long> misses = new ArrayList<>();
+        for (Long deviceId : new LinkedHashSet<>(deviceIds)) {
+            DeviceMetadata cached = cache.get(deviceId);
+            if (cached != null) {
+                hits.add(cached);
+            } else {
+                misses.add(deviceId);
+            }
+        }
+        cacheHits.increment(hits.size());
+        cacheMisses.increment(misses.size());
+        if (misses.isEmpty()) {
+            return Flux.fromIterable(hits);
+        }
+        return Flux.fromIterable(hits)
+                .concatWith(repository.findAllById(misses)
+                        .map(DeviceRegistryEntity::toMetadata)
+                        .doOnNext(cache::put));
+    }
+
+    private Mono<DeviceMetadata> nextVersion(DeviceData device) {
+        Update update = new Update()
+                .set("name", device.name())
+                .set("manufacturer", device.manufacturer())
+                .set("type", device.type())
+                .set("capabilities", device.capabilities())
+                .set("updatedAt", Instant.now())
+                .inc("version", 1);
+        return template.findAndModify(Query.query(Criteria.where("_id").is(device.id())), update,
+                        FindAndModifyOptions.options().upsert(true).returnNew(true), DeviceRegistryEntity.class)
+                .map(DeviceRegistryEntity::toMetadata)
+                .doOnNext(metadata -> {
+                    changes.increment();
+                    log.debug("Device {} metadata is now version {}", metadata.deviceId(), metadata.version());
+                });
+    }
+
+    /**
+     * Versions the readings of one device in order, starting from the {@code stored} metadata: a reading whose
+     * static fields differ from the reading before gets a new version. Emits the version the device ends up with.
+     */
+    private Mono<DeviceMetadata> version(List<DeviceData> deviceData, List<Integer> indexes, DeviceMetadata stored,
+                                        DeviceMetadata[] versions) {
+        AtomicReference<DeviceMetadata> current = new AtomicReference<>(stored);
+        return Flux.fromIterable(indexes)
+                .concatMap(index -> {
+                    DeviceData device = deviceData.get(index);
+                    DeviceMetadata known = current.get();
+                    Mono<DeviceMetadata> metadata = known != null && known.describes(device)
+                            ? Mono.just(known)
+                            : nextVersion(device).doOnNext(current::set);
+                    return metadata.doOnNext(version -> versions[index] = version);
+                })
+                .then(Mono.fromSupplier(current::get));
+    }
+
+    private static boolean describesAll(DeviceMetadata metadata, List<DeviceData> deviceData, List<Integer> indexes) {
+        for (int index : indexes) {
+            if (!metadata.describes(deviceData.get(index))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static List<DeviceData> slim(List<DeviceData> deviceData, DeviceMetadata[] versions) {
+        List<DeviceData> events = new ArrayList<>(deviceData.size());
+        for (int i = 0; i < deviceData.size(); i++) {
+            events.add(deviceData.get(i).slim(versions[i].version()));
+        }
+        return events;
+    }
+}
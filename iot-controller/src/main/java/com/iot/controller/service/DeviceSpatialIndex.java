@@ -0,0 +1,309 @@
+package com.iot.controller.service;
+
+import com.iot.contracts.domain.DeviceData;
+import com.iot.contracts.domain.components.Location;
+import com.iot.controller.domain.DeviceLatestEntity;
+import com.iot.controller.repository.DeviceLatestRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+/**
+ * In-memory spatial index over the latest position of every device, for region and nearest-neighbour queries
+ * on one floor ({@code z}).
+ * <p>
+ * Each floor is a uniform grid of {@code app.ingest.spatial.cell-size} square cells holding the ids of the
+ * devices in them; only occupied cells exist. A region query visits the cells overlapping the rectangle, a nearest
+ * query visits rings of cells around the point until no unvisited cell can be closer than the k-th match.
+ * Ingested readings move devices between cells; a reading older than the device's indexed one is ignored.
+ * On startup the index is loaded from {@code device_latest} when that projection is enabled.
+ */
+@Service
+@Slf4j
+public class DeviceSpatialIndex {
+
+    private static final Comparator<SpatialMatch> NEAREST_FIRST = Comparator
+            .comparingDouble(SpatialMatch::distance)
+            .thenComparingLong(SpatialMatch::deviceId);
+
+    private final DeviceLatestRepository latestRepository;
+
+    private final boolean enabled;
+    private final boolean bootstrapEnabled;
+    private final int cellSize;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<Long, Position> positions = new HashMap<>();
+    private final Map<Integer, Floor> floors = new HashMap<>();
+
+    private final Timer regionTimer;
+    private final Timer nearestTimer;
+
+    public DeviceSpatialIndex(DeviceLatestRepository latestRepository,
+                              MeterRegistry meterRegistry,
+                              @Value("${app.ingest.spatial.enabled}") boolean enabled,
+                              @Value("${app.ingest.latest.enabled}") boolean bootstrapEnabled,
+                              @Value("${app.ingest.spatial.cell-size}") int cellSize) {
+        if (cellSize <= 0) {
+            throw new IllegalArgumentException("Spatial index cell size must be positive");
+        }
+        this.latestRepository = latestRepository;
+        this.enabled = enabled;
+        this.bootstrapEnabled = bootstrapEnabled;
+        this.cellSize = cellSize;
+        this.regionTimer = queryTimer(meterRegistry, "region");
+        this.nearestTimer = queryTimer(meterRegistry, "nearest");
+        Gauge.builder("iot.ingest.spatial.devices", this, DeviceSpatialIndex::size)
+                .description("Devices held in the spatial index")
+                .register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!enabled || !bootstrapEnabled) {
+            return;
+        }
+        latestRepository.findAll()
+                .buffer(1000)
+                .doOnNext(this::load)
+                .count()
+                .subscribe(
+                        batches -> log.info("Spatial index loaded from device_latest: devices={}", size()),
+                        e -> log.warn("Failed to load the spatial index from device_latest: {}", e.getMessage()));
+    }
+
+    public void update(List<DeviceData> deviceData) {
+        if (!enabled || deviceData.isEmpty()) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            for (DeviceData device : deviceData) {
+                move(device.id(), device.location(), device.status().lastHeartbeat());
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Devices on floor {@code z} within the rectangle, bounds included, ordered by id.
+     */
+    public List<SpatialMatch> region(int z, int minX, int minY, int maxX, int maxY, int limit) {
+        return regionTimer.record(() -> {
+            List<SpatialMatch> matches = new ArrayList<>();
+            lock.readLock().lock();
+            try {
+                Floor floor = floors.get(z);
+                if (floor == null) {
+                    return matches;
+                }
+                long cellsInRegion = (long) (cell(maxX) - cell(minX) + 1) * (cell(maxY) - cell(minY) + 1);
+                if (cellsInRegion > floor.cells.size()) {
+                    floor.cells.values().forEach(ids -> collect(ids, minX, minY, maxX, maxY, matches));
+                } else {
+                    for (int cx = cell(minX); cx <= cell(maxX); cx++) {
+                        for (int cy = cell(minY); cy <= cell(maxY); cy++) {
+                            Set<Long> ids = floor.cells.get(key(cx, cy));
+                            if (ids != null) {
+                                collect(ids, minX, minY, maxX, maxY, matches);
+                            }
+                        }
+                    }
+                }
+            } finally {
+                lock.readLock().unlock();
+            }
+            matches.sort(Comparator.comparingLong(SpatialMatch::deviceId));
+            return matches.size() > limit ? List.copyOf(matches.subList(0, limit)) : matches;
+        });
+    }
+
+    /**
+     * Up to {@code k} devices on floor {@code z} closest to (x, y) and no farther than {@code maxDistance},
+     * nearest first.
+     */
+    public List<SpatialMatch> nearest(int z, int x, int y, int k, double maxDistance) {
+        return nearestTimer.record(() -> {
+            // max-heap on (distance, id): the root is the current k-th match, ties resolved towards lower ids
+            PriorityQueue<SpatialMatch> best = new PriorityQueue<>(NEAREST_FIRST.reversed());
+            lock.readLock().lock();
+            try {
+                Floor floor = floors.get(z);
+                if (floor == null) {
+                    return List.of();
+                }
+                int cx = cell(x);
+                int cy = cell(y);
+                int maxRing = Math.max(
+                        Math.max(cx - floor.minCellX, floor.maxCellX - cx),
+                        Math.max(cy - floor.minCellY, floor.maxCellY - cy));
+                for (int ring = 0; ring <= maxRing; ring++) {
+                    // anything outside rings 0..ring-1 is at least (ring - 1) cells away
+                    double ringDistance = (double) (ring - 1) * cellSize;
+                    if (ringDistance > maxDistance || (best.size() == k && ringDistance > best.peek().distance())) {
+                        break;
+                    }
+                    visitRing(floor, cx, cy, ring, ids -> {
+                        for (long id : ids) {
+                            Position position = positions.get(id);
+                            double distance = Math.hypot(position.x() - x, position.y() - y);
+                            if (distance > maxDistance) {
+                                continue;
+                            }
+                            SpatialMatch match = position.match(id, distance);
+                            if (best.size() < k) {
+                                best.add(match);
+                            } else if (NEAREST_FIRST.compare(match, best.peek()) < 0) {
+                                best.poll();
+                                best.add(match);
+                            }
+                        }
+                    });
+                }
+            } finally {
+                lock.readLock().unlock();
+            }
+            List<SpatialMatch> matches = new ArrayList<>(best);
+            matches.sort(NEAREST_FIRST);
+            return matches;
+        });
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return positions.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void load(List<DeviceLatestEntity> latest) {
+        lock.writeLock().lock();
+        try {
+            for (DeviceLatestEntity entity : latest) {
+                if (entity.location() != null && entity.status() != null) {
+                    move(entity.deviceId(), entity.location(), entity.status().lastHeartbeat());
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void move(long deviceId, Location location, Instant heartbeat) {
+        Position previous = positions.get(deviceId);
+        if (previous != null && heartbeat != null && previous.heartbeat() != null
+                && heartbeat.isBefore(previous.heartbeat())) {
+            return;
+        }
+        Position next = new Position(location.x(), location.y(), location.z(), heartbeat);
+        positions.put(deviceId, next);
+        if (previous != null && sameCell(previous, next)) {
+            return;
+        }
+        if (previous != null) {
+            Floor floor = floors.get(previous.z());
+            long previousCell = key(cell(previous.x()), cell(previous.y()));
+            Set<Long> ids = floor.cells.get(previousCell);
+            ids.remove(deviceId);
+            if (ids.isEmpty()) {
+                floor.cells.remove(previousCell);
+            }
+        }
+        floors.computeIfAbsent(next.z(), z -> new Floor()).add(cell(next.x()), cell(next.y()), deviceId);
+    }
+
+    private void collect(Set<Long> ids, int minX, int minY, int maxX, int maxY, List<SpatialMatch> matches) {
+        for (long id : ids) {
+            Position position = positions.get(id);
+            if (position.x() >= minX && position.x() <= maxX && position.y() >= minY && position.y() <= maxY) {
+                matches.add(position.match(id, null));
+            }
+        }
+    }
+
+    private static void visitRing(Floor floor, int cx, int cy, int ring, Consumer<Set<Long>> visitor) {
+        if (ring == 0) {
+            Set<Long> ids = floor.cells.get(key(cx, cy));
+            if (ids != null) {
+                visitor.accept(ids);
+            }
+            return;
+        }
+        for (int dx = -ring; dx <= ring; dx++) {
+            for (int dy = -ring; dy <= ring; dy++) {
+                if (Math.abs(dx) != ring && Math.abs(dy) != ring) {
+                    continue;
+                }
+                Set<Long> ids = floor.cells.get(key(cx + dx, cy + dy));
+                if (ids != null) {
+                    visitor.accept(ids);
+                }
+            }
+        }
+    }
+
+    private boolean sameCell(Position a, Position b) {
+        return a.z() == b.z() && cell(a.x()) == cell(b.x()) && cell(a.y()) == cell(b.y());
+    }
+
+    private int cell(int coordinate) {
+        return Math.floorDiv(coordinate, cellSize);
+    }
+
+    private static long key(int cx, int cy) {
+        return ((long) cx << 32) | (cy & 0xffffffffL);
+    }
+
+    private static Timer queryTimer(MeterRegistry meterRegistry, String type) {
+        return Timer.builder("iot.ingest.spatial.query")
+                .description("Time to answer a spatial query from the index")
+                .tag("type", type)
+                .register(meterRegistry);
+    }
+
+    private record Position(int x, int y, int z, Instant heartbeat) {
+
+        SpatialMatch match(long deviceId, Double distance) {
+            return new SpatialMatch(deviceId, new Location(x, y, z), distance);
+        }
+    }
+
+    private static final class Floor {
+
+        private final Map<Long, Set<Long>> cells = new HashMap<>();
+        private int minCellX = Integer.MAX_VALUE;
+        private int maxCellX = Integer.MIN_VALUE;
+        private int minCellY = Integer.MAX_VALUE;
+        private int maxCellY = Integer.MIN_VALUE;
+
+        void add(int cx, int cy, long deviceId) {
+            cells.computeIfAbsent(key(cx, cy), cell -> new HashSet<>()).add(deviceId);
+            // bounds only grow; they limit how far a nearest query searches
+            minCellX = Math.min(minCellX, cx);
+            maxCellX = Math.max(maxCellX, cx);
+            minCellY = Math.min(minCellY, cy);
+            maxCellY = Math.max(maxCellY, cy);
+        }
+    }
+}
@@ -0,0 +1,275 @@
+package com.iot.controller.service;
+
+import com.iot.controller.domain.CompactionCheckpointEntity;
+import com.iot.controller.domain.DeviceEntity;
+import com.iot.controller.domain.DeviceRollupEntity;
+import com.iot.controller.repository.CompactionCheckpointRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndReplaceOptions;
+import org.springframework.data.mongodb.core.ReactiveBulkOperations;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Downsamples device history: raw readings older than {@code app.mongodb.compaction.raw-retention} are rolled
+ * into per-device, per-minute {@link DeviceRollupEntity} summaries, and minute summaries older than
+ * {@code minute-retention} into per-hour ones. The rolled-up documents are deleted.
+ * <p>
+ * Each tier works through its backlog oldest first in slices of {@code raw-slice} / {@code minute-slice}. Slices
+ * are aligned to whole buckets, and readings are timestamped on ingest, so every bucket is complete when it is
+ * rolled up. A slice is read through a streaming cursor, its buckets are written with one unordered bulk upsert,
+ * and only then the tier's checkpoint moves past the slice and the source documents before the checkpoint are
+ * deleted. A slice interrupted before the checkpoint is rolled up again from the same documents; a delete
+ * interrupted after it is finished by the next pass.
+ */
+@Service
+@Slf4j
+public class HistoryCompactor {
+
+    private final ReactiveMongoTemplate template;
+    private final CompactionCheckpointRepository checkpointRepository;
+
+    private final boolean enabled;
+    private final Duration pollInterval;
+    private final int cursorBatchSize;
+    private final Tier minuteTier;
+    private final Tier hourTier;
+
+    private Disposable subscription;
+
+    public HistoryCompactor(ReactiveMongoTemplate template,
+                            CompactionCheckpointRepository checkpointRepository,
+                            MeterRegistry meterRegistry,
+                            @Value("${app.mongodb.compaction.enabled}") boolean enabled,
+                            @Value("${app.mongodb.compaction.raw-retention}") Duration rawRetention,
+                            @Value("${app.mongodb.compaction.raw-slice}") Duration rawSlice,
+                            @Value("${app.mongodb.compaction.minute-retention}") Duration minuteRetention,
+                            @Value("${app.mongodb.compaction.minute-slice}") Duration minuteSlice,
+                            @Value("${app.mongodb.compaction.poll-interval}") Duration pollInterval,
+                            @Value("${app.mongodb.compaction.cursor-batch-size}") int cursorBatchSize,
+                            @Value("${app.mongodb.collection.history-minute}") String minuteCollection,
+                            @Value("${app.mongodb.collection.history-hour}") String hourCollection) {
+        if (!minuteRetention.minus(rawRetention).isPositive()) {
+            throw new IllegalArgumentException("minute-retention must be longer than raw-retention");
+        }
+        this.template = template;
+        this.checkpointRepository = checkpointRepository;
+        this.enabled = enabled;
+        this.pollInterval = pollInterval;
+        this.cursorBatchSize = cursorBatchSize;
+        this.minuteTier = new Tier("minute", template.getCollectionName(DeviceEntity.class), "timestamp",
+                minuteCollection, ChronoUnit.MINUTES, rawRetention, slice(rawSlice, ChronoUnit.MINUTES), meterRegistry);
+        this.hourTier = new Tier("hour", minuteCollection, "bucket",
+                hourCollection, ChronoUnit.HOURS, minuteRetention, slice(minuteSlice, ChronoUnit.HOURS), meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        log.info("Starting history compaction: raw > {} to minutes, minutes > {} to hours, pollInterval={}",
+                minuteTier.retention(), hourTier.retention(), pollInterval);
+
+        subscription = createIndexes()
+                .thenMany(Flux.interval(Duration.ZERO, pollInterval))
+                .onBackpressureDrop()
+                .concatMap(tick -> compact())
+                .retryWhen(Retry.backoff(Long.MAX_VALUE, Duration.ofSeconds(2))
+                        .maxBackoff(Duration.ofMinutes(1))
+                        .doBeforeRetry(signal -> log.error("History compaction failed, retrying: {}",
+                                signal.failure().getMessage())))
+                .subscribe(
+                        v -> {},
+                        e -> log.error("FATAL: History compaction terminated: {}", e.getMessage())
+                );
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (subscription != null) {
+            subscription.dispose();
+        }
+    }
+
+    /**
+     * Compacts both tiers until they are caught up.
+     *
+     * @return number of source documents rolled up
+     */
+    Mono<Long> compact() {
+        return drain(minuteTier).flatMap(minutes -> drain(hourTier).map(hours -> minutes + hours));
+    }
+
+    private Mono<Long> drain(Tier tier) {
+        return compactSlice(tier)
+                .expand(compacted -> compactSlice(tier))
+                .reduce(0L, Long::sum);
+    }
+
+    /**
+     * Rolls up the oldest slice of the tier that is past its retention.
+     *
+     * @return number of source documents rolled up, or empty once the tier is caught up
+     */
+    private Mono<Long> compactSlice(Tier tier) {
+        Instant horizon = Instant.now().minus(tier.retention()).truncatedTo(tier.unit());
+        return checkpointRepository.findById(tier.name())
+                .map(CompactionCheckpointEntity::compactedUntil)
+                .flatMap(compactedUntil -> deleteBefore(tier, compactedUntil).thenReturn(compactedUntil))
+                .defaultIfEmpty(Instant.EPOCH)
+                .flatMap(compactedUntil -> oldest(tier).flatMap(oldest -> oldest.isBefore(compactedUntil)
+                        // would otherwise roll up the same slice over and over
+                        ? Mono.error(new IllegalStateException("Compacted " + tier.name() + " history before "
+                                + compactedUntil + " was not deleted from " + tier.source()))
+                        : Mono.just(oldest.truncatedTo(tier.unit()))))
+                .filter(from -> from.isBefore(horizon))
+                .flatMap(from -> {
+                    Instant sliceEnd = from.plus(tier.slice());
+                    Instant to = sliceEnd.isBefore(horizon) ? sliceEnd : horizon;
+                    Timer.Sample sample = Timer.start();
+                    return rollUp(tier, from, to)
+                            .flatMap(rolled -> write(tier, rolled.buckets())
+                                    .then(checkpointRepository.save(
+                                            new CompactionCheckpointEntity(tier.name(), to, Instant.now())))
+                                    .then(deleteBefore(tier, to))
+                                    .doOnSuccess(deleted -> {
+                                        sample.stop(tier.sliceTimer());
+                                        tier.compacted().increment(rolled.sources());
+                                        tier.rollups().increment(rolled.buckets().size());
+                                        log.debug("Compacted {} history [{}, {}): sources={}, rollups={}",
+                                                tier.name(), from, to, rolled.sources(), rolled.buckets().size());
+                                    })
+                                    .thenReturn(rolled.sources()));
+                });
+    }
+
+    private Mono<Instant> oldest(Tier tier) {
+        Query query = new Query().with(Sort.by(Sort.Direction.ASC, tier.timeField())).limit(1);
+        query.fields().include(tier.timeField());
+        if (tier == minuteTier) {
+            return template.findOne(query, DeviceEntity.class).mapNotNull(DeviceEntity::timestamp);
+        }
+        return template.findOne(query, DeviceRollupEntity.class, tier.source()).mapNotNull(DeviceRollupEntity::bucket);
+    }
+
+    /**
+     * Streams the slice's source documents and folds them into buckets; only the buckets are held in memory.
+     */
+    private Mono<Rolled> rollUp(Tier tier, Instant from, Instant to) {
+        Query query = Query.query(Criteria.where(tier.timeField()).gte(from).lt(to)).cursorBatchSize(cursorBatchSize);
+        Map<String, RollupBucket> buckets = new HashMap<>();
+        Flux<?> sources;
+        if (tier == minuteTier) {
+            // deviceId is top-level in a regular collection and in meta in a time-series one
+            query.fields().include("deviceId", "meta.deviceId", "location", "status", "timestamp");
+            sources = template.find(query, DeviceEntity.class)
+                    .doOnNext(reading -> bucket(buckets, tier, reading.meta().deviceId(), reading.timestamp())
+                            .add(reading));
+        } else {
+            sources = template.find(query, DeviceRollupEntity.class, tier.source())
+                    .doOnNext(rollup -> bucket(buckets, tier, rollup.deviceId(), rollup.bucket()).merge(rollup));
+        }
+        return sources.count()
+                .map(count -> new Rolled(count, buckets.values().stream().map(RollupBucket::toEntity).toList()));
+    }
+
+    private Mono<Void> write(Tier tier, Collection<DeviceRollupEntity> rollups) {
+        if (rollups.isEmpty()) {
+            return Mono.empty();
+        }
+        return Mono.defer(() -> {
+            ReactiveBulkOperations operations = template.bulkOps(BulkOperations.BulkMode.UNORDERED,
+                    DeviceRollupEntity.class, tier.target());
+            for (DeviceRollupEntity rollup : rollups) {
+                operations.replaceOne(Query.query(Criteria.where("_id").is(rollup.id())), rollup,
+                        FindAndReplaceOptions.options().upsert());
+            }
+            return operations.execute();
+        }).then();
+    }
+
+    private Mono<Void> deleteBefore(Tier tier, Instant until) {
+        Query query = Query.query(Criteria.where(tier.timeField()).lt(until));
+        return template.remove(query, tier.source()).then();
+    }
+
+    private Mono<Void> createIndexes() {
+        return template.indexOps(minuteTier.source())
+                .createIndex(new Index().on("timestamp", Sort.Direction.ASC).named("timestamp"))
+                .thenMany(Flux.just(minuteTier.target(), hourTier.target()))
+                .concatMap(collection -> template.indexOps(collection)
+                        .createIndex(new Index().on("bucket", Sort.Direction.ASC).named("bucket"))
+                        .then(template.indexOps(collection)
+                                .createIndex(new Index()
+                                        .on("deviceId", Sort.Direction.ASC)
+                                        .on("bucket", Sort.Direction.DESC)
+                                        .named("device_bucket"))))
+                .then();
+    }
+
+    private static RollupBucket bucket(Map<String, RollupBucket> buckets, Tier tier, long deviceId, Instant time) {
+        Instant bucket = time.truncatedTo(tier.unit());
+        return buckets.computeIfAbsent(DeviceRollupEntity.id(deviceId, bucket),
+                id -> new RollupBucket(deviceId, bucket));
+    }
+
+    private static Duration slice(Duration slice, ChronoUnit unit) {
+        if (slice.isZero() || slice.isNegative() || slice.toNanos() % unit.getDuration().toNanos() != 0) {
+            throw new IllegalArgumentException("Compaction slice " + slice + " is not a whole number of " + unit);
+        }
+        return slice;
+    }
+
+    private record Rolled(long sources, Collection<DeviceRollupEntity> buckets) {
+    }
+
+    /**
+     * One compaction step: documents of {@code source} older than {@code retention} become {@code unit}
+     * buckets in {@code target}.
+     */
+    private record Tier(String name, String source, String timeField, String target, ChronoUnit unit,
+                        Duration retention, Duration slice,
+                        Counter compacted, Counter rollups, Timer sliceTimer) {
+
+        Tier(String name, String source, String timeField, String target, ChronoUnit unit,
+             Duration retention, Duration slice, MeterRegistry meterRegistry) {
+            this(name, source, timeField, target, unit, retention, slice,
+                    Counter.builder("iot.ingest.compaction.compacted")
+                            .description("Source history documents rolled up and deleted")
+                            .tag("tier", name)
+                            .register(meterRegistry),
+                    Counter.builder("iot.ingest.compaction.rollups")
+                            .description("Summary documents written by history compaction")
+                            .tag("tier", name)
+                            .register(meterRegistry),
+                    Timer.builder("iot.ingest.compaction.slice")
+                            .description("Time to roll up, write and delete one compaction slice")
+                            .tag("tier", name)
+                            .register(meterRegistry));
+        }
+    }
+}
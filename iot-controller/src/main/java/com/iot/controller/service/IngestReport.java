@@ -0,0 +1,41 @@
+package com.iot.controller.service;
+
+import com.iot.controller.validation.BatchValidationResult;
+import com.iot.controller.validation.DeviceViolation;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Response of an ingest request: how many devices were accepted and rejected, with the violations
+ * of the rejected ones (capped, so a stream full of bad devices does not grow the report without bound).
+ */
+public record IngestReport(
+        long accepted,
+        long rejected,
+        List<DeviceViolation> errors) {
+
+    private static final int MAX_REPORTED_ERRORS = 100;
+
+    public static IngestReport empty() {
+        return new IngestReport(0, 0, List.of());
+    }
+
+    static IngestReport of(BatchValidationResult validation) {
+        List<DeviceViolation> errors = validation.violations().size() > MAX_REPORTED_ERRORS
+                ? List.copyOf(validation.violations().subList(0, MAX_REPORTED_ERRORS))
+                : validation.violations();
+        return new IngestReport(validation.valid().size(), validation.rejected(), errors);
+    }
+
+    public IngestReport merge(IngestReport other) {
+        if (other.errors.isEmpty() || errors.size() >= MAX_REPORTED_ERRORS) {
+            return new IngestReport(accepted + other.accepted, rejected + other.rejected, errors);
+        }
+        List<DeviceViolation> mergedErrors = new ArrayList<>(errors);
+        other.errors.stream()
+                .limit(MAX_REPORTED_ERRORS - mergedErrors.size())
+                .forEach(mergedErrors::add);
+        return new IngestReport(accepted + other.accepted, rejected + other.rejected, List.copyOf(mergedErrors));
+    }
+}
@@ -0,0 +1,160 @@
+package com.iot.controller.service;
+
+import com.iot.contracts.domain.DeviceData;
+import com.iot.controller.codec.RawJsonDeviceBatch;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Merges the store step of concurrent small batches into shared Mongo writes and publishes.
+ * <p>
+ * A submitted batch waits until the pending devices reach {@code app.ingest.coalescer.max-batch-size} or the
+ * first of them has waited {@code max-delay}, whichever comes first; then all pending batches are stored with
+ * one call. Every caller completes, or fails, together with the write that contained its devices, so a completed
+ * {@link #submit} still means the caller's own devices are stored. Batches of at least {@code max-batch-size}
+ * devices are stored directly.
+ */
+@Component
+@Slf4j
+public class IngestionCoalescer {
+
+    private final boolean enabled;
+    private final int maxBatchSize;
+    private final long maxDelayNanos;
+    private final Scheduler scheduler;
+
+    private List<Pending> pending = new ArrayList<>();
+    private int pendingDevices;
+    private Disposable flushTimer;
+
+    private final Counter sizeFlushes;
+    private final Counter timeFlushes;
+    private final DistributionSummary flushDevices;
+    private final DistributionSummary flushRequests;
+
+    public IngestionCoalescer(MeterRegistry meterRegistry,
+                              @Value("${app.ingest.coalescer.enabled}") boolean enabled,
+                              @Value("${app.ingest.coalescer.max-batch-size}") int maxBatchSize,
+                              @Value("${app.ingest.coalescer.max-delay}") Duration maxDelay) {
+        this.enabled = enabled;
+        this.maxBatchSize = maxBatchSize;
+        this.maxDelayNanos = maxDelay.toNanos();
+        this.scheduler = Schedulers.parallel();
+
+        this.sizeFlushes = flushCounter(meterRegistry, "size");
+        this.timeFlushes = flushCounter(meterRegistry, "time");
+        this.flushDevices = DistributionSummary.builder("iot.ingest.coalescer.batch.devices")
+                .description("Devices per coalesced store")
+                .register(meterRegistry);
+        this.flushRequests = DistributionSummary.builder("iot.ingest.coalescer.batch.requests")
+                .description("Submitted batches merged into one coalesced store")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Stores {@code devices} with {@code store}, possibly merged with batches submitted concurrently.
+     * All callers pass the same store function; the merged list is handed to the one of the first batch.
+     */
+    public Mono<Void> submit(List<DeviceData> devices, Function<List<DeviceData>, Mono<Void>> store) {
+        if (!enabled || devices.size() >= maxBatchSize) {
+            return Mono.defer(() -> store.apply(devices));
+        }
+        return Mono.create(sink -> add(new Pending(devices, store, sink)));
+    }
+
+    private void add(Pending batch) {
+        List<Pending> overflow = null;
+        List<Pending> full = null;
+        synchronized (this) {
+            if (pendingDevices + batch.devices().size() > maxBatchSize) {
+                // keep every store within max-batch-size
+                overflow = takePending();
+            }
+            pending.add(batch);
+            pendingDevices += batch.devices().size();
+            if (pendingDevices >= maxBatchSize) {
+                full = takePending();
+            } else if (pending.size() == 1) {
+                List<Pending> window = pending;
+                flushTimer = scheduler.schedule(() -> flushWindow(window), maxDelayNanos, TimeUnit.NANOSECONDS);
+            }
+        }
+        if (overflow != null) {
+            sizeFlushes.increment();
+            flush(overflow);
+        }
+        if (full != null) {
+            sizeFlushes.increment();
+            flush(full);
+        }
+    }
+
+    private void flushWindow(List<Pending> window) {
+        List<Pending> batches;
+        synchronized (this) {
+            if (pending != window) {
+                // already flushed because it filled up
+                return;
+            }
+            batches = takePending();
+        }
+        timeFlushes.increment();
+        flush(batches);
+    }
+
+    private List<Pending> takePending() {
+        List<Pending> batches = pending;
+        pending = new ArrayList<>();
+        pendingDevices = 0;
+        if (flushTimer != null) {
+            flushTimer.dispose();
+            flushTimer = null;
+        }
+        return batches;
+    }
+
+    private void flush(List<Pending> batches) {
+        List<DeviceData> devices = batches.size() == 1
+                ? batches.getFirst().devices()
+                : RawJsonDeviceBatch.concat(batches.stream().map(Pending::devices).toList());
+        flushDevices.record(devices.size());
+        flushRequests.record(batches.size());
+
+        Mono.defer(() -> batches.getFirst().store().apply(devices))
+                .subscribe(
+                        null,
+                        error -> {
+                            log.warn("Coalesced store of {} batch(es), {} device(s) failed: {}",
+                                    batches.size(), devices.size(), error.getMessage());
+                            batches.forEach(batch -> batch.sink().error(error));
+                        },
+                        () -> batches.forEach(batch -> batch.sink().success()));
+    }
+
+    private static Counter flushCounter(MeterRegistry meterRegistry, String trigger) {
+        return Counter.builder("iot.ingest.coalescer.flushes")
+                .description("Coalesced stores by what triggered them")
+                .tag("trigger", trigger)
+                .register(meterRegistry);
+    }
+
+    private record Pending(List<DeviceData> devices,
+                           Function<List<DeviceData>, Mono<Void>> store,
+                           MonoSink<Void> sink) {
+    }
+}
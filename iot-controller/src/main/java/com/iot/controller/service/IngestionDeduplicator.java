@@ -0,0 +1,211 @@
+package com.iot.controller.service;
+
+import com.iot.contracts.domain.DeviceData;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Drops replayed ingest traffic before it reaches Mongo or the broker.
+ * <p>
+ * Batches carrying an {@code Idempotency-Key} are ingested at most once per key. While the first attempt runs, a
+ * request with the same key waits for it and gets its result; once it succeeded, the key is remembered for
+ * {@code app.ingest.idempotency.key-ttl} in a bounded cache and repeats get the same report without being ingested.
+ * A failed attempt forgets the key, so the client can retry. The attempt is not cancelled with the request, so a
+ * client that gives up mid-write still has its batch stored exactly once.
+ * Independently, every device reading is checked against the last accepted reading of the same device:
+ * a reading with an older {@code lastHeartbeat}, or with the same heartbeat and identical content, is a replay.
+ * Offline devices keep their heartbeat while other fields change, so an equal heartbeat alone is not a duplicate.
+ * <p>
+ * Both caches are local to the instance.
+ */
+@Component
+@Slf4j
+public class IngestionDeduplicator {
+
+    private final boolean sequenceCheckEnabled;
+    private final long keyTtlNanos;
+
+    private final Map<String, Claim> keys;
+    private final Map<Long, DeviceData> lastAccepted;
+
+    private final Counter duplicateBatchDevices;
+    private final Counter replayedDevices;
+
+    public IngestionDeduplicator(MeterRegistry meterRegistry,
+                                 @Value("${app.ingest.idempotency.key-ttl}") Duration keyTtl,
+                                 @Value("${app.ingest.idempotency.max-keys}") int maxKeys,
+                                 @Value("${app.ingest.idempotency.sequence-check.enabled}") boolean sequenceCheckEnabled,
+                                 @Value("${app.ingest.idempotency.sequence-check.max-devices}") int maxDevices) {
+        this.sequenceCheckEnabled = sequenceCheckEnabled;
+        this.keyTtlNanos = keyTtl.toNanos();
+        this.keys = new LinkedHashMap<>(Math.min(maxKeys, 1024)) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Claim> eldest) {
+                return size() > maxKeys;
+            }
+        };
+        this.lastAccepted = new LinkedHashMap<>(Math.min(maxDevices, 1024), 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, DeviceData> eldest) {
+                return size() > maxDevices;
+            }
+        };
+        this.duplicateBatchDevices = Counter.builder("iot.ingest.duplicates")
+                .description("Devices dropped as replays")
+                .tag("reason", "idempotency-key")
+                .register(meterRegistry);
+        this.replayedDevices = Counter.builder("iot.ingest.duplicates")
+                .description("Devices dropped as replays")
+                .tag("reason", "sequence")
+                .register(meterRegistry);
+        Gauge.builder("iot.ingest.idempotency.keys", this, IngestionDeduplicator::keyCount)
+                .description("Idempotency keys held in the dedup cache")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Runs {@code ingest} for the batch of {@code size} devices unless its key is in flight or was ingested within
+     * the TTL; then the result of that attempt is returned instead.
+     */
+    public Mono<IngestReport> ingestOnce(String key, int size, Supplier<Mono<IngestReport>> ingest) {
+        return Mono.defer(() -> {
+            synchronized (keys) {
+                purgeExpired(System.nanoTime());
+                Claim existing = keys.get(key);
+                if (existing != null) {
+                    duplicateBatchDevices.increment(size);
+                    log.info("Duplicate batch: idempotencyKey={}, size={}, {}", key, size,
+                            existing.done ? "already ingested" : "waiting for the attempt in flight");
+                    return existing.result;
+                }
+                Claim claim = new Claim();
+                // cached: shared by duplicates, and not cancelled when the request is
+                claim.result = ingest.get()
+                        .doOnSuccess(report -> complete(key, claim))
+                        .doOnError(error -> release(key, claim))
+                        .cache();
+                keys.put(key, claim);
+                return claim.result;
+            }
+        });
+    }
+
+    private void complete(String key, Claim claim) {
+        synchronized (keys) {
+            claim.done = true;
+            claim.expiresAt = System.nanoTime() + keyTtlNanos;
+            // re-insert so that the order of completed keys tracks expiry order
+            if (keys.remove(key, claim)) {
+                keys.put(key, claim);
+            }
+        }
+    }
+
+    private void release(String key, Claim claim) {
+        synchronized (keys) {
+            keys.remove(key, claim);
+        }
+    }
+
+    /**
+     * Drops completed keys past their TTL, oldest first; keys in flight are kept.
+     */
+    private void purgeExpired(long now) {
+        Iterator<Claim> claims = keys.values().iterator();
+        while (claims.hasNext()) {
+            Claim claim = claims.next();
+            if (!claim.done) {
+                continue;
+            }
+            if (now - claim.expiresAt < 0) {
+                return;
+            }
+            claims.remove();
+        }
+    }
+
+    /**
+     * Returns the readings that are not replays of already accepted ones, in their original order.
+     * Nothing is recorded until {@link #accept(List)} is called after the readings are stored.
+     */
+    public List<DeviceData> filterReplayed(List<DeviceData> deviceData) {
+        if (!sequenceCheckEnabled) {
+            return deviceData;
+        }
+        List<DeviceData> fresh = new ArrayList<>(deviceData.size());
+        Map<Long, DeviceData> inBatch = new HashMap<>();
+        synchronized (lastAccepted) {
+            for (DeviceData device : deviceData) {
+                DeviceData previous = inBatch.getOrDefault(device.id(), lastAccepted.get(device.id()));
+                if (isReplay(device, previous)) {
+                    continue;
+                }
+                inBatch.put(device.id(), device);
+                fresh.add(device);
+            }
+        }
+        if (fresh.size() == deviceData.size()) {
+            // keep the caller's list, e.g. a RawJsonDeviceBatch the publisher can forward as is
+            return deviceData;
+        }
+        replayedDevices.increment(deviceData.size() - fresh.size());
+        return fresh;
+    }
+
+    public void accept(List<DeviceData> deviceData) {
+        if (!sequenceCheckEnabled) {
+            return;
+        }
+        synchronized (lastAccepted) {
+            for (DeviceData device : deviceData) {
+                DeviceData previous = lastAccepted.get(device.id());
+                if (previous == null || !heartbeat(device).isBefore(heartbeat(previous))) {
+                    lastAccepted.put(device.id(), device);
+                }
+            }
+        }
+    }
+
+    private static boolean isReplay(DeviceData device, DeviceData previous) {
+        if (previous == null) {
+            return false;
+        }
+        int order = heartbeat(device).compareTo(heartbeat(previous));
+        return order < 0 || (order == 0 && device.equals(previous));
+    }
+
+    private static Instant heartbeat(DeviceData device) {
+        return device.status().lastHeartbeat();
+    }
+
+    private int keyCount() {
+        synchronized (keys) {
+            return keys.size();
+        }
+    }
+
+    /**
+     * One idempotency key: the attempt's cached result, and once it succeeded, when the key expires.
+     * Guarded by {@code keys}.
+     */
+    private static final class Claim {
+        private Mono<IngestReport> result;
+        private boolean done;
+        private long expiresAt;
+    }
+}
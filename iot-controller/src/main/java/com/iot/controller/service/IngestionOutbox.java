@@ -0,0 +1,50 @@
+package com.iot.controller.service;
+
+import com.iot.contracts.domain.DeviceData;
+import com.iot.controller.domain.OutboxEntity;
+import com.iot.controller.repository.OutboxRepository;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.publisher.Mono;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Write side of the transactional outbox: stores device documents together with an outbox entry
+ * that {@link OutboxRelay} later publishes. Both writes share one Mongo transaction, so the outbox
+ * requires {@code app.ingest.outbox.transactional} and therefore a replica set; without it a crash
+ * between the two writes would leave stored devices that are never published, so that combination
+ * is refused at startup.
+ */
+@Service
+public class IngestionOutbox {
+
+    private final OutboxRepository outboxRepository;
+    private final ObjectProvider<TransactionalOperator> transactionalOperator;
+
+    public IngestionOutbox(OutboxRepository outboxRepository,
+                           ObjectProvider<TransactionalOperator> transactionalOperator,
+                           @Value("${app.ingest.outbox.enabled}") boolean enabled,
+                           @Value("${app.ingest.outbox.transactional}") boolean transactional) {
+        if (enabled && !transactional) {
+            throw new IllegalArgumentException(
+                    "app.ingest.outbox.enabled requires app.ingest.outbox.transactional (MongoDB replica set)");
+        }
+        this.outboxRepository = outboxRepository;
+        this.transactionalOperator = transactionalOperator;
+    }
+
+    /**
+     * @param devices    write of the device documents, as the ingest path persists them (bulk or {@code saveAll})
+     * @param deviceData events the relay publishes once the transaction commits
+     */
+    public Mono<Void> store(Mono<Void> devices, List<DeviceData> deviceData) {
+        Mono<Void> writes = devices
+                .then(Mono.defer(() -> outboxRepository.save(new OutboxEntity(null, deviceData, Instant.now()))))
+                .then();
+        return transactionalOperator.getObject().transactional(writes);
+    }
+}
@@ -0,0 +1,21 @@
+package com.iot.controller.service;
+
+import java.time.Duration;
+
+/**
+ * Thrown when {@link AdaptiveConcurrencyLimiter} sheds a request; mapped to 429 with {@code Retry-After}.
+ */
+public class IngestionOverloadedException extends RuntimeException {
+
+    private final Duration retryAfter;
+
+    public IngestionOverloadedException(Duration retryAfter) {
+        // thrown on every shed request, so skip the stack trace
+        super("Ingestion is overloaded, retry later", null, false, false);
+        this.retryAfter = retryAfter;
+    }
+
+    public Duration getRetryAfter() {
+        return retryAfter;
+    }
+}
@@ -1,78 +1,427 @@
 package com.iot.controller.service;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.iot.controller.domain.DeviceEntity;
+import com.iot.controller.domain.DeviceMeta;
+import com.iot.controller.journal.IngestJournal;
+import com.iot.controller.repository.BulkInsertException;
 import com.iot.controller.repository.DeviceDataRepository;
+import com.iot.controller.validation.BatchValidationResult;
+import com.iot.controller.validation.DeviceValidationException;
 import com.iot.controller.validation.DeviceValidator;
 import com.iot.contracts.domain.DeviceData;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
-import reactor.rabbitmq.OutboundMessage;
-import reactor.rabbitmq.Sender;
+import reactor.core.publisher.Sinks;
 
+import java.time.Duration;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.EnumMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
 
+/**
+ * Validates, stores and publishes ingested devices.
+ * <p>
+ * Every stage of a chunk is timed by {@code iot.ingest.stage} with a {@code stage} tag: {@code validate},
+ * {@code dedup}, {@code journal}, {@code deadband}, {@code registry}, {@code map} ({@code toEntity}), {@code persist}, {@code publish},
+ * {@code outbox}, {@code latest} and {@code spatial}. Stages after {@code dedup} run once per coalesced store and may cover several requests.
+ * {@code iot.ingest.batch.size} records the devices per chunk and {@code iot.ingest.batches.in-flight}
+ * the chunks currently being ingested.
+ * <p>
+ * {@code app.ingest.consistency.mode} decides what a write waits for (see {@link ConsistencyMode}); its latency
+ * is recorded by {@code iot.ingest.write} with a {@code mode} tag. The outbox, when enabled, replaces the mode.
+ */
 @Service
 @Slf4j
 public class IngestionService {
 
+    /**
+     * Order of the Mongo write and the AMQP publish of a chunk, and which of them the request waits for.
+     */
+    public enum ConsistencyMode {
+        /** Persist, then publish: nothing is published that is not stored. */
+        PERSIST_THEN_PUBLISH,
+        /** Persist and publish at the same time; the request waits for both. */
+        PARALLEL,
+        /** Publish, then persist in the background; consumers see readings before history has them. */
+        PUBLISH_THEN_PERSIST,
+        /** Publish only, e.g. for alert-only deployments that keep no history. */
+        PUBLISH_ONLY
+    }
+
     private final DeviceDataRepository repository;
-    private final Sender sender;
+    private final DevicePublisher publisher;
     private final DeviceValidator validator;
-    private final ObjectMapper objectMapper;
+    private final IngestionOutbox outbox;
+    private final LatestStateService latestState;
+    private final IngestionDeduplicator deduplicator;
+    private final IngestionCoalescer coalescer;
+    private final IngestJournal journal;
+    private final DeviceRegistry registry;
+    private final DeadbandFilter deadband;
+    private final DeviceSpatialIndex spatialIndex;
+
+    private final Timer validateTimer;
+    private final Timer dedupTimer;
+    private final Timer journalTimer;
+    private final Timer deadbandTimer;
+    private final Timer registryTimer;
+    private final Timer mapTimer;
+    private final Timer persistTimer;
+    private final Timer publishTimer;
+    private final Timer outboxTimer;
+    private final Timer latestTimer;
+    private final Timer spatialTimer;
+    private final Map<ConsistencyMode, Timer> writeTimers = new EnumMap<>(ConsistencyMode.class);
+    private final DistributionSummary batchSize;
+    private final AtomicInteger inFlightBatches = new AtomicInteger();
+    private final AtomicInteger backgroundPersists = new AtomicInteger();
+    private final Set<Sinks.Empty<Void>> runningBackgroundPersists = ConcurrentHashMap.newKeySet();
+    private final Counter backgroundPersistFailures;
+
+    @Value("${app.ingest.stream.chunk-size}")
+    private int streamChunkSize;
+
+    @Value("${app.ingest.journal.enabled}")
+    private boolean journalEnabled;
+
+    @Value("${app.ingest.outbox.enabled}")
+    private boolean outboxEnabled;
+
+    @Value("${app.ingest.consistency.mode}")
+    private ConsistencyMode consistencyMode = ConsistencyMode.PERSIST_THEN_PUBLISH;
 
-    @Value("${app.rabbitmq.exchange.data}")
-    private String dataExchangeName;
+    @Value("${app.ingest.consistency.background-persist.max-in-flight}")
+    private int backgroundPersistMaxInFlight;
 
-    @Value("${app.rabbitmq.chunk-size}")
-    private int publishChunkSize;
+    @Value("${spring.lifecycle.timeout-per-shutdown-phase}")
+    private Duration shutdownTimeout = Duration.ofSeconds(30);
 
-    public IngestionService(DeviceDataRepository repository, Sender sender, DeviceValidator validator, ObjectMapper objectMapper) {
+    @Value("${app.ingest.registry.enabled}")
+    private boolean registryEnabled;
+
+    @Value("${app.mongodb.bulk.enabled}")
+    private boolean bulkInsertEnabled;
+
+    @Value("${app.ingest.latest.enabled}")
+    private boolean latestStateEnabled;
+
+    @Value("${app.ingest.validation.partial-accept}")
+    private boolean partialAcceptEnabled;
+
+    public IngestionService(DeviceDataRepository repository, DevicePublisher publisher, DeviceValidator validator,
+                            IngestionOutbox outbox, LatestStateService latestState,
+                            IngestionDeduplicator deduplicator, IngestionCoalescer coalescer,
+                            IngestJournal journal, DeviceRegistry registry, DeadbandFilter deadband,
+                            DeviceSpatialIndex spatialIndex, MeterRegistry meterRegistry) {
         this.repository = repository;
-        this.sender = sender;
+        this.publisher = publisher;
         this.validator = validator;
-        this.objectMapper = objectMapper;
+        this.outbox = outbox;
+        this.latestState = latestState;
+        this.deduplicator = deduplicator;
+        this.coalescer = coalescer;
+        this.journal = journal;
+        this.registry = registry;
+        this.deadband = deadband;
+        this.spatialIndex = spatialIndex;
+
+        this.validateTimer = stageTimer(meterRegistry, "validate");
+        this.dedupTimer = stageTimer(meterRegistry, "dedup");
+        this.journalTimer = stageTimer(meterRegistry, "journal");
+        this.deadbandTimer = stageTimer(meterRegistry, "deadband");
+        this.registryTimer = stageTimer(meterRegistry, "registry");
+        this.mapTimer = stageTimer(meterRegistry, "map");
+        this.persistTimer = stageTimer(meterRegistry, "persist");
+        this.publishTimer = stageTimer(meterRegistry, "publish");
+        this.outboxTimer = stageTimer(meterRegistry, "outbox");
+        this.latestTimer = stageTimer(meterRegistry, "latest");
+        this.spatialTimer = stageTimer(meterRegistry, "spatial");
+        for (ConsistencyMode mode : ConsistencyMode.values()) {
+            writeTimers.put(mode, Timer.builder("iot.ingest.write")
+                    .description("Time a write waits for its persist and publish, per consistency mode")
+                    .tag("mode", mode.name())
+                    .register(meterRegistry));
+        }
+        this.batchSize = DistributionSummary.builder("iot.ingest.batch.size")
+                .description("Devices per ingested batch or stream chunk")
+                .baseUnit("devices")
+                .register(meterRegistry);
+        Gauge.builder("iot.ingest.batches.in-flight", inFlightBatches, AtomicInteger::get)
+                .description("Batches and stream chunks currently being ingested")
+                .register(meterRegistry);
+        Gauge.builder("iot.ingest.persist.background.in-flight", backgroundPersists, AtomicInteger::get)
+                .description("PUBLISH_THEN_PERSIST writes still being persisted after their request completed")
+                .register(meterRegistry);
+        this.backgroundPersistFailures = Counter.builder("iot.ingest.persist.background.failures")
+                .description("Devices published by PUBLISH_THEN_PERSIST whose background persist failed")
+                .register(meterRegistry);
     }
 
-    public Mono<Void> ingestBatch(List<DeviceData> deviceData) {
+    public Mono<IngestReport> ingestBatch(List<DeviceData> deviceData) {
+        return ingestChunk(deviceData, 0)
+                .doOnSuccess(report -> log.info("Batch ingested: accepted={}, rejected={}",
+                        report.accepted(), report.rejected()))
+                .doOnError(error -> log.error("Failed to ingest batch: {}", error.getMessage()));
+    }
+
+    /**
+     * Ingests a batch at most once per {@code idempotencyKey}, see {@link IngestionDeduplicator#ingestOnce}:
+     * a repeated key gets the report of the attempt in flight or already done, without persisting or publishing.
+     */
+    public Mono<IngestReport> ingestBatch(String idempotencyKey, List<DeviceData> deviceData) {
+        if (idempotencyKey == null || idempotencyKey.isBlank()) {
+            return ingestBatch(deviceData);
+        }
+        return deduplicator.ingestOnce(idempotencyKey, deviceData.size(), () -> ingestBatch(deviceData));
+    }
+
+    /**
+     * Ingests an unbounded stream of devices in chunks of {@code app.ingest.stream.chunk-size}.
+     * Chunks are processed one at a time, so at most one chunk is held in memory and demand
+     * on the upstream (e.g. the request body) is only signalled once the previous chunk is stored.
+     * Violations are reported with their position in the whole stream.
+     */
+    public Mono<IngestReport> ingestStream(Flux<DeviceData> deviceData) {
+        return Mono.defer(() -> {
+                    AtomicLong offset = new AtomicLong();
+                    return deviceData
+                            .buffer(streamChunkSize)
+                            .concatMap(chunk -> ingestChunk(chunk, offset.getAndAdd(chunk.size())), 1)
+                            .reduce(IngestReport.empty(), IngestReport::merge);
+                })
+                .doOnSuccess(report -> log.info("Stream ingested: accepted={}, rejected={}",
+                        report.accepted(), report.rejected()))
+                .doOnError(error -> log.error("Failed to ingest stream: {}", error.getMessage()));
+    }
+
+    /**
+     * Validates and stores one chunk; small chunks of concurrent requests are stored together by
+     * {@link IngestionCoalescer}. Readings that replay an already accepted reading of the same device are dropped first.
+     */
+    private Mono<IngestReport> ingestChunk(List<DeviceData> deviceData, long indexOffset) {
         return Mono.fromCallable(() -> {
-            deviceData.forEach(validator::validate);
-            return deviceData.stream().map(this::toEntity).toList();
-        }).flatMap(entities -> repository.saveAll(entities)
-                .then(publishInChunksReactive(deviceData))
-                .doOnSuccess(saved -> log.info("Batch ingested: size={}", deviceData.size()))
-                .doOnError(error -> log.error("Failed to ingest batch: {}", error.getMessage())))
-                .then();
+                    batchSize.record(deviceData.size());
+                    return validateTimer.record(() -> validate(deviceData, indexOffset));
+                })
+                .flatMap(validation -> {
+                    IngestReport report = IngestReport.of(validation);
+                    List<DeviceData> valid = withoutMetaVersion(validation.valid());
+                    List<DeviceData> fresh = dedupTimer.record(() -> deduplicator.filterReplayed(valid));
+                    if (fresh.isEmpty()) {
+                        return Mono.just(report);
+                    }
+                    return coalescer.submit(fresh, this::store)
+                            .doOnSuccess(done -> deduplicator.accept(fresh))
+                            .thenReturn(report);
+                })
+                .doOnSubscribe(subscription -> inFlightBatches.incrementAndGet())
+                .doFinally(signal -> inFlightBatches.decrementAndGet());
     }
 
-    private Mono<Void> publishInChunksReactive(List<DeviceData> deviceData) {
-        return Flux.fromIterable(deviceData)
-                .map(data -> new OutboundMessage(dataExchangeName, "", serialize(data)))
-                .window(publishChunkSize)
-                .flatMap(chunk -> sender.send(chunk))
-                .then();
+    /**
+     * {@code metaVersion} is assigned by the {@link DeviceRegistry}, never by producers: a client-supplied one is
+     * dropped, so it is neither stored as a status-only reading nor forwarded to consumers. Such a batch loses its
+     * raw JSON and is serialized again.
+     */
+    static List<DeviceData> withoutMetaVersion(List<DeviceData> deviceData) {
+        List<DeviceData> stripped = null;
+        for (int i = 0, size = deviceData.size(); i < size; i++) {
+            DeviceData device = deviceData.get(i);
+            if (device.metaVersion() != null) {
+                if (stripped == null) {
+                    stripped = new ArrayList<>(deviceData);
+                }
+                stripped.set(i, device.toBuilder().metaVersion(null).build());
+            }
+        }
+        return stripped != null ? stripped : deviceData;
+    }
+
+    /**
+     * With {@code app.ingest.journal.enabled} the devices are only appended to the local {@link IngestJournal}
+     * and {@link JournalReplayer} writes them downstream later; otherwise they are written right away.
+     */
+    private Mono<Void> store(List<DeviceData> deviceData) {
+        if (journalEnabled) {
+            return timed(journalTimer, () -> journal.append(deviceData));
+        }
+        return write(deviceData);
     }
 
-    private byte[] serialize(Object obj) {
+    /**
+     * Readings within the {@link DeadbandFilter}'s deadband are neither stored nor published.
+     * With {@code app.ingest.registry.enabled} the static fields go to the {@link DeviceRegistry} and only
+     * status-only events are stored and published. In outbox mode the events are only written to Mongo and
+     * {@link OutboxRelay} publishes them later; otherwise they are persisted and published as the
+     * {@link ConsistencyMode} says.
+     * The latest-state projection and the {@link DeviceSpatialIndex} are updated alongside, always with all the
+     * full readings.
+     */
+    Mono<Void> write(List<DeviceData> deviceData) {
+        List<DeviceData> reported = deadbandTimer.record(() -> deadband.filter(deviceData));
+        if (reported.isEmpty()) {
+            return updateProjections(deviceData);
+        }
+        Mono<Void> written = registryEnabled
+                ? timed(registryTimer, () -> registry.register(reported)).flatMap(events -> write(events, deviceData))
+                : write(reported, deviceData);
+        return written.doOnSuccess(done -> deadband.accept(reported));
+    }
+
+    private Mono<Void> write(List<DeviceData> events, List<DeviceData> deviceData) {
+        List<DeviceEntity> entities = mapTimer.record(() -> events.stream().map(this::toEntity).toList());
+        return Mono.when(
+                outboxEnabled
+                        ? timed(outboxTimer, () -> outbox.store(persist(entities), events))
+                        : timed(writeTimers.get(consistencyMode), () -> persistAndPublish(entities, events)),
+                updateProjections(deviceData));
+    }
+
+    private Mono<Void> persistAndPublish(List<DeviceEntity> entities, List<DeviceData> events) {
+        Mono<Void> persist = timed(persistTimer, () -> persist(entities));
+        Mono<Void> publish = timed(publishTimer, () -> publisher.publish(events));
+        return switch (consistencyMode) {
+            case PERSIST_THEN_PUBLISH -> persist.then(publish);
+            case PARALLEL -> Mono.when(persist, publish);
+            case PUBLISH_THEN_PERSIST -> publish.then(Mono.defer(() -> persistInBackground(persist, entities.size())));
+            case PUBLISH_ONLY -> publish;
+        };
+    }
+
+    /**
+     * Persists without the request waiting for it, unless {@code background-persist.max-in-flight} writes are
+     * already behind: then this one is persisted inline, so a slow Mongo slows ingestion down instead of piling up
+     * unpersisted readings in memory. A failed background persist is logged and counted, not retried.
+     * Shutdown waits for the ones still running, see {@link #awaitBackgroundPersists}.
+     */
+    private Mono<Void> persistInBackground(Mono<Void> persist, int size) {
+        if (backgroundPersists.incrementAndGet() > backgroundPersistMaxInFlight) {
+            backgroundPersists.decrementAndGet();
+            return persist;
+        }
+        Sinks.Empty<Void> done = Sinks.empty();
+        runningBackgroundPersists.add(done);
+        persist.doFinally(signal -> {
+                    backgroundPersists.decrementAndGet();
+                    runningBackgroundPersists.remove(done);
+                    done.tryEmitEmpty();
+                })
+                .subscribe(null, error -> {
+                    backgroundPersistFailures.increment(size);
+                    log.error("Background persist of {} published device(s) failed: {}", size, error.getMessage());
+                });
+        return Mono.empty();
+    }
+
+    /**
+     * Waits for the background persists still running, up to {@code spring.lifecycle.timeout-per-shutdown-phase},
+     * so readings already published are not left out of Mongo by a shutdown.
+     */
+    @PreDestroy
+    public void awaitBackgroundPersists() {
+        List<Mono<Void>> running = runningBackgroundPersists.stream().map(Sinks.Empty::asMono).toList();
+        if (running.isEmpty()) {
+            return;
+        }
+        log.info("Waiting up to {} for {} background persist(s)", shutdownTimeout, running.size());
         try {
-            return objectMapper.writeValueAsBytes(obj);
-        } catch (Exception e) {
-            throw new RuntimeException("Failed to serialize message", e);
+            Mono.when(running).block(shutdownTimeout);
+        } catch (IllegalStateException e) {
+            log.warn("{} background persist(s) still running after {}, their devices may be missing from Mongo",
+                    runningBackgroundPersists.size(), shutdownTimeout);
+        }
+    }
+
+    /**
+     * Times {@code stage} from subscription until it terminates or is cancelled.
+     */
+    private static <T> Mono<T> timed(Timer timer, Supplier<Mono<T>> stage) {
+        return Mono.defer(() -> {
+            Timer.Sample sample = Timer.start();
+            return stage.get().doFinally(signal -> sample.stop(timer));
+        });
+    }
+
+    private static Timer stageTimer(MeterRegistry meterRegistry, String stage) {
+        return Timer.builder("iot.ingest.stage")
+                .description("Time spent in each ingestion stage")
+                .tag("stage", stage)
+                .register(meterRegistry);
+    }
+
+    /**
+     * With {@code app.ingest.validation.partial-accept} invalid devices are dropped and reported,
+     * otherwise any violation rejects the whole chunk. A chunk without a single valid device is always rejected.
+     */
+    private BatchValidationResult validate(List<DeviceData> deviceData, long indexOffset) {
+        BatchValidationResult validation = validator.validate(deviceData, indexOffset);
+        if (validation.hasViolations() && (!partialAcceptEnabled || validation.valid().isEmpty())) {
+            throw new DeviceValidationException(validation.violations());
+        }
+        if (validation.hasViolations()) {
+            log.warn("Rejected {} invalid device(s) out of {}", validation.rejected(), deviceData.size());
+        }
+        return validation;
+    }
+
+    private Mono<Void> updateProjections(List<DeviceData> deviceData) {
+        return Mono.fromRunnable(() -> spatialTimer.record(() -> spatialIndex.update(deviceData)))
+                .then(updateLatestState(deviceData));
+    }
+
+    /**
+     * The latest-state projection is rebuilt by the next reading of each device,
+     * so a failed update is logged rather than failing the ingest.
+     */
+    private Mono<Void> updateLatestState(List<DeviceData> deviceData) {
+        if (!latestStateEnabled) {
+            return Mono.empty();
+        }
+        return timed(latestTimer, () -> latestState.update(deviceData))
+                .onErrorResume(error -> {
+                    log.warn("Failed to update latest device state: {}", error.getMessage());
+                    return Mono.empty();
+                });
+    }
+
+    private Mono<Void> persist(List<DeviceEntity> entities) {
+        if (!bulkInsertEnabled) {
+            return repository.saveAll(entities).then();
         }
+        // a rejected document fails the write, so nothing is published or acknowledged that history is missing
+        return repository.insertUnordered(entities)
+                .flatMap(result -> result.hasFailures()
+                        ? Mono.<Void>error(new BulkInsertException(result))
+                        : Mono.<Void>empty());
     }
 
     private DeviceEntity toEntity(DeviceData deviceData) {
         return new DeviceEntity(
                 null,
-                deviceData.id(),
-                deviceData.name(),
-                deviceData.manufacturer(),
-                deviceData.type(),
-                deviceData.capabilities(),
+                deviceData.metaVersion() != null
+                        ? DeviceMeta.versioned(deviceData.id(), deviceData.metaVersion())
+                        : new DeviceMeta(
+                                deviceData.id(),
+                                deviceData.name(),
+                                deviceData.manufacturer(),
+                                deviceData.type(),
+                                deviceData.capabilities()),
                 deviceData.location(),
                 deviceData.status(),
                 Instant.now());
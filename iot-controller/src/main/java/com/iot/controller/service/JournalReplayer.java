@@ -0,0 +1,158 @@
+package com.iot.controller.service;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.iot.contracts.domain.DeviceData;
+import com.iot.controller.journal.IngestJournal;
+import com.iot.controller.journal.JournalPosition;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import reactor.util.retry.Retry;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Drains the {@link IngestJournal} to Mongo and the data exchange.
+ * <p>
+ * Records are read after the journal checkpoint in batches of {@code app.ingest.journal.replay.batch-records},
+ * written with {@link IngestionService#write} as one ordered device list, and the checkpoint is moved past them
+ * only after the write completes, so delivery is at-least-once. A failed write, e.g. while Mongo or RabbitMQ is
+ * down, is retried with backoff from the same position, also after a restart.
+ */
+@Service
+@Slf4j
+public class JournalReplayer {
+
+    private static final TypeReference<List<DeviceData>> DEVICE_LIST = new TypeReference<>() {};
+
+    private final IngestJournal journal;
+    private final IngestionService ingestionService;
+    private final ObjectMapper objectMapper;
+
+    private final boolean enabled;
+    private final int batchRecords;
+    private final Duration pollInterval;
+
+    private final Counter replayedDevices;
+    private final Timer replayTimer;
+
+    private volatile JournalPosition position;
+    private Disposable subscription;
+
+    public JournalReplayer(IngestJournal journal,
+                           IngestionService ingestionService,
+                           ObjectMapper objectMapper,
+                           MeterRegistry meterRegistry,
+                           @Value("${app.ingest.journal.enabled}") boolean enabled,
+                           @Value("${app.ingest.journal.replay.batch-records}") int batchRecords,
+                           @Value("${app.ingest.journal.replay.poll-interval}") Duration pollInterval) {
+        this.journal = journal;
+        this.ingestionService = ingestionService;
+        this.objectMapper = objectMapper;
+        this.enabled = enabled;
+        this.batchRecords = batchRecords;
+        this.pollInterval = pollInterval;
+        this.replayedDevices = Counter.builder("iot.ingest.journal.replayed.devices")
+                .description("Devices written downstream from the ingest journal")
+                .register(meterRegistry);
+        this.replayTimer = Timer.builder("iot.ingest.journal.replay")
+                .description("Time to write one journal batch downstream and checkpoint it")
+                .register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        position = journal.replayedPosition();
+        log.info("Starting journal replayer from {}: batchRecords={}, pollInterval={}", position, batchRecords, pollInterval);
+
+        subscription = Flux.interval(pollInterval)
+                .onBackpressureDrop()
+                .concatMap(tick -> drain())
+                .retryWhen(Retry.backoff(Long.MAX_VALUE, Duration.ofSeconds(1))
+                        .maxBackoff(Duration.ofSeconds(30))
+                        .doBeforeRetry(signal -> log.error("Journal replay failed, retrying: {}", signal.failure().getMessage())))
+                .subscribe(
+                        v -> {},
+                        e -> log.error("FATAL: Journal replayer terminated: {}", e.getMessage())
+                );
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (subscription != null) {
+            subscription.dispose();
+        }
+    }
+
+    /**
+     * Replays full batches back to back until the journal is drained.
+     *
+     * @return number of journal records replayed
+     */
+    Mono<Long> drain() {
+        if (position == null) {
+            position = journal.replayedPosition();
+        }
+        return replayBatch()
+                .expand(replayed -> replayed == batchRecords ? replayBatch() : Mono.empty())
+                .reduce(0L, Long::sum);
+    }
+
+    private Mono<Long> replayBatch() {
+        return Mono.fromCallable(() -> journal.read(position, batchRecords))
+                .subscribeOn(Schedulers.boundedElastic())
+                .flatMap(entries -> {
+                    if (entries.isEmpty()) {
+                        return Mono.just(0L);
+                    }
+                    List<DeviceData> devices = new ArrayList<>();
+                    for (IngestJournal.Entry entry : entries) {
+                        devices.addAll(deserialize(entry.payload()));
+                    }
+                    JournalPosition end = entries.getLast().end();
+
+                    Timer.Sample sample = Timer.start();
+                    Mono<Void> write = devices.isEmpty() ? Mono.empty() : ingestionService.write(devices);
+                    return write
+                            .then(Mono.fromRunnable(() -> journal.markReplayed(end))
+                                    .subscribeOn(Schedulers.boundedElastic()))
+                            .doOnSuccess(done -> {
+                                sample.stop(replayTimer);
+                                position = end;
+                                replayedDevices.increment(devices.size());
+                                log.debug("Replayed journal batch: records={}, devices={}", entries.size(), devices.size());
+                            })
+                            .thenReturn((long) entries.size());
+                });
+    }
+
+    /**
+     * Records are checksummed, so a record that does not parse can only come from an incompatible version;
+     * it is skipped instead of blocking the replay.
+     */
+    private List<DeviceData> deserialize(byte[] payload) {
+        try {
+            return objectMapper.readValue(payload, DEVICE_LIST);
+        } catch (IOException e) {
+            log.error("Skipping unreadable journal record: {}", e.getMessage());
+            return List.of();
+        }
+    }
+}
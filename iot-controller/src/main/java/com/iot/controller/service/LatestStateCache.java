@@ -0,0 +1,64 @@
+package com.iot.controller.service;
+
+import com.iot.controller.domain.DeviceLatestEntity;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded LRU near-cache for {@link DeviceLatestEntity} keyed by device id.
+ * Entries also expire after a fixed time so that writes made by other controller instances become visible.
+ */
+class LatestStateCache {
+
+    private record Entry(DeviceLatestEntity value, long expiresAtNanos) {
+    }
+
+    private final long ttlNanos;
+    private final Map<Long, Entry> entries;
+
+    LatestStateCache(int maxSize, Duration ttl) {
+        this.ttlNanos = ttl.toNanos();
+        this.entries = new LinkedHashMap<>(Math.min(maxSize, 1024), 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Entry> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    synchronized DeviceLatestEntity get(long deviceId) {
+        Entry entry = entries.get(deviceId);
+        if (entry == null) {
+            return null;
+        }
+        if (System.nanoTime() - entry.expiresAtNanos > 0) {
+            entries.remove(deviceId);
+            return null;
+        }
+        return entry.value();
+    }
+
+    /**
+     * Write-through of a stored state; an entry with a newer heartbeat is kept.
+     */
+    synchronized void put(DeviceLatestEntity value) {
+        Entry current = entries.get(value.deviceId());
+        if (current != null && LatestStateService.isOlder(value, current.value())) {
+            return;
+        }
+        entries.put(value.deviceId(), new Entry(value, System.nanoTime() + ttlNanos));
+    }
+
+    /**
+     * Used when populating from a read, so a concurrent write-through of a newer state is not overwritten.
+     */
+    synchronized void putIfAbsent(DeviceLatestEntity value) {
+        entries.putIfAbsent(value.deviceId(), new Entry(value, System.nanoTime() + ttlNanos));
+    }
+
+    synchronized int size() {
+        return entries.size();
+    }
+}
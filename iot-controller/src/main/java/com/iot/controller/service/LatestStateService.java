@@ -0,0 +1,195 @@
+package com.iot.controller.service;
+
+import com.iot.contracts.domain.DeviceData;
+import com.iot.controller.domain.DeviceLatestEntity;
+import com.iot.controller.repository.DeviceLatestRepository;
+import com.mongodb.ErrorCategory;
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.bulk.BulkWriteError;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndReplaceOptions;
+import org.springframework.data.mongodb.core.ReactiveBulkOperations;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Maintains the {@code device_latest} projection (one document per device) and serves reads from a bounded near-cache.
+ */
+@Service
+@Slf4j
+public class LatestStateService {
+
+    private final ReactiveMongoTemplate template;
+    private final DeviceLatestRepository repository;
+    private final LatestStateCache cache;
+
+    private final Counter cacheHits;
+    private final Counter cacheMisses;
+
+    public LatestStateService(ReactiveMongoTemplate template,
+                              DeviceLatestRepository repository,
+                              MeterRegistry meterRegistry,
+                              @Value("${app.ingest.latest.cache.max-size}") int cacheMaxSize,
+                              @Value("${app.ingest.latest.cache.ttl}") Duration cacheTtl) {
+        this.template = template;
+        this.repository = repository;
+        this.cache = new LatestStateCache(cacheMaxSize, cacheTtl);
+        this.cacheHits = Counter.builder("iot.ingest.latest.cache")
+                .tag("result", "hit")
+                .register(meterRegistry);
+        this.cacheMisses = Counter.builder("iot.ingest.latest.cache")
+                .tag("result", "miss")
+                .register(meterRegistry);
+        Gauge.builder("iot.ingest.latest.cache.size", cache, LatestStateCache::size)
+                .description("Devices held in the latest-state near-cache")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Upserts the newest reading of every device in the batch with one unordered bulk write,
+     * then refreshes the near-cache.
+     * <p>
+     * A document is only replaced by a reading whose {@code lastHeartbeat} is not older than the stored one, so
+     * coalesced, concurrent or replayed writes that arrive out of order never move a device back in time. The
+     * upsert of such a stale reading finds no document to replace and its insert hits the existing {@code _id};
+     * that duplicate key error just means the reading is stale and is dropped.
+     */
+    public Mono<Void> update(List<DeviceData> deviceData) {
+        if (deviceData.isEmpty()) {
+            return Mono.empty();
+        }
+        Instant now = Instant.now();
+        Map<Long, DeviceLatestEntity> latest = new LinkedHashMap<>();
+        for (DeviceData device : deviceData) {
+            latest.merge(device.id(), toEntity(device, now),
+                    (current, next) -> isOlder(next, current) ? current : next);
+        }
+        List<DeviceLatestEntity> entities = List.copyOf(latest.values());
+
+        return Mono.defer(() -> {
+                    ReactiveBulkOperations operations = template.bulkOps(BulkOperations.BulkMode.UNORDERED,
+                            DeviceLatestEntity.class);
+                    for (DeviceLatestEntity entity : entities) {
+                        operations.replaceOne(newerThanStored(entity), entity, FindAndReplaceOptions.options().upsert());
+                    }
+                    return operations.execute().thenReturn(Set.<Integer>of());
+                })
+                .onErrorResume(LatestStateService::isOnlyStaleReadings, e -> Mono.just(staleIndexes(e)))
+                .doOnNext(stale -> {
+                    for (int i = 0; i < entities.size(); i++) {
+                        if (!stale.contains(i)) {
+                            cache.put(entities.get(i));
+                        }
+                    }
+                })
+                .then();
+    }
+
+    public Mono<DeviceLatestEntity> find(long deviceId) {
+        DeviceLatestEntity cached = cache.get(deviceId);
+        if (cached != null) {
+            cacheHits.increment();
+            return Mono.just(cached);
+        }
+        cacheMisses.increment();
+        return repository.findById(deviceId).doOnNext(cache::putIfAbsent);
+    }
+
+    public Flux<DeviceLatestEntity> findAll(Collection<Long> deviceIds) {
+        List<DeviceLatestEntity> hits = new ArrayList<>();
+        List<Long> misses = new ArrayList<>();
+        for (Long deviceId : new LinkedHashSet<>(deviceIds)) {
+            DeviceLatestEntity cached = cache.get(deviceId);
+            if (cached != null) {
+                hits.add(cached);
+            } else {
+                misses.add(deviceId);
+            }
+        }
+        cacheHits.increment(hits.size());
+        cacheMisses.increment(misses.size());
+        if (misses.isEmpty()) {
+            return Flux.fromIterable(hits);
+        }
+        return Flux.fromIterable(hits)
+                .concatWith(repository.findAllById(misses).doOnNext(cache::putIfAbsent));
+    }
+
+    private static Query newerThanStored(DeviceLatestEntity entity) {
+        Criteria criteria = Criteria.where("_id").is(entity.deviceId());
+        Instant heartbeat = heartbeat(entity);
+        if (heartbeat == null) {
+            return Query.query(criteria);
+        }
+        return Query.query(criteria.orOperator(
+                Criteria.where("status.lastHeartbeat").lte(heartbeat),
+                Criteria.where("status.lastHeartbeat").is(null)));
+    }
+
+    static boolean isOlder(DeviceLatestEntity candidate, DeviceLatestEntity current) {
+        Instant candidateHeartbeat = heartbeat(candidate);
+        Instant currentHeartbeat = heartbeat(current);
+        return candidateHeartbeat != null && currentHeartbeat != null && candidateHeartbeat.isBefore(currentHeartbeat);
+    }
+
+    private static Instant heartbeat(DeviceLatestEntity entity) {
+        return entity.status() != null ? entity.status().lastHeartbeat() : null;
+    }
+
+    private static boolean isOnlyStaleReadings(Throwable error) {
+        MongoBulkWriteException bulkError = bulkWriteException(error);
+        return bulkError != null && bulkError.getWriteErrors().stream()
+                .allMatch(writeError -> ErrorCategory.fromErrorCode(writeError.getCode()) == ErrorCategory.DUPLICATE_KEY);
+    }
+
+    private static Set<Integer> staleIndexes(Throwable error) {
+        return bulkWriteException(error).getWriteErrors().stream()
+                .map(BulkWriteError::getIndex)
+                .collect(Collectors.toUnmodifiableSet());
+    }
+
+    /**
+     * Spring translates the driver's bulk error into a {@code DuplicateKeyException} or
+     * {@code BulkOperationException}; both keep it as their cause.
+     */
+    private static MongoBulkWriteException bulkWriteException(Throwable error) {
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (cause instanceof MongoBulkWriteException bulkError) {
+                return bulkError;
+            }
+        }
+        return null;
+    }
+
+    private DeviceLatestEntity toEntity(DeviceData deviceData, Instant updatedAt) {
+        return new DeviceLatestEntity(
+                deviceData.id(),
+                deviceData.name(),
+                deviceData.manufacturer(),
+                deviceData.type(),
+                deviceData.capabilities(),
+                deviceData.location(),
+                deviceData.status(),
+                updatedAt);
+    }
+}
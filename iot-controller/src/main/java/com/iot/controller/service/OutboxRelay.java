@@ -0,0 +1,142 @@
+package com.iot.controller.service;
+
+import com.iot.contracts.domain.DeviceData;
+import com.iot.controller.domain.OutboxCheckpointEntity;
+import com.iot.controller.domain.OutboxEntity;
+import com.iot.controller.repository.OutboxCheckpointRepository;
+import com.iot.controller.repository.OutboxRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Drains the device outbox to the data exchange.
+ * <p>
+ * Entries are read oldest first in batches of {@code app.ingest.outbox.relay.batch-size}, published as one
+ * ordered device list, and deleted only after the publish completes, so delivery is at-least-once.
+ * After every batch the checkpoint document records the last relayed entry and the running total.
+ */
+@Service
+@Slf4j
+public class OutboxRelay {
+
+    private static final String CHECKPOINT_ID = "device-outbox";
+
+    private final OutboxRepository outboxRepository;
+    private final OutboxCheckpointRepository checkpointRepository;
+    private final DevicePublisher publisher;
+
+    private final boolean enabled;
+    private final int batchSize;
+    private final Duration pollInterval;
+
+    private final AtomicLong relayedEntries = new AtomicLong();
+    private final Counter relayedDevices;
+    private final Timer relayTimer;
+
+    private Disposable subscription;
+
+    public OutboxRelay(OutboxRepository outboxRepository,
+                       OutboxCheckpointRepository checkpointRepository,
+                       DevicePublisher publisher,
+                       MeterRegistry meterRegistry,
+                       @Value("${app.ingest.outbox.enabled}") boolean enabled,
+                       @Value("${app.ingest.outbox.relay.batch-size}") int batchSize,
+                       @Value("${app.ingest.outbox.relay.poll-interval}") Duration pollInterval) {
+        this.outboxRepository = outboxRepository;
+        this.checkpointRepository = checkpointRepository;
+        this.publisher = publisher;
+        this.enabled = enabled;
+        this.batchSize = batchSize;
+        this.pollInterval = pollInterval;
+        this.relayedDevices = Counter.builder("iot.ingest.outbox.relayed.devices")
+                .description("Devices published by the outbox relay")
+                .register(meterRegistry);
+        this.relayTimer = Timer.builder("iot.ingest.outbox.relay")
+                .description("Time to publish and delete one outbox batch")
+                .register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        log.info("Starting outbox relay: batchSize={}, pollInterval={}", batchSize, pollInterval);
+
+        subscription = checkpointRepository.findById(CHECKPOINT_ID)
+                .doOnNext(checkpoint -> relayedEntries.set(checkpoint.relayedEntries()))
+                .thenMany(Flux.interval(pollInterval))
+                .onBackpressureDrop()
+                .concatMap(tick -> drain())
+                .retryWhen(Retry.backoff(Long.MAX_VALUE, Duration.ofSeconds(2))
+                        .maxBackoff(Duration.ofSeconds(30))
+                        .doBeforeRetry(signal -> log.error("Outbox relay failed, retrying: {}", signal.failure().getMessage())))
+                .subscribe(
+                        v -> {},
+                        e -> log.error("FATAL: Outbox relay terminated: {}", e.getMessage())
+                );
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (subscription != null) {
+            subscription.dispose();
+        }
+    }
+
+    /**
+     * Relays full batches back to back until the outbox is drained.
+     *
+     * @return number of outbox entries relayed
+     */
+    Mono<Long> drain() {
+        return relayBatch()
+                .expand(relayed -> relayed == batchSize ? relayBatch() : Mono.empty())
+                .reduce(0L, Long::sum);
+    }
+
+    private Mono<Long> relayBatch() {
+        return outboxRepository.findAllByOrderByIdAsc(PageRequest.of(0, batchSize))
+                .collectList()
+                .flatMap(entries -> {
+                    if (entries.isEmpty()) {
+                        return Mono.just(0L);
+                    }
+                    List<DeviceData> devices = entries.stream()
+                            .flatMap(entry -> entry.devices().stream())
+                            .toList();
+                    List<String> ids = entries.stream().map(OutboxEntity::id).toList();
+                    OutboxCheckpointEntity checkpoint = new OutboxCheckpointEntity(
+                            CHECKPOINT_ID, entries.getLast().id(), relayedEntries.get() + entries.size(), Instant.now());
+
+                    Timer.Sample sample = Timer.start();
+                    return publisher.publish(devices)
+                            .then(Mono.defer(() -> outboxRepository.deleteAllById(ids)))
+                            .then(Mono.defer(() -> checkpointRepository.save(checkpoint)))
+                            .doOnSuccess(saved -> {
+                                sample.stop(relayTimer);
+                                relayedEntries.set(saved.relayedEntries());
+                                relayedDevices.increment(devices.size());
+                                log.debug("Relayed outbox batch: entries={}, devices={}", entries.size(), devices.size());
+                            })
+                            .thenReturn((long) entries.size());
+                });
+    }
+}
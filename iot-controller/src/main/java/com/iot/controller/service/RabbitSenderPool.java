@@ -0,0 +1,130 @@
+package com.iot.controller.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.reactivestreams.Publisher;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.rabbitmq.ChannelPool;
+import reactor.rabbitmq.OutboundMessage;
+import reactor.rabbitmq.OutboundMessageResult;
+import reactor.rabbitmq.SendOptions;
+import reactor.rabbitmq.Sender;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Spreads publishes over several AMQP connections ({@code app.rabbitmq.sender.connections}), each with its own
+ * {@link Sender}. Every send goes to the connection with the fewest sends in flight, ties broken round-robin.
+ * <p>
+ * Plain sends borrow a channel from the connection's {@link ChannelPool} instead of opening and closing one
+ * per send. Publishes with confirms keep a dedicated channel per send: a confirm channel carries per-publish
+ * listeners and sequence numbers and is not handed back to a shared pool.
+ */
+public class RabbitSenderPool implements AutoCloseable {
+
+    private final List<Lane> lanes;
+    private final AtomicInteger next = new AtomicInteger();
+
+    public RabbitSenderPool(List<Sender> senders, List<ChannelPool> channelPools, MeterRegistry meterRegistry) {
+        if (senders.isEmpty() || (channelPools != null && channelPools.size() != senders.size())) {
+            throw new IllegalArgumentException("One channel pool per sender is required");
+        }
+        List<Lane> lanes = new ArrayList<>(senders.size());
+        for (int i = 0; i < senders.size(); i++) {
+            lanes.add(new Lane(i, senders.get(i), channelPools == null ? null : channelPools.get(i), meterRegistry));
+        }
+        this.lanes = List.copyOf(lanes);
+    }
+
+    /**
+     * Single connection without channel pooling, e.g. for tests.
+     */
+    public static RabbitSenderPool of(Sender sender, MeterRegistry meterRegistry) {
+        return new RabbitSenderPool(List.of(sender), null, meterRegistry);
+    }
+
+    public Mono<Void> send(Publisher<OutboundMessage> messages) {
+        return Mono.defer(() -> {
+            Lane lane = select();
+            return lane.track(lane.sender.send(Flux.from(messages).doOnNext(message -> lane.messages.increment()),
+                    lane.sendOptions));
+        });
+    }
+
+    /**
+     * Sends with publisher confirms; only {@code maxInFlight} of {@code options} is applied.
+     */
+    public <T extends OutboundMessage> Flux<OutboundMessageResult<T>> sendWithTypedPublishConfirms(
+            Publisher<T> messages, SendOptions options) {
+        return Flux.defer(() -> {
+            Lane lane = select();
+            SendOptions confirmOptions = new SendOptions().maxInFlight(options.getMaxInFlight());
+            return lane.track(lane.sender.sendWithTypedPublishConfirms(
+                    Flux.from(messages).doOnNext(message -> lane.messages.increment()), confirmOptions));
+        });
+    }
+
+    int size() {
+        return lanes.size();
+    }
+
+    private Lane select() {
+        int start = Math.floorMod(next.getAndIncrement(), lanes.size());
+        Lane best = lanes.get(start);
+        for (int i = 1; i < lanes.size(); i++) {
+            Lane lane = lanes.get((start + i) % lanes.size());
+            if (lane.inFlight.get() < best.inFlight.get()) {
+                best = lane;
+            }
+        }
+        return best;
+    }
+
+    @Override
+    public void close() {
+        for (Lane lane : lanes) {
+            if (lane.channelPool != null) {
+                lane.channelPool.close();
+            }
+            lane.sender.close();
+        }
+    }
+
+    private static final class Lane {
+
+        private final Sender sender;
+        private final ChannelPool channelPool;
+        private final SendOptions sendOptions;
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private final Counter messages;
+
+        Lane(int index, Sender sender, ChannelPool channelPool, MeterRegistry meterRegistry) {
+            this.sender = sender;
+            this.channelPool = channelPool;
+            this.sendOptions = channelPool == null ? new SendOptions() : new SendOptions().channelPool(channelPool);
+            String connection = String.valueOf(index);
+            this.messages = Counter.builder("iot.ingest.publish.connection.messages")
+                    .description("Messages handed to each sender connection")
+                    .tag("connection", connection)
+                    .register(meterRegistry);
+            Gauge.builder("iot.ingest.publish.connection.in-flight", inFlight, AtomicInteger::get)
+                    .description("Sends currently running on each sender connection")
+                    .tag("connection", connection)
+                    .register(meterRegistry);
+        }
+
+        <T> Mono<T> track(Mono<T> send) {
+            return send.doOnSubscribe(subscription -> inFlight.incrementAndGet())
+                    .doFinally(signal -> inFlight.decrementAndGet());
+        }
+
+        <T> Flux<T> track(Flux<T> send) {
+            return send.doOnSubscribe(subscription -> inFlight.incrementAndGet())
+                    .doFinally(signal -> inFlight.decrementAndGet());
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.iot.controller.service;
+
+import com.iot.contracts.domain.components.Location;
+import com.iot.contracts.domain.components.Status;
+import com.iot.controller.domain.DeviceEntity;
+import com.iot.controller.domain.DeviceRollupEntity;
+
+import java.time.Instant;
+
+/**
+ * Accumulates raw readings or finer rollups of one device into one coarser bucket. Averages and the online
+ * ratio of merged rollups are weighted by their sample counts, so an hour built from minutes equals one built
+ * from the raw readings.
+ */
+class RollupBucket {
+
+    private final long deviceId;
+    private final Instant bucket;
+
+    private long samples;
+    private int batteryMin = Integer.MAX_VALUE;
+    private int batteryMax = Integer.MIN_VALUE;
+    private double batterySum;
+    private int signalMin = Integer.MAX_VALUE;
+    private int signalMax = Integer.MIN_VALUE;
+    private double signalSum;
+    private double onlineSamples;
+    private Location lastLocation;
+    private Instant lastTimestamp;
+
+    RollupBucket(long deviceId, Instant bucket) {
+        this.deviceId = deviceId;
+        this.bucket = bucket;
+    }
+
+    void add(DeviceEntity reading) {
+        Status status = reading.status();
+        samples++;
+        batteryMin = Math.min(batteryMin, status.batteryLevel());
+        batteryMax = Math.max(batteryMax, status.batteryLevel());
+        batterySum += status.batteryLevel();
+        signalMin = Math.min(signalMin, status.signalStrength());
+        signalMax = Math.max(signalMax, status.signalStrength());
+        signalSum += status.signalStrength();
+        onlineSamples += status.isOnline() ? 1 : 0;
+        updateLast(reading.location(), reading.timestamp());
+    }
+
+    void merge(DeviceRollupEntity rollup) {
+        samples += rollup.samples();
+        batteryMin = Math.min(batteryMin, rollup.batteryMin());
+        batteryMax = Math.max(batteryMax, rollup.batteryMax());
+        batterySum += rollup.batteryAvg() * rollup.samples();
+        signalMin = Math.min(signalMin, rollup.signalMin());
+        signalMax = Math.max(signalMax, rollup.signalMax());
+        signalSum += rollup.signalAvg() * rollup.samples();
+        onlineSamples += rollup.onlineRatio() * rollup.samples();
+        updateLast(rollup.lastLocation(), rollup.lastTimestamp());
+    }
+
+    DeviceRollupEntity toEntity() {
+        return new DeviceRollupEntity(DeviceRollupEntity.id(deviceId, bucket), deviceId, bucket, samples,
+                batteryMin, batteryMax, batterySum / samples,
+                signalMin, signalMax, signalSum / samples,
+                onlineSamples / samples, lastLocation, lastTimestamp);
+    }
+
+    private void updateLast(Location location, Instant timestamp) {
+        if (lastTimestamp == null || (timestamp != null && !timestamp.isBefore(lastTimestamp))) {
+            lastLocation = location;
+            lastTimestamp = timestamp;
+        }
+    }
+}
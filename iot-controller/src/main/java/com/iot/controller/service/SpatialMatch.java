@@ -0,0 +1,15 @@
+package com.iot.controller.service;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.iot.contracts.domain.components.Location;
+
+/**
+ * A device found by a spatial query at its latest indexed location; {@code distance} is only set by nearest
+ * queries.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record SpatialMatch(
+        long deviceId,
+        Location location,
+        Double distance) {
+}
@@ -0,0 +1,19 @@
+package com.iot.controller.validation;
+
+import com.iot.contracts.domain.DeviceData;
+
+import java.util.List;
+
+/**
+ * Outcome of validating a batch. {@code valid} keeps the original order and is the input list itself
+ * when every device passed.
+ */
+public record BatchValidationResult(
+        List<DeviceData> valid,
+        int rejected,
+        List<DeviceViolation> violations) {
+
+    public boolean hasViolations() {
+        return rejected > 0;
+    }
+}
@@ -0,0 +1,20 @@
+package com.iot.controller.validation;
+
+import java.util.List;
+
+/**
+ * Thrown when a batch is rejected by {@link DeviceValidator}; carries the violations of every invalid device.
+ */
+public class DeviceValidationException extends RuntimeException {
+
+    private final List<DeviceViolation> violations;
+
+    public DeviceValidationException(List<DeviceViolation> violations) {
+        super("Device validation failed: " + violations.size() + " violation(s)");
+        this.violations = List.copyOf(violations);
+    }
+
+    public List<DeviceViolation> getViolations() {
+        return violations;
+    }
+}
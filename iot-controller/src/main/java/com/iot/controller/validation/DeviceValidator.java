@@ -1,26 +1,152 @@
 package com.iot.controller.validation;
 
 import com.iot.contracts.domain.DeviceData;
+import com.iot.contracts.domain.components.Location;
+import com.iot.contracts.domain.components.Status;
 
-import jakarta.validation.ConstraintViolation;
-import jakarta.validation.ConstraintViolationException;
-import jakarta.validation.Validator;
-
-import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Component;
 
-import java.util.Set;
+import java.util.ArrayList;
+import java.util.List;
 
+/**
+ * Hand-specialized equivalent of the Bean Validation constraints declared on {@link DeviceData},
+ * {@link Location} and {@link Status}.
+ * <p>
+ * A batch is checked in a single pass with plain field reads instead of a reflective
+ * {@code Validator.validate} per device, and nothing is allocated while every device is valid.
+ * Violations are collected per device with the same property paths and messages Hibernate Validator reports,
+ * so invalid devices can be rejected individually. Keep in sync with the annotations on the contract records.
+ */
 @Component
-@RequiredArgsConstructor
 public class DeviceValidator {
 
-    private final Validator validator;
+    private static final int COORDINATE_MIN = -10000;
+    private static final int COORDINATE_MAX = 10000;
+    private static final int PERCENT_MIN = 0;
+    private static final int PERCENT_MAX = 100;
+
+    private static final String NOT_NULL = "must not be null";
+    private static final String NOT_BLANK = "must not be blank";
+
+    public BatchValidationResult validate(List<DeviceData> deviceData) {
+        return validate(deviceData, 0);
+    }
+
+    /**
+     * @param indexOffset added to the position of each device in the reported violations
+     */
+    public BatchValidationResult validate(List<DeviceData> deviceData, long indexOffset) {
+        List<DeviceData> valid = null;
+        List<DeviceViolation> violations = null;
+        int rejected = 0;
+
+        for (int i = 0, size = deviceData.size(); i < size; i++) {
+            DeviceData device = deviceData.get(i);
+            if (isValid(device)) {
+                if (valid != null) {
+                    valid.add(device);
+                }
+                continue;
+            }
+            if (valid == null) {
+                valid = new ArrayList<>(deviceData.subList(0, i));
+                violations = new ArrayList<>();
+            }
+            rejected++;
+            collectViolations(device, indexOffset + i, violations);
+        }
+
+        if (valid == null) {
+            return new BatchValidationResult(deviceData, 0, List.of());
+        }
+        return new BatchValidationResult(valid, rejected, violations);
+    }
+
+    private static boolean isValid(DeviceData device) {
+        if (device == null
+                || isBlank(device.name())
+                || isBlank(device.manufacturer())
+                || device.type() == null) {
+            return false;
+        }
+        Location location = device.location();
+        if (location == null
+                || !inRange(location.x(), COORDINATE_MIN, COORDINATE_MAX)
+                || !inRange(location.y(), COORDINATE_MIN, COORDINATE_MAX)) {
+            return false;
+        }
+        Status status = device.status();
+        return status != null
+                && inRange(status.batteryLevel(), PERCENT_MIN, PERCENT_MAX)
+                && inRange(status.signalStrength(), PERCENT_MIN, PERCENT_MAX)
+                && status.lastHeartbeat() != null;
+    }
+
+    /**
+     * Slow path, only taken for invalid devices: re-checks every constraint to report all of them.
+     */
+    private static void collectViolations(DeviceData device, long index, List<DeviceViolation> violations) {
+        if (device == null) {
+            violations.add(new DeviceViolation(index, null, "", NOT_NULL));
+            return;
+        }
+        Long id = device.id();
+        if (isBlank(device.name())) {
+            violations.add(new DeviceViolation(index, id, "name", NOT_BLANK));
+        }
+        if (isBlank(device.manufacturer())) {
+            violations.add(new DeviceViolation(index, id, "manufacturer", NOT_BLANK));
+        }
+        if (device.type() == null) {
+            violations.add(new DeviceViolation(index, id, "type", NOT_NULL));
+        }
 
-    public void validate(DeviceData deviceData) {
-        Set<ConstraintViolation<DeviceData>> violations = validator.validate(deviceData);
-        if (!violations.isEmpty()) {
-            throw new ConstraintViolationException("Device validation failed", violations);
+        Location location = device.location();
+        if (location == null) {
+            violations.add(new DeviceViolation(index, id, "location", NOT_NULL));
+        } else {
+            checkRange(location.x(), COORDINATE_MIN, COORDINATE_MAX, index, id, "location.x", violations);
+            checkRange(location.y(), COORDINATE_MIN, COORDINATE_MAX, index, id, "location.y", violations);
+        }
+
+        Status status = device.status();
+        if (status == null) {
+            violations.add(new DeviceViolation(index, id, "status", NOT_NULL));
+        } else {
+            checkRange(status.batteryLevel(), PERCENT_MIN, PERCENT_MAX, index, id, "status.batteryLevel", violations);
+            checkRange(status.signalStrength(), PERCENT_MIN, PERCENT_MAX, index, id, "status.signalStrength", violations);
+            if (status.lastHeartbeat() == null) {
+                violations.add(new DeviceViolation(index, id, "status.lastHeartbeat", NOT_NULL));
+            }
+        }
+    }
+
+    private static void checkRange(int value, int min, int max, long index, Long id, String field,
+                                   List<DeviceViolation> violations) {
+        if (value < min) {
+            violations.add(new DeviceViolation(index, id, field, "must be greater than or equal to " + min));
+        } else if (value > max) {
+            violations.add(new DeviceViolation(index, id, field, "must be less than or equal to " + max));
+        }
+    }
+
+    private static boolean inRange(int value, int min, int max) {
+        return value >= min && value <= max;
+    }
+
+    /**
+     * Same semantics as {@code @NotBlank}: null, empty or whitespace only.
+     */
+    private static boolean isBlank(String value) {
+        if (value == null) {
+            return true;
+        }
+        for (int i = 0, length = value.length(); i < length; i++) {
+            if (!Character.isWhitespace(value.charAt(i))) {
+                return false;
+            }
         }
+        return true;
     }
 }
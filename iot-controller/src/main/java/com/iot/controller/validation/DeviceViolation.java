@@ -0,0 +1,15 @@
+package com.iot.controller.validation;
+
+/**
+ * A failed constraint of one device in a batch.
+ *
+ * @param index    position of the device in the request body (for NDJSON, in the whole stream)
+ * @param deviceId id of the device, {@code null} if the item itself is {@code null}
+ * @param field    property path in Bean Validation notation, e.g. {@code status.batteryLevel}
+ */
+public record DeviceViolation(
+        long index,
+        Long deviceId,
+        String field,
+        String message) {
+}
@@ -0,0 +1,93 @@
+package com.iot.controller.codec;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.iot.contracts.domain.DeviceData;
+import com.iot.contracts.domain.components.Location;
+import com.iot.contracts.domain.components.Status;
+import com.iot.contracts.domain.components.Type;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.codec.DecodingException;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class DeviceBatchJsonDecoderTest {
+
+    private static final ResolvableType DEVICE_LIST = ResolvableType.forClassWithGenerics(List.class, DeviceData.class);
+
+    // configured like the application's mapper, which ignores unknown properties
+    private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules()
+            .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+    private final DeviceBatchJsonDecoder decoder = new DeviceBatchJsonDecoder(objectMapper);
+
+    @Test
+    @DisplayName("Should keep the raw bytes of every array element")
+    void decode_deviceList_shouldKeepRawElements() throws Exception {
+        DeviceData first = device(1);
+        DeviceData second = device(2);
+        String firstJson = objectMapper.writeValueAsString(first);
+        String secondJson = "{ \"id\" : 2, \"unknown\": [1, {\"a\": \"}\"}], "
+                + objectMapper.writeValueAsString(second).substring(1);
+        String body = "\n[ " + firstJson + " ,\n\t" + secondJson + " ]\n";
+
+        Object decoded = decode(body);
+
+        assertThat(decoded).isInstanceOf(RawJsonDeviceBatch.class);
+        RawJsonDeviceBatch batch = (RawJsonDeviceBatch) decoded;
+        assertThat(batch).containsExactly(first, second);
+        assertThat(batch.json()).extracting(json -> new String(json, StandardCharsets.UTF_8))
+                .containsExactly(firstJson, secondJson);
+    }
+
+    @Test
+    @DisplayName("Should not keep raw bytes for elements that are not objects")
+    void decode_nullElement_shouldHaveNoRawBytes() {
+        RawJsonDeviceBatch batch = (RawJsonDeviceBatch) decode("[null]");
+
+        assertThat(batch).containsExactly((DeviceData) null);
+        assertThat(batch.json()).containsExactly((byte[]) null);
+    }
+
+    @Test
+    @DisplayName("Should reject bodies that are not a JSON array")
+    void decode_notAnArray_shouldFail() {
+        assertThatThrownBy(() -> decode("{\"id\":1}")).isInstanceOf(DecodingException.class);
+        assertThatThrownBy(() -> decode("[{\"id\":")).isInstanceOf(DecodingException.class);
+    }
+
+    @Test
+    @DisplayName("Should decode other types like the regular JSON decoder")
+    void decode_otherType_shouldDelegate() {
+        Object decoded = decoder.decode(DefaultDataBufferFactory.sharedInstance.wrap(
+                        "{\"id\":3}".getBytes(StandardCharsets.UTF_8)),
+                ResolvableType.forClass(DeviceData.class), null, Map.of());
+
+        assertThat(decoded).isEqualTo(DeviceData.builder().id(3L).build());
+    }
+
+    private Object decode(String body) {
+        return decoder.decode(DefaultDataBufferFactory.sharedInstance.wrap(body.getBytes(StandardCharsets.UTF_8)),
+                DEVICE_LIST, null, Map.of());
+    }
+
+    private static DeviceData device(long id) {
+        return DeviceData.builder()
+                .id(id)
+                .name("device-" + id)
+                .manufacturer("acme")
+                .type(Type.SENSOR_HUMIDITY)
+                .capabilities(List.of("humidity"))
+                .location(new Location(1, 2, 3))
+                .status(new Status(true, 50, 4, Instant.parse("2026-01-12T12:00:00Z")))
+                .build();
+    }
+}
@@ -0,0 +1,93 @@
+package com.iot.controller.codec;
+
+import com.iot.contracts.domain.DeviceData;
+import com.iot.contracts.domain.components.Location;
+import com.iot.contracts.domain.components.Status;
+import com.iot.contracts.domain.components.Type;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.codec.DecodingException;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.MediaType;
+
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class DeviceBatchProtobufDecoderTest {
+
+    private static final ResolvableType DEVICE_LIST = ResolvableType.forClassWithGenerics(List.class, DeviceData.class);
+
+    private final DeviceBatchProtobufDecoder decoder = new DeviceBatchProtobufDecoder(1024 * 1024);
+
+    @Test
+    @DisplayName("Should decode a DeviceBatch into the same records JSON would produce")
+    void decode_shouldRoundTripDevices() {
+        List<DeviceData> devices = List.of(
+                DeviceData.builder()
+                        .id(42)
+                        .name("device-42")
+                        .manufacturer("acme")
+                        .type(Type.GATEWAY)
+                        .capabilities(List.of("temp", "humidity"))
+                        .location(new Location(-5, 7, 1))
+                        .status(new Status(true, 15, 5, Instant.parse("2026-01-12T12:00:00.123Z")))
+                        .build(),
+                DeviceData.builder()
+                        .id(43)
+                        .name("device-43")
+                        .manufacturer("acme")
+                        .type(Type.SENSOR_TEMPERATURE)
+                        .location(new Location(0, 0, 0))
+                        .status(new Status(false, 0, 0, Instant.EPOCH))
+                        .build());
+
+        assertThat(decode(ProtobufTestEncoder.encode(devices))).isEqualTo(devices);
+    }
+
+    @Test
+    @DisplayName("Should leave missing sub-messages null and skip unknown fields")
+    void decode_shouldTolerateMissingAndUnknownFields() {
+        byte[] device = ProtobufTestEncoder.write(out -> {
+            out.writeInt64(1, 7);
+            out.writeString(2, "device-7");
+            out.writeString(99, "added in a newer schema");
+        });
+        byte[] batch = ProtobufTestEncoder.write(out -> ProtobufTestEncoder.writeMessage(out, 1, device));
+
+        DeviceData decoded = decode(batch).getFirst();
+
+        assertThat(decoded.id()).isEqualTo(7);
+        assertThat(decoded.name()).isEqualTo("device-7");
+        assertThat(decoded.location()).isNull();
+        assertThat(decoded.status()).isNull();
+        assertThat(decoded.capabilities()).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Should reject truncated input")
+    void decode_shouldRejectTruncatedInput() {
+        byte[] batch = ProtobufTestEncoder.encode(List.of(DeviceData.builder().id(1).name("device-1").build()));
+        byte[] truncated = Arrays.copyOf(batch, batch.length - 2);
+
+        assertThatThrownBy(() -> decode(truncated)).isInstanceOf(DecodingException.class);
+    }
+
+    @Test
+    @DisplayName("Should only claim device lists in protobuf content types")
+    void canDecode_shouldMatchTypeAndMimeType() {
+        assertThat(decoder.canDecode(DEVICE_LIST, MediaType.parseMediaType("application/x-protobuf"))).isTrue();
+        assertThat(decoder.canDecode(DEVICE_LIST, MediaType.APPLICATION_JSON)).isFalse();
+        assertThat(decoder.canDecode(ResolvableType.forClass(String.class), MediaType.parseMediaType("application/x-protobuf")))
+                .isFalse();
+    }
+
+    private List<DeviceData> decode(byte[] body) {
+        return decoder.decode(DefaultDataBufferFactory.sharedInstance.wrap(body), DEVICE_LIST, null, Map.of());
+    }
+}
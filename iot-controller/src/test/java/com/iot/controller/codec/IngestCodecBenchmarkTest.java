@@ -0,0 +1,112 @@
+package com.iot.controller.codec;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.iot.contracts.domain.DeviceData;
+import com.iot.contracts.domain.components.Location;
+import com.iot.contracts.domain.components.Status;
+import com.iot.contracts.domain.components.Type;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.LongStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Request size and decode throughput of a 500-device batch per content type.
+ * Not part of the regular build: {@code mvn test -Dtest=IngestCodecBenchmarkTest -Dbenchmark=true}.
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class IngestCodecBenchmarkTest {
+
+    private static final int BATCH_SIZE = 500;
+    private static final int WARMUP_ROUNDS = 2_000;
+    private static final int MEASURED_ROUNDS = 4_000;
+
+    private static final TypeReference<List<DeviceData>> DEVICE_LIST = new TypeReference<>() {
+    };
+
+    @Test
+    @DisplayName("Compare JSON, CBOR, Smile and Protobuf request bodies")
+    void compareFormats() throws Exception {
+        List<DeviceData> batch = batch();
+        ObjectMapper json = new ObjectMapper().findAndRegisterModules();
+        ObjectMapper cbor = new ObjectMapper(new CBORFactory()).findAndRegisterModules();
+        ObjectMapper smile = new ObjectMapper(new SmileFactory()).findAndRegisterModules();
+        DeviceBatchProtobufDecoder protobuf = new DeviceBatchProtobufDecoder(Integer.MAX_VALUE);
+        ResolvableType listType = ResolvableType.forClassWithGenerics(List.class, DeviceData.class);
+
+        Map<String, byte[]> bodies = new LinkedHashMap<>();
+        bodies.put("json", json.writeValueAsBytes(batch));
+        bodies.put("cbor", cbor.writeValueAsBytes(batch));
+        bodies.put("smile", smile.writeValueAsBytes(batch));
+        bodies.put("protobuf", ProtobufTestEncoder.encode(batch));
+
+        Map<String, Function<byte[], List<DeviceData>>> decoders = new LinkedHashMap<>();
+        decoders.put("json", body -> read(json, body));
+        decoders.put("cbor", body -> read(cbor, body));
+        decoders.put("smile", body -> read(smile, body));
+        decoders.put("protobuf", body -> protobuf.decode(
+                DefaultDataBufferFactory.sharedInstance.wrap(body), listType, null, Map.of()));
+
+        System.out.printf("%-9s %12s %14s %16s%n", "format", "bytes/device", "size vs json", "devices/s");
+        double jsonBytes = bodies.get("json").length;
+        for (String format : bodies.keySet()) {
+            byte[] body = bodies.get(format);
+            Function<byte[], List<DeviceData>> decoder = decoders.get(format);
+            assertThat(decoder.apply(body)).isEqualTo(batch);
+
+            for (int i = 0; i < WARMUP_ROUNDS; i++) {
+                decoder.apply(body);
+            }
+            long start = System.nanoTime();
+            for (int i = 0; i < MEASURED_ROUNDS; i++) {
+                decoder.apply(body);
+            }
+            double seconds = (System.nanoTime() - start) / 1e9;
+
+            System.out.printf("%-9s %12.1f %13.0f%% %16.0f%n", format,
+                    (double) body.length / BATCH_SIZE,
+                    100 * body.length / jsonBytes,
+                    BATCH_SIZE * (double) MEASURED_ROUNDS / seconds);
+        }
+    }
+
+    private static List<DeviceData> read(ObjectMapper mapper, byte[] body) {
+        try {
+            return mapper.readValue(body, DEVICE_LIST);
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Shaped like simulator traffic: few manufacturers, short capability lists, current heartbeats.
+     */
+    private static List<DeviceData> batch() {
+        Type[] types = Type.values();
+        Instant now = Instant.parse("2026-01-12T12:00:00.123456Z");
+        return LongStream.range(0, BATCH_SIZE)
+                .mapToObj(id -> DeviceData.builder()
+                        .id(100_000 + id)
+                        .name("device-" + id)
+                        .manufacturer(id % 3 == 0 ? "Acme Corporation" : "Globex Industries")
+                        .type(types[(int) (id % types.length)])
+                        .capabilities(List.of("temperature", "battery", "wifi"))
+                        .location(new Location((int) (id % 50), (int) (id * 7 % 50), (int) (id % 4)))
+                        .status(new Status(id % 10 != 0, (int) (id % 100), (int) (id * 3 % 100), now.plusMillis(id)))
+                        .build())
+                .toList();
+    }
+}
@@ -0,0 +1,98 @@
+package com.iot.controller.codec;
+
+import com.google.protobuf.CodedOutputStream;
+import com.iot.contracts.domain.DeviceData;
+import com.iot.contracts.domain.components.Location;
+import com.iot.contracts.domain.components.Status;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+
+/**
+ * Writes {@code iot.DeviceBatch} the way a protoc-generated client would, for decoder tests and benchmarks.
+ */
+public final class ProtobufTestEncoder {
+
+    private ProtobufTestEncoder() {
+    }
+
+    public static byte[] encode(List<DeviceData> devices) {
+        return write(out -> {
+            for (DeviceData device : devices) {
+                writeMessage(out, 1, encodeDevice(device));
+            }
+        });
+    }
+
+    /**
+     * A single {@code iot.DeviceData} message.
+     */
+    public static byte[] encodeDevice(DeviceData device) {
+        return write(out -> {
+            out.writeInt64(1, device.id());
+            if (device.name() != null) {
+                out.writeString(2, device.name());
+            }
+            if (device.manufacturer() != null) {
+                out.writeString(3, device.manufacturer());
+            }
+            if (device.type() != null) {
+                out.writeEnum(4, device.type().ordinal() + 1);
+            }
+            for (String capability : device.capabilities()) {
+                out.writeString(5, capability);
+            }
+            if (device.location() != null) {
+                writeMessage(out, 6, location(device.location()));
+            }
+            if (device.status() != null) {
+                writeMessage(out, 7, status(device.status()));
+            }
+        });
+    }
+
+    private static byte[] location(Location location) {
+        return write(out -> {
+            out.writeSInt32(1, location.x());
+            out.writeSInt32(2, location.y());
+            out.writeSInt32(3, location.z());
+        });
+    }
+
+    private static byte[] status(Status status) {
+        return write(out -> {
+            out.writeBool(1, status.isOnline());
+            out.writeInt32(2, status.batteryLevel());
+            out.writeInt32(3, status.signalStrength());
+            if (status.lastHeartbeat() != null) {
+                writeMessage(out, 4, write(timestamp -> {
+                    timestamp.writeInt64(1, status.lastHeartbeat().getEpochSecond());
+                    timestamp.writeInt32(2, status.lastHeartbeat().getNano());
+                }));
+            }
+        });
+    }
+
+    static void writeMessage(CodedOutputStream out, int field, byte[] message) throws IOException {
+        out.writeByteArray(field, message);
+    }
+
+    static byte[] write(Body body) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            CodedOutputStream out = CodedOutputStream.newInstance(bytes);
+            body.write(out);
+            out.flush();
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @FunctionalInterface
+    interface Body {
+        void write(CodedOutputStream out) throws IOException;
+    }
+}
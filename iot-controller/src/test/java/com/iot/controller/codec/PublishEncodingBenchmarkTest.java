@@ -0,0 +1,130 @@
+package com.iot.controller.codec;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.iot.contracts.domain.DeviceData;
+import com.iot.contracts.domain.components.Location;
+import com.iot.contracts.domain.components.Status;
+import com.iot.contracts.domain.components.Type;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.codec.json.Jackson2JsonDecoder;
+
+import java.lang.management.ManagementFactory;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.LongStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Controller CPU per device from request body to AMQP message bodies for a 500-device JSON batch:
+ * decode and serialize every device again, versus decode into {@link RawJsonDeviceBatch} and forward the bytes.
+ * Not part of the regular build: {@code mvn test -Dtest=PublishEncodingBenchmarkTest -Dbenchmark=true}.
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class PublishEncodingBenchmarkTest {
+
+    private static final int BATCH_SIZE = 500;
+    private static final int WARMUP_ROUNDS = 2_000;
+    private static final int MEASURED_ROUNDS = 4_000;
+
+    private static final ResolvableType DEVICE_LIST = ResolvableType.forClassWithGenerics(List.class, DeviceData.class);
+
+    @Test
+    @DisplayName("Compare re-serializing devices with forwarding their raw JSON")
+    @SuppressWarnings("unchecked")
+    void compareEncodings() throws Exception {
+        ObjectMapper mapper = new ObjectMapper().findAndRegisterModules();
+        ObjectWriter writer = mapper.writerFor(DeviceData.class);
+        Jackson2JsonDecoder plainDecoder = new Jackson2JsonDecoder(mapper);
+        DeviceBatchJsonDecoder rawDecoder = new DeviceBatchJsonDecoder(mapper);
+        byte[] body = mapper.writeValueAsBytes(batch());
+
+        Map<String, Function<byte[], Long>> paths = new LinkedHashMap<>();
+        paths.put("re-serialize (ObjectMapper)", request -> {
+            long bytes = 0;
+            for (DeviceData device : (List<DeviceData>) decode(plainDecoder, request)) {
+                bytes += write(() -> mapper.writeValueAsBytes(device));
+            }
+            return bytes;
+        });
+        paths.put("re-serialize (ObjectWriter)", request -> {
+            long bytes = 0;
+            for (DeviceData device : (List<DeviceData>) decode(plainDecoder, request)) {
+                bytes += write(() -> writer.writeValueAsBytes(device));
+            }
+            return bytes;
+        });
+        paths.put("raw pass-through", request -> {
+            long bytes = 0;
+            for (byte[] json : ((RawJsonDeviceBatch) decode(rawDecoder, request)).json()) {
+                bytes += json.length;
+            }
+            return bytes;
+        });
+
+        var threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().threadId();
+        System.out.printf("%-28s %14s %16s%n", "path", "cpu ns/device", "devices/s");
+        for (Map.Entry<String, Function<byte[], Long>> path : paths.entrySet()) {
+            assertThat(path.getValue().apply(body)).isPositive();
+            for (int i = 0; i < WARMUP_ROUNDS; i++) {
+                path.getValue().apply(body);
+            }
+            long cpuStart = threads.getThreadCpuTime(thread);
+            long start = System.nanoTime();
+            for (int i = 0; i < MEASURED_ROUNDS; i++) {
+                path.getValue().apply(body);
+            }
+            double seconds = (System.nanoTime() - start) / 1e9;
+            double devices = (double) BATCH_SIZE * MEASURED_ROUNDS;
+
+            System.out.printf("%-28s %14.0f %16.0f%n", path.getKey(),
+                    (threads.getThreadCpuTime(thread) - cpuStart) / devices,
+                    devices / seconds);
+        }
+    }
+
+    private static Object decode(Jackson2JsonDecoder decoder, byte[] body) {
+        return decoder.decode(DefaultDataBufferFactory.sharedInstance.wrap(body), DEVICE_LIST, null, Map.of());
+    }
+
+    private static long write(JsonWrite write) {
+        try {
+            return write.bytes().length;
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @FunctionalInterface
+    private interface JsonWrite {
+        byte[] bytes() throws Exception;
+    }
+
+    /**
+     * Same shape as {@link IngestCodecBenchmarkTest}.
+     */
+    private static List<DeviceData> batch() {
+        Type[] types = Type.values();
+        Instant now = Instant.parse("2026-01-12T12:00:00.123456Z");
+        return LongStream.range(0, BATCH_SIZE)
+                .mapToObj(id -> DeviceData.builder()
+                        .id(100_000 + id)
+                        .name("device-" + id)
+                        .manufacturer(id % 3 == 0 ? "Acme Corporation" : "Globex Industries")
+                        .type(types[(int) (id % types.length)])
+                        .capabilities(List.of("temperature", "battery", "wifi"))
+                        .location(new Location((int) (id % 50), (int) (id * 7 % 50), (int) (id % 4)))
+                        .status(new Status(id % 10 != 0, (int) (id % 100), (int) (id * 3 % 100), now.plusMillis(id)))
+                        .build())
+                .toList();
+    }
+}
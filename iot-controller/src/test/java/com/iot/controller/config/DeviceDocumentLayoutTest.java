@@ -0,0 +1,82 @@
+package com.iot.controller.config;
+
+import com.iot.contracts.domain.components.Location;
+import com.iot.contracts.domain.components.Status;
+import com.iot.contracts.domain.components.Type;
+import com.iot.controller.domain.DeviceEntity;
+import com.iot.controller.domain.DeviceMeta;
+import org.bson.Document;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.core.convert.NoOpDbRefResolver;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+import org.springframework.data.mongodb.core.mapping.event.AfterLoadEvent;
+import org.springframework.data.mongodb.core.mapping.event.BeforeSaveEvent;
+
+import java.time.Instant;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class DeviceDocumentLayoutTest {
+
+    private static final Instant NOW = Instant.parse("2026-01-12T12:00:00Z");
+
+    private final MappingMongoConverter converter =
+            new MappingMongoConverter(NoOpDbRefResolver.INSTANCE, new MongoMappingContext());
+
+    @Test
+    @DisplayName("Should store the static fields top-level in a regular collection and read them back")
+    void regularCollection_shouldKeepFlatDocuments() {
+        DeviceDocumentLayout layout = new DeviceDocumentLayout(false);
+        Document document = save(layout, entity());
+
+        assertThat(document).doesNotContainKey("meta");
+        assertThat(document.get("deviceId")).isEqualTo(7L);
+        assertThat(document.get("name")).isEqualTo("Device 7");
+        assertThat(document.get("type")).isEqualTo("CAMERA");
+
+        assertThat(load(layout, document)).isEqualTo(entity());
+    }
+
+    @Test
+    @DisplayName("Should group the static fields into meta for a time-series collection")
+    void timeSeriesCollection_shouldGroupMeta() {
+        DeviceDocumentLayout layout = new DeviceDocumentLayout(true);
+        Document document = save(layout, entity());
+
+        assertThat(document).doesNotContainKey("deviceId");
+        assertThat(document.get("meta", Document.class).get("deviceId")).isEqualTo(7L);
+
+        assertThat(load(layout, document)).isEqualTo(entity());
+    }
+
+    @Test
+    @DisplayName("Should read documents of the other shape as well")
+    void load_shouldReadEitherShape() {
+        Document grouped = save(new DeviceDocumentLayout(true), entity());
+        Document flat = save(new DeviceDocumentLayout(false), entity());
+
+        assertThat(load(new DeviceDocumentLayout(false), grouped)).isEqualTo(entity());
+        assertThat(load(new DeviceDocumentLayout(true), flat)).isEqualTo(entity());
+    }
+
+    private Document save(DeviceDocumentLayout layout, DeviceEntity entity) {
+        Document document = new Document();
+        converter.write(entity, document);
+        layout.onBeforeSave(new BeforeSaveEvent<>(entity, document, "devices"));
+        return document;
+    }
+
+    private DeviceEntity load(DeviceDocumentLayout layout, Document stored) {
+        Document document = new Document(stored);
+        layout.onAfterLoad(new AfterLoadEvent<>(document, DeviceEntity.class, "devices"));
+        return converter.read(DeviceEntity.class, document);
+    }
+
+    private static DeviceEntity entity() {
+        return new DeviceEntity("a1", new DeviceMeta(7L, "Device 7", "Acme", Type.CAMERA, List.of("zoom")),
+                new Location(1, 2, 0), new Status(true, 80, 70, NOW), NOW);
+    }
+}
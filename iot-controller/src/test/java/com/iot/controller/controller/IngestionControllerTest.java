@@ -1,30 +1,67 @@
 package com.iot.controller.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
 import com.iot.contracts.domain.DeviceData;
+import com.iot.contracts.domain.DeviceMetadata;
 import com.iot.contracts.domain.components.Location;
 import com.iot.contracts.domain.components.Status;
 import com.iot.contracts.domain.components.Type;
+import com.iot.controller.codec.ProtobufTestEncoder;
+import com.iot.controller.domain.DeviceLatestEntity;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import com.iot.controller.service.AdaptiveConcurrencyLimiter;
+import com.iot.controller.service.DeviceRegistry;
+import com.iot.controller.service.DeviceSpatialIndex;
+import com.iot.controller.service.IngestReport;
+import com.iot.controller.service.IngestionOverloadedException;
 import com.iot.controller.service.IngestionService;
+import com.iot.controller.service.LatestStateService;
+import com.iot.controller.service.SpatialMatch;
+import com.iot.controller.validation.DeviceValidationException;
+import com.iot.controller.validation.DeviceViolation;
 import jakarta.validation.ConstraintViolation;
 import jakarta.validation.ConstraintViolationException;
 import jakarta.validation.Path;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.reactive.WebFluxTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.test.context.bean.override.mockito.MockitoBean;
 import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.io.ByteArrayOutputStream;
+import java.time.Duration;
 import java.time.Instant;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.function.Supplier;
+import java.util.zip.GZIPOutputStream;
 
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 
 @WebFluxTest({IngestionController.class, GlobalExceptionHandler.class})
+@Import(SimpleMeterRegistry.class)
 class IngestionControllerTest {
 
     @Autowired
@@ -33,6 +70,25 @@ class IngestionControllerTest {
     @MockitoBean
     private IngestionService ingestionService;
 
+    @MockitoBean
+    private LatestStateService latestStateService;
+
+    @MockitoBean
+    private AdaptiveConcurrencyLimiter limiter;
+
+    @MockitoBean
+    private DeviceRegistry registry;
+
+    @MockitoBean
+    private DeviceSpatialIndex spatialIndex;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        when(limiter.execute(any(Supplier.class), anyBoolean()))
+                .thenAnswer(invocation -> ((Supplier<Mono<?>>) invocation.getArgument(0)).get());
+    }
+
     @Test
     @DisplayName("Should accept valid batch")
     void ingestBatch_shouldReturnAccepted() {
@@ -45,7 +101,7 @@ class IngestionControllerTest {
                 .status(new Status(true, 50, 80, Instant.now()))
                 .build();
 
-        when(ingestionService.ingestBatch(anyList())).thenReturn(Mono.empty());
+        when(ingestionService.ingestBatch(any(), anyList())).thenReturn(Mono.empty());
 
         webClient.post()
                 .uri("/api/ingest")
@@ -54,20 +110,107 @@ class IngestionControllerTest {
                 .expectStatus().isAccepted();
     }
 
+    @Test
+    @DisplayName("Should pass the Idempotency-Key header to the service")
+    void ingestBatch_shouldForwardIdempotencyKey() {
+        when(ingestionService.ingestBatch(eq("batch-42"), anyList())).thenReturn(Mono.empty());
+
+        webClient.post()
+                .uri("/api/ingest")
+                .header(IngestionController.IDEMPOTENCY_KEY_HEADER, "batch-42")
+                .bodyValue(List.of())
+                .exchange()
+                .expectStatus().isAccepted();
+
+        verify(ingestionService).ingestBatch(eq("batch-42"), anyList());
+    }
+
+    @Test
+    @DisplayName("Should negotiate binary request bodies by Content-Type")
+    void ingestBatch_shouldAcceptBinaryContentTypes() throws Exception {
+        List<DeviceData> devices = List.of(DeviceData.builder()
+                .id(42L)
+                .name("device-42")
+                .manufacturer("acme")
+                .type(Type.SENSOR_TEMPERATURE)
+                .capabilities(List.of("temp"))
+                .location(new Location(1, 2, 0))
+                .status(new Status(true, 15, 5, Instant.parse("2026-01-12T12:00:00Z")))
+                .build());
+        when(ingestionService.ingestBatch(any(), eq(devices))).thenReturn(Mono.just(new IngestReport(1, 0, List.of())));
+
+        Map<String, byte[]> bodies = Map.of(
+                "application/cbor", new ObjectMapper(new CBORFactory()).findAndRegisterModules().writeValueAsBytes(devices),
+                "application/x-jackson-smile", new ObjectMapper(new SmileFactory()).findAndRegisterModules().writeValueAsBytes(devices),
+                "application/x-protobuf", ProtobufTestEncoder.encode(devices));
+
+        bodies.forEach((contentType, body) -> webClient.post()
+                .uri("/api/ingest")
+                .contentType(MediaType.parseMediaType(contentType))
+                .accept(MediaType.APPLICATION_JSON)
+                .bodyValue(body)
+                .exchange()
+                .expectStatus().isAccepted()
+                .expectBody()
+                .jsonPath("$.accepted").isEqualTo(1));
+
+        verify(ingestionService, times(3)).ingestBatch(any(), eq(devices));
+    }
+
+    @Test
+    @DisplayName("Should inflate gzip request bodies and reject unknown encodings")
+    void ingestBatch_shouldAcceptGzipBody() throws Exception {
+        List<DeviceData> devices = List.of(DeviceData.builder()
+                .id(7L)
+                .name("device-7")
+                .manufacturer("acme")
+                .type(Type.SMART_PLUG)
+                .capabilities(List.of("power"))
+                .location(new Location(0, 0, 1))
+                .status(new Status(true, 80, 3, Instant.parse("2026-01-12T12:00:00Z")))
+                .build());
+        when(ingestionService.ingestBatch(any(), eq(devices))).thenReturn(Mono.just(new IngestReport(1, 0, List.of())));
+
+        ByteArrayOutputStream gzip = new ByteArrayOutputStream();
+        try (GZIPOutputStream out = new GZIPOutputStream(gzip)) {
+            out.write(new ObjectMapper().findAndRegisterModules().writeValueAsBytes(devices));
+        }
+
+        webClient.post()
+                .uri("/api/ingest")
+                .contentType(MediaType.APPLICATION_JSON)
+                .header(HttpHeaders.CONTENT_ENCODING, "gzip")
+                .bodyValue(gzip.toByteArray())
+                .exchange()
+                .expectStatus().isAccepted()
+                .expectBody()
+                .jsonPath("$.accepted").isEqualTo(1);
+
+        webClient.post()
+                .uri("/api/ingest")
+                .contentType(MediaType.APPLICATION_JSON)
+                .header(HttpHeaders.CONTENT_ENCODING, "br")
+                .bodyValue(gzip.toByteArray())
+                .exchange()
+                .expectStatus().isEqualTo(HttpStatus.UNSUPPORTED_MEDIA_TYPE);
+
+        verify(ingestionService, times(1)).ingestBatch(any(), eq(devices));
+    }
+
     @Test
     @DisplayName("Should return 400 with details for ConstraintViolationException")
     void ingestBatch_shouldReturnBadRequest_withDetails() {
         // Arrange
-        ConstraintViolationException ex = mock(ConstraintViolationException.class);
         ConstraintViolation<DeviceData> violation = mock(ConstraintViolation.class);
         Path path = mock(Path.class);
         
         when(path.toString()).thenReturn("status.batteryLevel");
         when(violation.getPropertyPath()).thenReturn(path);
         when(violation.getMessage()).thenReturn("must be <= 100");
-        when(ex.getConstraintViolations()).thenReturn(Set.of(violation));
+        // a real exception: the report-returning handler needs a stack trace for its error checkpoint
+        ConstraintViolationException ex = new ConstraintViolationException("Device validation failed", Set.of(violation));
 
-        when(ingestionService.ingestBatch(anyList())).thenReturn(Mono.error(ex));
+        when(ingestionService.ingestBatch(any(), anyList())).thenReturn(Mono.error(ex));
 
         DeviceData invalidDevice = DeviceData.builder().id(1L).build();
 
@@ -82,10 +225,64 @@ class IngestionControllerTest {
                 .jsonPath("$.details['status.batteryLevel']").isEqualTo("must be <= 100");
     }
 
+    @Test
+    @DisplayName("Should return the per-index report of a partially accepted batch")
+    void ingestBatch_shouldReturnReport() {
+        IngestReport report = new IngestReport(1, 1,
+                List.of(new DeviceViolation(1, 2L, "status.lastHeartbeat", "must not be null")));
+        when(ingestionService.ingestBatch(any(), anyList())).thenReturn(Mono.just(report));
+
+        webClient.post()
+                .uri("/api/ingest")
+                .bodyValue(List.of())
+                .exchange()
+                .expectStatus().isAccepted()
+                .expectBody()
+                .jsonPath("$.accepted").isEqualTo(1)
+                .jsonPath("$.rejected").isEqualTo(1)
+                .jsonPath("$.errors[0].index").isEqualTo(1)
+                .jsonPath("$.errors[0].field").isEqualTo("status.lastHeartbeat");
+    }
+
+    @Test
+    @DisplayName("Should return 400 with per-index errors for DeviceValidationException")
+    void ingestBatch_shouldReturnBadRequest_withIndexedErrors() {
+        when(ingestionService.ingestBatch(any(), anyList())).thenReturn(Mono.error(new DeviceValidationException(
+                List.of(new DeviceViolation(3, 7L, "location.x", "must be less than or equal to 10000")))));
+
+        webClient.post()
+                .uri("/api/ingest")
+                .bodyValue(List.of())
+                .exchange()
+                .expectStatus().isBadRequest()
+                .expectBody()
+                .jsonPath("$.error").isEqualTo("Validation failed")
+                .jsonPath("$.details['location.x']").isEqualTo("must be less than or equal to 10000")
+                .jsonPath("$.errors[0].index").isEqualTo(3)
+                .jsonPath("$.errors[0].deviceId").isEqualTo(7);
+    }
+
+    @Test
+    @DisplayName("Should return 429 with Retry-After when the limiter sheds the request")
+    @SuppressWarnings("unchecked")
+    void ingestBatch_shouldReturnTooManyRequests_whenOverloaded() {
+        when(limiter.execute(any(Supplier.class), anyBoolean()))
+                .thenReturn(Mono.error(new IngestionOverloadedException(Duration.ofMillis(1500))));
+
+        webClient.post()
+                .uri("/api/ingest")
+                .bodyValue(List.of())
+                .exchange()
+                .expectStatus().isEqualTo(HttpStatus.TOO_MANY_REQUESTS)
+                .expectHeader().valueEquals(HttpHeaders.RETRY_AFTER, "2");
+
+        verify(ingestionService, never()).ingestBatch(any(), anyList());
+    }
+
     @Test
     @DisplayName("Should return 400 for generic IllegalArgumentException")
     void ingestBatch_shouldReturnBadRequest_whenIllegalArgument() {
-        when(ingestionService.ingestBatch(anyList()))
+        when(ingestionService.ingestBatch(any(), anyList()))
             .thenReturn(Mono.error(new IllegalArgumentException("Invalid input")));
 
         DeviceData device = DeviceData.builder().id(1L).build();
@@ -98,4 +295,165 @@ class IngestionControllerTest {
                 .expectBody()
                 .jsonPath("$.error").isEqualTo("Invalid input");
     }
+
+    @Test
+    @DisplayName("Should stream NDJSON body to the service")
+    @SuppressWarnings("unchecked")
+    void ingestStream_shouldReturnAccepted() {
+        String body = """
+                {"id":1,"name":"A","manufacturer":"Acme","type":"SENSOR_TEMPERATURE","location":{"x":1,"y":2,"z":0},"status":{"isOnline":true,"batteryLevel":50,"signalStrength":80,"lastHeartbeat":"2024-01-01T00:00:00Z"}}
+                {"id":2,"name":"B","manufacturer":"Acme","type":"CAMERA","location":{"x":3,"y":4,"z":1},"status":{"isOnline":false,"batteryLevel":10,"signalStrength":20,"lastHeartbeat":"2024-01-01T00:00:00Z"}}
+                """;
+
+        when(ingestionService.ingestStream(any(Flux.class))).thenAnswer(invocation -> {
+            Flux<DeviceData> stream = invocation.getArgument(0);
+            return stream.map(DeviceData::id).collectList()
+                    .doOnNext(ids -> assertThat(ids).containsExactly(1L, 2L))
+                    .map(ids -> new IngestReport(ids.size(), 0, List.of()));
+        });
+
+        webClient.post()
+                .uri("/api/ingest")
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .bodyValue(body)
+                .exchange()
+                .expectStatus().isAccepted();
+
+        verify(ingestionService).ingestStream(any(Flux.class));
+        verify(ingestionService, never()).ingestBatch(any(), anyList());
+    }
+
+    @Test
+    @DisplayName("Should return latest device state")
+    void getLatest_shouldReturnState() {
+        DeviceLatestEntity latest = new DeviceLatestEntity(7L, "Device 7", "Acme", Type.CAMERA, List.of(),
+                new Location(1, 2, 0), new Status(true, 50, 80, Instant.now()), Instant.now());
+        when(latestStateService.find(7L)).thenReturn(Mono.just(latest));
+
+        webClient.get()
+                .uri("/api/ingest/devices/7/latest")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.deviceId").isEqualTo(7)
+                .jsonPath("$.status.batteryLevel").isEqualTo(50);
+    }
+
+    @Test
+    @DisplayName("Should return 404 for unknown device")
+    void getLatest_shouldReturnNotFound() {
+        when(latestStateService.find(anyLong())).thenReturn(Mono.empty());
+
+        webClient.get()
+                .uri("/api/ingest/devices/404/latest")
+                .exchange()
+                .expectStatus().isNotFound();
+    }
+
+    @Test
+    @DisplayName("Should return latest states for several devices")
+    void getLatestBatch_shouldReturnStates() {
+        when(latestStateService.findAll(List.of(1L, 2L))).thenReturn(Flux.just(
+                new DeviceLatestEntity(1L, "A", "Acme", Type.CAMERA, List.of(), new Location(0, 0, 0),
+                        new Status(true, 50, 80, Instant.now()), Instant.now()),
+                new DeviceLatestEntity(2L, "B", "Acme", Type.CAMERA, List.of(), new Location(0, 0, 0),
+                        new Status(true, 50, 80, Instant.now()), Instant.now())));
+
+        webClient.get()
+                .uri("/api/ingest/devices/latest?ids=1,2")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.length()").isEqualTo(2)
+                .jsonPath("$[1].deviceId").isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("Should return registered device metadata")
+    void getMetadata_shouldReturnMetadata() {
+        when(registry.find(7L)).thenReturn(Mono.just(
+                new DeviceMetadata(7L, 3, "Device 7", "Acme", Type.CAMERA, List.of("video"))));
+
+        webClient.get()
+                .uri("/api/ingest/devices/7/metadata")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.deviceId").isEqualTo(7)
+                .jsonPath("$.version").isEqualTo(3)
+                .jsonPath("$.capabilities[0]").isEqualTo("video");
+    }
+
+    @Test
+    @DisplayName("Should return 404 for a device that is not registered")
+    void getMetadata_shouldReturnNotFound() {
+        when(registry.find(anyLong())).thenReturn(Mono.empty());
+
+        webClient.get()
+                .uri("/api/ingest/devices/404/metadata")
+                .exchange()
+                .expectStatus().isNotFound();
+    }
+
+    @Test
+    @DisplayName("Should return metadata for several devices")
+    void getMetadataBatch_shouldReturnMetadata() {
+        when(registry.findAll(List.of(1L, 2L))).thenReturn(Flux.just(
+                new DeviceMetadata(1L, 1, "A", "Acme", Type.CAMERA, List.of()),
+                new DeviceMetadata(2L, 4, "B", "Acme", Type.CAMERA, List.of())));
+
+        webClient.get()
+                .uri("/api/ingest/devices/metadata?ids=1,2")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.length()").isEqualTo(2)
+                .jsonPath("$[1].version").isEqualTo(4);
+    }
+
+    @Test
+    @DisplayName("Should return the devices in a region, clamping it to the coordinate range")
+    void getRegion_shouldQueryIndex() {
+        when(spatialIndex.region(2, -10000, 0, 50, 50, 1000))
+                .thenReturn(List.of(new SpatialMatch(3L, new Location(10, 10, 2), null)));
+
+        webClient.get()
+                .uri("/api/ingest/devices/spatial/region?z=2&minX=-20000&minY=0&maxX=50&maxY=50")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$[0].deviceId").isEqualTo(3)
+                .jsonPath("$[0].location.z").isEqualTo(2)
+                .jsonPath("$[0].distance").doesNotExist();
+    }
+
+    @Test
+    @DisplayName("Should reject an inverted region")
+    void getRegion_shouldRejectInvertedRegion() {
+        webClient.get()
+                .uri("/api/ingest/devices/spatial/region?z=0&minX=10&minY=0&maxX=5&maxY=50")
+                .exchange()
+                .expectStatus().isBadRequest();
+
+        verify(spatialIndex, never()).region(anyInt(), anyInt(), anyInt(), anyInt(), anyInt(), anyInt());
+    }
+
+    @Test
+    @DisplayName("Should return the nearest devices and validate k")
+    void getNearest_shouldQueryIndex() {
+        when(spatialIndex.nearest(1, 5, 5, 2, 30.0))
+                .thenReturn(List.of(new SpatialMatch(8L, new Location(6, 5, 1), 1.0)));
+
+        webClient.get()
+                .uri("/api/ingest/devices/spatial/nearest?z=1&x=5&y=5&k=2&maxDistance=30")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$[0].deviceId").isEqualTo(8)
+                .jsonPath("$[0].distance").isEqualTo(1.0);
+        webClient.get()
+                .uri("/api/ingest/devices/spatial/nearest?z=1&x=5&y=5&k=5000")
+                .exchange()
+                .expectStatus().isBadRequest();
+    }
 }
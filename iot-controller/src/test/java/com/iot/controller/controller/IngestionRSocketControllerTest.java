@@ -0,0 +1,190 @@
+package com.iot.controller.controller;
+
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.iot.contracts.domain.DeviceData;
+import com.iot.contracts.domain.IngestAck;
+import com.iot.contracts.domain.components.Location;
+import com.iot.contracts.domain.components.Status;
+import com.iot.contracts.domain.components.Type;
+import com.iot.controller.service.IngestReport;
+import com.iot.controller.service.IngestionOverloadedException;
+import com.iot.controller.service.IngestionService;
+import com.iot.controller.validation.DeviceValidationException;
+import com.iot.controller.validation.DeviceViolation;
+import com.mongodb.MongoTimeoutException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+import reactor.test.publisher.TestPublisher;
+
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class IngestionRSocketControllerTest {
+
+    @Mock
+    private IngestionService ingestionService;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private IngestionRSocketController controller;
+
+    @BeforeEach
+    void setUp() {
+        controller = new IngestionRSocketController(ingestionService, meterRegistry,
+                2, Duration.ofSeconds(5), 1, Duration.ofMillis(10), Duration.ofMillis(50), 3);
+    }
+
+    @Test
+    @DisplayName("Should stop requesting devices while batches are being stored and resume once they are")
+    void ingest_shouldDriveDemandByStorage() {
+        TestPublisher<DeviceData> producer = TestPublisher.create();
+        Sinks.One<IngestReport> firstStored = Sinks.one();
+        when(ingestionService.ingestBatch(anyList()))
+                .thenReturn(firstStored.asMono())
+                .thenReturn(Mono.just(new IngestReport(2, 0, List.of())));
+
+        StepVerifier.create(controller.ingest(producer.flux()))
+                .then(() -> producer.assertMinRequested(1))
+                // the first batch is stuck in storage: the channel takes its prefetch and then asks for nothing more
+                .then(() -> emit(producer, 1, 8))
+                .expectNoEvent(Duration.ofMillis(200))
+                .then(() -> producer.assertMaxRequested(0))
+                .then(() -> firstStored.tryEmitValue(new IngestReport(2, 0, List.of())))
+                .expectNext(new IngestAck(2, 2, 0), new IngestAck(4, 2, 0), new IngestAck(6, 2, 0),
+                        new IngestAck(8, 2, 0))
+                .then(() -> producer.assertMinRequested(1))
+                .then(() -> producer.next(device(9), device(10)))
+                .expectNext(new IngestAck(10, 2, 0))
+                .then(producer::complete)
+                .verifyComplete();
+
+        assertThat(meterRegistry.counter("iot.ingest.rsocket.devices").count()).isEqualTo(10);
+        assertThat(meterRegistry.get("iot.ingest.rsocket.channels").gauge().value()).isZero();
+    }
+
+    @Test
+    @DisplayName("Should acknowledge a rejected batch and keep the channel open")
+    void ingest_shouldAcknowledgeRejectedBatch() {
+        DeviceViolation violation = new DeviceViolation(0, 1L, "name", "must not be blank");
+        when(ingestionService.ingestBatch(anyList()))
+                .thenReturn(Mono.error(new DeviceValidationException(List.of(violation))))
+                .thenReturn(Mono.just(new IngestReport(1, 0, List.of())));
+        TestPublisher<DeviceData> producer = TestPublisher.create();
+
+        StepVerifier.create(controller.ingest(producer.flux()))
+                .then(() -> producer.next(device(1), device(2)))
+                .expectNext(new IngestAck(2, 0, 2))
+                .then(() -> producer.next(device(3)).complete())
+                .expectNext(new IngestAck(3, 1, 0))
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("Should retry a batch that failed transiently downstream instead of failing the channel")
+    void ingest_shouldRetryTransientlyFailedBatch() {
+        when(ingestionService.ingestBatch(anyList()))
+                .thenReturn(Mono.error(new MongoTimeoutException("mongo is down")))
+                .thenReturn(Mono.error(new IngestionOverloadedException(Duration.ofSeconds(1))))
+                .thenReturn(Mono.just(new IngestReport(1, 0, List.of())));
+        TestPublisher<DeviceData> producer = TestPublisher.create();
+
+        StepVerifier.create(controller.ingest(producer.flux()))
+                .then(() -> producer.next(device(1)).complete())
+                .expectNext(new IngestAck(1, 1, 0))
+                .expectComplete()
+                .verify(Duration.ofSeconds(5));
+
+        assertThat(meterRegistry.counter("iot.ingest.rsocket.retries").count()).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("Should ack a batch with a non-transient failure as rejected without retrying it")
+    void ingest_shouldRejectBatchWithPermanentFailure() {
+        when(ingestionService.ingestBatch(anyList()))
+                .thenReturn(Mono.error(new IllegalStateException("cannot serialize device")))
+                .thenReturn(Mono.just(new IngestReport(1, 0, List.of())));
+        TestPublisher<DeviceData> producer = TestPublisher.create();
+
+        StepVerifier.create(controller.ingest(producer.flux()))
+                .then(() -> producer.next(device(1), device(2)))
+                .expectNext(new IngestAck(2, 0, 2))
+                .then(() -> producer.next(device(3)).complete())
+                .expectNext(new IngestAck(3, 1, 0))
+                .verifyComplete();
+
+        verify(ingestionService, times(2)).ingestBatch(anyList());
+        assertThat(meterRegistry.counter("iot.ingest.rsocket.retries").count()).isZero();
+        assertThat(meterRegistry.counter("iot.ingest.rsocket.failed").count()).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("Should ack a batch that cannot be serialized as rejected without retrying it")
+    void ingest_shouldNotRetrySerializationFailure() {
+        when(ingestionService.ingestBatch(anyList()))
+                .thenReturn(Mono.error(new JsonMappingException(null, "cannot serialize device")))
+                .thenReturn(Mono.error(new UncheckedIOException(new JsonMappingException(null, "cannot serialize"))));
+        TestPublisher<DeviceData> producer = TestPublisher.create();
+
+        StepVerifier.create(controller.ingest(producer.flux()))
+                .then(() -> producer.next(device(1), device(2)))
+                .expectNext(new IngestAck(2, 0, 2))
+                .then(() -> producer.next(device(3)).complete())
+                .expectNext(new IngestAck(3, 0, 1))
+                .verifyComplete();
+
+        verify(ingestionService, times(2)).ingestBatch(anyList());
+        assertThat(meterRegistry.counter("iot.ingest.rsocket.retries").count()).isZero();
+    }
+
+    @Test
+    @DisplayName("Should ack a batch as rejected once its retries are exhausted")
+    void ingest_shouldRejectBatchAfterMaxAttempts() {
+        when(ingestionService.ingestBatch(anyList()))
+                .thenReturn(Mono.error(new MongoTimeoutException("mongo is down")));
+        TestPublisher<DeviceData> producer = TestPublisher.create();
+
+        StepVerifier.create(controller.ingest(producer.flux()))
+                .then(() -> producer.next(device(1)).complete())
+                .expectNext(new IngestAck(1, 0, 1))
+                .expectComplete()
+                .verify(Duration.ofSeconds(5));
+
+        verify(ingestionService, times(4)).ingestBatch(anyList());
+        assertThat(meterRegistry.counter("iot.ingest.rsocket.retries").count()).isEqualTo(3);
+        assertThat(meterRegistry.counter("iot.ingest.rsocket.failed").count()).isEqualTo(1);
+    }
+
+    private static void emit(TestPublisher<DeviceData> producer, long firstId, long lastId) {
+        for (long id = firstId; id <= lastId; id++) {
+            producer.next(device(id));
+        }
+    }
+
+    private static DeviceData device(long id) {
+        return DeviceData.builder()
+                .id(id)
+                .name("Device " + id)
+                .manufacturer("Acme")
+                .type(Type.SENSOR_TEMPERATURE)
+                .location(new Location(1, 2, 0))
+                .status(new Status(true, 80, 70, Instant.now()))
+                .build();
+    }
+}
@@ -0,0 +1,171 @@
+package com.iot.controller.filter;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RequestDecompressionFilterTest {
+
+    private static final byte[] JSON = ("[" + "{\"id\":1,\"name\":\"device\"},".repeat(2000) + "{\"id\":2}]")
+            .getBytes(StandardCharsets.UTF_8);
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final RequestDecompressionFilter filter = new RequestDecompressionFilter(meterRegistry, true,
+            DataSize.ofMegabytes(16), 100, DataSize.ofKilobytes(64));
+
+    @Test
+    @DisplayName("Should inflate gzip bodies split at arbitrary chunk boundaries")
+    void filter_gzip_shouldInflate() throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        try (GZIPOutputStream out = new GZIPOutputStream(body)) {
+            out.write(JSON);
+        }
+        byte[] compressed = body.toByteArray();
+
+        AtomicReference<HttpHeaders> headers = new AtomicReference<>();
+        StepVerifier.create(readBody("gzip", compressed, 3, headers))
+                .assertNext(inflated -> assertThat(inflated).isEqualTo(JSON))
+                .verifyComplete();
+
+        assertThat(headers.get().getFirst(HttpHeaders.CONTENT_ENCODING)).isNull();
+        assertThat(headers.get().getContentLength()).isEqualTo(-1);
+        assertThat(meterRegistry.counter("iot.ingest.request.compressed.bytes", "encoding", "gzip").count())
+                .isEqualTo(compressed.length);
+        assertThat(meterRegistry.counter("iot.ingest.request.inflated.bytes", "encoding", "gzip").count())
+                .isEqualTo(JSON.length);
+        assertThat(meterRegistry.summary("iot.ingest.request.compression.ratio", "encoding", "gzip").count())
+                .isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Should inflate both zlib-wrapped and raw deflate bodies")
+    void filter_deflate_shouldAcceptZlibAndRaw() throws IOException {
+        for (boolean raw : new boolean[]{false, true}) {
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            try (DeflaterOutputStream out = new DeflaterOutputStream(body, new Deflater(Deflater.DEFAULT_COMPRESSION, raw))) {
+                out.write(JSON);
+            }
+
+            StepVerifier.create(readBody("deflate", body.toByteArray(), 512, new AtomicReference<>()))
+                    .assertNext(inflated -> assertThat(inflated).isEqualTo(JSON))
+                    .verifyComplete();
+        }
+    }
+
+    @Test
+    @DisplayName("Should reject decompression bombs with 413 before inflating them")
+    void filter_bomb_shouldRejectPayloadTooLarge() throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        try (GZIPOutputStream out = new GZIPOutputStream(body)) {
+            byte[] zeros = new byte[1024 * 1024];
+            for (int i = 0; i < 64; i++) {
+                out.write(zeros);
+            }
+        }
+
+        StepVerifier.create(readBody("gzip", body.toByteArray(), 8192, new AtomicReference<>()))
+                .expectErrorSatisfies(error -> assertThat(error)
+                        .isInstanceOf(ResponseStatusException.class)
+                        .extracting(e -> ((ResponseStatusException) e).getStatusCode())
+                        .isEqualTo(HttpStatus.PAYLOAD_TOO_LARGE))
+                .verify();
+
+        assertThat(meterRegistry.counter("iot.ingest.request.decompression.rejected", "reason", "limit").count())
+                .isEqualTo(1);
+        assertThat(meterRegistry.counter("iot.ingest.request.inflated.bytes", "encoding", "gzip").count())
+                .isLessThan(DataSize.ofMegabytes(16).toBytes());
+    }
+
+    @Test
+    @DisplayName("Should reject corrupt and truncated bodies with 400")
+    void filter_malformed_shouldRejectBadRequest() throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        try (GZIPOutputStream out = new GZIPOutputStream(body)) {
+            out.write(JSON);
+        }
+        byte[] compressed = body.toByteArray();
+        byte[] corrupt = compressed.clone();
+        corrupt[corrupt.length - 6] ^= 0x5a;
+
+        for (byte[] bad : List.of(corrupt, Arrays.copyOf(compressed, compressed.length / 2),
+                "not gzip at all".getBytes(StandardCharsets.UTF_8))) {
+            StepVerifier.create(readBody("gzip", bad, 1024, new AtomicReference<>()))
+                    .expectErrorSatisfies(error -> assertThat(error)
+                            .isInstanceOf(ResponseStatusException.class)
+                            .extracting(e -> ((ResponseStatusException) e).getStatusCode())
+                            .isEqualTo(HttpStatus.BAD_REQUEST))
+                    .verify();
+        }
+
+        assertThat(meterRegistry.counter("iot.ingest.request.decompression.rejected", "reason", "malformed").count())
+                .isEqualTo(3);
+    }
+
+    @Test
+    @DisplayName("Should leave requests outside /api/ingest untouched")
+    void filter_otherPath_shouldPassThrough() {
+        MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.post("/actuator/health")
+                .header(HttpHeaders.CONTENT_ENCODING, "gzip")
+                .body("plain"));
+        AtomicReference<HttpHeaders> headers = new AtomicReference<>();
+
+        filter.filter(exchange, passed -> {
+            headers.set(passed.getRequest().getHeaders());
+            return Mono.empty();
+        }).block();
+
+        assertThat(headers.get().getFirst(HttpHeaders.CONTENT_ENCODING)).isEqualTo("gzip");
+    }
+
+    private Mono<byte[]> readBody(String encoding, byte[] body, int chunkSize, AtomicReference<HttpHeaders> headers) {
+        List<DataBuffer> chunks = new ArrayList<>();
+        for (int offset = 0; offset < body.length; offset += chunkSize) {
+            chunks.add(DefaultDataBufferFactory.sharedInstance
+                    .wrap(Arrays.copyOfRange(body, offset, Math.min(body.length, offset + chunkSize))));
+        }
+        MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.post("/api/ingest")
+                .header(HttpHeaders.CONTENT_ENCODING, encoding)
+                .contentLength(body.length)
+                .body(Flux.fromIterable(chunks)));
+
+        AtomicReference<byte[]> inflated = new AtomicReference<>();
+        WebFilterChain chain = passed -> {
+            headers.set(passed.getRequest().getHeaders());
+            return DataBufferUtils.join(passed.getRequest().getBody())
+                    .doOnNext(joined -> {
+                        byte[] bytes = new byte[joined.readableByteCount()];
+                        joined.read(bytes);
+                        DataBufferUtils.release(joined);
+                        inflated.set(bytes);
+                    })
+                    .then();
+        };
+        return filter.filter(exchange, chain).then(Mono.fromSupplier(inflated::get));
+    }
+}
@@ -0,0 +1,225 @@
+package com.iot.controller.journal;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.iot.contracts.domain.DeviceData;
+import com.iot.contracts.domain.components.Location;
+import com.iot.contracts.domain.components.Status;
+import com.iot.contracts.domain.components.Type;
+import com.iot.controller.service.IngestionOverloadedException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+import reactor.test.StepVerifier;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class IngestJournalTest {
+
+    @TempDir
+    private Path directory;
+
+    private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final List<IngestJournal> opened = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() {
+        opened.forEach(IngestJournal::close);
+    }
+
+    @Test
+    @DisplayName("Should make appends readable once they are synced")
+    void append_shouldBeReadableAfterSync() throws IOException {
+        IngestJournal journal = open(DataSize.ofMegabytes(1));
+
+        StepVerifier.create(journal.append(devices(1, 3))).verifyComplete();
+        StepVerifier.create(journal.append(devices(4, 1))).verifyComplete();
+
+        List<IngestJournal.Entry> entries = journal.read(journal.replayedPosition(), 10);
+        assertThat(entries).hasSize(2);
+        assertThat(ids(entries)).containsExactly(1L, 2L, 3L, 4L);
+        assertThat(journal.read(entries.getFirst().end(), 10)).hasSize(1);
+        assertThat(meterRegistry.get("iot.ingest.journal.sync").timer().count()).isPositive();
+    }
+
+    @Test
+    @DisplayName("Should resume from the checkpoint after a restart and delete replayed segments")
+    void reopen_shouldResumeFromCheckpoint() throws IOException {
+        IngestJournal journal = open(DataSize.ofKilobytes(2), DataSize.ofMegabytes(1));
+        for (long id = 1; id <= 30; id++) {
+            StepVerifier.create(journal.append(devices(id, 1))).verifyComplete();
+        }
+        JournalPosition checkpoint = journal.read(journal.replayedPosition(), 25).getLast().end();
+        journal.markReplayed(checkpoint);
+        journal.close();
+        opened.remove(journal);
+
+        IngestJournal reopened = open(DataSize.ofKilobytes(2), DataSize.ofMegabytes(1));
+
+        assertThat(reopened.replayedPosition()).isEqualTo(checkpoint);
+        assertThat(ids(reopened.read(reopened.replayedPosition(), 100)))
+                .containsExactly(26L, 27L, 28L, 29L, 30L);
+        assertThat(checkpoint.segment()).isGreaterThan(1);
+        assertThat(segmentIds()).allSatisfy(id -> assertThat(id).isGreaterThanOrEqualTo(checkpoint.segment()));
+    }
+
+    @Test
+    @DisplayName("Should drop a torn record on restart and append after the last valid one")
+    void reopen_shouldDropTornRecord() throws IOException {
+        IngestJournal journal = open(DataSize.ofMegabytes(1));
+        StepVerifier.create(journal.append(devices(1, 1))).verifyComplete();
+        StepVerifier.create(journal.append(devices(2, 1))).verifyComplete();
+        int tornAt = journal.read(journal.replayedPosition(), 1).getFirst().end().offset();
+        journal.close();
+        opened.remove(journal);
+
+        Path segment;
+        try (Stream<Path> files = Files.list(directory)) {
+            segment = files.filter(file -> file.toString().endsWith(".journal")).findFirst().orElseThrow();
+        }
+        try (RandomAccessFile file = new RandomAccessFile(segment.toFile(), "rw")) {
+            // corrupt the payload of the second record
+            file.seek(tornAt + 12);
+            file.write(new byte[]{'x', 'x', 'x'});
+        }
+
+        IngestJournal reopened = open(DataSize.ofMegabytes(1));
+        assertThat(ids(reopened.read(reopened.replayedPosition(), 10))).containsExactly(1L);
+
+        StepVerifier.create(reopened.append(devices(3, 1))).verifyComplete();
+        assertThat(ids(reopened.read(reopened.replayedPosition(), 10))).containsExactly(1L, 3L);
+    }
+
+    @Test
+    @DisplayName("Should fail the appends of a failed sync and never replay their records, even after a restart")
+    void append_failedSync_shouldDiscardRecords() throws IOException {
+        AtomicBoolean failSync = new AtomicBoolean();
+        IngestJournal journal = new IngestJournal(objectMapper, meterRegistry, true, directory,
+                DataSize.ofMegabytes(1), DataSize.ofMegabytes(16), Duration.ofMillis(1)) {
+            @Override
+            void force(MappedByteBuffer buffer, int offset, int length) {
+                if (failSync.get()) {
+                    throw new UncheckedIOException(new IOException("disk error"));
+                }
+                super.force(buffer, offset, length);
+            }
+        };
+        opened.add(journal);
+
+        StepVerifier.create(journal.append(devices(1, 1))).verifyComplete();
+        failSync.set(true);
+        StepVerifier.create(journal.append(devices(2, 2))).verifyError(UncheckedIOException.class);
+        failSync.set(false);
+        StepVerifier.create(journal.append(devices(4, 1))).verifyComplete();
+
+        assertThat(ids(journal.read(journal.replayedPosition(), 10))).containsExactly(1L, 4L);
+        journal.close();
+        opened.remove(journal);
+
+        IngestJournal reopened = open(DataSize.ofMegabytes(1));
+        assertThat(ids(reopened.read(reopened.replayedPosition(), 10))).containsExactly(1L, 4L);
+    }
+
+    @Test
+    @DisplayName("Should roll over to segments created ahead of time and remove unused ones on close")
+    void append_shouldRollToPreallocatedSegments() throws IOException {
+        IngestJournal journal = open(DataSize.ofKilobytes(2), DataSize.ofMegabytes(1));
+        for (long id = 1; id <= 30; id++) {
+            StepVerifier.create(journal.append(devices(id, 1))).verifyComplete();
+        }
+        assertThat(ids(journal.read(journal.replayedPosition(), 100)))
+                .containsExactlyElementsOf(LongStream.rangeClosed(1, 30).boxed().toList());
+
+        long lastWritten = journal.read(journal.replayedPosition(), 100).getLast().end().segment();
+        journal.close();
+        opened.remove(journal);
+        assertThat(segmentIds()).allSatisfy(id -> assertThat(id).isLessThanOrEqualTo(lastWritten));
+    }
+
+    @Test
+    @DisplayName("Should shed appends once the unreplayed journal reaches max-size")
+    void append_shouldRejectWhenFull() throws IOException {
+        IngestJournal journal = open(DataSize.ofKilobytes(4), DataSize.ofKilobytes(8));
+        List<DeviceData> batch = devices(1, 5);
+
+        int accepted = 0;
+        while (appended(journal, batch)) {
+            accepted++;
+            assertThat(accepted).isLessThan(20);
+        }
+        assertThat(accepted).isPositive();
+
+        // once replayed, the space is reclaimed
+        journal.markReplayed(journal.read(journal.replayedPosition(), 100).getLast().end());
+        StepVerifier.create(journal.append(batch)).verifyComplete();
+    }
+
+    private static boolean appended(IngestJournal journal, List<DeviceData> batch) {
+        try {
+            journal.append(batch).block();
+            return true;
+        } catch (IngestionOverloadedException e) {
+            return false;
+        }
+    }
+
+    private IngestJournal open(DataSize segmentSize) {
+        return open(segmentSize, DataSize.ofMegabytes(16));
+    }
+
+    private IngestJournal open(DataSize segmentSize, DataSize maxSize) {
+        IngestJournal journal = new IngestJournal(objectMapper, meterRegistry, true, directory, segmentSize,
+                maxSize, Duration.ofMillis(1));
+        opened.add(journal);
+        return journal;
+    }
+
+    private List<Long> segmentIds() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.map(file -> file.getFileName().toString())
+                    .filter(name -> name.endsWith(".journal"))
+                    .map(name -> Long.parseLong(name.substring(0, name.indexOf('.'))))
+                    .toList();
+        }
+    }
+
+    private List<Long> ids(List<IngestJournal.Entry> entries) throws IOException {
+        List<Long> ids = new ArrayList<>();
+        for (IngestJournal.Entry entry : entries) {
+            objectMapper.readValue(entry.payload(), new TypeReference<List<DeviceData>>() {})
+                    .forEach(device -> ids.add(device.id()));
+        }
+        return ids;
+    }
+
+    private static List<DeviceData> devices(long firstId, int count) {
+        return LongStream.range(firstId, firstId + count)
+                .mapToObj(id -> DeviceData.builder()
+                        .id(id)
+                        .name("Device " + id)
+                        .manufacturer("Acme")
+                        .type(Type.SENSOR_TEMPERATURE)
+                        .location(new Location(1, 2, 0))
+                        .status(new Status(true, 80, 70, Instant.now()))
+                        .build())
+                .toList();
+    }
+}
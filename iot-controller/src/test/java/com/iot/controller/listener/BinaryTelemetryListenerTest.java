@@ -0,0 +1,186 @@
+package com.iot.controller.listener;
+
+import com.iot.contracts.domain.DeviceData;
+import com.iot.contracts.domain.components.Location;
+import com.iot.contracts.domain.components.Status;
+import com.iot.contracts.domain.components.Type;
+import com.iot.controller.codec.ProtobufTestEncoder;
+import com.iot.controller.service.IngestReport;
+import com.iot.controller.service.IngestionService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.util.unit.DataSize;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.netty.Connection;
+import reactor.netty.tcp.TcpClient;
+import reactor.netty.udp.UdpClient;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.LongStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class BinaryTelemetryListenerTest {
+
+    @Mock
+    private IngestionService ingestionService;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private BinaryTelemetryListener listener;
+
+    @BeforeEach
+    void setUp() {
+        listener = new BinaryTelemetryListener(ingestionService, meterRegistry, true, 0, true, 0,
+                DataSize.ofKilobytes(1), 3, Duration.ofMillis(50));
+        listener.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        listener.stop();
+    }
+
+    @Test
+    @DisplayName("Should decode length-prefixed TCP frames, skipping malformed ones, and ingest them in batches")
+    void tcp_shouldIngestDecodedFrames() throws InterruptedException {
+        List<List<DeviceData>> batches = new CopyOnWriteArrayList<>();
+        Sinks.Many<DeviceData> ingested = Sinks.many().replay().all();
+        when(ingestionService.ingestBatch(anyList())).thenAnswer(invocation -> {
+            List<DeviceData> batch = invocation.getArgument(0);
+            batches.add(batch);
+            batch.forEach(ingested::tryEmitNext);
+            return Mono.just(IngestReport.empty());
+        });
+        ByteBuf frames = Unpooled.buffer();
+        for (DeviceData device : devices(1, 4)) {
+            writeFrame(frames, ProtobufTestEncoder.encodeDevice(device));
+        }
+        writeFrame(frames, new byte[]{(byte) 0xff, (byte) 0xff});
+
+        Connection connection = TcpClient.create().port(listener.tcpPort()).connectNow();
+        try {
+            connection.outbound().send(Mono.just(frames)).then().block(Duration.ofSeconds(5));
+
+            StepVerifier.create(ingested.asFlux().map(DeviceData::id).take(4))
+                    .expectNext(1L, 2L, 3L, 4L)
+                    .expectComplete()
+                    .verify(Duration.ofSeconds(5));
+            assertThat(batches).allSatisfy(batch -> assertThat(batch).hasSizeLessThanOrEqualTo(3));
+            assertThat(batches.getFirst().getFirst().location()).isEqualTo(new Location(1, 2, 0));
+            assertThat(meterRegistry.get("iot.ingest.listener.frames").tag("transport", "tcp").counter().count())
+                    .isEqualTo(5);
+            assertThat(meterRegistry.get("iot.ingest.listener.malformed").tag("transport", "tcp").counter().count())
+                    .isEqualTo(1);
+            assertThat(meterRegistry.get("iot.ingest.listener.connections").gauge().value()).isEqualTo(1);
+        } finally {
+            connection.disposeNow();
+        }
+        long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+        while (meterRegistry.get("iot.ingest.listener.connections").gauge().value() > 0
+                && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(meterRegistry.get("iot.ingest.listener.connections").gauge().value()).isZero();
+        assertThat(meterRegistry.get("iot.ingest.listener.connection.frames").summary().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("iot.ingest.listener.connection.frames").summary().totalAmount()).isEqualTo(5);
+        assertThat(meterRegistry.get("iot.ingest.listener.connection.duration").timer().count()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Should keep the TCP connection open when a batch fails to ingest")
+    void tcp_shouldSurviveFailedBatch() throws InterruptedException {
+        when(ingestionService.ingestBatch(anyList()))
+                .thenReturn(Mono.error(new IllegalStateException("mongo is down")))
+                .thenReturn(Mono.just(IngestReport.empty()));
+
+        Connection connection = TcpClient.create().port(listener.tcpPort()).connectNow();
+        try {
+            for (DeviceData device : devices(1, 2)) {
+                ByteBuf frame = Unpooled.buffer();
+                writeFrame(frame, ProtobufTestEncoder.encodeDevice(device));
+                connection.outbound().send(Mono.just(frame)).then().block(Duration.ofSeconds(5));
+                verify(ingestionService, timeout(5000).times((int) device.id())).ingestBatch(anyList());
+            }
+            // the batch counters are updated once ingestBatch's result arrives, just after the call
+            awaitBatches("failed", 1);
+            awaitBatches("accepted", 1);
+        } finally {
+            connection.disposeNow();
+        }
+    }
+
+    @Test
+    @DisplayName("Should ingest every frame packed into a UDP datagram")
+    @SuppressWarnings("unchecked")
+    void udp_shouldIngestDatagramFrames() {
+        when(ingestionService.ingestBatch(anyList())).thenReturn(Mono.just(IngestReport.empty()));
+        ByteBuf frames = Unpooled.buffer();
+        for (DeviceData device : devices(7, 2)) {
+            writeFrame(frames, ProtobufTestEncoder.encodeDevice(device));
+        }
+
+        Connection connection = UdpClient.create().host("127.0.0.1").port(listener.udpPort()).connectNow();
+        try {
+            connection.outbound().send(Mono.just(frames)).then().block(Duration.ofSeconds(5));
+
+            ArgumentCaptor<List<DeviceData>> batch = ArgumentCaptor.forClass(List.class);
+            verify(ingestionService, timeout(5000)).ingestBatch(batch.capture());
+            assertThat(batch.getValue()).extracting(DeviceData::id).containsExactly(7L, 8L);
+            assertThat(meterRegistry.get("iot.ingest.listener.frames").tag("transport", "udp").counter().count())
+                    .isEqualTo(2);
+        } finally {
+            connection.disposeNow();
+        }
+    }
+
+    private void awaitBatches(String result, double expected) throws InterruptedException {
+        long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+        while (batches(result) < expected && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(batches(result)).isEqualTo(expected);
+    }
+
+    private double batches(String result) {
+        return meterRegistry.get("iot.ingest.listener.batches")
+                .tags("transport", "tcp", "result", result).counter().count();
+    }
+
+    private static void writeFrame(ByteBuf buffer, byte[] message) {
+        buffer.writeInt(message.length).writeBytes(message);
+    }
+
+    private static List<DeviceData> devices(long firstId, int count) {
+        return LongStream.range(firstId, firstId + count)
+                .mapToObj(id -> DeviceData.builder()
+                        .id(id)
+                        .name("Device " + id)
+                        .manufacturer("Acme")
+                        .type(Type.SENSOR_TEMPERATURE)
+                        .capabilities(List.of())
+                        .location(new Location(1, 2, 0))
+                        .status(new Status(true, 80, 70, Instant.now()))
+                        .build())
+                .toList();
+    }
+}
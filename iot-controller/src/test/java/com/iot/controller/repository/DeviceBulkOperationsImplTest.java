@@ -0,0 +1,142 @@
+package com.iot.controller.repository;
+
+import com.iot.contracts.domain.components.Location;
+import com.iot.contracts.domain.components.Status;
+import com.iot.contracts.domain.components.Type;
+import com.iot.controller.config.DeviceDocumentLayout;
+import com.iot.controller.domain.DeviceEntity;
+import com.iot.controller.domain.DeviceMeta;
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.MongoTimeoutException;
+import com.mongodb.ServerAddress;
+import com.mongodb.WriteConcern;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.bulk.BulkWriteResult;
+import com.mongodb.client.model.InsertManyOptions;
+import com.mongodb.client.result.InsertManyResult;
+import com.mongodb.reactivestreams.client.MongoCollection;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.BsonDocument;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.core.convert.NoOpDbRefResolver;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class DeviceBulkOperationsImplTest {
+
+    @Mock
+    private ReactiveMongoTemplate template;
+
+    @Mock
+    private MongoCollection<Document> collection;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private DeviceBulkOperationsImpl bulkOperations;
+
+    @BeforeEach
+    void setUp() {
+        when(template.getCollectionName(DeviceEntity.class)).thenReturn("devices");
+        when(template.getCollection("devices")).thenReturn(Mono.just(collection));
+        when(template.getConverter()).thenReturn(new MappingMongoConverter(NoOpDbRefResolver.INSTANCE, new MongoMappingContext()));
+        when(collection.withWriteConcern(WriteConcern.W1)).thenReturn(collection);
+        bulkOperations = new DeviceBulkOperationsImpl(template, new DeviceDocumentLayout(false), meterRegistry, 2, 1,
+                "W1");
+    }
+
+    @Test
+    @DisplayName("Should insert in unordered sub-batches")
+    @SuppressWarnings("unchecked")
+    void insertUnordered_shouldSplitIntoSubBatches() {
+        ArgumentCaptor<List<Document>> documents = ArgumentCaptor.forClass(List.class);
+        when(collection.insertMany(anyList(), any(InsertManyOptions.class)))
+                .thenReturn(Mono.just(InsertManyResult.acknowledged(Map.of())));
+
+        StepVerifier.create(bulkOperations.insertUnordered(entities(5)))
+                .assertNext(result -> {
+                    assertThat(result.inserted()).isEqualTo(5);
+                    assertThat(result.hasFailures()).isFalse();
+                })
+                .verifyComplete();
+
+        verify(collection, times(3)).insertMany(documents.capture(), any(InsertManyOptions.class));
+        // a regular collection keeps the static fields top-level
+        Document first = documents.getAllValues().getFirst().getFirst();
+        assertThat(first.get("deviceId")).isEqualTo(1L);
+        assertThat(first).doesNotContainKey("meta");
+        assertThat(meterRegistry.timer("iot.ingest.mongo.bulk.insert", "outcome", "success").count()).isEqualTo(3);
+    }
+
+    @Test
+    @DisplayName("Should report documents rejected by Mongo without failing the whole batch")
+    void insertUnordered_shouldReportPartialFailures() {
+        AtomicInteger calls = new AtomicInteger();
+        when(collection.insertMany(anyList(), any(InsertManyOptions.class))).thenAnswer(invocation -> {
+            if (calls.getAndIncrement() == 0) {
+                // one of two documents rejected
+                return Mono.error(new MongoBulkWriteException(
+                        BulkWriteResult.acknowledged(1, 0, 0, 0, List.of(), List.of()),
+                        List.of(new BulkWriteError(11000, "duplicate key", new BsonDocument(), 1)),
+                        null, new ServerAddress(), Set.of()));
+            }
+            return Mono.just(InsertManyResult.acknowledged(Map.of()));
+        });
+
+        StepVerifier.create(bulkOperations.insertUnordered(entities(5)))
+                .assertNext(result -> {
+                    assertThat(result.inserted()).isEqualTo(4);
+                    assertThat(result.failed()).isEqualTo(1);
+                    assertThat(result.errors()).hasSize(1);
+                })
+                .verifyComplete();
+
+        assertThat(meterRegistry.counter("iot.ingest.mongo.insert.failed").count()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Should fail the insert when a sub-batch fails for any other reason than rejected documents")
+    void insertUnordered_shouldPropagateOtherErrors() {
+        when(collection.insertMany(anyList(), any(InsertManyOptions.class)))
+                .thenReturn(Mono.error(new MongoTimeoutException("timeout")));
+
+        StepVerifier.create(bulkOperations.insertUnordered(entities(2)))
+                .expectError(MongoTimeoutException.class)
+                .verify();
+
+        assertThat(meterRegistry.counter("iot.ingest.mongo.insert.failed").count()).isEqualTo(2);
+        assertThat(meterRegistry.timer("iot.ingest.mongo.bulk.insert", "outcome", "error").count()).isEqualTo(1);
+    }
+
+    private List<DeviceEntity> entities(int count) {
+        return IntStream.rangeClosed(1, count)
+                .mapToObj(id -> new DeviceEntity(null,
+                        new DeviceMeta((long) id, "Device " + id, "Acme", Type.SENSOR_TEMPERATURE, List.of("temp")),
+                        new Location(1, 2, 0), new Status(true, 80, 70, Instant.now()), Instant.now()))
+                .toList();
+    }
+}
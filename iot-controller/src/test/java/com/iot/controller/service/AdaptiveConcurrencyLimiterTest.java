@@ -0,0 +1,91 @@
+package com.iot.controller.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AdaptiveConcurrencyLimiterTest {
+
+    private static final long FAST = TimeUnit.MILLISECONDS.toNanos(10);
+    private static final long SLOW = TimeUnit.SECONDS.toNanos(2);
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    @DisplayName("Should reject requests over the limit with a retry hint")
+    void execute_shouldRejectOverLimit() {
+        AdaptiveConcurrencyLimiter limiter = limiter(1);
+        Sinks.Empty<Void> pending = Sinks.empty();
+
+        StepVerifier.create(limiter.execute(pending::asMono, true))
+                .then(() -> StepVerifier.create(limiter.execute(Mono::empty, true))
+                        .expectErrorSatisfies(error -> assertThat(error)
+                                .isInstanceOf(IngestionOverloadedException.class)
+                                .extracting(e -> ((IngestionOverloadedException) e).getRetryAfter())
+                                .isEqualTo(Duration.ofSeconds(1)))
+                        .verify())
+                .then(pending::tryEmitEmpty)
+                .verifyComplete();
+
+        assertThat(meterRegistry.counter("iot.ingest.limiter.rejected").count()).isEqualTo(1);
+        assertThat(limiter.getInFlight()).isZero();
+    }
+
+    @Test
+    @DisplayName("Should shrink the limit multiplicatively on slow requests")
+    void release_slow_shouldDecreaseLimit() {
+        AdaptiveConcurrencyLimiter limiter = limiter(20);
+
+        limiter.tryAcquire();
+        limiter.release(true, SLOW, false);
+        assertThat(limiter.getLimit()).isEqualTo(18);
+
+        limiter.tryAcquire();
+        limiter.release(true, FAST, true);
+        assertThat(limiter.getLimit()).isEqualTo(16);
+    }
+
+    @Test
+    @DisplayName("Should grow the limit additively only while it is being used")
+    void release_fast_shouldIncreaseLimitWhenSaturated() {
+        AdaptiveConcurrencyLimiter limiter = limiter(4);
+
+        limiter.tryAcquire();
+        limiter.release(true, FAST, false);
+        assertThat(limiter.getLimit()).isEqualTo(4);
+
+        for (int i = 0; i < 4; i++) {
+            assertThat(limiter.tryAcquire()).isTrue();
+        }
+        assertThat(limiter.tryAcquire()).isFalse();
+        limiter.release(true, FAST, false);
+        assertThat(limiter.getLimit()).isEqualTo(5);
+        assertThat(meterRegistry.get("iot.ingest.limiter.limit").gauge().value()).isEqualTo(5);
+    }
+
+    @Test
+    @DisplayName("Should never go below the minimum limit")
+    void release_shouldRespectMinLimit() {
+        AdaptiveConcurrencyLimiter limiter = limiter(4);
+
+        for (int i = 0; i < 50; i++) {
+            limiter.tryAcquire();
+            limiter.release(true, SLOW, false);
+        }
+
+        assertThat(limiter.getLimit()).isEqualTo(1);
+    }
+
+    private AdaptiveConcurrencyLimiter limiter(int initialLimit) {
+        return new AdaptiveConcurrencyLimiter(meterRegistry, true, initialLimit, 1, 100,
+                Duration.ofMillis(500), 0.9, Duration.ofSeconds(1));
+    }
+}
@@ -0,0 +1,94 @@
+package com.iot.controller.service;
+
+import com.iot.contracts.domain.DeviceData;
+import com.iot.contracts.domain.components.Location;
+import com.iot.contracts.domain.components.Status;
+import com.iot.contracts.domain.components.Type;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class DeadbandFilterTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    @DisplayName("Should suppress readings within the deadband and forward changes against the last forwarded reading")
+    void filter_shouldSuppressReadingsWithinDeadband() {
+        DeadbandFilter filter = filter(Duration.ofHours(1));
+        DeviceData first = device(1, true, 80, 70, new Location(10, 10, 0));
+        filter.accept(filter.filter(List.of(first)));
+
+        List<DeviceData> drifting = List.of(
+                device(1, true, 80, 74, new Location(11, 9, 0)),
+                device(1, true, 79, 66, new Location(10, 10, 0)),
+                device(1, true, 80, 76, new Location(10, 10, 0)));
+        assertThat(filter.filter(drifting)).extracting(device -> device.status().signalStrength())
+                .containsExactly(76);
+
+        assertThat(filter.filter(List.of(
+                device(1, false, 80, 70, new Location(10, 10, 0)),
+                device(2, true, 80, 70, new Location(10, 10, 0)),
+                device(3, true, 80, 70, new Location(10, 10, 1)))))
+                .hasSize(3);
+        assertThat(filter.filter(List.of(device(1, true, 78, 70, new Location(10, 12, 0))))).hasSize(1);
+        assertThat(filter.filter(List.of(first.toBuilder().name("Renamed").build()))).hasSize(1);
+
+        assertThat(meterRegistry.counter("iot.ingest.deadband.readings", "result", "suppressed").count()).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("Should remember nothing until the forwarded readings are accepted")
+    void filter_shouldNotRecordUntilAccepted() {
+        DeadbandFilter filter = filter(Duration.ofHours(1));
+        DeviceData device = device(1, true, 80, 70, new Location(0, 0, 0));
+
+        assertThat(filter.filter(List.of(device))).hasSize(1);
+        assertThat(filter.filter(List.of(device))).hasSize(1);
+
+        filter.accept(List.of(device));
+        assertThat(filter.filter(List.of(device))).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Should forward an unchanged device once its keepalive is due")
+    void filter_shouldForwardKeepalive() {
+        DeadbandFilter filter = filter(Duration.ZERO);
+        DeviceData device = device(1, true, 80, 70, new Location(0, 0, 0));
+        filter.accept(List.of(device));
+
+        assertThat(filter.filter(List.of(device))).hasSize(1);
+        assertThat(meterRegistry.counter("iot.ingest.deadband.keepalives").count()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Should pass every reading through when disabled")
+    void filter_disabled_shouldPassThrough() {
+        DeadbandFilter filter = new DeadbandFilter(meterRegistry, false, 1, 5, 1, Duration.ofHours(1), 100);
+        List<DeviceData> readings = List.of(device(1, true, 80, 70, new Location(0, 0, 0)));
+        filter.accept(readings);
+
+        assertThat(filter.filter(readings)).isSameAs(readings);
+    }
+
+    private DeadbandFilter filter(Duration keepalive) {
+        return new DeadbandFilter(meterRegistry, true, 1, 5, 1, keepalive, 100);
+    }
+
+    private static DeviceData device(long id, boolean online, int battery, int signal, Location location) {
+        return DeviceData.builder()
+                .id(id)
+                .name("Device " + id)
+                .manufacturer("Acme")
+                .type(Type.SENSOR_TEMPERATURE)
+                .location(location)
+                .status(new Status(online, battery, signal, Instant.now()))
+                .build();
+    }
+}
@@ -0,0 +1,244 @@
+package com.iot.controller.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.iot.contracts.domain.DeviceData;
+import com.iot.contracts.domain.components.Location;
+import com.iot.contracts.domain.components.Status;
+import com.iot.contracts.domain.components.Type;
+import com.iot.controller.codec.DeviceBatchJsonDecoder;
+import com.iot.controller.codec.RawJsonDeviceBatch;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import reactor.core.publisher.Flux;
+import reactor.rabbitmq.CorrelableOutboundMessage;
+import reactor.rabbitmq.OutboundMessage;
+import reactor.rabbitmq.OutboundMessageResult;
+import reactor.rabbitmq.SendOptions;
+import reactor.rabbitmq.Sender;
+import reactor.test.StepVerifier;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.LongStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class DevicePublisherTest {
+
+    @Mock
+    private Sender sender;
+
+    private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final List<OutboundMessage> sent = new CopyOnWriteArrayList<>();
+
+    @Test
+    @DisplayName("Per-device mode should send one message per device")
+    void publish_perDevice_shouldSendOneMessagePerDevice() {
+        DevicePublisher publisher = publisher(DevicePublisher.PublishMode.PER_DEVICE, 512 * 1024);
+
+        StepVerifier.create(publisher.publish(devices(5))).verifyComplete();
+
+        assertThat(sent).hasSize(5);
+        assertThat(meterRegistry.counter("iot.ingest.publish.messages", "mode", "PER_DEVICE").count()).isEqualTo(5);
+    }
+
+    @Test
+    @DisplayName("Chunks of one publish should be sent in order, one after another")
+    @SuppressWarnings("unchecked")
+    void publish_shouldSendChunksSequentially() {
+        AtomicInteger sends = new AtomicInteger();
+        when(sender.send(any(Flux.class), any(SendOptions.class))).thenAnswer(invocation -> {
+            Flux<OutboundMessage> messages = invocation.getArgument(0);
+            // the first chunk is the slowest; sent concurrently, the later ones would overtake it
+            Duration delay = Duration.ofMillis(sends.getAndIncrement() == 0 ? 100 : 0);
+            return messages.collectList().delayElement(delay).doOnNext(sent::addAll).then();
+        });
+        DevicePublisher publisher = new DevicePublisher(RabbitSenderPool.of(sender, meterRegistry), objectMapper,
+                meterRegistry, "iot.data.exchange", "iot.data.partitioned", false, 4, 2,
+                DevicePublisher.PublishMode.PER_DEVICE, 512 * 1024, false, 1024, 3);
+
+        StepVerifier.create(publisher.publish(devices(6))).verifyComplete();
+
+        assertThat(sent).extracting(message -> objectMapper.readTree(message.getBody()).get("id").asLong())
+                .containsExactly(1L, 2L, 3L, 4L, 5L, 6L);
+    }
+
+    @Test
+    @DisplayName("Packed mode should send each chunk as one JSON array")
+    void publish_packed_shouldSendOneArrayPerChunk() throws Exception {
+        DevicePublisher publisher = publisher(DevicePublisher.PublishMode.PACKED, 512 * 1024);
+
+        StepVerifier.create(publisher.publish(devices(5))).verifyComplete();
+
+        // chunk size is 2 -> [1,2], [3,4], [5]
+        assertThat(sent).hasSize(3);
+        JsonNode first = objectMapper.readTree(sent.getFirst().getBody());
+        assertThat(first.isArray()).isTrue();
+        assertThat(first).hasSize(2);
+        assertThat(meterRegistry.counter("iot.ingest.publish.devices", "mode", "PACKED").count()).isEqualTo(5);
+    }
+
+    @Test
+    @DisplayName("Packed mode should split arrays that would exceed the size cap")
+    void publish_packed_shouldRespectSizeCap() throws Exception {
+        int singleDeviceBytes = objectMapper.writeValueAsBytes(devices(1).getFirst()).length;
+        DevicePublisher publisher = publisher(DevicePublisher.PublishMode.PACKED, singleDeviceBytes + 2);
+
+        StepVerifier.create(publisher.publish(devices(2))).verifyComplete();
+
+        assertThat(sent).hasSize(2);
+        for (OutboundMessage message : sent) {
+            assertThat(objectMapper.readTree(message.getBody())).hasSize(1);
+        }
+    }
+
+    @Test
+    @DisplayName("Raw JSON batches should be published from the received bytes")
+    void publish_rawJsonBatch_shouldForwardReceivedBytes() throws Exception {
+        DevicePublisher publisher = publisher(DevicePublisher.PublishMode.PER_DEVICE, 512 * 1024);
+        // the extra whitespace shows the bytes were not re-serialized
+        DeviceData device = devices(1).getFirst();
+        byte[] body = ("[ " + objectMapper.writeValueAsString(device).replaceFirst("\\{", "{ ")
+                + " ]").getBytes(StandardCharsets.UTF_8);
+        Object batch = new DeviceBatchJsonDecoder(objectMapper).decode(DefaultDataBufferFactory.sharedInstance.wrap(body),
+                ResolvableType.forClassWithGenerics(List.class, DeviceData.class), null, Map.of());
+        assertThat(batch).isInstanceOf(RawJsonDeviceBatch.class);
+
+        StepVerifier.create(publisher.publish((RawJsonDeviceBatch) batch)).verifyComplete();
+
+        assertThat(sent).hasSize(1);
+        assertThat(new String(sent.getFirst().getBody(), StandardCharsets.UTF_8)).startsWith("{ \"id\"");
+        assertThat(objectMapper.readValue(sent.getFirst().getBody(), DeviceData.class)).isEqualTo(device);
+        assertThat(meterRegistry.counter("iot.ingest.publish.raw.devices").count()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Confirmed publish should resend nacked messages until acked")
+    @SuppressWarnings("unchecked")
+    void publish_confirmed_shouldRetryNacked() {
+        AtomicInteger attempts = new AtomicInteger();
+        // First attempt nacks every message, the retry acks them
+        when(sender.sendWithTypedPublishConfirms(any(Flux.class), any(SendOptions.class))).thenAnswer(invocation -> {
+            boolean ack = attempts.getAndIncrement() > 0;
+            Flux<CorrelableOutboundMessage<Long>> messages = invocation.getArgument(0);
+            return messages.map(message -> new OutboundMessageResult<>(message, ack));
+        });
+        DevicePublisher publisher = confirmingPublisher();
+
+        StepVerifier.create(publisher.publish(devices(3))).verifyComplete();
+
+        verify(sender, times(2)).sendWithTypedPublishConfirms(any(Flux.class), any(SendOptions.class));
+        assertThat(meterRegistry.counter("iot.ingest.publish.confirms", "result", "nack").count()).isEqualTo(3);
+        assertThat(meterRegistry.counter("iot.ingest.publish.confirms", "result", "ack").count()).isEqualTo(3);
+        assertThat(meterRegistry.timer("iot.ingest.publish.confirm.latency").count()).isEqualTo(6);
+    }
+
+    @Test
+    @DisplayName("Confirmed publish should fail once retries are exhausted")
+    @SuppressWarnings("unchecked")
+    void publish_confirmed_shouldFailAfterMaxRetries() {
+        when(sender.sendWithTypedPublishConfirms(any(Flux.class), any(SendOptions.class))).thenAnswer(invocation -> {
+            Flux<CorrelableOutboundMessage<Long>> messages = invocation.getArgument(0);
+            return messages.map(message -> new OutboundMessageResult<>(message, false));
+        });
+        DevicePublisher publisher = confirmingPublisher();
+
+        StepVerifier.create(publisher.publish(devices(1)))
+                .expectError(IllegalStateException.class)
+                .verify();
+
+        // initial attempt + 2 retries
+        verify(sender, times(3)).sendWithTypedPublishConfirms(any(Flux.class), any(SendOptions.class));
+    }
+
+    @Test
+    @DisplayName("Partitioned publish should route every device by its id")
+    @SuppressWarnings("unchecked")
+    void publish_partitioned_shouldRouteByDeviceId() {
+        when(sender.send(any(Flux.class), any(SendOptions.class))).thenAnswer(invocation -> {
+            Flux<OutboundMessage> messages = invocation.getArgument(0);
+            return messages.doOnNext(sent::add).then();
+        });
+        DevicePublisher publisher = new DevicePublisher(RabbitSenderPool.of(sender, meterRegistry), objectMapper,
+                meterRegistry, "iot.data.exchange", "iot.data.partitioned", true, 4, 2,
+                DevicePublisher.PublishMode.PER_DEVICE, 512 * 1024, false, 1024, 3);
+
+        StepVerifier.create(publisher.publish(devices(8))).verifyComplete();
+
+        assertThat(sent).hasSize(8).allSatisfy(message -> {
+            assertThat(message.getExchange()).isEqualTo("iot.data.partitioned");
+            long id = objectMapper.readValue(message.getBody(), DeviceData.class).id();
+            assertThat(message.getRoutingKey()).isEqualTo(String.valueOf(Math.floorMod(Long.hashCode(id), 4)));
+        });
+    }
+
+    @Test
+    @DisplayName("Packed partitioned publish should keep each array within one partition")
+    @SuppressWarnings("unchecked")
+    void publish_packedPartitioned_shouldPackPerPartition() throws Exception {
+        when(sender.send(any(Flux.class), any(SendOptions.class))).thenAnswer(invocation -> {
+            Flux<OutboundMessage> messages = invocation.getArgument(0);
+            return messages.doOnNext(sent::add).then();
+        });
+        DevicePublisher publisher = new DevicePublisher(RabbitSenderPool.of(sender, meterRegistry), objectMapper,
+                meterRegistry, "iot.data.exchange", "iot.data.partitioned", true, 2, 4,
+                DevicePublisher.PublishMode.PACKED, 512 * 1024, false, 1024, 3);
+
+        StepVerifier.create(publisher.publish(devices(4))).verifyComplete();
+
+        // one window of four devices: ids 2 and 4 go to partition 0, ids 1 and 3 to partition 1
+        assertThat(sent).hasSize(2);
+        assertThat(sent).extracting(OutboundMessage::getRoutingKey).containsExactly("1", "0");
+        assertThat(objectMapper.readTree(sent.get(0).getBody()).findValuesAsText("name"))
+                .containsExactly("Device 1", "Device 3");
+        assertThat(objectMapper.readTree(sent.get(1).getBody()).findValuesAsText("name"))
+                .containsExactly("Device 2", "Device 4");
+    }
+
+    @SuppressWarnings("unchecked")
+    private DevicePublisher publisher(DevicePublisher.PublishMode mode, int maxMessageBytes) {
+        when(sender.send(any(Flux.class), any(SendOptions.class))).thenAnswer(invocation -> {
+            Flux<OutboundMessage> messages = invocation.getArgument(0);
+            return messages.doOnNext(sent::add).then();
+        });
+        return new DevicePublisher(RabbitSenderPool.of(sender, meterRegistry), objectMapper, meterRegistry,
+                "iot.data.exchange", "iot.data.partitioned", false, 4, 2, mode, maxMessageBytes, false, 1024, 3);
+    }
+
+    private DevicePublisher confirmingPublisher() {
+        return new DevicePublisher(RabbitSenderPool.of(sender, meterRegistry), objectMapper, meterRegistry,
+                "iot.data.exchange", "iot.data.partitioned", false, 4, 2, DevicePublisher.PublishMode.PER_DEVICE,
+                512 * 1024, true, 1024, 2);
+    }
+
+    private List<DeviceData> devices(int count) {
+        return LongStream.rangeClosed(1, count)
+                .mapToObj(id -> DeviceData.builder()
+                        .id(id)
+                        .name("Device " + id)
+                        .manufacturer("Acme")
+                        .type(Type.SENSOR_TEMPERATURE)
+                        .location(new Location(1, 2, 0))
+                        .status(new Status(true, 80, 70, Instant.now()))
+                        .build())
+                .toList();
+    }
+}
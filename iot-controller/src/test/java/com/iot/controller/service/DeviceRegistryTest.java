@@ -0,0 +1,173 @@
+package com.iot.controller.service;
+
+import com.iot.contracts.domain.DeviceData;
+import com.iot.contracts.domain.components.Location;
+import com.iot.contracts.domain.components.Status;
+import com.iot.contracts.domain.components.Type;
+import com.iot.controller.domain.DeviceRegistryEntity;
+import com.iot.controller.repository.DeviceRegistryRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Instant;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyIterable;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class DeviceRegistryTest {
+
+    @Mock
+    private ReactiveMongoTemplate template;
+
+    @Mock
+    private DeviceRegistryRepository repository;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private DeviceRegistry registry;
+
+    @BeforeEach
+    void setUp() {
+        registry = new DeviceRegistry(template, repository, meterRegistry, 100);
+    }
+
+    @Test
+    @DisplayName("Should register new devices once and serve later readings from the cache")
+    void register_shouldVersionNewDevicesOnce() {
+        when(repository.findAllById(anyIterable())).thenReturn(Flux.empty());
+        when(template.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class),
+                eq(DeviceRegistryEntity.class)))
+                .thenReturn(Mono.just(entity(device(1, "Device 1"), 1)));
+
+        StepVerifier.create(registry.register(List.of(device(1, "Device 1"))))
+                .assertNext(events -> {
+                    assertThat(events).hasSize(1);
+                    assertThat(events.getFirst().metaVersion()).isEqualTo(1);
+                    assertThat(events.getFirst().name()).isNull();
+                    assertThat(events.getFirst().status()).isNotNull();
+                })
+                .verifyComplete();
+        StepVerifier.create(registry.register(List.of(device(1, "Device 1"), device(1, "Device 1"))))
+                .assertNext(events -> assertThat(events).extracting(DeviceData::metaVersion).containsExactly(1L, 1L))
+                .verifyComplete();
+
+        verify(repository, times(1)).findAllById(anyIterable());
+        verify(template, times(1)).findAndModify(any(Query.class), any(Update.class),
+                any(FindAndModifyOptions.class), eq(DeviceRegistryEntity.class));
+        assertThat(meterRegistry.counter("iot.ingest.registry.changes").count()).isEqualTo(1);
+        assertThat(meterRegistry.counter("iot.ingest.registry.lookups", "result", "hit").count()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Should reuse the stored version when the static fields are unchanged")
+    void register_shouldReuseStoredVersion() {
+        when(repository.findAllById(anyIterable())).thenReturn(Flux.just(entity(device(5, "Device 5"), 4)));
+
+        StepVerifier.create(registry.register(List.of(device(5, "Device 5"))))
+                .assertNext(events -> assertThat(events.getFirst().metaVersion()).isEqualTo(4))
+                .verifyComplete();
+
+        verify(template, never()).findAndModify(any(Query.class), any(Update.class),
+                any(FindAndModifyOptions.class), eq(DeviceRegistryEntity.class));
+    }
+
+    @Test
+    @DisplayName("Should bump the version when the static fields change")
+    void register_shouldBumpVersionOnChange() {
+        when(repository.findAllById(anyIterable())).thenReturn(Flux.just(entity(device(5, "Device 5"), 4)));
+        when(template.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class),
+                eq(DeviceRegistryEntity.class)))
+                .thenReturn(Mono.just(entity(device(5, "Renamed"), 5)));
+
+        StepVerifier.create(registry.register(List.of(device(5, "Device 5"))))
+                .expectNextCount(1)
+                .verifyComplete();
+        StepVerifier.create(registry.register(List.of(device(5, "Renamed"))))
+                .assertNext(events -> assertThat(events.getFirst().metaVersion()).isEqualTo(5))
+                .verifyComplete();
+
+        StepVerifier.create(registry.find(5))
+                .assertNext(metadata -> {
+                    assertThat(metadata.version()).isEqualTo(5);
+                    assertThat(metadata.name()).isEqualTo("Renamed");
+                })
+                .verifyComplete();
+        // the cached entry no longer describes the device, so the change is checked against Mongo
+        verify(repository, times(2)).findAllById(anyIterable());
+    }
+
+    @Test
+    @DisplayName("Should give each reading of a batch the version of its own static fields")
+    void register_shouldVersionEachReading() {
+        when(repository.findAllById(anyIterable())).thenReturn(Flux.just(entity(device(5, "Device 5"), 4)));
+        when(template.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class),
+                eq(DeviceRegistryEntity.class)))
+                .thenReturn(Mono.just(entity(device(5, "Renamed"), 5)))
+                .thenReturn(Mono.just(entity(device(5, "Device 5"), 6)));
+
+        StepVerifier.create(registry.register(List.of(
+                        device(5, "Device 5"), device(5, "Renamed"), device(5, "Renamed"), device(5, "Device 5"))))
+                .assertNext(events -> assertThat(events).extracting(DeviceData::metaVersion)
+                        .containsExactly(4L, 5L, 5L, 6L))
+                .verifyComplete();
+
+        StepVerifier.create(registry.find(5))
+                .assertNext(metadata -> assertThat(metadata.version()).isEqualTo(6))
+                .verifyComplete();
+        verify(template, times(2)).findAndModify(any(Query.class), any(Update.class),
+                any(FindAndModifyOptions.class), eq(DeviceRegistryEntity.class));
+    }
+
+    @Test
+    @DisplayName("Should look up cached metadata without Mongo and load the rest")
+    void findAll_shouldCombineCacheAndMongo() {
+        when(repository.findAllById(anyIterable()))
+                .thenReturn(Flux.just(entity(device(1, "Device 1"), 2)))
+                .thenReturn(Flux.just(entity(device(2, "Device 2"), 1)));
+        registry.register(List.of(device(1, "Device 1"))).block();
+
+        StepVerifier.create(registry.findAll(List.of(1L, 2L)))
+                .assertNext(metadata -> assertThat(metadata.deviceId()).isEqualTo(1))
+                .assertNext(metadata -> assertThat(metadata.deviceId()).isEqualTo(2))
+                .verifyComplete();
+        verifyNoInteractions(template);
+    }
+
+    private static DeviceRegistryEntity entity(DeviceData device, long version) {
+        return new DeviceRegistryEntity(device.id(), version, device.name(), device.manufacturer(), device.type(),
+                device.capabilities(), Instant.now());
+    }
+
+    private static DeviceData device(long id, String name) {
+        return DeviceData.builder()
+                .id(id)
+                .name(name)
+                .manufacturer("Acme")
+                .type(Type.SENSOR_TEMPERATURE)
+                .capabilities(List.of("temp"))
+                .location(new Location(1, 2, 0))
+                .status(new Status(true, 80, 70, Instant.now()))
+                .build();
+    }
+}
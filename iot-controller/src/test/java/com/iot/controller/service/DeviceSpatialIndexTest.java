@@ -0,0 +1,131 @@
+package com.iot.controller.service;
+
+import com.iot.contracts.domain.DeviceData;
+import com.iot.contracts.domain.components.Location;
+import com.iot.contracts.domain.components.Status;
+import com.iot.contracts.domain.components.Type;
+import com.iot.controller.domain.DeviceLatestEntity;
+import com.iot.controller.repository.DeviceLatestRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import reactor.core.publisher.Flux;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class DeviceSpatialIndexTest {
+
+    private static final Instant NOW = Instant.parse("2026-01-12T12:00:00Z");
+
+    @Mock
+    private DeviceLatestRepository latestRepository;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private DeviceSpatialIndex index;
+
+    @BeforeEach
+    void setUp() {
+        index = new DeviceSpatialIndex(latestRepository, meterRegistry, true, true, 10);
+    }
+
+    @Test
+    @DisplayName("Should return the devices of one floor inside a region, bounds included")
+    void region_shouldReturnDevicesInsideRectangle() {
+        index.update(List.of(
+                device(1, 0, 0, 2, NOW),
+                device(2, 25, 25, 2, NOW),
+                device(3, 26, 25, 2, NOW),
+                device(4, 5, 5, 1, NOW),
+                device(5, -15, -3, 2, NOW)));
+
+        assertThat(index.region(2, -20, -5, 25, 25, 100)).extracting(SpatialMatch::deviceId)
+                .containsExactly(1L, 2L, 5L);
+        assertThat(index.region(2, -20, -5, 25, 25, 2)).extracting(SpatialMatch::deviceId)
+                .containsExactly(1L, 2L);
+        assertThat(index.region(2, -10000, -10000, 10000, 10000, 100)).hasSize(4);
+        assertThat(index.region(7, 0, 0, 10, 10, 100)).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Should move devices between cells and floors and ignore older readings")
+    void update_shouldMoveDevices() {
+        index.update(List.of(device(1, 0, 0, 0, NOW)));
+        index.update(List.of(device(1, 95, 40, 3, NOW.plusSeconds(1))));
+        index.update(List.of(device(1, 0, 0, 0, NOW.minusSeconds(5))));
+
+        assertThat(index.region(0, -100, -100, 100, 100, 10)).isEmpty();
+        assertThat(index.region(3, 90, 40, 95, 40, 10)).extracting(SpatialMatch::location)
+                .containsExactly(new Location(95, 40, 3));
+        assertThat(index.size()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Should return the k nearest devices within the distance limit, nearest first")
+    void nearest_shouldMatchBruteForce() {
+        Random random = new Random(42);
+        List<DeviceData> devices = new ArrayList<>();
+        for (long id = 1; id <= 2000; id++) {
+            devices.add(device(id, random.nextInt(-500, 500), random.nextInt(-500, 500), (int) (id % 2), NOW));
+        }
+        index.update(devices);
+
+        for (int query = 0; query < 20; query++) {
+            int x = random.nextInt(-600, 600);
+            int y = random.nextInt(-600, 600);
+            List<Long> expected = devices.stream()
+                    .filter(device -> device.location().z() == 0)
+                    .sorted(Comparator.<DeviceData>comparingDouble(device -> Math.hypot(
+                                    device.location().x() - x, device.location().y() - y))
+                            .thenComparingLong(DeviceData::id))
+                    .limit(7)
+                    .map(DeviceData::id)
+                    .toList();
+            assertThat(index.nearest(0, x, y, 7, Double.POSITIVE_INFINITY)).extracting(SpatialMatch::deviceId)
+                    .containsExactlyElementsOf(expected);
+        }
+        List<SpatialMatch> close = index.nearest(1, 0, 0, 1000, 30);
+        assertThat(close).allSatisfy(match -> assertThat(match.distance()).isLessThanOrEqualTo(30));
+        assertThat(close).extracting(SpatialMatch::distance).isSorted();
+        assertThat(close).hasSize((int) devices.stream()
+                .filter(device -> device.location().z() == 1)
+                .filter(device -> Math.hypot(device.location().x(), device.location().y()) <= 30)
+                .count());
+    }
+
+    @Test
+    @DisplayName("Should load the latest positions from device_latest on startup")
+    void start_shouldLoadLatestPositions() {
+        when(latestRepository.findAll()).thenReturn(Flux.just(new DeviceLatestEntity(9L, "Device 9", "Acme",
+                Type.CAMERA, List.of(), new Location(3, 4, 0), new Status(true, 80, 70, NOW), NOW)));
+
+        index.start();
+
+        assertThat(index.nearest(0, 0, 0, 1, Double.POSITIVE_INFINITY))
+                .containsExactly(new SpatialMatch(9L, new Location(3, 4, 0), 5.0));
+        assertThat(meterRegistry.get("iot.ingest.spatial.devices").gauge().value()).isEqualTo(1);
+    }
+
+    private static DeviceData device(long id, int x, int y, int z, Instant heartbeat) {
+        return DeviceData.builder()
+                .id(id)
+                .name("Device " + id)
+                .manufacturer("Acme")
+                .type(Type.SENSOR_TEMPERATURE)
+                .location(new Location(x, y, z))
+                .status(new Status(true, 80, 70, heartbeat))
+                .build();
+    }
+}
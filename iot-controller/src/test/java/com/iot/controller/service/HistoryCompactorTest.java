@@ -0,0 +1,197 @@
+package com.iot.controller.service;
+
+import com.iot.contracts.domain.components.Location;
+import com.iot.contracts.domain.components.Status;
+import com.iot.controller.domain.CompactionCheckpointEntity;
+import com.iot.controller.domain.DeviceEntity;
+import com.iot.controller.domain.DeviceMeta;
+import com.iot.controller.domain.DeviceRollupEntity;
+import com.iot.controller.repository.CompactionCheckpointRepository;
+import com.mongodb.bulk.BulkWriteResult;
+import com.mongodb.client.result.DeleteResult;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndReplaceOptions;
+import org.springframework.data.mongodb.core.ReactiveBulkOperations;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.within;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class HistoryCompactorTest {
+
+    private static final Instant MINUTE = Instant.parse("2026-01-12T12:00:00Z");
+
+    @Mock
+    private ReactiveMongoTemplate template;
+
+    @Mock
+    private CompactionCheckpointRepository checkpointRepository;
+
+    @Mock
+    private ReactiveBulkOperations bulkOperations;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private HistoryCompactor compactor;
+
+    @BeforeEach
+    void setUp() {
+        when(template.getCollectionName(DeviceEntity.class)).thenReturn("devices");
+        compactor = compactor(Duration.ofMinutes(10));
+    }
+
+    @Test
+    @DisplayName("Should roll raw readings into per-minute summaries, checkpoint, then delete them")
+    @SuppressWarnings("unchecked")
+    void compact_shouldRollRawReadingsIntoMinutes() {
+        when(checkpointRepository.findById("minute"))
+                .thenReturn(Mono.empty())
+                .thenReturn(Mono.just(new CompactionCheckpointEntity("minute", MINUTE.plusSeconds(600), Instant.now())));
+        when(checkpointRepository.findById("hour")).thenReturn(Mono.empty());
+        when(checkpointRepository.save(any(CompactionCheckpointEntity.class)))
+                .thenAnswer(invocation -> Mono.just(invocation.getArgument(0)));
+        when(template.findOne(any(Query.class), eq(DeviceEntity.class)))
+                .thenReturn(Mono.just(reading(1, MINUTE.plusSeconds(10), true, 80, 70, new Location(1, 1, 0))))
+                .thenReturn(Mono.empty());
+        when(template.findOne(any(Query.class), eq(DeviceRollupEntity.class), eq("device_history_minute")))
+                .thenReturn(Mono.empty());
+        when(template.find(any(Query.class), eq(DeviceEntity.class))).thenReturn(Flux.just(
+                reading(1, MINUTE.plusSeconds(10), true, 80, 70, new Location(1, 1, 0)),
+                reading(1, MINUTE.plusSeconds(50), false, 78, 60, new Location(5, 5, 0)),
+                reading(2, MINUTE.plusSeconds(65), true, 50, 40, new Location(9, 9, 1))));
+        when(template.bulkOps(BulkOperations.BulkMode.UNORDERED, DeviceRollupEntity.class, "device_history_minute"))
+                .thenReturn(bulkOperations);
+        when(bulkOperations.execute()).thenReturn(Mono.just(BulkWriteResult.unacknowledged()));
+        when(template.remove(any(Query.class), eq("devices"))).thenReturn(Mono.just(DeleteResult.acknowledged(3)));
+
+        StepVerifier.create(compactor.compact())
+                .expectNext(3L)
+                .verifyComplete();
+
+        ArgumentCaptor<DeviceRollupEntity> rollups = ArgumentCaptor.forClass(DeviceRollupEntity.class);
+        verify(bulkOperations, times(2)).replaceOne(any(Query.class), rollups.capture(),
+                any(FindAndReplaceOptions.class));
+        List<DeviceRollupEntity> written = rollups.getAllValues().stream()
+                .sorted(Comparator.comparing(DeviceRollupEntity::deviceId))
+                .toList();
+        DeviceRollupEntity first = written.getFirst();
+        assertThat(first.id()).isEqualTo(DeviceRollupEntity.id(1, MINUTE));
+        assertThat(first.samples()).isEqualTo(2);
+        assertThat(first.batteryMin()).isEqualTo(78);
+        assertThat(first.batteryMax()).isEqualTo(80);
+        assertThat(first.batteryAvg()).isEqualTo(79);
+        assertThat(first.signalAvg()).isEqualTo(65);
+        assertThat(first.onlineRatio()).isEqualTo(0.5);
+        assertThat(first.lastLocation()).isEqualTo(new Location(5, 5, 0));
+        assertThat(written.get(1).bucket()).isEqualTo(MINUTE.plusSeconds(60));
+
+        ArgumentCaptor<CompactionCheckpointEntity> checkpoint = ArgumentCaptor.forClass(CompactionCheckpointEntity.class);
+        verify(checkpointRepository).save(checkpoint.capture());
+        assertThat(checkpoint.getValue().compactedUntil()).isEqualTo(MINUTE.plusSeconds(600));
+        assertThat(meterRegistry.counter("iot.ingest.compaction.compacted", "tier", "minute").count()).isEqualTo(3);
+        assertThat(meterRegistry.counter("iot.ingest.compaction.rollups", "tier", "minute").count()).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("Should merge minute summaries into an hour weighted by their samples")
+    @SuppressWarnings("unchecked")
+    void compact_shouldMergeMinutesIntoHours() {
+        when(checkpointRepository.findById("minute")).thenReturn(Mono.empty());
+        when(checkpointRepository.findById("hour"))
+                .thenReturn(Mono.empty())
+                .thenReturn(Mono.just(new CompactionCheckpointEntity("hour", MINUTE.plusSeconds(3600), Instant.now())));
+        when(checkpointRepository.save(any(CompactionCheckpointEntity.class)))
+                .thenAnswer(invocation -> Mono.just(invocation.getArgument(0)));
+        when(template.findOne(any(Query.class), eq(DeviceEntity.class))).thenReturn(Mono.empty());
+        when(template.findOne(any(Query.class), eq(DeviceRollupEntity.class), eq("device_history_minute")))
+                .thenReturn(Mono.just(minute(MINUTE, 2, 79, 0.5, new Location(1, 1, 0))))
+                .thenReturn(Mono.empty());
+        when(template.find(any(Query.class), eq(DeviceRollupEntity.class), eq("device_history_minute")))
+                .thenReturn(Flux.just(
+                        minute(MINUTE.plusSeconds(120), 1, 70, 1, new Location(7, 7, 0)),
+                        minute(MINUTE, 2, 79, 0.5, new Location(1, 1, 0))));
+        when(template.bulkOps(BulkOperations.BulkMode.UNORDERED, DeviceRollupEntity.class, "device_history_hour"))
+                .thenReturn(bulkOperations);
+        when(bulkOperations.execute()).thenReturn(Mono.just(BulkWriteResult.unacknowledged()));
+        when(template.remove(any(Query.class), eq("device_history_minute")))
+                .thenReturn(Mono.just(DeleteResult.acknowledged(2)));
+
+        StepVerifier.create(compactor.compact())
+                .expectNext(2L)
+                .verifyComplete();
+
+        ArgumentCaptor<DeviceRollupEntity> hour = ArgumentCaptor.forClass(DeviceRollupEntity.class);
+        verify(bulkOperations).replaceOne(any(Query.class), hour.capture(), any(FindAndReplaceOptions.class));
+        assertThat(hour.getValue().bucket()).isEqualTo(MINUTE);
+        assertThat(hour.getValue().samples()).isEqualTo(3);
+        assertThat(hour.getValue().batteryAvg()).isEqualTo(76);
+        assertThat(hour.getValue().onlineRatio()).isCloseTo(2.0 / 3, within(1e-9));
+        assertThat(hour.getValue().lastLocation()).isEqualTo(new Location(7, 7, 0));
+    }
+
+    @Test
+    @DisplayName("Should fail instead of compacting again when documents before the checkpoint were not deleted")
+    void compact_shouldFailWhenCheckpointedDocumentsRemain() {
+        when(checkpointRepository.findById("minute"))
+                .thenReturn(Mono.just(new CompactionCheckpointEntity("minute", MINUTE.plusSeconds(600), Instant.now())));
+        when(template.remove(any(Query.class), eq("devices"))).thenReturn(Mono.just(DeleteResult.acknowledged(0)));
+        when(template.findOne(any(Query.class), eq(DeviceEntity.class)))
+                .thenReturn(Mono.just(reading(1, MINUTE.plusSeconds(10), true, 80, 70, new Location(1, 1, 0))));
+
+        StepVerifier.create(compactor.compact())
+                .expectError(IllegalStateException.class)
+                .verify();
+
+        verify(template, never()).find(any(Query.class), eq(DeviceEntity.class));
+    }
+
+    @Test
+    @DisplayName("Should reject slices that do not cover whole buckets")
+    void constructor_shouldRejectPartialBucketSlices() {
+        assertThatThrownBy(() -> compactor(Duration.ofSeconds(90)))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private HistoryCompactor compactor(Duration rawSlice) {
+        return new HistoryCompactor(template, checkpointRepository, meterRegistry, true,
+                Duration.ofHours(1), rawSlice, Duration.ofDays(7), Duration.ofHours(6), Duration.ofMinutes(1), 100,
+                "device_history_minute", "device_history_hour");
+    }
+
+    private static DeviceEntity reading(long deviceId, Instant timestamp, boolean online, int battery, int signal,
+                                        Location location) {
+        return new DeviceEntity(null, new DeviceMeta(deviceId, null, null, null, null), location,
+                new Status(online, battery, signal, timestamp), timestamp);
+    }
+
+    private static DeviceRollupEntity minute(Instant bucket, long samples, double batteryAvg, double onlineRatio,
+                                             Location lastLocation) {
+        return new DeviceRollupEntity(DeviceRollupEntity.id(1, bucket), 1, bucket, samples, 60, 90, batteryAvg,
+                40, 80, 60, onlineRatio, lastLocation, bucket.plusSeconds(59));
+    }
+}
@@ -0,0 +1,106 @@
+package com.iot.controller.service;
+
+import com.iot.contracts.domain.DeviceData;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Function;
+import java.util.stream.LongStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class IngestionCoalescerTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final List<List<DeviceData>> stored = new CopyOnWriteArrayList<>();
+
+    @Test
+    @DisplayName("Should merge concurrent batches into one store once max-delay passes")
+    void submit_shouldMergeWithinDelay() {
+        IngestionCoalescer coalescer = coalescer(100, Duration.ofMillis(50));
+        Function<List<DeviceData>, Mono<Void>> store = recording(Mono.empty());
+
+        StepVerifier.create(Mono.when(
+                        coalescer.submit(devices(1, 3), store),
+                        coalescer.submit(devices(4, 5), store),
+                        coalescer.submit(devices(6, 10), store)))
+                .verifyComplete();
+
+        assertThat(stored).hasSize(1);
+        assertThat(stored.getFirst()).extracting(DeviceData::id).containsExactly(1L, 2L, 3L, 4L, 5L, 6L, 7L, 8L, 9L, 10L);
+        assertThat(meterRegistry.counter("iot.ingest.coalescer.flushes", "trigger", "time").count()).isEqualTo(1);
+        assertThat(meterRegistry.summary("iot.ingest.coalescer.batch.requests").max()).isEqualTo(3);
+    }
+
+    @Test
+    @DisplayName("Should store as soon as max-batch-size is reached and never exceed it")
+    void submit_shouldFlushOnSize() {
+        IngestionCoalescer coalescer = coalescer(5, Duration.ofMinutes(1));
+        Function<List<DeviceData>, Mono<Void>> store = recording(Mono.empty());
+
+        StepVerifier.create(Mono.when(
+                        coalescer.submit(devices(1, 3), store),
+                        coalescer.submit(devices(4, 6), store),
+                        coalescer.submit(devices(7, 8), store)))
+                .verifyComplete();
+
+        // [1..3] is flushed when [4..6] would overflow it, [4..6] + [7,8] then reach the limit
+        assertThat(stored).extracting(List::size).containsExactly(3, 5);
+        assertThat(meterRegistry.counter("iot.ingest.coalescer.flushes", "trigger", "size").count()).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("Should complete each caller only when the shared store completes")
+    void submit_shouldCompleteWithSharedStore() {
+        IngestionCoalescer coalescer = coalescer(4, Duration.ofMinutes(1));
+        Sinks.Empty<Void> write = Sinks.empty();
+        Function<List<DeviceData>, Mono<Void>> store = recording(write.asMono());
+
+        Mono<Void> first = coalescer.submit(devices(1, 2), store).cache();
+        first.subscribe(null, error -> {
+        });
+
+        StepVerifier.create(coalescer.submit(devices(3, 4), store))
+                .expectSubscription()
+                .expectNoEvent(Duration.ofMillis(50))
+                .then(() -> write.tryEmitError(new IllegalStateException("mongo down")))
+                .verifyErrorMessage("mongo down");
+        StepVerifier.create(first).verifyErrorMessage("mongo down");
+        assertThat(stored).hasSize(1);
+    }
+
+    @Test
+    @DisplayName("Should store large batches directly")
+    void submit_largeBatch_shouldBypass() {
+        IngestionCoalescer coalescer = coalescer(5, Duration.ofMinutes(1));
+
+        StepVerifier.create(coalescer.submit(devices(1, 5), recording(Mono.empty()))).verifyComplete();
+
+        assertThat(stored).hasSize(1);
+        assertThat(meterRegistry.summary("iot.ingest.coalescer.batch.devices").count()).isZero();
+    }
+
+    private IngestionCoalescer coalescer(int maxBatchSize, Duration maxDelay) {
+        return new IngestionCoalescer(meterRegistry, true, maxBatchSize, maxDelay);
+    }
+
+    private Function<List<DeviceData>, Mono<Void>> recording(Mono<Void> result) {
+        return devices -> {
+            stored.add(devices);
+            return result;
+        };
+    }
+
+    private static List<DeviceData> devices(long from, long to) {
+        return LongStream.rangeClosed(from, to)
+                .mapToObj(id -> DeviceData.builder().id(id).build())
+                .toList();
+    }
+}
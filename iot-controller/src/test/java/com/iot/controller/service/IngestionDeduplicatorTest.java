@@ -0,0 +1,65 @@
+package com.iot.controller.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class IngestionDeduplicatorTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    @DisplayName("Should forget expired keys when a key is claimed, not only when the cache overflows")
+    void ingestOnce_shouldPurgeExpiredKeys() throws InterruptedException {
+        IngestionDeduplicator deduplicator = new IngestionDeduplicator(meterRegistry, Duration.ofMillis(20), 100,
+                false, 100);
+        AtomicInteger ingested = new AtomicInteger();
+
+        StepVerifier.create(deduplicator.ingestOnce("a", 1, () -> ingest(ingested))).expectNextCount(1).verifyComplete();
+        StepVerifier.create(deduplicator.ingestOnce("b", 1, () -> ingest(ingested))).expectNextCount(1).verifyComplete();
+        assertThat(keys()).isEqualTo(2);
+
+        Thread.sleep(50);
+        StepVerifier.create(deduplicator.ingestOnce("c", 1, () -> ingest(ingested))).expectNextCount(1).verifyComplete();
+        assertThat(keys()).isEqualTo(1);
+
+        StepVerifier.create(deduplicator.ingestOnce("a", 1, () -> ingest(ingested))).expectNextCount(1).verifyComplete();
+        assertThat(ingested).hasValue(4);
+    }
+
+    @Test
+    @DisplayName("Should forget the key of a failed attempt so that the batch can be retried")
+    void ingestOnce_shouldReleaseKeyOnFailure() {
+        IngestionDeduplicator deduplicator = new IngestionDeduplicator(meterRegistry, Duration.ofMinutes(1), 100,
+                false, 100);
+        AtomicInteger ingested = new AtomicInteger();
+
+        StepVerifier.create(deduplicator.ingestOnce("a", 1, () -> Mono.error(new IllegalStateException("mongo down"))))
+                .verifyError(IllegalStateException.class);
+        StepVerifier.create(deduplicator.ingestOnce("a", 1, () -> ingest(ingested))).expectNextCount(1).verifyComplete();
+        StepVerifier.create(deduplicator.ingestOnce("a", 1, () -> ingest(ingested))).expectNextCount(1).verifyComplete();
+
+        assertThat(ingested).hasValue(1);
+        assertThat(meterRegistry.get("iot.ingest.duplicates").tag("reason", "idempotency-key").counter().count())
+                .isEqualTo(1);
+    }
+
+    private Mono<IngestReport> ingest(AtomicInteger ingested) {
+        return Mono.fromSupplier(() -> {
+            ingested.incrementAndGet();
+            return new IngestReport(1, 0, List.of());
+        });
+    }
+
+    private double keys() {
+        return meterRegistry.get("iot.ingest.idempotency.keys").gauge().value();
+    }
+}
@@ -0,0 +1,82 @@
+package com.iot.controller.service;
+
+import com.iot.contracts.domain.DeviceData;
+import com.iot.controller.domain.OutboxEntity;
+import com.iot.controller.repository.OutboxRepository;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class IngestionOutboxTest {
+
+    @Mock
+    private OutboxRepository outboxRepository;
+
+    @Mock
+    private ObjectProvider<TransactionalOperator> operatorProvider;
+
+    @Mock
+    private TransactionalOperator operator;
+
+    @Test
+    @DisplayName("Should refuse the outbox without a Mongo transaction")
+    void constructor_shouldRequireTransactional() {
+        assertThatThrownBy(() -> new IngestionOutbox(outboxRepository, operatorProvider, true, false))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("app.ingest.outbox.transactional");
+    }
+
+    @Test
+    @DisplayName("Should write the devices, then the outbox entry, inside one transaction")
+    @SuppressWarnings("unchecked")
+    void store_shouldWriteDevicesAndEntryInTransaction() {
+        when(operatorProvider.getObject()).thenReturn(operator);
+        when(operator.transactional(any(Mono.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        when(outboxRepository.save(any(OutboxEntity.class)))
+                .thenAnswer(invocation -> Mono.just(invocation.getArgument(0)));
+        AtomicBoolean devicesWritten = new AtomicBoolean();
+        List<DeviceData> events = List.of(DeviceData.builder().id(1L).build());
+
+        IngestionOutbox outbox = new IngestionOutbox(outboxRepository, operatorProvider, true, true);
+        StepVerifier.create(outbox.store(Mono.fromRunnable(() -> devicesWritten.set(true)), events))
+                .verifyComplete();
+
+        ArgumentCaptor<OutboxEntity> entry = ArgumentCaptor.forClass(OutboxEntity.class);
+        verify(operator).transactional(any(Mono.class));
+        verify(outboxRepository).save(entry.capture());
+        assertThat(devicesWritten).isTrue();
+        assertThat(entry.getValue().devices()).isEqualTo(events);
+    }
+
+    @Test
+    @DisplayName("Should not write the outbox entry when the device write fails")
+    @SuppressWarnings("unchecked")
+    void store_shouldSkipEntryWhenDevicesFail() {
+        when(operatorProvider.getObject()).thenReturn(operator);
+        when(operator.transactional(any(Mono.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        IngestionOutbox outbox = new IngestionOutbox(outboxRepository, operatorProvider, true, true);
+        StepVerifier.create(outbox.store(Mono.error(new IllegalStateException("bulk insert failed")), List.of()))
+                .verifyError(IllegalStateException.class);
+
+        verify(outboxRepository, never()).save(any(OutboxEntity.class));
+    }
+}
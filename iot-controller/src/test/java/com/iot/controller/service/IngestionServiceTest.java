@@ -6,24 +6,38 @@ import com.iot.contracts.domain.components.Location;
 import com.iot.contracts.domain.components.Status;
 import com.iot.contracts.domain.components.Type;
 import com.iot.controller.domain.DeviceEntity;
+import com.iot.controller.domain.DeviceMeta;
+import com.iot.controller.journal.IngestJournal;
+import com.iot.controller.repository.BulkInsertException;
+import com.iot.controller.repository.BulkInsertResult;
 import com.iot.controller.repository.DeviceDataRepository;
+import com.iot.controller.validation.DeviceValidationException;
 import com.iot.controller.validation.DeviceValidator;
+import com.iot.controller.validation.DeviceViolation;
+import com.mongodb.MongoTimeoutException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.test.util.ReflectionTestUtils;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.rabbitmq.OutboundMessage;
+import reactor.rabbitmq.SendOptions;
 import reactor.rabbitmq.Sender;
 import reactor.test.StepVerifier;
 
+import java.time.Duration;
 import java.time.Instant;
 import java.util.Collections;
 import java.util.List;
 
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.*;
 
@@ -37,17 +51,45 @@ public class IngestionServiceTest {
     private Sender sender;
 
     @Mock
-    private DeviceValidator validator;
+    private IngestionOutbox outbox;
+
+    @Mock
+    private LatestStateService latestState;
+
+    @Mock
+    private IngestJournal journal;
+
+    @Mock
+    private DeviceRegistry registry;
+
+    @Mock
+    private DeviceSpatialIndex spatialIndex;
 
     private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
 
+    private final DeviceValidator validator = new DeviceValidator();
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
     private IngestionService ingestionService;
 
     @BeforeEach
     public void setUp() {
-        ingestionService = new IngestionService(repository, sender, validator, objectMapper);
-        ReflectionTestUtils.setField(ingestionService, "dataExchangeName", "iot.data.exchange");
-        ReflectionTestUtils.setField(ingestionService, "publishChunkSize", 50);
+        ingestionService = ingestionService(new DeadbandFilter(new SimpleMeterRegistry(), false, 1, 5, 1,
+                Duration.ofMinutes(1), 100));
+    }
+
+    private IngestionService ingestionService(DeadbandFilter deadband) {
+        DevicePublisher publisher = new DevicePublisher(RabbitSenderPool.of(sender, meterRegistry), objectMapper,
+                meterRegistry, "iot.data.exchange", "iot.data.partitioned", false, 4, 50, DevicePublisher.PublishMode.PER_DEVICE, 512 * 1024, false, 1024, 3);
+        IngestionDeduplicator deduplicator = new IngestionDeduplicator(new SimpleMeterRegistry(),
+                Duration.ofMinutes(10), 100, true, 100);
+        IngestionCoalescer coalescer = new IngestionCoalescer(new SimpleMeterRegistry(), true, 100, Duration.ofMillis(50));
+        IngestionService service = new IngestionService(repository, publisher, validator, outbox, latestState,
+                deduplicator, coalescer, journal, registry, deadband, spatialIndex, meterRegistry);
+        ReflectionTestUtils.setField(service, "streamChunkSize", 2);
+        ReflectionTestUtils.setField(service, "partialAcceptEnabled", true);
+        return service;
     }
 
     @Test
@@ -66,29 +108,505 @@ public class IngestionServiceTest {
 
         DeviceEntity entity = new DeviceEntity(
                 null,
-                123L,
-                "Test Device",
-                "Acme",
-                Type.SENSOR_TEMPERATURE,
-                Collections.singletonList("temp"),
+                new DeviceMeta(123L, "Test Device", "Acme", Type.SENSOR_TEMPERATURE, Collections.singletonList("temp")),
                 new Location(1, 2, 0),
                 new Status(true, 80, 70, Instant.now()),
                 Instant.now());
 
         when(repository.saveAll(any(List.class))).thenReturn(Flux.just(entity));
-        when(sender.send(any(Flux.class))).thenReturn(Mono.empty());
+        when(sender.send(any(Flux.class), any(SendOptions.class))).thenReturn(Mono.empty());
 
         // Act
-        Mono<Void> result = ingestionService.ingestBatch(Collections.singletonList(deviceData));
+        Mono<IngestReport> result = ingestionService.ingestBatch(Collections.singletonList(deviceData));
 
         // Assert
         StepVerifier.create(result)
+                .assertNext(report -> assertThat(report.accepted()).isEqualTo(1))
                 .verifyComplete();
 
         // Verify repository batch save called
         verify(repository).saveAll(any(List.class));
 
         // Verify RabbitMQ publish via sender
-        verify(sender, timeout(1000)).send(any(Flux.class));
+        verify(sender, timeout(1000)).send(any(Flux.class), any(SendOptions.class));
+    }
+
+    @Test
+    @DisplayName("Should time every stage of the chunk")
+    public void ingestBatch_shouldRecordStageTimers() {
+        ReflectionTestUtils.setField(ingestionService, "latestStateEnabled", true);
+        when(repository.saveAll(any(List.class))).thenReturn(Flux.empty());
+        when(sender.send(any(Flux.class), any(SendOptions.class))).thenReturn(Mono.empty());
+        when(latestState.update(any(List.class))).thenReturn(Mono.empty());
+
+        StepVerifier.create(ingestionService.ingestBatch(List.of(device(1), device(2))))
+                .expectNextCount(1).verifyComplete();
+
+        for (String stage : List.of("validate", "dedup", "map", "persist", "publish", "latest")) {
+            assertThat(meterRegistry.timer("iot.ingest.stage", "stage", stage).count()).as(stage).isEqualTo(1);
+        }
+        assertThat(meterRegistry.timer("iot.ingest.stage", "stage", "outbox").count()).isZero();
+        assertThat(meterRegistry.summary("iot.ingest.batch.size").totalAmount()).isEqualTo(2);
+        assertThat(meterRegistry.timer("iot.ingest.publish.chunk", "mode", "PER_DEVICE").count()).isEqualTo(1);
+        assertThat(meterRegistry.get("iot.ingest.batches.in-flight").gauge().value()).isZero();
+    }
+
+    @Test
+    @DisplayName("Registry mode should store and publish status-only events and keep full readings in latest state")
+    @SuppressWarnings("unchecked")
+    public void ingestBatch_registryMode_shouldWriteSlimEvents() throws Exception {
+        ReflectionTestUtils.setField(ingestionService, "registryEnabled", true);
+        ReflectionTestUtils.setField(ingestionService, "latestStateEnabled", true);
+        when(registry.register(any(List.class))).thenAnswer(invocation -> Mono.just(
+                ((List<DeviceData>) invocation.getArgument(0)).stream().map(device -> device.slim(7)).toList()));
+        when(repository.saveAll(any(List.class))).thenReturn(Flux.empty());
+        when(sender.send(any(Flux.class), any(SendOptions.class))).thenReturn(Mono.empty());
+        when(latestState.update(any(List.class))).thenReturn(Mono.empty());
+
+        StepVerifier.create(ingestionService.ingestBatch(List.of(device(1))))
+                .expectNextCount(1).verifyComplete();
+
+        ArgumentCaptor<List<DeviceEntity>> entities = ArgumentCaptor.forClass(List.class);
+        verify(repository).saveAll(entities.capture());
+        assertThat(entities.getValue().getFirst().meta()).isEqualTo(DeviceMeta.versioned(1L, 7));
+
+        ArgumentCaptor<Flux<OutboundMessage>> messages = ArgumentCaptor.forClass(Flux.class);
+        verify(sender).send(messages.capture(), any(SendOptions.class));
+        DeviceData published = objectMapper.readValue(messages.getValue().blockFirst().getBody(), DeviceData.class);
+        assertThat(published.metaVersion()).isEqualTo(7);
+        assertThat(published.name()).isNull();
+        assertThat(published.status()).isNotNull();
+
+        verify(latestState).update(argThat(devices -> "Device 1".equals(devices.getFirst().name())));
+        assertThat(meterRegistry.timer("iot.ingest.stage", "stage", "registry").count()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Should drop a client-supplied metaVersion and store and publish the full reading")
+    @SuppressWarnings("unchecked")
+    public void ingestBatch_shouldIgnoreClientMetaVersion() throws Exception {
+        when(repository.saveAll(any(List.class))).thenReturn(Flux.empty());
+        when(sender.send(any(Flux.class), any(SendOptions.class))).thenReturn(Mono.empty());
+
+        StepVerifier.create(ingestionService.ingestBatch(List.of(device(1).toBuilder().metaVersion(9L).build())))
+                .expectNextCount(1).verifyComplete();
+
+        ArgumentCaptor<List<DeviceEntity>> entities = ArgumentCaptor.forClass(List.class);
+        verify(repository).saveAll(entities.capture());
+        assertThat(entities.getValue().getFirst().meta().metaVersion()).isNull();
+        assertThat(entities.getValue().getFirst().meta().name()).isEqualTo("Device 1");
+
+        ArgumentCaptor<Flux<OutboundMessage>> messages = ArgumentCaptor.forClass(Flux.class);
+        verify(sender).send(messages.capture(), any(SendOptions.class));
+        DeviceData published = objectMapper.readValue(messages.getValue().blockFirst().getBody(), DeviceData.class);
+        assertThat(published.metaVersion()).isNull();
+        assertThat(published.name()).isEqualTo("Device 1");
+    }
+
+    @Test
+    @DisplayName("Should ingest a stream in bounded chunks")
+    public void ingestStream_shouldSaveInChunks() {
+        Flux<DeviceData> stream = Flux.range(1, 5).map(i -> device(i));
+
+        when(repository.saveAll(any(List.class))).thenAnswer(invocation -> {
+            List<DeviceEntity> entities = invocation.getArgument(0);
+            return Flux.fromIterable(entities);
+        });
+        when(sender.send(any(Flux.class), any(SendOptions.class))).thenReturn(Mono.empty());
+
+        StepVerifier.create(ingestionService.ingestStream(stream))
+                .assertNext(report -> assertThat(report.accepted()).isEqualTo(5))
+                .verifyComplete();
+
+        // 5 devices with chunk size 2 -> 3 chunks
+        verify(repository, times(3)).saveAll(any(List.class));
+    }
+
+    @Test
+    @DisplayName("Should store concurrent small batches with one write")
+    public void ingestBatch_concurrent_shouldCoalesceWrites() {
+        ArgumentCaptor<List<DeviceEntity>> saved = ArgumentCaptor.forClass(List.class);
+        when(repository.saveAll(saved.capture())).thenReturn(Flux.empty());
+        when(sender.send(any(Flux.class), any(SendOptions.class))).thenReturn(Mono.empty());
+
+        StepVerifier.create(Flux.merge(
+                        ingestionService.ingestBatch(List.of(device(1), device(2))),
+                        ingestionService.ingestBatch(List.of(device(3))))
+                        .map(IngestReport::accepted)
+                        .collectList())
+                .assertNext(accepted -> assertThat(accepted).containsExactlyInAnyOrder(2L, 1L))
+                .verifyComplete();
+
+        verify(repository, times(1)).saveAll(any(List.class));
+        assertThat(saved.getValue()).hasSize(3);
+    }
+
+    @Test
+    @DisplayName("Outbox mode should store the batch without publishing inline")
+    public void ingestBatch_outboxMode_shouldNotPublish() {
+        ReflectionTestUtils.setField(ingestionService, "outboxEnabled", true);
+        when(repository.saveAll(any(List.class))).thenReturn(Flux.empty());
+        when(outbox.store(any(Mono.class), any(List.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        StepVerifier.create(ingestionService.ingestBatch(List.of(device(1), device(2))))
+                .expectNextCount(1).verifyComplete();
+
+        verify(outbox).store(any(Mono.class), any(List.class));
+        verify(repository).saveAll(any(List.class));
+        verifyNoInteractions(sender);
+    }
+
+    @Test
+    @DisplayName("Journal mode should acknowledge once the batch is journaled, without writing downstream")
+    public void ingestBatch_journalMode_shouldOnlyAppendToJournal() {
+        ReflectionTestUtils.setField(ingestionService, "journalEnabled", true);
+        when(journal.append(any(List.class))).thenReturn(Mono.empty());
+
+        StepVerifier.create(ingestionService.ingestBatch(List.of(device(1), device(2))))
+                .expectNextCount(1).verifyComplete();
+
+        verify(journal).append(argThat(devices -> devices.size() == 2));
+        verifyNoInteractions(repository, sender, outbox, latestState);
+        assertThat(meterRegistry.timer("iot.ingest.stage", "stage", "journal").count()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Bulk mode should insert through the unordered bulk path")
+    public void ingestBatch_bulkMode_shouldUseInsertUnordered() {
+        ReflectionTestUtils.setField(ingestionService, "bulkInsertEnabled", true);
+        when(repository.insertUnordered(any(List.class))).thenReturn(Mono.just(new BulkInsertResult(2, 0, List.of())));
+        when(sender.send(any(Flux.class), any(SendOptions.class))).thenReturn(Mono.empty());
+
+        StepVerifier.create(ingestionService.ingestBatch(List.of(device(1), device(2))))
+                .expectNextCount(1).verifyComplete();
+
+        verify(repository).insertUnordered(any(List.class));
+        verify(repository, never()).saveAll(any(List.class));
+    }
+
+    @Test
+    @DisplayName("Bulk mode should fail the batch without publishing when documents are rejected")
+    public void ingestBatch_bulkMode_shouldFailOnRejectedDocuments() {
+        ReflectionTestUtils.setField(ingestionService, "bulkInsertEnabled", true);
+        when(repository.insertUnordered(any(List.class)))
+                .thenReturn(Mono.just(new BulkInsertResult(1, 1, List.of("duplicate key"))));
+
+        StepVerifier.create(ingestionService.ingestBatch(List.of(device(1), device(2))))
+                .expectError(BulkInsertException.class)
+                .verify();
+
+        verifyNoInteractions(sender);
+    }
+
+    @Test
+    @DisplayName("Bulk mode should fail the batch without publishing when the insert errors")
+    public void ingestBatch_bulkMode_shouldFailWhenInsertErrors() {
+        ReflectionTestUtils.setField(ingestionService, "bulkInsertEnabled", true);
+        when(repository.insertUnordered(any(List.class)))
+                .thenReturn(Mono.error(new MongoTimeoutException("mongo down")));
+
+        StepVerifier.create(ingestionService.ingestBatch(List.of(device(1), device(2))))
+                .expectError(MongoTimeoutException.class)
+                .verify();
+
+        verifyNoInteractions(sender);
+    }
+
+    @Test
+    @DisplayName("Should not fail the batch when the latest-state update fails")
+    public void ingestBatch_shouldTolerateLatestStateFailure() {
+        ReflectionTestUtils.setField(ingestionService, "latestStateEnabled", true);
+        when(repository.saveAll(any(List.class))).thenReturn(Flux.empty());
+        when(sender.send(any(Flux.class), any(SendOptions.class))).thenReturn(Mono.empty());
+        when(latestState.update(any(List.class))).thenReturn(Mono.error(new IllegalStateException("mongo down")));
+
+        StepVerifier.create(ingestionService.ingestBatch(List.of(device(1))))
+                .expectNextCount(1).verifyComplete();
+
+        verify(latestState).update(any(List.class));
+    }
+
+    @Test
+    @DisplayName("Should acknowledge a replayed idempotency key without storing or publishing")
+    public void ingestBatch_replayedKey_shouldBeSkipped() {
+        when(repository.saveAll(any(List.class))).thenReturn(Flux.empty());
+        when(sender.send(any(Flux.class), any(SendOptions.class))).thenReturn(Mono.empty());
+
+        StepVerifier.create(ingestionService.ingestBatch("batch-1", List.of(device(1)))).expectNextCount(1).verifyComplete();
+        StepVerifier.create(ingestionService.ingestBatch("batch-1", List.of(device(2))))
+                .assertNext(report -> assertThat(report.accepted()).isEqualTo(1))
+                .verifyComplete();
+
+        verify(repository, times(1)).saveAll(any(List.class));
+        verify(sender, times(1)).send(any(Flux.class), any(SendOptions.class));
+    }
+
+    @Test
+    @DisplayName("Should give a request with the key of a batch in flight that batch's result, without storing it twice")
+    @SuppressWarnings("unchecked")
+    public void ingestBatch_keyInFlight_shouldWaitForFirstAttempt() {
+        Sinks.Empty<Void> persisted = Sinks.empty();
+        when(repository.saveAll(any(List.class))).thenReturn(persisted.asMono().thenMany(Flux.empty()));
+        when(sender.send(any(Flux.class), any(SendOptions.class))).thenReturn(Mono.empty());
+
+        // the client gives up while the batch is being written; the write carries on
+        StepVerifier.create(ingestionService.ingestBatch("batch-1", List.of(device(1), device(2))))
+                .expectSubscription().thenCancel().verify();
+        verify(repository, timeout(1000)).saveAll(any(List.class));
+
+        StepVerifier.create(ingestionService.ingestBatch("batch-1", List.of(device(1), device(2))))
+                .then(persisted::tryEmitEmpty)
+                .assertNext(report -> assertThat(report.accepted()).isEqualTo(2))
+                .verifyComplete();
+
+        verify(repository, times(1)).saveAll(any(List.class));
+        verify(sender, times(1)).send(any(Flux.class), any(SendOptions.class));
+    }
+
+    @Test
+    @DisplayName("Should release the idempotency key when the batch fails")
+    public void ingestBatch_failedKey_shouldBeRetryable() {
+        when(repository.saveAll(any(List.class)))
+                .thenReturn(Flux.error(new IllegalStateException("mongo down")))
+                .thenReturn(Flux.empty());
+        when(sender.send(any(Flux.class), any(SendOptions.class))).thenReturn(Mono.empty());
+
+        StepVerifier.create(ingestionService.ingestBatch("batch-1", List.of(device(1))))
+                .expectError(IllegalStateException.class)
+                .verify();
+        StepVerifier.create(ingestionService.ingestBatch("batch-1", List.of(device(1)))).expectNextCount(1).verifyComplete();
+
+        verify(repository, times(2)).saveAll(any(List.class));
+        verify(sender, times(1)).send(any(Flux.class), any(SendOptions.class));
+    }
+
+    @Test
+    @DisplayName("Should drop readings that replay or predate the last accepted reading of a device")
+    @SuppressWarnings("unchecked")
+    public void ingestBatch_shouldDropReplayedReadings() {
+        when(repository.saveAll(any(List.class))).thenReturn(Flux.empty());
+        when(sender.send(any(Flux.class), any(SendOptions.class))).thenReturn(Mono.empty());
+        Instant heartbeat = Instant.parse("2026-01-12T12:00:00Z");
+        DeviceData first = device(1, heartbeat);
+
+        StepVerifier.create(ingestionService.ingestBatch(List.of(first))).expectNextCount(1).verifyComplete();
+        StepVerifier.create(ingestionService.ingestBatch(List.of(
+                        first,
+                        device(1, heartbeat.minusSeconds(5)),
+                        device(1, heartbeat.plusSeconds(5)),
+                        device(2, heartbeat))))
+                .expectNextCount(1).verifyComplete();
+
+        ArgumentCaptor<List<DeviceEntity>> saved = ArgumentCaptor.forClass(List.class);
+        verify(repository, times(2)).saveAll(saved.capture());
+        assertThat(saved.getAllValues().get(1))
+                .extracting(entity -> entity.status().lastHeartbeat())
+                .containsExactly(heartbeat.plusSeconds(5), heartbeat);
+    }
+
+    @Test
+    @DisplayName("Should store only readings that leave the deadband and still update the latest state")
+    @SuppressWarnings("unchecked")
+    public void ingestBatch_deadband_shouldSuppressUnchangedReadings() {
+        SimpleMeterRegistry deadbandMetrics = new SimpleMeterRegistry();
+        ingestionService = ingestionService(new DeadbandFilter(deadbandMetrics, true, 1, 5, 1, Duration.ofHours(1), 100));
+        ReflectionTestUtils.setField(ingestionService, "latestStateEnabled", true);
+        when(repository.saveAll(any(List.class))).thenReturn(Flux.empty());
+        when(sender.send(any(Flux.class), any(SendOptions.class))).thenReturn(Mono.empty());
+        when(latestState.update(any())).thenReturn(Mono.empty());
+        Instant heartbeat = Instant.parse("2026-01-12T12:00:00Z");
+
+        StepVerifier.create(ingestionService.ingestBatch(List.of(withSignal(device(1, heartbeat), 70))))
+                .expectNextCount(1).verifyComplete();
+        StepVerifier.create(ingestionService.ingestBatch(List.of(withSignal(device(1, heartbeat.plusSeconds(1)), 74))))
+                .expectNextCount(1).verifyComplete();
+        StepVerifier.create(ingestionService.ingestBatch(List.of(withSignal(device(1, heartbeat.plusSeconds(2)), 76))))
+                .expectNextCount(1).verifyComplete();
+
+        ArgumentCaptor<List<DeviceEntity>> saved = ArgumentCaptor.forClass(List.class);
+        verify(repository, times(2)).saveAll(saved.capture());
+        assertThat(saved.getAllValues()).extracting(entities -> entities.getFirst().status().signalStrength())
+                .containsExactly(70, 76);
+        verify(latestState, times(3)).update(any());
+        assertThat(deadbandMetrics.counter("iot.ingest.deadband.readings", "result", "suppressed").count()).isEqualTo(1);
+        assertThat(deadbandMetrics.counter("iot.ingest.deadband.readings", "result", "forwarded").count()).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("Should publish while the persist is still running in PARALLEL mode and wait for both")
+    @SuppressWarnings("unchecked")
+    public void ingestBatch_parallel_shouldPublishWithoutWaitingForPersist() {
+        ReflectionTestUtils.setField(ingestionService, "consistencyMode", IngestionService.ConsistencyMode.PARALLEL);
+        Sinks.Empty<Void> persisted = Sinks.empty();
+        when(repository.saveAll(any(List.class))).thenReturn(persisted.asMono().thenMany(Flux.empty()));
+        when(sender.send(any(Flux.class), any(SendOptions.class))).thenReturn(Mono.empty());
+
+        StepVerifier.create(ingestionService.ingestBatch(List.of(device(1))))
+                .then(() -> verify(sender, timeout(1000)).send(any(Flux.class), any(SendOptions.class)))
+                .expectNoEvent(Duration.ofMillis(100))
+                .then(persisted::tryEmitEmpty)
+                .expectNextCount(1)
+                .verifyComplete();
+
+        assertThat(meterRegistry.get("iot.ingest.write").tag("mode", "PARALLEL").timer().count()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Should complete after the publish and persist in the background in PUBLISH_THEN_PERSIST mode")
+    @SuppressWarnings("unchecked")
+    public void ingestBatch_publishThenPersist_shouldNotWaitForPersist() {
+        ReflectionTestUtils.setField(ingestionService, "consistencyMode",
+                IngestionService.ConsistencyMode.PUBLISH_THEN_PERSIST);
+        ReflectionTestUtils.setField(ingestionService, "backgroundPersistMaxInFlight", 1);
+        Sinks.Empty<Void> persisted = Sinks.empty();
+        when(repository.saveAll(any(List.class)))
+                .thenReturn(persisted.asMono().thenMany(Flux.empty()))
+                .thenReturn(Flux.error(new IllegalStateException("mongo is down")));
+        when(sender.send(any(Flux.class), any(SendOptions.class))).thenReturn(Mono.empty());
+
+        StepVerifier.create(ingestionService.ingestBatch(List.of(device(1))))
+                .expectNextCount(1)
+                .verifyComplete();
+        assertThat(meterRegistry.get("iot.ingest.persist.background.in-flight").gauge().value()).isEqualTo(1);
+
+        // the background slot is taken, so the next write persists inline and reports its failure
+        StepVerifier.create(ingestionService.ingestBatch(List.of(device(2))))
+                .expectError(IllegalStateException.class)
+                .verify();
+
+        persisted.tryEmitEmpty();
+        assertThat(meterRegistry.get("iot.ingest.persist.background.in-flight").gauge().value()).isZero();
+        verify(sender, times(2)).send(any(Flux.class), any(SendOptions.class));
+    }
+
+    @Test
+    @DisplayName("Should wait for running background persists on shutdown, up to the shutdown timeout")
+    @SuppressWarnings("unchecked")
+    public void awaitBackgroundPersists_shouldWaitForRunningPersists() {
+        ReflectionTestUtils.setField(ingestionService, "consistencyMode",
+                IngestionService.ConsistencyMode.PUBLISH_THEN_PERSIST);
+        ReflectionTestUtils.setField(ingestionService, "backgroundPersistMaxInFlight", 4);
+        ReflectionTestUtils.setField(ingestionService, "shutdownTimeout", Duration.ofSeconds(5));
+        when(repository.saveAll(any(List.class)))
+                .thenReturn(Flux.<DeviceEntity>empty().delaySubscription(Duration.ofMillis(200)))
+                .thenReturn(Flux.never());
+        when(sender.send(any(Flux.class), any(SendOptions.class))).thenReturn(Mono.empty());
+
+        StepVerifier.create(ingestionService.ingestBatch(List.of(device(1)))).expectNextCount(1).verifyComplete();
+        assertThat(meterRegistry.get("iot.ingest.persist.background.in-flight").gauge().value()).isEqualTo(1);
+
+        ingestionService.awaitBackgroundPersists();
+        assertThat(meterRegistry.get("iot.ingest.persist.background.in-flight").gauge().value()).isZero();
+
+        // a persist that never finishes only holds shutdown up to the timeout
+        ReflectionTestUtils.setField(ingestionService, "shutdownTimeout", Duration.ofMillis(100));
+        StepVerifier.create(ingestionService.ingestBatch(List.of(device(2)))).expectNextCount(1).verifyComplete();
+        long startedAt = System.nanoTime();
+        ingestionService.awaitBackgroundPersists();
+        assertThat(Duration.ofNanos(System.nanoTime() - startedAt)).isLessThan(Duration.ofSeconds(2));
+        assertThat(meterRegistry.get("iot.ingest.persist.background.in-flight").gauge().value()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Should count devices whose background persist failed")
+    @SuppressWarnings("unchecked")
+    public void ingestBatch_publishThenPersist_shouldCountFailedBackgroundPersist() {
+        ReflectionTestUtils.setField(ingestionService, "consistencyMode",
+                IngestionService.ConsistencyMode.PUBLISH_THEN_PERSIST);
+        ReflectionTestUtils.setField(ingestionService, "backgroundPersistMaxInFlight", 4);
+        when(repository.saveAll(any(List.class))).thenReturn(Flux.error(new IllegalStateException("mongo is down")));
+        when(sender.send(any(Flux.class), any(SendOptions.class))).thenReturn(Mono.empty());
+
+        StepVerifier.create(ingestionService.ingestBatch(List.of(device(1), device(2))))
+                .expectNextCount(1)
+                .verifyComplete();
+
+        assertThat(meterRegistry.counter("iot.ingest.persist.background.failures").count()).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("Should only publish in PUBLISH_ONLY mode")
+    @SuppressWarnings("unchecked")
+    public void ingestBatch_publishOnly_shouldNotPersist() {
+        ReflectionTestUtils.setField(ingestionService, "consistencyMode", IngestionService.ConsistencyMode.PUBLISH_ONLY);
+        when(sender.send(any(Flux.class), any(SendOptions.class))).thenReturn(Mono.empty());
+
+        StepVerifier.create(ingestionService.ingestBatch(List.of(device(1))))
+                .expectNextCount(1)
+                .verifyComplete();
+
+        verifyNoInteractions(repository);
+        assertThat(meterRegistry.get("iot.ingest.write").tag("mode", "PUBLISH_ONLY").timer().count()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Should store the valid devices and report the invalid ones by index")
+    @SuppressWarnings("unchecked")
+    public void ingestBatch_partialAccept_shouldReportInvalidDevices() {
+        when(repository.saveAll(any(List.class))).thenReturn(Flux.empty());
+        when(sender.send(any(Flux.class), any(SendOptions.class))).thenReturn(Mono.empty());
+        DeviceData invalid = device(2).toBuilder().name(" ").build();
+
+        StepVerifier.create(ingestionService.ingestBatch(List.of(device(1), invalid, device(3))))
+                .assertNext(report -> {
+                    assertThat(report.accepted()).isEqualTo(2);
+                    assertThat(report.rejected()).isEqualTo(1);
+                    assertThat(report.errors()).containsExactly(new DeviceViolation(1, 2L, "name", "must not be blank"));
+                })
+                .verifyComplete();
+
+        ArgumentCaptor<List<DeviceEntity>> saved = ArgumentCaptor.forClass(List.class);
+        verify(repository).saveAll(saved.capture());
+        assertThat(saved.getValue()).extracting(entity -> entity.meta().deviceId()).containsExactly(1L, 3L);
+    }
+
+    @Test
+    @DisplayName("Should reject the whole batch when partial accept is disabled")
+    public void ingestBatch_strict_shouldRejectBatch() {
+        ReflectionTestUtils.setField(ingestionService, "partialAcceptEnabled", false);
+        DeviceData invalid = device(2).toBuilder().location(null).build();
+
+        StepVerifier.create(ingestionService.ingestBatch(List.of(device(1), invalid)))
+                .expectError(DeviceValidationException.class)
+                .verify();
+
+        verify(repository, never()).saveAll(any(List.class));
+    }
+
+    @Test
+    @DisplayName("Should report stream violations by their position in the stream")
+    public void ingestStream_shouldReportStreamIndexes() {
+        when(repository.saveAll(any(List.class))).thenReturn(Flux.empty());
+        when(sender.send(any(Flux.class), any(SendOptions.class))).thenReturn(Mono.empty());
+        DeviceData invalid = device(4).toBuilder().type(null).build();
+        Flux<DeviceData> stream = Flux.just(device(1), device(2), device(3), invalid, device(5));
+
+        StepVerifier.create(ingestionService.ingestStream(stream))
+                .assertNext(report -> {
+                    assertThat(report.accepted()).isEqualTo(4);
+                    assertThat(report.errors()).extracting(DeviceViolation::index).containsExactly(3L);
+                })
+                .verifyComplete();
+    }
+
+    private static DeviceData withSignal(DeviceData device, int signalStrength) {
+        return device.toBuilder()
+                .status(device.status().toBuilder().signalStrength(signalStrength).build())
+                .build();
+    }
+
+    private DeviceData device(long id) {
+        return device(id, Instant.now());
+    }
+
+    private DeviceData device(long id, Instant lastHeartbeat) {
+        return DeviceData.builder()
+                .id(id)
+                .name("Device " + id)
+                .manufacturer("Acme")
+                .type(Type.SENSOR_TEMPERATURE)
+                .location(new Location(1, 2, 0))
+                .status(new Status(true, 80, 70, lastHeartbeat))
+                .build();
     }
 }
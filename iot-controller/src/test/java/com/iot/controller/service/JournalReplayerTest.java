@@ -0,0 +1,107 @@
+package com.iot.controller.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.iot.contracts.domain.DeviceData;
+import com.iot.contracts.domain.components.Location;
+import com.iot.contracts.domain.components.Status;
+import com.iot.contracts.domain.components.Type;
+import com.iot.controller.journal.IngestJournal;
+import com.iot.controller.journal.JournalPosition;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.stream.LongStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class JournalReplayerTest {
+
+    private static final JournalPosition FIRST = new JournalPosition(1, 120);
+    private static final JournalPosition SECOND = new JournalPosition(1, 230);
+
+    @Mock
+    private IngestJournal journal;
+
+    @Mock
+    private IngestionService ingestionService;
+
+    private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private JournalReplayer replayer;
+
+    @BeforeEach
+    void setUp() {
+        replayer = new JournalReplayer(journal, ingestionService, objectMapper, meterRegistry,
+                true, 10, Duration.ofMillis(100));
+        when(journal.replayedPosition()).thenReturn(JournalPosition.START);
+    }
+
+    @Test
+    @DisplayName("Should write journaled devices in order and then move the checkpoint")
+    @SuppressWarnings("unchecked")
+    void drain_shouldWriteAndCheckpoint() throws Exception {
+        when(journal.read(JournalPosition.START, 10)).thenReturn(List.of(entry(FIRST, 1, 2), entry(SECOND, 3)));
+        when(ingestionService.write(anyList())).thenReturn(Mono.empty());
+
+        StepVerifier.create(replayer.drain())
+                .expectNext(2L)
+                .verifyComplete();
+
+        ArgumentCaptor<List<DeviceData>> written = ArgumentCaptor.forClass(List.class);
+        verify(ingestionService).write(written.capture());
+        assertThat(written.getValue()).extracting(DeviceData::id).containsExactly(1L, 2L, 3L);
+        verify(journal).markReplayed(SECOND);
+        assertThat(meterRegistry.counter("iot.ingest.journal.replayed.devices").count()).isEqualTo(3);
+    }
+
+    @Test
+    @DisplayName("Should keep the checkpoint and replay the same records again when the write fails")
+    void drain_shouldNotCheckpointFailedWrite() throws Exception {
+        when(journal.read(JournalPosition.START, 10)).thenReturn(List.of(entry(FIRST, 1)));
+        when(ingestionService.write(anyList()))
+                .thenReturn(Mono.error(new IllegalStateException("mongo is down")))
+                .thenReturn(Mono.empty());
+
+        StepVerifier.create(replayer.drain())
+                .expectError(IllegalStateException.class)
+                .verify();
+        verify(journal, never()).markReplayed(any());
+
+        StepVerifier.create(replayer.drain())
+                .expectNext(1L)
+                .verifyComplete();
+        verify(journal).markReplayed(FIRST);
+    }
+
+    private IngestJournal.Entry entry(JournalPosition end, long... ids) throws Exception {
+        List<DeviceData> devices = LongStream.of(ids)
+                .mapToObj(id -> DeviceData.builder()
+                        .id(id)
+                        .name("Device " + id)
+                        .manufacturer("Acme")
+                        .type(Type.SENSOR_TEMPERATURE)
+                        .location(new Location(1, 2, 0))
+                        .status(new Status(true, 80, 70, Instant.now()))
+                        .build())
+                .toList();
+        return new IngestJournal.Entry(objectMapper.writeValueAsBytes(devices), end);
+    }
+}
@@ -0,0 +1,157 @@
+package com.iot.controller.service;
+
+import com.iot.contracts.domain.DeviceData;
+import com.iot.contracts.domain.components.Location;
+import com.iot.contracts.domain.components.Status;
+import com.iot.contracts.domain.components.Type;
+import com.iot.controller.domain.DeviceLatestEntity;
+import com.iot.controller.repository.DeviceLatestRepository;
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.ServerAddress;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.bulk.BulkWriteResult;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.BsonDocument;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndReplaceOptions;
+import org.springframework.data.mongodb.core.ReactiveBulkOperations;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class LatestStateServiceTest {
+
+    @Mock
+    private ReactiveMongoTemplate template;
+
+    @Mock
+    private DeviceLatestRepository repository;
+
+    @Mock
+    private ReactiveBulkOperations bulkOperations;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private LatestStateService service;
+
+    @BeforeEach
+    void setUp() {
+        service = new LatestStateService(template, repository, meterRegistry, 100, Duration.ofMinutes(1));
+    }
+
+    @Test
+    @DisplayName("Should upsert the last reading per device and serve it from the cache")
+    void update_shouldUpsertOncePerDeviceAndCache() {
+        when(template.bulkOps(BulkOperations.BulkMode.UNORDERED, DeviceLatestEntity.class)).thenReturn(bulkOperations);
+        when(bulkOperations.execute()).thenReturn(Mono.just(BulkWriteResult.unacknowledged()));
+
+        StepVerifier.create(service.update(List.of(device(1, 10), device(2, 20), device(1, 30))))
+                .verifyComplete();
+
+        verify(bulkOperations, times(2)).replaceOne(any(Query.class), any(DeviceLatestEntity.class),
+                any(FindAndReplaceOptions.class));
+
+        StepVerifier.create(service.find(1))
+                .assertNext(latest -> assertThat(latest.status().batteryLevel()).isEqualTo(30))
+                .verifyComplete();
+        verify(repository, never()).findById(anyLong());
+        assertThat(meterRegistry.counter("iot.ingest.latest.cache", "result", "hit").count()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Should load cache misses from Mongo")
+    void findAll_shouldLoadMissesFromRepository() {
+        when(template.bulkOps(BulkOperations.BulkMode.UNORDERED, DeviceLatestEntity.class)).thenReturn(bulkOperations);
+        when(bulkOperations.execute()).thenReturn(Mono.just(BulkWriteResult.unacknowledged()));
+        StepVerifier.create(service.update(List.of(device(1, 10)))).verifyComplete();
+
+        DeviceLatestEntity stored = new DeviceLatestEntity(2L, "Device 2", "Acme", Type.CAMERA, List.of(),
+                new Location(0, 0, 0), new Status(true, 40, 50, Instant.now()), Instant.now());
+        when(repository.findAllById(List.of(2L))).thenReturn(Flux.just(stored));
+
+        StepVerifier.create(service.findAll(List.of(1L, 2L, 1L)))
+                .expectNextMatches(latest -> latest.deviceId() == 1L)
+                .expectNextMatches(latest -> latest.deviceId() == 2L)
+                .verifyComplete();
+
+        // second read is served from the cache
+        StepVerifier.create(service.find(2)).expectNext(stored).verifyComplete();
+        verify(repository, never()).findById(anyLong());
+    }
+
+    @Test
+    @DisplayName("Should keep the newest reading when an older one arrives after it")
+    void update_shouldIgnoreOutOfOrderReadings() {
+        Instant newer = Instant.parse("2026-01-12T12:00:10Z");
+        Instant older = newer.minusSeconds(5);
+        when(template.bulkOps(BulkOperations.BulkMode.UNORDERED, DeviceLatestEntity.class)).thenReturn(bulkOperations);
+        when(bulkOperations.execute())
+                .thenReturn(Mono.just(BulkWriteResult.unacknowledged()))
+                .thenReturn(Mono.error(new DuplicateKeyException("E11000", new MongoBulkWriteException(
+                        BulkWriteResult.acknowledged(0, 0, 0, 0, List.of(), List.of()),
+                        List.of(new BulkWriteError(11000, "E11000 duplicate key", new BsonDocument(), 0)),
+                        null, new ServerAddress(), Set.of()))));
+
+        // within one batch the newer reading wins even if it comes first
+        StepVerifier.create(service.update(List.of(device(1, 30, newer), device(1, 10, older)))).verifyComplete();
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        ArgumentCaptor<DeviceLatestEntity> replacement = ArgumentCaptor.forClass(DeviceLatestEntity.class);
+        verify(bulkOperations).replaceOne(query.capture(), replacement.capture(), any(FindAndReplaceOptions.class));
+        assertThat(replacement.getValue().status().batteryLevel()).isEqualTo(30);
+        assertThat(query.getValue().getQueryObject().toString()).contains("status.lastHeartbeat");
+
+        // a later, older write finds a newer document in Mongo: its upsert is rejected and the cache is kept
+        StepVerifier.create(service.update(List.of(device(1, 10, older)))).verifyComplete();
+        StepVerifier.create(service.find(1))
+                .assertNext(latest -> assertThat(latest.status().batteryLevel()).isEqualTo(30))
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("Should fail the update on write errors other than a stale reading")
+    void update_shouldPropagateOtherWriteErrors() {
+        when(template.bulkOps(BulkOperations.BulkMode.UNORDERED, DeviceLatestEntity.class)).thenReturn(bulkOperations);
+        when(bulkOperations.execute()).thenReturn(Mono.error(new IllegalStateException("mongo down")));
+
+        StepVerifier.create(service.update(List.of(device(1, 10)))).verifyError(IllegalStateException.class);
+    }
+
+    private DeviceData device(long id, int batteryLevel) {
+        return device(id, batteryLevel, Instant.now());
+    }
+
+    private DeviceData device(long id, int batteryLevel, Instant heartbeat) {
+        return DeviceData.builder()
+                .id(id)
+                .name("Device " + id)
+                .manufacturer("Acme")
+                .type(Type.SENSOR_TEMPERATURE)
+                .location(new Location(1, 2, 0))
+                .status(new Status(true, batteryLevel, 70, heartbeat))
+                .build();
+    }
+}
@@ -0,0 +1,111 @@
+package com.iot.controller.service;
+
+import com.iot.contracts.domain.DeviceData;
+import com.iot.contracts.domain.components.Location;
+import com.iot.contracts.domain.components.Status;
+import com.iot.contracts.domain.components.Type;
+import com.iot.controller.domain.OutboxCheckpointEntity;
+import com.iot.controller.domain.OutboxEntity;
+import com.iot.controller.repository.OutboxCheckpointRepository;
+import com.iot.controller.repository.OutboxRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Pageable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class OutboxRelayTest {
+
+    @Mock
+    private OutboxRepository outboxRepository;
+
+    @Mock
+    private OutboxCheckpointRepository checkpointRepository;
+
+    @Mock
+    private DevicePublisher publisher;
+
+    private OutboxRelay relay;
+
+    @BeforeEach
+    void setUp() {
+        relay = new OutboxRelay(outboxRepository, checkpointRepository, publisher, new SimpleMeterRegistry(),
+                true, 10, Duration.ofMillis(100));
+    }
+
+    @Test
+    @DisplayName("Should publish entries in order, delete them and advance the checkpoint")
+    @SuppressWarnings("unchecked")
+    void drain_shouldPublishDeleteAndCheckpoint() {
+        OutboxEntity first = new OutboxEntity("a1", List.of(device(1), device(2)), Instant.now());
+        OutboxEntity second = new OutboxEntity("a2", List.of(device(3)), Instant.now());
+
+        when(outboxRepository.findAllByOrderByIdAsc(any(Pageable.class))).thenReturn(Flux.just(first, second));
+        when(publisher.publish(anyList())).thenReturn(Mono.empty());
+        when(outboxRepository.deleteAllById(any(Iterable.class))).thenReturn(Mono.empty());
+        when(checkpointRepository.save(any(OutboxCheckpointEntity.class)))
+                .thenAnswer(invocation -> Mono.just(invocation.getArgument(0)));
+
+        StepVerifier.create(relay.drain())
+                .expectNext(2L)
+                .verifyComplete();
+
+        ArgumentCaptor<List<DeviceData>> published = ArgumentCaptor.forClass(List.class);
+        verify(publisher).publish(published.capture());
+        assertThat(published.getValue()).extracting(DeviceData::id).containsExactly(1L, 2L, 3L);
+
+        verify(outboxRepository).deleteAllById(List.of("a1", "a2"));
+
+        ArgumentCaptor<OutboxCheckpointEntity> checkpoint = ArgumentCaptor.forClass(OutboxCheckpointEntity.class);
+        verify(checkpointRepository).save(checkpoint.capture());
+        assertThat(checkpoint.getValue().lastRelayedId()).isEqualTo("a2");
+        assertThat(checkpoint.getValue().relayedEntries()).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("Should keep entries when publishing fails")
+    @SuppressWarnings("unchecked")
+    void drain_shouldNotDeleteWhenPublishFails() {
+        OutboxEntity entry = new OutboxEntity("a1", List.of(device(1)), Instant.now());
+
+        when(outboxRepository.findAllByOrderByIdAsc(any(Pageable.class))).thenReturn(Flux.just(entry));
+        when(publisher.publish(anyList())).thenReturn(Mono.error(new IllegalStateException("broker down")));
+
+        StepVerifier.create(relay.drain())
+                .expectError(IllegalStateException.class)
+                .verify();
+
+        verify(outboxRepository, never()).deleteAllById(any(Iterable.class));
+        verify(checkpointRepository, never()).save(any(OutboxCheckpointEntity.class));
+    }
+
+    private DeviceData device(long id) {
+        return DeviceData.builder()
+                .id(id)
+                .name("Device " + id)
+                .manufacturer("Acme")
+                .type(Type.SENSOR_TEMPERATURE)
+                .location(new Location(1, 2, 0))
+                .status(new Status(true, 80, 70, Instant.now()))
+                .build();
+    }
+}
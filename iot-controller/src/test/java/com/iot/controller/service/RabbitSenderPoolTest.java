@@ -0,0 +1,95 @@
+package com.iot.controller.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+import reactor.rabbitmq.ChannelPool;
+import reactor.rabbitmq.OutboundMessage;
+import reactor.rabbitmq.SendOptions;
+import reactor.rabbitmq.Sender;
+import reactor.test.StepVerifier;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class RabbitSenderPoolTest {
+
+    @Mock
+    private Sender first;
+
+    @Mock
+    private Sender second;
+
+    @Mock
+    private ChannelPool firstChannels;
+
+    @Mock
+    private ChannelPool secondChannels;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    @DisplayName("Should send to the connection with the fewest sends in flight")
+    @SuppressWarnings("unchecked")
+    void send_shouldPickLeastLoadedConnection() {
+        Sinks.Empty<Void> slowSend = Sinks.empty();
+        when(first.send(any(Flux.class), any(SendOptions.class))).thenReturn(slowSend.asMono());
+        when(second.send(any(Flux.class), any(SendOptions.class))).thenAnswer(invocation ->
+                Flux.from((Flux<OutboundMessage>) invocation.getArgument(0)).then());
+        RabbitSenderPool pool = new RabbitSenderPool(List.of(first, second), List.of(firstChannels, secondChannels),
+                meterRegistry);
+
+        // the first send stays in flight on one connection, so the next ones go to the other
+        pool.send(Flux.just(message())).subscribe();
+        StepVerifier.create(pool.send(Flux.just(message(), message()))).verifyComplete();
+        StepVerifier.create(pool.send(Flux.just(message()))).verifyComplete();
+
+        verify(first, times(1)).send(any(Flux.class), any(SendOptions.class));
+        verify(second, times(2)).send(any(Flux.class), any(SendOptions.class));
+        assertThat(meterRegistry.counter("iot.ingest.publish.connection.messages", "connection", "1").count())
+                .isEqualTo(3);
+        assertThat(meterRegistry.get("iot.ingest.publish.connection.in-flight").tag("connection", "0").gauge().value())
+                .isEqualTo(1);
+
+        slowSend.tryEmitEmpty();
+        assertThat(meterRegistry.get("iot.ingest.publish.connection.in-flight").tag("connection", "0").gauge().value())
+                .isZero();
+    }
+
+    @Test
+    @DisplayName("Should close every sender and channel pool")
+    void close_shouldCloseConnections() {
+        RabbitSenderPool pool = new RabbitSenderPool(List.of(first, second), List.of(firstChannels, secondChannels),
+                meterRegistry);
+
+        pool.close();
+
+        verify(first).close();
+        verify(second).close();
+        verify(firstChannels).close();
+        verify(secondChannels).close();
+    }
+
+    @Test
+    @DisplayName("Should require one channel pool per sender")
+    void constructor_shouldRejectMismatchedPools() {
+        assertThatThrownBy(() -> new RabbitSenderPool(List.of(first, second), List.of(firstChannels), meterRegistry))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private static OutboundMessage message() {
+        return new OutboundMessage("iot.data.exchange", "", new byte[]{'{', '}'});
+    }
+}
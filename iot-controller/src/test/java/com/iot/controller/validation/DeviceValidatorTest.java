@@ -0,0 +1,102 @@
+package com.iot.controller.validation;
+
+import com.iot.contracts.domain.DeviceData;
+import com.iot.contracts.domain.components.Location;
+import com.iot.contracts.domain.components.Status;
+import com.iot.contracts.domain.components.Type;
+import jakarta.validation.Validation;
+import jakarta.validation.Validator;
+import jakarta.validation.ValidatorFactory;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class DeviceValidatorTest {
+
+    private static ValidatorFactory validatorFactory;
+    private static Validator beanValidator;
+
+    private final DeviceValidator validator = new DeviceValidator();
+
+    @BeforeAll
+    static void setUpBeanValidator() {
+        validatorFactory = Validation.buildDefaultValidatorFactory();
+        beanValidator = validatorFactory.getValidator();
+    }
+
+    @AfterAll
+    static void closeBeanValidator() {
+        validatorFactory.close();
+    }
+
+    @Test
+    @DisplayName("Should return the input list untouched when every device is valid")
+    void validate_allValid_shouldReturnInput() {
+        List<DeviceData> batch = List.of(device(1), device(2));
+
+        BatchValidationResult result = validator.validate(batch);
+
+        assertThat(result.hasViolations()).isFalse();
+        assertThat(result.valid()).isSameAs(batch);
+    }
+
+    @Test
+    @DisplayName("Should keep valid devices and report every violation of invalid ones by index")
+    void validate_shouldCollectViolationsPerIndex() {
+        DeviceData invalid = device(2).toBuilder()
+                .manufacturer("")
+                .location(new Location(10001, -10001, 0))
+                .build();
+
+        BatchValidationResult result = validator.validate(List.of(device(1), invalid, device(3)), 10);
+
+        assertThat(result.valid()).extracting(DeviceData::id).containsExactly(1L, 3L);
+        assertThat(result.rejected()).isEqualTo(1);
+        assertThat(result.violations()).containsExactlyInAnyOrder(
+                new DeviceViolation(11, 2L, "manufacturer", "must not be blank"),
+                new DeviceViolation(11, 2L, "location.x", "must be less than or equal to 10000"),
+                new DeviceViolation(11, 2L, "location.y", "must be greater than or equal to -10000"));
+    }
+
+    @Test
+    @DisplayName("Should report the same fields and messages as Bean Validation")
+    void validate_shouldMatchBeanValidation() {
+        List<DeviceData> cases = List.of(
+                device(1),
+                device(2).toBuilder().name(null).type(null).build(),
+                device(3).toBuilder().name(" \t").location(null).status(null).build(),
+                device(4).toBuilder().location(new Location(-10000, 10000, 99999)).build(),
+                device(5).toBuilder().location(new Location(-10001, 20000, 0)).build(),
+                device(6).toBuilder().status(new Status(true, 50, 50, null)).build());
+
+        for (DeviceData device : cases) {
+            Set<String> expected = beanValidator.validate(device).stream()
+                    .map(violation -> violation.getPropertyPath() + ": " + violation.getMessage())
+                    .collect(Collectors.toSet());
+            Set<String> actual = validator.validate(List.of(device)).violations().stream()
+                    .map(violation -> violation.field() + ": " + violation.message())
+                    .collect(Collectors.toSet());
+
+            assertThat(actual).as("device %d", device.id()).isEqualTo(expected);
+        }
+    }
+
+    private DeviceData device(long id) {
+        return DeviceData.builder()
+                .id(id)
+                .name("Device " + id)
+                .manufacturer("Acme")
+                .type(Type.SENSOR_TEMPERATURE)
+                .location(new Location(1, 2, 0))
+                .status(new Status(true, 80, 70, Instant.now()))
+                .build();
+    }
+}
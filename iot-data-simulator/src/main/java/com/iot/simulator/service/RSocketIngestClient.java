@@ -0,0 +1,55 @@
+package com.iot.simulator.service;
+
+import com.iot.contracts.domain.DeviceData;
+import com.iot.contracts.domain.IngestAck;
+
+import jakarta.annotation.PreDestroy;
+
+import lombok.extern.slf4j.Slf4j;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.rsocket.RSocketRequester;
+import org.springframework.stereotype.Component;
+
+import reactor.core.publisher.Flux;
+import reactor.util.retry.Retry;
+
+import java.time.Duration;
+
+/**
+ * Streams devices to the controller over an RSocket request-channel ({@link IngestAck#ROUTE}).
+ * <p>
+ * The controller only requests as many devices as it can store, so a slow controller slows the stream down
+ * instead of failing requests. If the channel breaks, it is reopened with backoff; devices sent but not yet
+ * acknowledged on the broken channel are not resent, the next readings replace them.
+ */
+@Component
+@Slf4j
+public class RSocketIngestClient {
+
+    private final RSocketRequester requester;
+
+    public RSocketIngestClient(RSocketRequester.Builder requesterBuilder,
+                               @Value("${controller.rsocket.host}") String host,
+                               @Value("${controller.rsocket.port}") int port) {
+        this.requester = requesterBuilder.tcp(host, port);
+    }
+
+    public Flux<IngestAck> stream(Flux<DeviceData> devices) {
+        return Flux.defer(() -> requester.route(IngestAck.ROUTE)
+                        .data(devices, DeviceData.class)
+                        .retrieveFlux(IngestAck.class))
+                .doOnSubscribe(subscription -> log.info("Opening RSocket ingest channel"))
+                .doOnNext(ack -> log.debug("Controller acknowledged {} device(s): accepted={}, rejected={}",
+                        ack.acknowledged(), ack.accepted(), ack.rejected()))
+                .retryWhen(Retry.backoff(Long.MAX_VALUE, Duration.ofSeconds(1))
+                        .maxBackoff(Duration.ofSeconds(30))
+                        .doBeforeRetry(signal -> log.error("RSocket ingest channel failed, reopening: {}",
+                                signal.failure().getMessage())));
+    }
+
+    @PreDestroy
+    public void close() {
+        requester.dispose();
+    }
+}
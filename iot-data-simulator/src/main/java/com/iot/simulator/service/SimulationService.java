@@ -13,6 +13,7 @@ import reactor.core.publisher.Sinks;
 
 import java.time.Duration;
 import java.util.List;
+import java.util.UUID;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -23,12 +24,19 @@ import lombok.extern.slf4j.Slf4j;
 @Slf4j
 public class SimulationService {
 
+    private static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+    private static final String RSOCKET_TRANSPORT = "rsocket";
+
     private final DeviceGenerator deviceGenerator = new DeviceGenerator();
     private final WebClient webClient;
+    private final RSocketIngestClient rsocketClient;
 
     @Value("${controller.url}")
     private String controllerUrl;
 
+    @Value("${app.simulation.transport}")
+    private String transport;
+
     private final AtomicInteger deviceCount;
     private final AtomicInteger frequencySeconds;
     private final AtomicInteger batchSize;
@@ -51,10 +59,12 @@ public class SimulationService {
 
     public SimulationService(
             WebClient.Builder webClientBuilder,
+            RSocketIngestClient rsocketClient,
             @Value("${app.simulation.device-count}") int deviceCount,
             @Value("${app.simulation.frequency-seconds}") int frequencySeconds,
             @Value("${app.simulation.batch-size}") int batchSize) {
         this.webClient = webClientBuilder.build();
+        this.rsocketClient = rsocketClient;
         this.deviceCount = new AtomicInteger(deviceCount);
         this.frequencySeconds = new AtomicInteger(frequencySeconds);
         this.batchSize = new AtomicInteger(batchSize);
@@ -66,14 +76,15 @@ public class SimulationService {
                     if (!run) {
                         return Flux.empty();
                     }
-                    return Flux.interval(Duration.ofSeconds(1))
-                            .onBackpressureDrop(tick -> log.warn("Simulation tick dropped due to slow processing"))
-                            .concatMap(tick -> {
-                                int currentTotal = this.deviceCount.get();
-                                int freq = this.frequencySeconds.get();
-                                int devicesToSendPerSecond = Math.max(1, currentTotal / freq);
-                                return sendData(devicesToSendPerSecond);
-                            });
+                    Flux<Long> ticks = Flux.interval(Duration.ofSeconds(1))
+                            .onBackpressureDrop(tick -> log.warn("Simulation tick dropped due to slow processing"));
+                    if (RSOCKET_TRANSPORT.equals(transport)) {
+                        // one channel for the whole run; ticks are dropped while the controller withholds demand
+                        return rsocketClient.stream(ticks.concatMapIterable(tick -> nextDevices(devicesPerSecond()), 1))
+                                .then()
+                                .flux();
+                    }
+                    return ticks.concatMap(tick -> sendData(devicesPerSecond()));
                 })
                 .subscribe(
                         null,
@@ -112,9 +123,13 @@ public class SimulationService {
         });
     }
 
-    private Mono<Void> sendData(int count) {
+    private int devicesPerSecond() {
+        return Math.max(1, deviceCount.get() / frequencySeconds.get());
+    }
+
+    private List<DeviceData> nextDevices(int count) {
         if (deviceData == null || deviceData.isEmpty()) {
-            return Mono.empty();
+            return List.of();
         }
 
         List<DeviceData> toSend = deviceData.stream()
@@ -125,14 +140,25 @@ public class SimulationService {
         if (!toSend.isEmpty()) {
             log.debug("Sending stats for device IDs: {}", toSend.stream().map(DeviceData::id).toList());
         }
+        return toSend;
+    }
+
+    private Mono<Void> sendData(int count) {
+        List<DeviceData> toSend = nextDevices(count);
+        if (toSend.isEmpty()) {
+            return Mono.empty();
+        }
 
         // Split into batches and send sequentially for backpressure
         return Flux.fromIterable(toSend)
                 .buffer(batchSize.get())
                 .concatMap(batch -> {
                     log.debug("Sending batch of {} devices", batch.size());
+                    // same key on the retry, so the controller ingests the batch at most once
+                    String idempotencyKey = UUID.randomUUID().toString();
                     return webClient.post()
                             .uri(controllerUrl)
+                            .header(IDEMPOTENCY_KEY_HEADER, idempotencyKey)
                             .bodyValue(batch)
                             .retrieve()
                             .bodyToMono(Void.class)
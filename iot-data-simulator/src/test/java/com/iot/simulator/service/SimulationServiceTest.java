@@ -1,5 +1,8 @@
 package com.iot.simulator.service;
 
+import com.iot.contracts.domain.DeviceData;
+import com.iot.contracts.domain.IngestAck;
+
 import org.junit.jupiter.api.*;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Answers;
@@ -8,13 +11,18 @@ import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.test.util.ReflectionTestUtils;
 import org.springframework.web.reactive.function.client.WebClient;
 
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
 import reactor.test.StepVerifier;
 
+import java.time.Duration;
+
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -27,16 +35,26 @@ class SimulationServiceTest {
     @Mock(answer = Answers.RETURNS_DEEP_STUBS)
     private WebClient webClient;
 
+    @Mock(answer = Answers.RETURNS_DEEP_STUBS)
+    private WebClient.RequestBodySpec request;
+
+    @Mock
+    private RSocketIngestClient rsocketClient;
+
     private SimulationService simulationService;
 
     @BeforeEach
     void setUp() {
         when(webClientBuilder.build()).thenReturn(webClient);
-        simulationService = new SimulationService(webClientBuilder, 10, 1, 5);
+        simulationService = new SimulationService(webClientBuilder, rsocketClient, 10, 1, 5);
         ReflectionTestUtils.setField(simulationService, "controllerUrl", "http://localhost:8080");
+        ReflectionTestUtils.setField(simulationService, "transport", "http");
+    }
 
-        // Default mock behavior for WebClient
-        when(webClient.post().uri(anyString()).bodyValue(any()).retrieve().bodyToMono(Void.class))
+    private void stubWebClient() {
+        when(webClient.post().uri(anyString())).thenReturn(request);
+        when(request.header(anyString(), anyString())).thenReturn(request);
+        when(request.bodyValue(any()).retrieve().bodyToMono(Void.class))
                 .thenReturn(Mono.empty());
     }
 
@@ -82,6 +100,7 @@ class SimulationServiceTest {
     @Test
     @DisplayName("Should send data to backend when running")
     void simulation_shouldSendData() throws InterruptedException {
+        stubWebClient();
         simulationService.configure(2, 1).block();
         simulationService.start().block();
 
@@ -96,7 +115,8 @@ class SimulationServiceTest {
     @Test
     @DisplayName("Should handle backend errors gracefully")
     void simulation_shouldHandleErrors() throws InterruptedException {
-        when(webClient.post().uri(anyString()).bodyValue(any()).retrieve().bodyToMono(Void.class))
+        stubWebClient();
+        when(request.bodyValue(any()).retrieve().bodyToMono(Void.class))
                 .thenReturn(Mono.error(new RuntimeException("API Error")))
                 .thenReturn(Mono.empty());
 
@@ -109,4 +129,27 @@ class SimulationServiceTest {
 
         simulationService.stop().block();
     }
+
+    @Test
+    @DisplayName("Should stream devices over one RSocket channel in rsocket mode")
+    @SuppressWarnings("unchecked")
+    void simulation_shouldStreamOverRSocket() {
+        ReflectionTestUtils.setField(simulationService, "transport", "rsocket");
+        Sinks.Many<DeviceData> streamed = Sinks.many().replay().all();
+        when(rsocketClient.stream(any())).thenAnswer(invocation -> {
+            Flux<DeviceData> devices = invocation.getArgument(0);
+            return devices.doOnNext(streamed::tryEmitNext)
+                    .map(device -> new IngestAck(1, 1, 0));
+        });
+
+        simulationService.configure(3, 1).block();
+        simulationService.start().block();
+
+        StepVerifier.create(streamed.asFlux().take(6))
+                .expectNextCount(6)
+                .expectComplete()
+                .verify(Duration.ofSeconds(5));
+        verify(rsocketClient).stream(any(Flux.class));
+        verify(webClient, never()).post();
+    }
 }